@@ -11,6 +11,7 @@ import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.wm.StatusBar;
 import com.intellij.openapi.wm.WindowManager;
 import com.intellij.psi.PsiElement;
+import com.intellij.util.PathUtil;
 import fr.adrienbrault.idea.symfony2plugin.dic.ContainerFile;
 import fr.adrienbrault.idea.symfony2plugin.extension.ServiceContainerLoader;
 import fr.adrienbrault.idea.symfony2plugin.extension.ServiceContainerLoaderParameter;
@@ -24,6 +25,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 
 /**
  * @author Adrien Brault <adrien.brault@gmail.com>
@@ -100,6 +102,34 @@ public class Symfony2ProjectComponent implements ProjectComponent {
     }
 
     public Collection<File> getContainerFiles() {
+        Collection<File> validFiles = new ArrayList<>();
+        for(ContainerFile containerFile : getContainerFileDefinitions()) {
+            if(containerFile.exists(this.project)) {
+                validFiles.add(containerFile.getFile(this.project));
+            }
+        }
+
+        return validFiles;
+    }
+
+    /**
+     * File names of all configured container files, also of the not existing ones: "appDevDebugProjectContainer.xml"
+     */
+    @NotNull
+    public Collection<String> getContainerFileNames() {
+        Collection<String> fileNames = new HashSet<>();
+        for(ContainerFile containerFile : getContainerFileDefinitions()) {
+            String path = containerFile.getPath();
+            if(path != null) {
+                fileNames.add(PathUtil.getFileName(path));
+            }
+        }
+
+        return fileNames;
+    }
+
+    @NotNull
+    private Collection<ContainerFile> getContainerFileDefinitions() {
         Collection<ContainerFile> containerFiles = new ArrayList<>();
 
         ServiceContainerLoaderParameter containerLoaderExtensionParameter = new ServiceContainerLoaderParameter(project, containerFiles);
@@ -113,14 +143,7 @@ public class Symfony2ProjectComponent implements ProjectComponent {
             }
         }
 
-        Collection<File> validFiles = new ArrayList<>();
-        for(ContainerFile containerFile : containerFiles) {
-            if(containerFile.exists(this.project)) {
-                validFiles.add(containerFile.getFile(this.project));
-            }
-        }
-
-        return validFiles;
+        return containerFiles;
     }
 
     private void checkProject() {
@@ -12,7 +12,6 @@ import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -31,6 +30,7 @@ import fr.adrienbrault.idea.symfony2plugin.routing.Route;
 import fr.adrienbrault.idea.symfony2plugin.routing.RouteHelper;
 import fr.adrienbrault.idea.symfony2plugin.stubs.ContainerCollectionResolver;
 import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigExtension;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigTemplateNameStore;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigExtensionParser;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
@@ -75,7 +75,6 @@ public class SymfonySymbolSearchAction extends GotoActionBase {
         final private Project project;
 
         private ContainerCollectionResolver.ServiceCollector serviceCollector;
-        private Map<String, Set<VirtualFile>> templateMap;
         private Map<String, Route> routes;
         private Set<String> twigMacroSet;
         private Map<String, LookupElement> lookupElements;
@@ -92,14 +91,6 @@ public class SymfonySymbolSearchAction extends GotoActionBase {
             return this.serviceCollector;
         }
 
-        private Map<String, Set<VirtualFile>> getTemplateMap() {
-            if(this.templateMap == null) {
-                this.templateMap = TwigUtil.getTemplateMap(this.project, true);
-            }
-
-            return this.templateMap;
-        }
-
         private Map<String, Route> getRoutes() {
             if(this.routes == null) {
                 this.routes = RouteHelper.getAllRoutes(project);
@@ -137,9 +128,10 @@ public class SymfonySymbolSearchAction extends GotoActionBase {
                 processor.process(name);
             }
 
-            for(String templateName: getTemplateMap().keySet()) {
-                processor.process(templateName);
-            }
+            TwigTemplateNameStore.getInstance(project).processTemplateNames("", true, templateName -> {
+                processor.process(templateName.getName());
+                return true;
+            });
 
             for(String name: getRoutes().keySet()) {
                 processor.process(name);
@@ -192,7 +184,7 @@ public class SymfonySymbolSearchAction extends GotoActionBase {
             }
 
             // @TODO name filter
-            if(getTemplateMap().containsKey(name)) {
+            if(TwigTemplateNameStore.getInstance(project).getTemplateName(name) != null) {
                 for (PsiFile psiFile : TwigUtil.getTemplatePsiElements(project, name)) {
                     processor.process(new NavigationItemEx(psiFile, name, psiFile.getFileType().getIcon(), "Template"));
                 }
@@ -243,7 +235,10 @@ public class SymfonySymbolSearchAction extends GotoActionBase {
 
             for (SymfonyCommand symfonyCommand : SymfonyCommandUtil.getCommands(project)) {
                 if(symfonyCommand.getName().equals(name)) {
-                    processor.process(new NavigationItemEx(symfonyCommand.getPsiElement(), name, Symfony2Icons.SYMFONY, "Command"));
+                    PsiElement psiElement = symfonyCommand.getPsiElement();
+                    if(psiElement != null) {
+                        processor.process(new NavigationItemEx(psiElement, name, Symfony2Icons.SYMFONY, "Command"));
+                    }
                 }
             }
 
@@ -5,7 +5,6 @@ import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.patterns.PlatformPatterns;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.*;
@@ -16,19 +15,20 @@ import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashMap;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.jetbrains.php.PhpIndex;
-import com.jetbrains.php.lang.parser.PhpElementTypes;
 import com.jetbrains.php.lang.psi.PhpFile;
 import com.jetbrains.php.lang.psi.elements.*;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2Icons;
 import fr.adrienbrault.idea.symfony2plugin.config.dic.EventDispatcherSubscribedEvent;
 import fr.adrienbrault.idea.symfony2plugin.dic.XmlEventParser;
 import fr.adrienbrault.idea.symfony2plugin.stubs.ContainerCollectionResolver;
+import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
 import fr.adrienbrault.idea.symfony2plugin.stubs.cache.FileIndexCaches;
 import fr.adrienbrault.idea.symfony2plugin.stubs.dict.DispatcherEvent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.SubscribedEvent;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.EventAnnotationStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.EventSubscriberStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.util.EventSubscriberUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
-import fr.adrienbrault.idea.symfony2plugin.util.PsiElementUtils;
 import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import fr.adrienbrault.idea.symfony2plugin.util.yaml.YamlHelper;
 import org.apache.commons.lang.StringUtils;
@@ -45,160 +45,137 @@ import java.util.*;
  */
 public class EventDispatcherSubscriberUtil {
 
-    private static final Key<CachedValue<Collection<EventDispatcherSubscribedEvent>>> EVENT_SUBSCRIBERS = new Key<>("SYMFONY_EVENT_SUBSCRIBERS");
+    private static final Key<CachedValue<Map<String, Collection<EventDispatcherSubscribedEvent>>>> EVENT_SUBSCRIBERS = new Key<>("SYMFONY_EVENT_SUBSCRIBERS");
     private static final Key<CachedValue<Set<String>>> EVENT_ANNOTATIONS = new Key<>("SYMFONY_EVENT_ANNOTATIONS");
 
+    private static final String EVENT_SUBSCRIBER_INTERFACE = "\\Symfony\\Component\\EventDispatcher\\EventSubscriberInterface";
+
+    /**
+     * All events of "EventSubscriberInterface::getSubscribedEvents", provided by EventSubscriberStubIndex
+     */
     @NotNull
     public static Collection<EventDispatcherSubscribedEvent> getSubscribedEvents(final @NotNull Project project) {
+        Collection<EventDispatcherSubscribedEvent> events = new ArrayList<>();
 
-        CachedValue<Collection<EventDispatcherSubscribedEvent>> cache = project.getUserData(EVENT_SUBSCRIBERS);
-        if (cache == null) {
-            cache = CachedValuesManager.getManager(project).createCachedValue(() ->
-                CachedValueProvider.Result.create(getSubscribedEventsProxy(project), PsiModificationTracker.MODIFICATION_COUNT), false
-            );
-            project.putUserData(EVENT_SUBSCRIBERS, cache);
+        for (Collection<EventDispatcherSubscribedEvent> subscribedEvents : getSubscribedEventsByName(project).values()) {
+            events.addAll(subscribedEvents);
         }
 
-        return cache.getValue();
+        return events;
     }
 
     @NotNull
-    private static Collection<EventDispatcherSubscribedEvent> getSubscribedEventsProxy(@NotNull Project project) {
-
-        Collection<EventDispatcherSubscribedEvent> events = new ArrayList<>();
-
-        // http://symfony.com/doc/current/components/event_dispatcher/introduction.html
-        PhpIndex phpIndex = PhpIndex.getInstance(project);
-        Collection<PhpClass> phpClasses = phpIndex.getAllSubclasses("\\Symfony\\Component\\EventDispatcher\\EventSubscriberInterface");
-
-        for(PhpClass phpClass: phpClasses) {
-
-            if(PhpElementsUtil.isTestClass(phpClass)) {
-                continue;
-            }
-
-            Method method = phpClass.findMethodByName("getSubscribedEvents");
-            if(method != null) {
-                PhpReturn phpReturn = PsiTreeUtil.findChildOfType(method, PhpReturn.class);
-                if(phpReturn != null) {
-                    attachSubscriberEventNames(events, phpClass, phpReturn);
-                }
-            }
-        }
+    public static Collection<EventDispatcherSubscribedEvent> getSubscribedEvent(@NotNull Project project, @NotNull String eventName) {
+        return new ArrayList<>(getSubscribedEventsByName(project).getOrDefault(eventName, Collections.emptyList()));
+    }
 
-       return events;
+    /**
+     * Subscribed events by their name. The index tracker also changes with any php file; so also with a changed
+     * subscriber parent or an event name constant of a foreign class
+     */
+    @NotNull
+    private static Map<String, Collection<EventDispatcherSubscribedEvent>> getSubscribedEventsByName(@NotNull Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(
+            project,
+            EVENT_SUBSCRIBERS,
+            () -> CachedValueProvider.Result.create(createSubscribedEvents(project), EventSubscriberStubIndex.getModificationTracker(project)),
+            false
+        );
     }
 
-    private static void attachSubscriberEventNames(@NotNull Collection<EventDispatcherSubscribedEvent> events, @NotNull PhpClass phpClass, @NotNull PhpReturn phpReturn) {
+    /**
+     * The index only knows the class itself; so the subscriber interface and subclasses inheriting
+     * "getSubscribedEvents" are resolved here
+     */
+    @NotNull
+    private static Map<String, Collection<EventDispatcherSubscribedEvent>> createSubscribedEvents(@NotNull Project project) {
+        Map<String, Collection<EventDispatcherSubscribedEvent>> events = new HashMap<>();
 
-        PhpPsiElement array = phpReturn.getFirstPsiChild();
-        if(!(array instanceof ArrayCreationExpression)) {
-            return;
-        }
+        // a class provides mostly more than one event
+        Map<String, Collection<String>> subscriberClasses = new HashMap<>();
 
-        String presentableFQN = phpClass.getPresentableFQN();
+        PhpIndex phpIndex = PhpIndex.getInstance(project);
+
+        for (String key : SymfonyProcessors.createResult(project, EventSubscriberStubIndex.KEY)) {
+            String eventName = key;
+            String signature = null;
 
-        Iterable<ArrayHashElement> arrayHashElements = ((ArrayCreationExpression) array).getHashElements();
-        for(ArrayHashElement arrayHashElement: arrayHashElements) {
-            PsiElement arrayKey = arrayHashElement.getKey();
+            if(EventSubscriberStubIndex.isSignatureKey(key)) {
+                eventName = getSignatureEventName(phpIndex, key);
+                if(eventName == null) {
+                    continue;
+                }
 
-            PsiElement value = null;
-            // get method name
-            // @TODO: support multiple method names, currently we only use method name if type hint, so first item helps for now
-            Collection<PsiElement> subscriberMethods = getSubscriberMethods(arrayHashElement);
-            if(subscriberMethods.size() > 0) {
-                value = subscriberMethods.iterator().next();
+                signature = key;
             }
 
-            if(arrayKey instanceof StringLiteralExpression) {
-
-                // ['doh' => 'method']
-                events.add(new EventDispatcherSubscribedEvent(
-                    ((StringLiteralExpression) arrayKey).getContents(),
-                    presentableFQN,
-                    PhpElementsUtil.getStringValue(value)
-                ));
-
-            } else if(arrayKey instanceof PhpReference) {
-                String resolvedString = PhpElementsUtil.getStringValue(arrayKey);
-                if(resolvedString != null) {
-
-                    // [FOO::BAR => 'method']
-                    events.add(new EventDispatcherSubscribedEvent(
-                        resolvedString,
-                        presentableFQN,
-                        PhpElementsUtil.getStringValue(value),
-                        ((PhpReference) arrayKey).getSignature())
+            for (Collection<SubscribedEvent> subscribedEvents : FileBasedIndex.getInstance().getValues(EventSubscriberStubIndex.KEY, key, GlobalSearchScope.allScope(project))) {
+                for (SubscribedEvent subscribedEvent : subscribedEvents) {
+                    Collection<String> classNames = subscriberClasses.computeIfAbsent(
+                        subscribedEvent.getClassName(),
+                        className -> getSubscriberClasses(project, className)
                     );
-                }
 
-            }
+                    for (String className : classNames) {
+                        EventDispatcherSubscribedEvent event = signature != null
+                            ? new EventDispatcherSubscribedEvent(eventName, className, subscribedEvent.getMethodName(), signature)
+                            : new EventDispatcherSubscribedEvent(eventName, className, subscribedEvent.getMethodName());
 
+                        events.computeIfAbsent(eventName, s -> new ArrayList<>()).add(event.setPriority(subscribedEvent.getPriority()));
+                    }
+                }
+            }
         }
 
+        return events;
     }
 
     /**
-     * Extract method name for subscribe
-     *
-     * 'pre.foo1' => 'foo'
-     * 'pre.foo1' => ['onStoreOrder', 0]
-     * 'pre.foo2' => [['onStoreOrder', 0]]
+     * The indexed class and all its subclasses which inherit its "getSubscribedEvents"; empty if it is no subscriber
      */
     @NotNull
-    private static Collection<PsiElement> getSubscriberMethods(@NotNull ArrayHashElement arrayHashElement) {
-
-        // support string, constants and array values
-        PhpPsiElement value = arrayHashElement.getValue();
-        if(value == null) {
-            Collections.emptySet();
+    private static Collection<String> getSubscriberClasses(@NotNull Project project, @NotNull String className) {
+        PhpClass phpClass = PhpElementsUtil.getClassInterface(project, className);
+        if(phpClass == null || !PhpElementsUtil.isInstanceOf(phpClass, EVENT_SUBSCRIBER_INTERFACE)) {
+            return Collections.emptyList();
         }
 
-        // 'pre.foo' => [...]
-        if(!(value instanceof ArrayCreationExpression)) {
-            return new ArrayList<>(Collections.singletonList(value));
-        }
+        Collection<String> classNames = new ArrayList<>();
+        classNames.add(className);
 
-        Collection<PsiElement> psiElements = new HashSet<>();
-
-        // 'pre.foo' => [<caret>]
-        PsiElement firstChild = value.getFirstPsiChild();
-        if(firstChild != null && firstChild.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE) {
-            PhpPsiElement firstPsiChild = ((PhpPsiElement) firstChild).getFirstPsiChild();
-            if(firstPsiChild instanceof StringLiteralExpression) {
-                // 'pre.foo' => ['method']
-                psiElements.add(firstPsiChild);
-            } else if(firstPsiChild instanceof ArrayCreationExpression) {
-
-                // 'pre.foo' => [['method', ...], ['method2', ...]]
-                for (PsiElement psiElement : PsiElementUtils.getChildrenOfTypeAsList(firstPsiChild, PlatformPatterns.psiElement().withElementType(PhpElementTypes.ARRAY_VALUE))) {
-                    if(!(psiElement instanceof PhpPsiElement)) {
-                        continue;
-                    }
+        for (PhpClass subClass : PhpIndex.getInstance(project).getAllSubclasses(phpClass.getFQN())) {
+            if(subClass.isInterface() || PhpElementsUtil.isTestClassName(subClass) || subClass.findOwnMethodByName("getSubscribedEvents") != null) {
+                continue;
+            }
 
-                    PhpPsiElement prioValue = ((PhpPsiElement) psiElement).getFirstPsiChild();
-                    if(prioValue instanceof StringLiteralExpression) {
-                        psiElements.add(prioValue);
-                    }
-                }
+            // a subclass of a subclass overriding the method is provided by the overriding one
+            Method method = subClass.findMethodByName("getSubscribedEvents");
+            PhpClass containingClass = method != null ? method.getContainingClass() : null;
+            if(containingClass != null && containingClass.getFQN().equals(phpClass.getFQN())) {
+                classNames.add(subClass.getPresentableFQN());
             }
         }
 
-        return psiElements;
+        return classNames;
     }
 
-    @NotNull
-    public static Collection<EventDispatcherSubscribedEvent> getSubscribedEvent(@NotNull Project project, @NotNull String eventName) {
-
-        List<EventDispatcherSubscribedEvent> events = new ArrayList<>();
+    /**
+     * Event names which are constants of foreign classes "#K#C\Foo\Bar.BAR" are only resolvable outside of the index
+     */
+    @Nullable
+    private static String getSignatureEventName(@NotNull PhpIndex phpIndex, @NotNull String signature) {
+        for (PhpNamedElement phpNamedElement : phpIndex.getBySignature(signature)) {
+            if(!(phpNamedElement instanceof Field)) {
+                continue;
+            }
 
-        for(EventDispatcherSubscribedEvent event: getSubscribedEvents(project)) {
-            if(event.getStringValue().equals(eventName)) {
-                events.add(event);
+            String eventName = PhpElementsUtil.getStringValue(((Field) phpNamedElement).getDefaultValue());
+            if(StringUtils.isNotBlank(eventName)) {
+                return eventName;
             }
         }
 
-        return events;
+        return null;
     }
 
     @NotNull
@@ -1,29 +1,34 @@
 package fr.adrienbrault.idea.symfony2plugin.config.component.parser;
 
-import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceStreamParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
+import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class ParameterServiceParser extends AbstractServiceParser {
+public class ParameterServiceParser extends AbstractServiceStreamParser {
 
     protected Map<String, String> parameterMap = new ConcurrentHashMap<>();
 
+    /**
+     * "/container/parameters/parameter[@key]"
+     */
     @Override
-    public String getXPathFilter() {
-        return "";
-    }
+    public void endElement(@NotNull ServiceXmlElement element) {
+        if(!element.hasAttribute("key") || !element.isPath("container", "parameters", "parameter")) {
+            return;
+        }
 
-    public void parser(final InputStream file) {
-        this.parameterMap.putAll(ParameterServiceCollector.collect(file));
+        String parameterValue = "collection".equals(element.getAttribute("type")) ? "collection" : element.getTextContent();
+        this.parameterMap.put(element.getAttribute("key"), parameterValue);
     }
 
     public Map<String, String> getParameterMap() {
         return parameterMap;
     }
 
-}
\ No newline at end of file
+}
@@ -3,8 +3,10 @@ package fr.adrienbrault.idea.symfony2plugin.dic;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Objects;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
@@ -57,5 +59,18 @@ public class ContainerParameter {
         return values;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, isWeak, new ArrayList<>(values));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ContainerParameter &&
+            Objects.equals(((ContainerParameter) obj).name, this.name) &&
+            ((ContainerParameter) obj).isWeak == this.isWeak &&
+            Objects.equals(new ArrayList<>(((ContainerParameter) obj).values), new ArrayList<>(this.values));
+    }
+
 }
 
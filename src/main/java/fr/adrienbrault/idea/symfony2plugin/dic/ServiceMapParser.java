@@ -2,6 +2,7 @@ package fr.adrienbrault.idea.symfony2plugin.dic;
 
 import fr.adrienbrault.idea.symfony2plugin.dic.container.ServiceInterface;
 import fr.adrienbrault.idea.symfony2plugin.dic.container.XmlService;
+import org.jetbrains.annotations.NotNull;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -14,6 +15,8 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -41,8 +44,7 @@ public class ServiceMapParser {
     public ServiceMap parse(Document document) {
         NodeList servicesNodes = document.getElementsByTagName("service");
 
-        Map<String, ServiceInterface> services = new HashMap<>();
-        Map<String, ServiceInterface> aliases = new HashMap<>();
+        Collection<XmlService> services = new ArrayList<>();
 
         for (int i = 0; i < servicesNodes.getLength(); i++) {
             Node node = servicesNodes.item(i);
@@ -56,6 +58,21 @@ public class ServiceMapParser {
                 continue;
             }
 
+            services.add(service);
+        }
+
+        return createServiceMap(services);
+    }
+
+    /**
+     * @param xmlServices all services of a single container file
+     */
+    @NotNull
+    static ServiceMap createServiceMap(@NotNull Collection<XmlService> xmlServices) {
+        Map<String, ServiceInterface> services = new HashMap<>();
+        Map<String, ServiceInterface> aliases = new HashMap<>();
+
+        for (XmlService service : xmlServices) {
             if(service.getAlias() == null) {
                 services.put(service.getId(), service);
             } else {
@@ -1,11 +1,10 @@
 package fr.adrienbrault.idea.symfony2plugin.dic;
 
 import fr.adrienbrault.idea.symfony2plugin.config.dic.EventDispatcherSubscribedEvent;
-import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceParser;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceStreamParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
+import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -14,32 +13,29 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class XmlEventParser extends AbstractServiceParser {
+public class XmlEventParser extends AbstractServiceStreamParser {
 
     protected Map<String, String> list = new ConcurrentHashMap<>();
     protected List<EventDispatcherSubscribedEvent> events = new ArrayList<>();
 
+    /**
+     * "/container/services/service[@id]/tag[@event]"
+     */
     @Override
-    public String getXPathFilter() {
-        return "/container/services/service[@id]/tag[@event]";
-    }
-
-    public void parser(InputStream file) {
-        NodeList nodeList = this.parserer(file);
-
-        if(nodeList == null) {
+    public void startElement(@NotNull ServiceXmlElement element) {
+        if(!element.hasAttribute("event") || !element.isPath("container", "services", "service", "tag")) {
             return;
         }
 
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Element node = (Element) nodeList.item(i);
-            this.list.put(node.getAttribute("event"), node.getAttribute("name"));
-            if(((Element) node.getParentNode()).hasAttribute("class")) {
-                this.events.add(new EventDispatcherSubscribedEvent(node.getAttribute("event"), ((Element) node.getParentNode()).getAttribute("class"), null).setType(node.getAttribute("name")));
-            }
-
+        ServiceXmlElement service = element.getParent();
+        if(service == null || !service.hasAttribute("id")) {
+            return;
         }
 
+        this.list.put(element.getAttribute("event"), element.getAttribute("name"));
+        if(service.hasAttribute("class")) {
+            this.events.add(new EventDispatcherSubscribedEvent(element.getAttribute("event"), service.getAttribute("class"), null).setType(element.getAttribute("name")));
+        }
     }
 
     public Map<String, String> get() {
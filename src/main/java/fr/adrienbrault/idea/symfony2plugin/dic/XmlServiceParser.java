@@ -1,35 +1,51 @@
 package fr.adrienbrault.idea.symfony2plugin.dic;
 
-import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.XmlService;
+import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceStreamParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
 import org.jetbrains.annotations.NotNull;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class XmlServiceParser extends AbstractServiceParser {
+public class XmlServiceParser extends AbstractServiceStreamParser {
 
     @NotNull
     private ServiceMap serviceMap = new ServiceMap();
 
+    @NotNull
+    private Collection<XmlService> services = new ArrayList<>();
+
     @Override
-    public String getXPathFilter() {
-        return "";
-    }
+    public void startElement(@NotNull ServiceXmlElement element) {
+        // new file; drop services of a broken one
+        if(element.getDepth() == 1) {
+            this.services = new ArrayList<>();
+        }
 
-    public void parser(InputStream file) {
-        try {
-            this.serviceMap = new ServiceMapParser().parse(file);
-        } catch (SAXException | IOException | ParserConfigurationException ignored) {
+        if(!"service".equals(element.getName())) {
+            return;
         }
+
+        // invalid service
+        XmlService service = XmlService.createFromXml(element);
+        if(service != null) {
+            this.services.add(service);
+        }
+    }
+
+    @Override
+    public void endDocument() {
+        // last container file wins, alias are resolved per file
+        this.serviceMap = ServiceMapParser.createServiceMap(this.services);
+        this.services = new ArrayList<>();
     }
 
     @NotNull
     public ServiceMap getServiceMap() {
         return serviceMap;
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,10 @@
 package fr.adrienbrault.idea.symfony2plugin.dic;
 
-import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceStreamParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map;
@@ -15,35 +14,32 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class XmlTagParser extends AbstractServiceParser {
+public class XmlTagParser extends AbstractServiceStreamParser {
 
     protected Set<String> list = new HashSet<>();
     protected Map<String, ArrayList<String>> taggedClasses = new ConcurrentHashMap<>();
 
+    /**
+     * "/container/services/service[@id]/tag[@name]"
+     */
     @Override
-    public String getXPathFilter() {
-        return "/container/services/service[@id]/tag[@name]";
-    }
-
-    public void parser(InputStream file) {
-        NodeList nodeList = this.parserer(file);
-
-        if(nodeList == null) {
+    public void startElement(@NotNull ServiceXmlElement element) {
+        if(!element.hasAttribute("name") || !element.isPath("container", "services", "service", "tag")) {
             return;
         }
 
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Element node = (Element) nodeList.item(i);
-            String tagName = node.getAttribute("name");
-            this.list.add(tagName);
-            Element parentNode = (Element) node.getParentNode();
-            if(parentNode.hasAttribute("class")) {
-                this.addTaggedClass(tagName, parentNode.getAttribute("class"));
-            }
+        ServiceXmlElement service = element.getParent();
+        if(service == null || !service.hasAttribute("id")) {
+            return;
         }
 
-    }
+        String tagName = element.getAttribute("name");
+        this.list.add(tagName);
 
+        if(service.hasAttribute("class")) {
+            this.addTaggedClass(tagName, service.getAttribute("class"));
+        }
+    }
 
     public Map<String, ArrayList<String>> getTaggedClasses() {
         return taggedClasses;
@@ -1,10 +1,13 @@
 package fr.adrienbrault.idea.symfony2plugin.dic.container;
 
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Element;
 
+import java.util.function.Function;
+
 /**
  * Create a service definition on a compiled debug xml file
  * We dont need a featureful implementation as xml file already cleaned up
@@ -89,25 +92,38 @@ public class XmlService implements ServiceInterface {
 
     @Nullable
     public static XmlService createFromXml(@NotNull Element node) {
+        return create(node::getAttribute);
+    }
+
+    @Nullable
+    public static XmlService createFromXml(@NotNull ServiceXmlElement element) {
+        return create(element::getAttribute);
+    }
+
+    /**
+     * @param node attribute value of service node; empty string for not existing ones
+     */
+    @Nullable
+    private static XmlService create(@NotNull Function<String, String> node) {
         // empty id does not interest us
-        String id = node.getAttribute("id");
+        String id = node.apply("id");
         if(StringUtils.isBlank(id)) {
             return null;
         }
 
         XmlService xmlService = new XmlService(id);
 
-        String aClass = node.getAttribute("class");
+        String aClass = node.apply("class");
         if(StringUtils.isNotBlank(aClass)) {
             xmlService.className = StringUtils.stripStart(aClass, "\\");
         }
 
-        String isPublic = node.getAttribute("public");
+        String isPublic = node.apply("public");
         if(isPublic != null && "false".equalsIgnoreCase(isPublic)) {
             xmlService.isPublic = false;
         }
 
-        String alias = node.getAttribute("alias");
+        String alias = node.apply("alias");
         if(StringUtils.isNotBlank(alias)) {
             xmlService.alias = alias;
         }
@@ -1,5 +1,7 @@
 package fr.adrienbrault.idea.symfony2plugin.extension;
 
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.util.PsiModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPath;
 import org.jetbrains.annotations.NotNull;
 
@@ -11,4 +13,12 @@ import java.util.Collection;
 public interface TwigNamespaceExtension {
     @NotNull
     Collection<TwigPath> getNamespaces(@NotNull TwigNamespaceExtensionParameter parameter);
+
+    /**
+     * Namespaces of this extension are reused until the tracker changes; default is any psi change
+     */
+    @NotNull
+    default ModificationTracker getModificationTracker(@NotNull TwigNamespaceExtensionParameter parameter) {
+        return PsiModificationTracker.getInstance(parameter.getProject());
+    }
 }
@@ -1,41 +1,36 @@
 package fr.adrienbrault.idea.symfony2plugin.form.dict;
 
-import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceParser;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceStreamParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
+import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class FormExtensionServiceParser extends AbstractServiceParser {
+public class FormExtensionServiceParser extends AbstractServiceStreamParser {
 
     protected Map<String, String> formExtensions = new ConcurrentHashMap<>();
 
+    /**
+     * "/container/services/service/tag[@name='form.type_extension']"
+     */
     @Override
-    public String getXPathFilter() {
-        return "/container/services/service/tag[@name='form.type_extension']";
-    }
-
-    public void parser(InputStream file) {
-        NodeList nodeList = this.parserer(file);
-
-        if(nodeList == null) {
+    public void startElement(@NotNull ServiceXmlElement element) {
+        if(!"form.type_extension".equals(element.getAttribute("name")) || !element.isPath("container", "services", "service", "tag")) {
             return;
         }
 
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Element node = (Element) nodeList.item(i);
-            formExtensions.put(node.getParentNode().getAttributes().getNamedItem("class").getTextContent(), node.getAttribute("alias"));
+        ServiceXmlElement service = element.getParent();
+        if(service != null && service.hasAttribute("class")) {
+            formExtensions.put(service.getAttribute("class"), element.getAttribute("alias"));
         }
-
     }
 
     public Map<String, String> getFormExtensions() {
         return this.formExtensions;
     }
 
-}
\ No newline at end of file
+}
@@ -1,39 +1,77 @@
 package fr.adrienbrault.idea.symfony2plugin.form.dict;
 
-import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceParser;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceStreamParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
+import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class FormTypeServiceParser extends AbstractServiceParser {
+public class FormTypeServiceParser extends AbstractServiceStreamParser {
 
     protected FormTypeMap formTypeMap = new FormTypeMap();
 
+    /**
+     * Inline services which already provided their first "collection" argument
+     */
+    @NotNull
+    private final Set<ServiceXmlElement> visitedServices = new HashSet<>();
+
+    /**
+     * The first "collection" argument of every inline service
+     */
+    @NotNull
+    private final Set<ServiceXmlElement> collections = new HashSet<>();
+
+    /**
+     * "/container/services/service[@id='form.registry']//service[@class]/argument[@type='collection'][1]"
+     */
     @Override
-    public String getXPathFilter() {
-        return "/container/services/service[@id='form.registry']//service[@class]/argument[@type='collection'][1]/argument[@key]";
+    public void startElement(@NotNull ServiceXmlElement element) {
+        if(!"argument".equals(element.getName()) || !"collection".equals(element.getAttribute("type"))) {
+            return;
+        }
+
+        ServiceXmlElement service = element.getParent();
+        if(service == null || service.getDepth() <= 3 || !"service".equals(service.getName()) || !service.hasAttribute("class")) {
+            return;
+        }
+
+        ServiceXmlElement registry = element.getAncestor(3);
+        if(registry == null || !"form.registry".equals(registry.getAttribute("id")) || !registry.isPath("container", "services", "service")) {
+            return;
+        }
+
+        if(this.visitedServices.add(service)) {
+            this.collections.add(element);
+        }
     }
 
-    public void parser(InputStream file) {
-        NodeList nodeList = this.parserer(file);
+    /**
+     * ".../argument[@key]"
+     */
+    @Override
+    public void endElement(@NotNull ServiceXmlElement element) {
+        if(!"argument".equals(element.getName())) {
+            if("service".equals(element.getName())) {
+                this.visitedServices.remove(element);
+            }
 
-        if(nodeList == null) {
             return;
         }
 
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Element node = (Element) nodeList.item(i);
-            this.formTypeMap.getMap().put(node.getTextContent(), node.getAttribute("key"));
+        if(element.hasAttribute("key") && this.collections.contains(element.getParent())) {
+            this.formTypeMap.getMap().put(element.getTextContent(), element.getAttribute("key"));
         }
 
+        this.collections.remove(element);
     }
 
     public FormTypeMap getFormTypeMap() {
         return formTypeMap;
     }
 
-}
\ No newline at end of file
+}
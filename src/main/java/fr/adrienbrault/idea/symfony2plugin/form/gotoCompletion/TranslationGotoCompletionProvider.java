@@ -1,8 +1,8 @@
 package fr.adrienbrault.idea.symfony2plugin.form.gotoCompletion;
 
-import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.psi.PsiElement;
 import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionProvider;
+import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionProviderLookupArguments;
 import fr.adrienbrault.idea.symfony2plugin.codeInsight.utils.GotoCompletionUtil;
 import fr.adrienbrault.idea.symfony2plugin.translation.dict.TranslationUtil;
 import org.jetbrains.annotations.NotNull;
@@ -26,10 +26,9 @@ public class TranslationGotoCompletionProvider extends GotoCompletionProvider {
         this.domain = domain;
     }
 
-    @NotNull
     @Override
-    public Collection<LookupElement> getLookupElements() {
-        return TranslationUtil.getTranslationLookupElementsOnDomain(getElement().getProject(), domain);
+    public void getLookupElements(@NotNull GotoCompletionProviderLookupArguments arguments) {
+        TranslationUtil.addTranslationLookupElementsOnDomain(getElement().getProject(), domain, arguments.getResultSet());
     }
 
     @NotNull
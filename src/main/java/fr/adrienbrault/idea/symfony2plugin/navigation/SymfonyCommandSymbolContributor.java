@@ -3,6 +3,7 @@ package fr.adrienbrault.idea.symfony2plugin.navigation;
 import com.intellij.navigation.ChooseByNameContributor;
 import com.intellij.navigation.NavigationItem;
 import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
 import com.intellij.util.ArrayUtil;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2Icons;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
@@ -45,8 +46,13 @@ public class SymfonyCommandSymbolContributor implements ChooseByNameContributor
         List<NavigationItem> navigationItems = new ArrayList<>();
 
         for (SymfonyCommand symfonyCommand : SymfonyCommandUtil.getCommands(project)) {
-            if(symfonyCommand.getName().equals(name)) {
-                navigationItems.add(new NavigationItemEx(symfonyCommand.getPsiElement(), name, Symfony2Icons.SYMFONY, "Command"));
+            if(!symfonyCommand.getName().equals(name)) {
+                continue;
+            }
+
+            PsiElement psiElement = symfonyCommand.getPsiElement();
+            if(psiElement != null) {
+                navigationItems.add(new NavigationItemEx(psiElement, name, Symfony2Icons.SYMFONY, "Command"));
             }
         }
 
@@ -21,7 +21,7 @@ public class TemplateFileContributor implements ChooseByNameContributor {
             return new String[0];
         }
 
-        Collection<String> twigFileNames = TwigUtil.getTemplateMap(project).keySet();
+        Collection<String> twigFileNames = TwigUtil.getTemplateNames(project, false);
         return twigFileNames.toArray(new String[twigFileNames.size()]);
     }
 
@@ -5,8 +5,10 @@ import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -33,11 +35,13 @@ import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.extension.RoutingLoader;
 import fr.adrienbrault.idea.symfony2plugin.extension.RoutingLoaderParameter;
 import fr.adrienbrault.idea.symfony2plugin.routing.dic.ControllerClassOnShortcutReturn;
-import fr.adrienbrault.idea.symfony2plugin.routing.dic.ServiceRouteContainer;
 import fr.adrienbrault.idea.symfony2plugin.routing.dict.RoutesContainer;
 import fr.adrienbrault.idea.symfony2plugin.routing.dict.RoutingFile;
+import fr.adrienbrault.idea.symfony2plugin.stubs.ContainerCollectionResolver;
 import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
+import fr.adrienbrault.idea.symfony2plugin.stubs.cache.RouteDefinitionFileCache;
 import fr.adrienbrault.idea.symfony2plugin.stubs.dict.StubIndexedRoute;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.RouteControllerStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.RoutesStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.util.*;
 import fr.adrienbrault.idea.symfony2plugin.util.controller.ControllerAction;
@@ -52,15 +56,19 @@ import org.jetbrains.yaml.YAMLUtil;
 import org.jetbrains.yaml.psi.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
 public class RouteHelper {
 
-    private static final Key<CachedValue<Map<String, Route>>> ROUTE_CACHE = new Key<>("SYMFONY:ROUTE_CACHE");
+    private static final Key<AllRoutes> ROUTE_CACHE = new Key<>("SYMFONY:ROUTE_CACHE");
+
+    private static final Key<CachedValue<Map<String, Route>>> ROUTE_COMPILED_CACHE = new Key<>("SYMFONY:ROUTE_COMPILED_CACHE");
+
+    private static final Key<CachedValue<Map<String, Set<String>>>> ROUTE_CONTROLLER_CACHE = new Key<>("SYMFONY:ROUTE_CONTROLLER_CACHE");
 
     public static Set<String> ROUTE_CLASSES = new HashSet<>(Arrays.asList(
         "Sensio\\Bundle\\FrameworkExtraBundle\\Configuration\\Route",
@@ -243,14 +251,6 @@ public class RouteHelper {
         return null;
     }
 
-    private static <E> ArrayList<E> makeCollection(Iterable<E> iter) {
-        ArrayList<E> list = new ArrayList<>();
-        for (E item : iter) {
-            list.add(item);
-        }
-        return list;
-    }
-
     private static String getPath(Project project, String path) {
         if (!FileUtil.isAbsolute(path)) { // Project relative path
             path = project.getBasePath() + "/" + path;
@@ -259,8 +259,11 @@ public class RouteHelper {
         return path;
     }
 
+    /**
+     * Configured url generator files or the defaults, if user never has changed the settings
+     */
     @NotNull
-    public static Map<String, Route> getCompiledRoutes(@NotNull Project project) {
+    private static Set<String> getCompiledRouteFiles(@NotNull Project project) {
         Set<String> files = new HashSet<>();
 
         // add custom routing files on settings
@@ -279,7 +282,42 @@ public class RouteHelper {
             Collections.addAll(files, Settings.DEFAULT_ROUTES);
         }
 
-        for(String file: files) {
+        return files;
+    }
+
+    /**
+     * Changes with any configured url generator file; path and modification time are enough, no need to parse them
+     */
+    private static long getCompiledRoutesModificationCount(@NotNull Project project) {
+        long modificationCount = 0;
+
+        for (String file : getCompiledRouteFiles(project)) {
+            String path = getPath(project, file);
+            modificationCount = 31 * modificationCount + path.hashCode() + new File(path).lastModified();
+        }
+
+        return modificationCount;
+    }
+
+    /**
+     * Routes of the compiled url generator files and routing extensions
+     *
+     * RoutingLoader extensions can provide anything, so only without them we are independent from PSI changes
+     */
+    @NotNull
+    private static Object[] getCompiledRoutesDependencies(@NotNull Project project) {
+        ModificationTracker compiledFiles = () -> getCompiledRoutesModificationCount(project);
+
+        if(ROUTING_LOADER.getExtensions().length > 0) {
+            return new Object[] {compiledFiles, PsiModificationTracker.MODIFICATION_COUNT};
+        }
+
+        return new Object[] {compiledFiles};
+    }
+
+    @NotNull
+    public static Map<String, Route> getCompiledRoutes(@NotNull Project project) {
+        for(String file: getCompiledRouteFiles(project)) {
 
             File urlGeneratorFile = new File(getPath(project, file));
             VirtualFile virtualUrlGeneratorFile = VfsUtil.findFileByIoFile(urlGeneratorFile, false);
@@ -330,186 +368,24 @@ public class RouteHelper {
         return routes;
     }
 
+    /**
+     * Compiled routes are extracted by a tokenizer on the raw file content; so no PSI is build for the huge file
+     */
     @NotNull
     public static Map<String, Route> getRoutesInsideUrlGeneratorFile(@NotNull Project project, @NotNull VirtualFile virtualFile) {
-        PsiFile psiFile = PsiElementUtils.virtualFileToPsiFile(project, virtualFile);
-        if(!(psiFile instanceof PhpFile)) {
+        String content;
+        try {
+            content = VfsUtilCore.loadText(virtualFile);
+        } catch (IOException e) {
             return Collections.emptyMap();
         }
 
-        return getRoutesInsideUrlGeneratorFile(psiFile);
-    }
-
-
-    /**
-     * Temporary or remote files dont support "isInstanceOf", check for string implementation first
-     */
-    private static boolean isRouteClass(@NotNull PhpClass phpClass) {
-        for (ClassReference classReference : phpClass.getExtendsList().getReferenceElements()) {
-            String fqn = classReference.getFQN();
-            if(fqn != null && StringUtils.stripStart(fqn, "\\").equalsIgnoreCase("Symfony\\Component\\Routing\\Generator\\UrlGenerator")) {
-                return true;
-            }
-        }
-
-        for (PhpClass phpInterface : phpClass.getImplementedInterfaces()) {
-            String fqn = phpInterface.getFQN();
-            if( StringUtils.stripStart(fqn, "\\").equalsIgnoreCase("Symfony\\Component\\Routing\\Generator\\UrlGeneratorInterface")) {
-                return true;
-            }
-        }
-
-        return PhpElementsUtil.isInstanceOf(phpClass, "\\Symfony\\Component\\Routing\\Generator\\UrlGeneratorInterface");
+        return UrlGeneratorRoutesParser.parse(content);
     }
 
     @NotNull
     public static Map<String, Route> getRoutesInsideUrlGeneratorFile(@NotNull PsiFile psiFile) {
-
-        Map<String, Route> routes = new HashMap<>();
-
-        // heavy stuff here, to get nested routing array :)
-        // list($variables, $defaults, $requirements, $tokens, $hostTokens)
-        Collection<PhpClass> phpClasses = PsiTreeUtil.findChildrenOfType(psiFile, PhpClass.class);
-        for(PhpClass phpClass: phpClasses) {
-            if(!isRouteClass(phpClass)) {
-                continue;
-            }
-
-            // Symfony < 2.8
-            // static private $declaredRoutes = array(...)
-            for(Field field: phpClass.getFields()) {
-                if(!field.getName().equals("declaredRoutes")) {
-                    continue;
-                }
-
-                PsiElement defaultValue = field.getDefaultValue();
-                if(!(defaultValue instanceof ArrayCreationExpression)) {
-                    continue;
-                }
-
-                collectRoutesOnArrayCreation(routes, (ArrayCreationExpression) defaultValue);
-            }
-
-            // Symfony >= 2.8
-            // if (null === self::$declaredRoutes) {
-            //   self::$declaredRoutes = array()
-            // }
-            Method constructor = phpClass.getConstructor();
-            if(constructor == null) {
-                continue;
-            }
-
-            for (FieldReference fieldReference : PsiTreeUtil.collectElementsOfType(constructor, FieldReference.class)) {
-                String canonicalText = fieldReference.getCanonicalText();
-                if(!"declaredRoutes".equals(canonicalText)) {
-                    continue;
-                }
-
-                PsiElement assignExpression = fieldReference.getParent();
-                if(!(assignExpression instanceof AssignmentExpression)) {
-                    continue;
-                }
-
-                PhpPsiElement value = ((AssignmentExpression) assignExpression).getValue();
-                if(!(value instanceof ArrayCreationExpression)) {
-                    continue;
-                }
-
-                collectRoutesOnArrayCreation(routes, (ArrayCreationExpression) value);
-            }
-        }
-
-        return routes;
-    }
-
-    /**
-     * Collects routes in:
-     *
-     * array(
-     *  _wdt' => array(..)
-     * }
-     *
-     */
-    private static void collectRoutesOnArrayCreation(@NotNull Map<String, Route> routes, @NotNull ArrayCreationExpression defaultValue) {
-        for(ArrayHashElement arrayHashElement: defaultValue.getHashElements()) {
-            PsiElement hashKey = arrayHashElement.getKey();
-            if(!(hashKey instanceof StringLiteralExpression)) {
-                continue;
-            }
-
-            String routeName = ((StringLiteralExpression) hashKey).getContents();
-            if(!isProductionRouteName(routeName)) {
-                continue;
-            }
-
-            routeName = convertLanguageRouteName(routeName);
-            PsiElement hashValue = arrayHashElement.getValue();
-            if(hashValue instanceof ArrayCreationExpression) {
-                routes.put(routeName, convertRouteConfig(routeName, (ArrayCreationExpression) hashValue));
-            }
-        }
-    }
-
-    @NotNull
-    private static Route convertRouteConfig(@NotNull String routeName, @NotNull ArrayCreationExpression hashValue) {
-        List<ArrayHashElement> hashElementCollection = makeCollection(hashValue.getHashElements());
-
-        Set<String> variables = new HashSet<>();
-        if(hashElementCollection.size() >= 1 && hashElementCollection.get(0).getValue() instanceof ArrayCreationExpression) {
-            ArrayCreationExpression value = (ArrayCreationExpression) hashElementCollection.get(0).getValue();
-            if(value != null) {
-                variables.addAll(PhpElementsUtil.getArrayKeyValueMap(value).values());
-            }
-        }
-
-        Map<String, String> defaults = new HashMap<>();
-        if(hashElementCollection.size() >= 2 && hashElementCollection.get(1).getValue() instanceof ArrayCreationExpression) {
-            ArrayCreationExpression value = (ArrayCreationExpression) hashElementCollection.get(1).getValue();
-            if(value != null) {
-                defaults = PhpElementsUtil.getArrayKeyValueMap(value);
-            }
-        }
-
-        Map<String, String>requirements = new HashMap<>();
-        if(hashElementCollection.size() >= 3 && hashElementCollection.get(2).getValue() instanceof ArrayCreationExpression) {
-            ArrayCreationExpression value = (ArrayCreationExpression) hashElementCollection.get(2).getValue();
-            if(value != null) {
-                requirements = PhpElementsUtil.getArrayKeyValueMap(value);
-            }
-        }
-
-        List<Collection<String>> tokens = new ArrayList<>();
-        if(hashElementCollection.size() >= 4 && hashElementCollection.get(3).getValue() instanceof ArrayCreationExpression) {
-            ArrayCreationExpression tokenArray = (ArrayCreationExpression) hashElementCollection.get(3).getValue();
-            if(tokenArray != null) {
-                for(ArrayHashElement tokenArrayConfig: tokenArray.getHashElements()) {
-                    if(tokenArrayConfig.getValue() instanceof ArrayCreationExpression) {
-                        Map<String, String> arrayKeyValueMap = PhpElementsUtil.getArrayKeyValueMap((ArrayCreationExpression) tokenArrayConfig.getValue());
-                        tokens.add(arrayKeyValueMap.values());
-                    }
-                }
-            }
-
-        }
-
-        // hostTokens = 4 need them?
-        return new Route(routeName, variables, defaults, requirements, tokens);
-    }
-
-    private static boolean isProductionRouteName(String routeName) {
-        return !routeName.matches("_assetic_[0-9a-z]+[_\\d+]*");
-    }
-
-    /**
-     * support I18nRoutingBundle
-     */
-    private static String convertLanguageRouteName(String routeName) {
-
-        if(routeName.matches("^[a-z]{2}__RG__.*$")) {
-            routeName = routeName.replaceAll("^[a-z]{2}+__RG__", "");
-        }
-
-        return routeName;
+        return UrlGeneratorRoutesParser.parse(psiFile.getViewProvider().getContents());
     }
 
     /**
@@ -799,32 +675,81 @@ public class RouteHelper {
         return !shortcutName.contains("::") && shortcutName.contains(":") && shortcutName.split(":").length == 2;
     }
 
+    /**
+     * Routes targeting the given method; by direct lookup on their controller name instead of visiting all routes
+     *
+     * "Foo\Bar::fooAction", "FooBundle:Bar:foo", "foo.bar_controller:fooAction"
+     */
     @NotNull
     public static List<Route> getRoutesOnControllerAction(@NotNull Method method) {
-        Set<String> routeNames = new HashSet<>();
+        Project project = method.getProject();
 
-        ContainerUtil.addIfNotNull(routeNames, RouteHelper.convertMethodToRouteControllerName(method));
-        ContainerUtil.addIfNotNull(routeNames, RouteHelper.convertMethodToRouteShortcutControllerName(method));
+        Set<String> controllers = new HashSet<>();
 
-        Map<String, Route> allRoutes = getAllRoutes(method.getProject());
-        List<Route> routes = new ArrayList<>();
+        ContainerUtil.addIfNotNull(controllers, RouteHelper.convertMethodToRouteControllerName(method));
+        ContainerUtil.addIfNotNull(controllers, RouteHelper.convertMethodToRouteShortcutControllerName(method));
 
-        // resolve indexed routes
-        if(routeNames.size() > 0) {
-            routes.addAll(allRoutes.values().stream()
-                .filter(route -> route.getController() != null && routeNames.contains(route.getController()))
-                .collect(Collectors.toList())
-            );
+        // controller as service
+        PhpClass phpClass = method.getContainingClass();
+        if(phpClass != null) {
+            for (String serviceName : ContainerCollectionResolver.ServiceCollector.create(project).convertClassNameToServices(phpClass.getFQN())) {
+                controllers.add(serviceName + ":" + method.getName());
+            }
         }
 
-        // search for services
-        routes.addAll(
-            ServiceRouteContainer.build(allRoutes).getMethodMatches(method)
-        );
+        Set<String> routeNames = new LinkedHashSet<>();
+        Map<String, Set<String>> compiledControllers = getCompiledRouteControllers(project);
+
+        for (String controller : controllers) {
+            String key = controller.toLowerCase();
+
+            Set<String> compiledRouteNames = compiledControllers.get(key);
+            if(compiledRouteNames != null) {
+                routeNames.addAll(compiledRouteNames);
+            }
+
+            for (Set<String> indexedRouteNames : FileBasedIndex.getInstance().getValues(RouteControllerStubIndex.KEY, key, GlobalSearchScope.allScope(project))) {
+                routeNames.addAll(indexedRouteNames);
+            }
+        }
+
+        Map<String, Route> allRoutes = getAllRoutes(project);
+        List<Route> routes = new ArrayList<>();
+
+        // compiled routes overwrite indexed ones with same name; so their controller must still match
+        for (String routeName : routeNames) {
+            Route route = allRoutes.get(routeName);
+            if(route != null && route.getController() != null && containsController(controllers, route.getController())) {
+                routes.add(route);
+            }
+        }
 
         return routes;
     }
 
+    private static boolean containsController(@NotNull Collection<String> controllers, @NotNull String controller) {
+        return controllers.stream().anyMatch(controller::equalsIgnoreCase);
+    }
+
+    /**
+     * Lower case controller to route names of all compiled routes, same lifetime as "getAllRoutes"
+     */
+    @NotNull
+    private static Map<String, Set<String>> getCompiledRouteControllers(final @NotNull Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(project, ROUTE_CONTROLLER_CACHE, () -> {
+            Map<String, Set<String>> controllers = new HashMap<>();
+
+            for (Route route : getCachedCompiledRoutes(project).values()) {
+                String controller = route.getController();
+                if(controller != null) {
+                    controllers.computeIfAbsent(controller.toLowerCase(), s -> new HashSet<>()).add(route.getName());
+                }
+            }
+
+            return CachedValueProvider.Result.create(controllers, getCompiledRoutesDependencies(project));
+        }, false);
+    }
+
     /**
      * Find every possible route name declaration inside yaml, xml or @Route annotation
      */
@@ -976,43 +901,76 @@ public class RouteHelper {
         return targets;
     }
 
+    /**
+     * Compiled and indexed routes; only merged again if one of them provides other routes
+     */
     @NotNull
-    synchronized public static Map<String, Route> getAllRoutes(final @NotNull Project project) {
-        CachedValue<Map<String, Route>> cache = project.getUserData(ROUTE_CACHE);
-
-        if (cache == null) {
-            cache = CachedValuesManager.getManager(project).createCachedValue(() ->
-                CachedValueProvider.Result.create(getAllRoutesProxy(project), PsiModificationTracker.MODIFICATION_COUNT),
-                false
-            );
-            project.putUserData(ROUTE_CACHE, cache);
+    public static Map<String, Route> getAllRoutes(final @NotNull Project project) {
+        Map<String, Route> compiledRoutes = getCachedCompiledRoutes(project);
+        Map<String, List<StubIndexedRoute>> indexedRoutes = RouteDefinitionFileCache.getInstance(project).getRoutes();
+
+        AllRoutes allRoutes = project.getUserData(ROUTE_CACHE);
+        if(allRoutes != null && allRoutes.compiledRoutes == compiledRoutes && allRoutes.indexedRoutes == indexedRoutes) {
+            return allRoutes.routes;
         }
 
-        return cache.getValue();
+        allRoutes = new AllRoutes(compiledRoutes, indexedRoutes, getAllRoutesProxy(compiledRoutes, indexedRoutes));
+        project.putUserData(ROUTE_CACHE, allRoutes);
+
+        return allRoutes.routes;
     }
 
     @NotNull
-    private static Map<String, Route> getAllRoutesProxy(@NotNull Project project) {
-
-        Map<String, Route> routes = new HashMap<>();
-        routes.putAll(RouteHelper.getCompiledRoutes(project));
+    private static Map<String, Route> getAllRoutesProxy(@NotNull Map<String, Route> compiledRoutes, @NotNull Map<String, List<StubIndexedRoute>> indexedRoutes) {
+        Map<String, Route> routes = new HashMap<>(compiledRoutes);
 
-        Set<String> uniqueKeySet = new HashSet<>(routes.keySet());
-
-        for(String routeName: SymfonyProcessors.createResult(project, RoutesStubIndex.KEY, uniqueKeySet)) {
-            if(uniqueKeySet.contains(routeName)) {
+        for (Map.Entry<String, List<StubIndexedRoute>> entry : indexedRoutes.entrySet()) {
+            // compiled routes are always the strong ones
+            if(compiledRoutes.containsKey(entry.getKey())) {
                 continue;
             }
 
-            for(StubIndexedRoute route: FileBasedIndex.getInstance().getValues(RoutesStubIndex.KEY, routeName, GlobalSearchScope.allScope(project))) {
-                uniqueKeySet.add(routeName);
-                routes.put(routeName, new Route(route));
+            for (StubIndexedRoute route : entry.getValue()) {
+                routes.put(entry.getKey(), new Route(route));
             }
         }
 
         return routes;
     }
 
+    /**
+     * Same instance as long as the compiled routes are unchanged
+     */
+    @NotNull
+    private static Map<String, Route> getCachedCompiledRoutes(@NotNull Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(
+            project,
+            ROUTE_COMPILED_CACHE,
+            () -> CachedValueProvider.Result.create(getCompiledRoutes(project), getCompiledRoutesDependencies(project)),
+            false
+        );
+    }
+
+    /**
+     * Merged routes with the inputs they were build of
+     */
+    private static class AllRoutes {
+        @NotNull
+        private final Map<String, Route> compiledRoutes;
+
+        @NotNull
+        private final Map<String, List<StubIndexedRoute>> indexedRoutes;
+
+        @NotNull
+        private final Map<String, Route> routes;
+
+        private AllRoutes(@NotNull Map<String, Route> compiledRoutes, @NotNull Map<String, List<StubIndexedRoute>> indexedRoutes, @NotNull Map<String, Route> routes) {
+            this.compiledRoutes = compiledRoutes;
+            this.indexedRoutes = indexedRoutes;
+            this.routes = routes;
+        }
+    }
+
     /**
      * Foobar/Bar => Foobar\Bar
      * \\Foobar\Foobar => Foobar\Bar
@@ -0,0 +1,432 @@
+package fr.adrienbrault.idea.symfony2plugin.routing;
+
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the routes of a compiled "UrlGenerator" file by tokenizing its raw content; so a multi megabyte file
+ * never needs a PHP PSI tree
+ *
+ * Symfony < 2.8
+ * static private $declaredRoutes = array(...)
+ *
+ * Symfony >= 2.8
+ * self::$declaredRoutes = array(...)
+ *
+ * Route structure: list($variables, $defaults, $requirements, $tokens, $hostTokens)
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class UrlGeneratorRoutesParser {
+
+    private static final String DECLARED_ROUTES = "$declaredRoutes";
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+(\\.\\d+)?");
+
+    @NotNull
+    private final CharSequence content;
+
+    private int offset = 0;
+
+    private UrlGeneratorRoutesParser(@NotNull CharSequence content) {
+        this.content = content;
+    }
+
+    @NotNull
+    public static Map<String, Route> parse(@NotNull CharSequence content) {
+        Map<String, Route> routes = new HashMap<>();
+
+        UrlGeneratorRoutesParser parser = new UrlGeneratorRoutesParser(content);
+        while (parser.nextDeclaredRoutes()) {
+            PhpArray declaredRoutes = parser.readDeclaredRoutes();
+            if(declaredRoutes != null) {
+                collectRoutes(routes, declaredRoutes);
+            }
+        }
+
+        return routes;
+    }
+
+    /**
+     * Move behind next "$declaredRoutes" outside of strings and comments
+     */
+    private boolean nextDeclaredRoutes() {
+        int length = content.length();
+
+        while (offset < length) {
+            char c = content.charAt(offset);
+
+            if(c == '\'' || c == '"') {
+                readString();
+            } else if(skipComment()) {
+                // nothing to do
+            } else if(c == '$' && startsWith(DECLARED_ROUTES) && !isIdentifierPart(offset + DECLARED_ROUTES.length())) {
+                offset += DECLARED_ROUTES.length();
+                return true;
+            } else {
+                offset++;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * "= array(...)" or "= [...]"; everything else eg "null ===" is not an assignment
+     */
+    @Nullable
+    private PhpArray readDeclaredRoutes() {
+        skipWhitespaces();
+
+        if(!isChar(offset, '=') || isChar(offset + 1, '=') || isChar(offset + 1, '>')) {
+            return null;
+        }
+
+        offset++;
+
+        Object value = readValue();
+        return value instanceof PhpArray ? (PhpArray) value : null;
+    }
+
+    @Nullable
+    private Object readValue() {
+        skipWhitespaces();
+
+        if(offset >= content.length()) {
+            return null;
+        }
+
+        char c = content.charAt(offset);
+        if(c == '\'' || c == '"') {
+            return new PhpString(readString());
+        }
+
+        if(c == '[') {
+            offset++;
+            return readArray(']');
+        }
+
+        if(startsWithIgnoreCase("array")) {
+            int start = offset;
+
+            offset += "array".length();
+            skipWhitespaces();
+
+            if(isChar(offset, '(')) {
+                offset++;
+                return readArray(')');
+            }
+
+            offset = start;
+        }
+
+        // scalars: NULL, true, 12, -1.5
+        int start = offset;
+        while (offset < content.length()) {
+            char scalar = content.charAt(offset);
+            if(Character.isWhitespace(scalar) || scalar == ',' || scalar == ')' || scalar == ']' || scalar == ';' || (scalar == '=' && isChar(offset + 1, '>'))) {
+                break;
+            }
+
+            offset++;
+        }
+
+        return start != offset ? new PhpScalar(content.subSequence(start, offset).toString()) : null;
+    }
+
+    /**
+     * Array content until given closing char; "null" on invalid syntax
+     */
+    @Nullable
+    private PhpArray readArray(char close) {
+        PhpArray array = new PhpArray();
+
+        while (true) {
+            skipWhitespaces();
+
+            if(offset >= content.length()) {
+                return null;
+            }
+
+            if(isChar(offset, close)) {
+                offset++;
+                return array;
+            }
+
+            Object value = readValue();
+            if(value == null) {
+                return null;
+            }
+
+            skipWhitespaces();
+
+            if(isChar(offset, '=') && isChar(offset + 1, '>')) {
+                offset += 2;
+
+                Object hashValue = readValue();
+                if(hashValue == null) {
+                    return null;
+                }
+
+                array.hashElements.add(new PhpHashElement(value, hashValue));
+            }
+
+            skipWhitespaces();
+
+            if(isChar(offset, ',')) {
+                offset++;
+            } else if(!isChar(offset, close)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Raw string content without quotes; escape sequences are not resolved, same as "StringLiteralExpression::getContents"
+     */
+    @NotNull
+    private String readString() {
+        char quote = content.charAt(offset++);
+        int start = offset;
+
+        while (offset < content.length()) {
+            char c = content.charAt(offset);
+            if(c == '\\') {
+                offset += 2;
+                continue;
+            }
+
+            if(c == quote) {
+                String contents = content.subSequence(start, offset).toString();
+                offset++;
+                return contents;
+            }
+
+            offset++;
+        }
+
+        return content.subSequence(start, Math.min(offset, content.length())).toString();
+    }
+
+    private void skipWhitespaces() {
+        while (offset < content.length()) {
+            if(Character.isWhitespace(content.charAt(offset))) {
+                offset++;
+            } else if(!skipComment()) {
+                return;
+            }
+        }
+    }
+
+    private boolean skipComment() {
+        char c = content.charAt(offset);
+
+        if(c == '#' || (c == '/' && isChar(offset + 1, '/'))) {
+            while (offset < content.length() && content.charAt(offset) != '\n') {
+                offset++;
+            }
+
+            return true;
+        }
+
+        if(c == '/' && isChar(offset + 1, '*')) {
+            offset += 2;
+            while (offset < content.length() && !(content.charAt(offset) == '*' && isChar(offset + 1, '/'))) {
+                offset++;
+            }
+
+            offset = Math.min(offset + 2, content.length());
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean isChar(int offset, char c) {
+        return offset < content.length() && content.charAt(offset) == c;
+    }
+
+    private boolean isIdentifierPart(int offset) {
+        return offset < content.length() && (Character.isLetterOrDigit(content.charAt(offset)) || content.charAt(offset) == '_');
+    }
+
+    private boolean startsWith(@NotNull String prefix) {
+        return regionMatches(prefix, false);
+    }
+
+    private boolean startsWithIgnoreCase(@NotNull String prefix) {
+        return regionMatches(prefix, true);
+    }
+
+    private boolean regionMatches(@NotNull String prefix, boolean ignoreCase) {
+        if(offset + prefix.length() > content.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = content.charAt(offset + i);
+            if(c != prefix.charAt(i) && (!ignoreCase || Character.toLowerCase(c) != Character.toLowerCase(prefix.charAt(i)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * array(
+     *  '_wdt' => array(..)
+     * }
+     */
+    private static void collectRoutes(@NotNull Map<String, Route> routes, @NotNull PhpArray declaredRoutes) {
+        for (PhpHashElement hashElement : declaredRoutes.hashElements) {
+            if(!(hashElement.key instanceof PhpString) || !(hashElement.value instanceof PhpArray)) {
+                continue;
+            }
+
+            String routeName = ((PhpString) hashElement.key).contents;
+            if(!isProductionRouteName(routeName)) {
+                continue;
+            }
+
+            routeName = convertLanguageRouteName(routeName);
+            routes.put(routeName, convertRouteConfig(routeName, (PhpArray) hashElement.value));
+        }
+    }
+
+    @NotNull
+    private static Route convertRouteConfig(@NotNull String routeName, @NotNull PhpArray route) {
+        List<PhpHashElement> hashElements = route.hashElements;
+
+        Set<String> variables = new HashSet<>();
+        PhpArray value = getArrayValue(hashElements, 0);
+        if(value != null) {
+            variables.addAll(getArrayKeyValueMap(value).values());
+        }
+
+        Map<String, String> defaults = new HashMap<>();
+        value = getArrayValue(hashElements, 1);
+        if(value != null) {
+            defaults = getArrayKeyValueMap(value);
+        }
+
+        Map<String, String> requirements = new HashMap<>();
+        value = getArrayValue(hashElements, 2);
+        if(value != null) {
+            requirements = getArrayKeyValueMap(value);
+        }
+
+        List<Collection<String>> tokens = new ArrayList<>();
+        value = getArrayValue(hashElements, 3);
+        if(value != null) {
+            for (PhpHashElement tokenArrayConfig : value.hashElements) {
+                if(tokenArrayConfig.value instanceof PhpArray) {
+                    tokens.add(getArrayKeyValueMap((PhpArray) tokenArrayConfig.value).values());
+                }
+            }
+        }
+
+        // hostTokens = 4 need them?
+        return new Route(routeName, variables, defaults, requirements, tokens);
+    }
+
+    @Nullable
+    private static PhpArray getArrayValue(@NotNull List<PhpHashElement> hashElements, int index) {
+        if(hashElements.size() <= index) {
+            return null;
+        }
+
+        Object value = hashElements.get(index).value;
+        return value instanceof PhpArray ? (PhpArray) value : null;
+    }
+
+    /**
+     * Same as "PhpElementsUtil.getArrayKeyValueMap": string or number keys with a non blank string value
+     */
+    @NotNull
+    private static HashMap<String, String> getArrayKeyValueMap(@NotNull PhpArray array) {
+        HashMap<String, String> keys = new HashMap<>();
+
+        for (PhpHashElement hashElement : array.hashElements) {
+            String key = null;
+            if(hashElement.key instanceof PhpString) {
+                key = ((PhpString) hashElement.key).contents;
+            } else if(hashElement.key instanceof PhpScalar && ((PhpScalar) hashElement.key).isNumber()) {
+                key = ((PhpScalar) hashElement.key).text;
+            }
+
+            if(key == null || StringUtils.isBlank(key) || !(hashElement.value instanceof PhpString)) {
+                continue;
+            }
+
+            String value = ((PhpString) hashElement.value).contents;
+            if(StringUtils.isBlank(value)) {
+                continue;
+            }
+
+            keys.put(key, value);
+        }
+
+        return keys;
+    }
+
+    private static boolean isProductionRouteName(String routeName) {
+        return !routeName.matches("_assetic_[0-9a-z]+[_\\d+]*");
+    }
+
+    /**
+     * support I18nRoutingBundle
+     */
+    private static String convertLanguageRouteName(String routeName) {
+
+        if(routeName.matches("^[a-z]{2}__RG__.*$")) {
+            routeName = routeName.replaceAll("^[a-z]{2}+__RG__", "");
+        }
+
+        return routeName;
+    }
+
+    private static class PhpString {
+        @NotNull
+        private final String contents;
+
+        PhpString(@NotNull String contents) {
+            this.contents = contents;
+        }
+    }
+
+    private static class PhpScalar {
+        @NotNull
+        private final String text;
+
+        PhpScalar(@NotNull String text) {
+            this.text = text;
+        }
+
+        boolean isNumber() {
+            return NUMBER.matcher(text).matches();
+        }
+    }
+
+    private static class PhpArray {
+        @NotNull
+        private final List<PhpHashElement> hashElements = new ArrayList<>();
+    }
+
+    private static class PhpHashElement {
+        @NotNull
+        private final Object key;
+
+        @NotNull
+        private final Object value;
+
+        PhpHashElement(@NotNull Object key, @NotNull Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
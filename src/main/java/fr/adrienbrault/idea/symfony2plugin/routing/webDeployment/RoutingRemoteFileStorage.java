@@ -3,10 +3,9 @@ package fr.adrienbrault.idea.symfony2plugin.routing.webDeployment;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.StreamUtil;
 import com.intellij.util.containers.HashMap;
-import com.jetbrains.php.lang.psi.PhpPsiElementFactory;
 import fr.adrienbrault.idea.symfony2plugin.Settings;
 import fr.adrienbrault.idea.symfony2plugin.routing.Route;
-import fr.adrienbrault.idea.symfony2plugin.routing.RouteHelper;
+import fr.adrienbrault.idea.symfony2plugin.routing.UrlGeneratorRoutesParser;
 import fr.adrienbrault.idea.symfony2plugin.webDeployment.storage.RemoteFileStorageInterface;
 import fr.adrienbrault.idea.symfony2plugin.webDeployment.utils.RemoteWebServerUtil;
 import org.apache.commons.lang.StringUtils;
@@ -47,9 +46,7 @@ public class RoutingRemoteFileStorage implements RemoteFileStorageInterface<Map<
                 continue;
             }
 
-            routeMap.putAll(RouteHelper.getRoutesInsideUrlGeneratorFile(
-                PhpPsiElementFactory.createPsiFileFromText(project, content)
-            ));
+            routeMap.putAll(UrlGeneratorRoutesParser.parse(content));
         }
 
         this.routeMap = routeMap;
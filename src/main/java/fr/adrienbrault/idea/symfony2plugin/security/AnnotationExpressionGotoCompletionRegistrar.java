@@ -71,9 +71,7 @@ public class AnnotationExpressionGotoCompletionRegistrar implements GotoCompleti
             // clear prefix caret string; for a clean completion independent from inside content
             CompletionResultSet myResultSet = resultSet.withPrefixMatcher("");
 
-            VoterUtil.LookupElementPairConsumer consumer = new VoterUtil.LookupElementPairConsumer();
-            VoterUtil.visitAttribute(getProject(), consumer);
-            myResultSet.addAllElements(consumer.getLookupElements());
+            myResultSet.addAllElements(VoterUtil.getAttributeLookupElements(getProject()));
         }
 
         @NotNull
@@ -102,15 +100,7 @@ public class AnnotationExpressionGotoCompletionRegistrar implements GotoCompleti
                 return Collections.emptyList();
             }
 
-            Collection<PsiElement> targets = new HashSet<>();
-
-            VoterUtil.visitAttribute(getProject(), pair -> {
-                if(roles.contains(pair.getFirst())) {
-                    targets.add(pair.getSecond());
-                }
-            });
-
-            return targets;
+            return VoterUtil.getAttributeTargets(getProject(), roles);
         }
     }
 
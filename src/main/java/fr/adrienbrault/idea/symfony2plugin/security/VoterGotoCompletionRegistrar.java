@@ -81,9 +81,7 @@ public class VoterGotoCompletionRegistrar implements GotoCompletionRegistrar {
         @NotNull
         @Override
         public Collection<LookupElement> getLookupElements() {
-            VoterUtil.LookupElementPairConsumer consumer = new VoterUtil.LookupElementPairConsumer();
-            VoterUtil.visitAttribute(getProject(), consumer);
-            return consumer.getLookupElements();
+            return VoterUtil.getAttributeLookupElements(getProject());
         }
 
         @NotNull
@@ -94,9 +92,7 @@ public class VoterGotoCompletionRegistrar implements GotoCompletionRegistrar {
                 return Collections.emptyList();
             }
 
-            VoterUtil.TargetPairConsumer foo = new VoterUtil.TargetPairConsumer(text);
-            VoterUtil.visitAttribute(getProject(), foo);
-            return foo.getValues();
+            return VoterUtil.getAttributeTargets(getProject(), Collections.singletonList(text));
         }
     }
 }
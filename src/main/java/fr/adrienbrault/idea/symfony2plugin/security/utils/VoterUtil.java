@@ -3,32 +3,40 @@ package fr.adrienbrault.idea.symfony2plugin.security.utils;
 import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiReference;
-import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
 import com.jetbrains.php.PhpIndex;
 import com.jetbrains.php.lang.lexer.PhpTokenTypes;
 import com.jetbrains.php.lang.parser.PhpElementTypes;
+import com.jetbrains.php.lang.psi.PhpFile;
 import com.jetbrains.php.lang.psi.elements.*;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2Icons;
+import fr.adrienbrault.idea.symfony2plugin.stubs.cache.FileIndexCaches;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.VoterAttribute;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.VoterAttributeStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.PsiElementUtils;
 import fr.adrienbrault.idea.symfony2plugin.util.yaml.YamlHelper;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.yaml.YAMLFileType;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.yaml.YAMLUtil;
 import org.jetbrains.yaml.psi.*;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Consumer;
 
 /**
@@ -36,100 +44,302 @@ import java.util.function.Consumer;
  */
 public class VoterUtil {
 
-    public static void visitAttribute(@NotNull Project project, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
-        for (PhpClass phpClass : PhpIndex.getInstance(project).getAllSubclasses("Symfony\\Component\\Security\\Core\\Authorization\\Voter\\Voter")) {
-            Method supports = phpClass.findMethodByName("supports");
-            if(supports != null) {
-                visitAttribute(supports, consumer);
-            }
+    public static final Set<String> SECURITY_FILES = new HashSet<>(Arrays.asList("security.yml", "security.yaml"));
 
-            Method voteOnAttribute = phpClass.findMethodByName("voteOnAttribute");
-            if(voteOnAttribute != null) {
-                visitAttribute(voteOnAttribute, consumer);
-            }
+    private static final Key<CachedValue<Set<String>>> VOTER_ATTRIBUTE_NAMES = new Key<>("SYMFONY_VOTER_ATTRIBUTE_NAMES");
+    private static final Key<CachedValue<Map<String, VoterAttributeDeclarations>>> VOTER_ATTRIBUTES = new Key<>("SYMFONY_VOTER_ATTRIBUTES");
+    private static final Key<CachedValue<Collection<LookupElement>>> VOTER_ATTRIBUTE_LOOKUP_ELEMENTS = new Key<>("SYMFONY_VOTER_ATTRIBUTE_LOOKUP_ELEMENTS");
+
+    private static final String VOTER_INTERFACE = "\\Symfony\\Component\\Security\\Core\\Authorization\\Voter\\VoterInterface";
+
+    /**
+     * All security attributes of voters and roles of security configuration files
+     */
+    @NotNull
+    public static Set<String> getAttributes(@NotNull Project project) {
+        return getAttributeDeclarations(project).keySet();
+    }
+
+    @NotNull
+    public static Collection<LookupElement> getAttributeLookupElements(@NotNull Project project) {
+        CachedValue<Collection<LookupElement>> cache = project.getUserData(VOTER_ATTRIBUTE_LOOKUP_ELEMENTS);
+        if(cache == null) {
+            cache = CachedValuesManager.getManager(project).createCachedValue(() -> {
+                Collection<LookupElement> lookupElements = new ArrayList<>();
+
+                for (Map.Entry<String, VoterAttributeDeclarations> entry : getAttributeDeclarations(project).entrySet()) {
+                    LookupElementBuilder lookupElement = LookupElementBuilder.create(entry.getKey()).withIcon(Symfony2Icons.SYMFONY);
+
+                    String className = ContainerUtil.getFirstItem(entry.getValue().classNames);
+                    if(className != null) {
+                        lookupElement = lookupElement.withTypeText(StringUtils.substringAfterLast("\\" + className, "\\"), true);
+                    }
+
+                    lookupElements.add(lookupElement);
+                }
+
+                return CachedValueProvider.Result.create(Collections.unmodifiableCollection(lookupElements), PsiModificationTracker.MODIFICATION_COUNT);
+            }, false);
+
+            project.putUserData(VOTER_ATTRIBUTE_LOOKUP_ELEMENTS, cache);
         }
 
-        for (PhpClass phpClass : PhpIndex.getInstance(project).getAllSubclasses("Symfony\\Component\\Security\\Core\\Authorization\\Voter\\VoterInterface")) {
-            Method vote = phpClass.findMethodByName("vote");
-            if(vote != null) {
-                visitAttributeForeach(vote, consumer);
+        return cache.getValue();
+    }
+
+    /**
+     * Declarations of the given attributes; names are case insensitive
+     */
+    @NotNull
+    public static Collection<PsiElement> getAttributeTargets(@NotNull Project project, @NotNull Collection<String> names) {
+        Collection<PsiElement> targets = new HashSet<>();
+
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (Map.Entry<String, VoterAttributeDeclarations> entry : getAttributeDeclarations(project).entrySet()) {
+            if(names.stream().noneMatch(entry.getKey()::equalsIgnoreCase)) {
+                continue;
+            }
+
+            VoterAttributeDeclarations declarations = entry.getValue();
+            for (String key : declarations.keys) {
+                FileBasedIndex.getInstance().processValues(VoterAttributeStubIndex.KEY, key, null, (virtualFile, voterAttribute) -> {
+                    String className = voterAttribute.getClassName();
+                    if(className != null && !declarations.classNames.contains(className)) {
+                        return true;
+                    }
+
+                    PsiFile psiFile = psiManager.findFile(virtualFile);
+                    if(psiFile != null) {
+                        for (TextRange textRange : voterAttribute.getTextRanges()) {
+                            PsiElement psiElement = findElementWithTextRange(psiFile, textRange);
+                            if(psiElement != null) {
+                                targets.add(psiElement);
+                            }
+                        }
+                    }
+
+                    return true;
+                }, GlobalSearchScope.allScope(project));
             }
         }
 
-        for (String files : new String[]{"security.yml", "security.yaml"}) {
-            for (PsiFile psiFile : FilenameIndex.getFilesByName(project, files, GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), YAMLFileType.YML))) {
-                if(!(psiFile instanceof YAMLFile)) {
-                    continue;
-                }
+        return targets;
+    }
 
-                YAMLKeyValue roleHierarchy = YAMLUtil.getQualifiedKeyInFile((YAMLFile) psiFile, "security", "role_hierarchy");
-                if(roleHierarchy != null) {
-                    YAMLValue value = roleHierarchy.getValue();
-                    if(!(value instanceof YAMLMapping)) {
+    /**
+     * The index only knows the class itself; so voter classes are checked against "VoterInterface" here and
+     * constants of other classes "#K#C\Foo\Bar.BAR" are resolved via PhpIndex
+     */
+    @NotNull
+    private static Map<String, VoterAttributeDeclarations> getAttributeDeclarations(@NotNull Project project) {
+        CachedValue<Map<String, VoterAttributeDeclarations>> cache = project.getUserData(VOTER_ATTRIBUTES);
+        if(cache == null) {
+            cache = CachedValuesManager.getManager(project).createCachedValue(() -> {
+                Map<String, VoterAttributeDeclarations> attributes = new HashMap<>();
+                Map<String, Boolean> voterClasses = new HashMap<>();
+
+                GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+                for (String key : FileIndexCaches.getIndexKeysCache(project, VOTER_ATTRIBUTE_NAMES, VoterAttributeStubIndex.KEY)) {
+                    String name = isSignatureKey(key) ? getSignatureValue(project, key) : key;
+                    if(name == null) {
                         continue;
                     }
 
-                    for (YAMLPsiElement yamlPsiElement : value.getYAMLElements()) {
-                        if(!(yamlPsiElement instanceof YAMLKeyValue)) {
+                    for (VoterAttribute voterAttribute : FileBasedIndex.getInstance().getValues(VoterAttributeStubIndex.KEY, key, scope)) {
+                        String className = voterAttribute.getClassName();
+                        if(className != null && !voterClasses.computeIfAbsent(className, c -> isVoterClass(project, c))) {
                             continue;
                         }
 
-                        String keyText = ((YAMLKeyValue) yamlPsiElement).getKeyText();
-                        if(StringUtils.isNotBlank(keyText)) {
-                            consumer.accept(Pair.create(keyText, yamlPsiElement));
+                        VoterAttributeDeclarations declarations = attributes.computeIfAbsent(name, s -> new VoterAttributeDeclarations());
+                        declarations.keys.add(key);
+                        if(className != null) {
+                            declarations.classNames.add(className);
                         }
+                    }
+                }
 
-                        YAMLValue yamlValue = ((YAMLKeyValue) yamlPsiElement).getValue();
-                        if(yamlValue instanceof YAMLSequence) {
-                            for (String item : YamlHelper.getYamlArrayValuesAsString((YAMLSequence) yamlValue)) {
-                                consumer.accept(Pair.create(item, yamlValue));
-                            }
-                        }
+                return CachedValueProvider.Result.create(attributes, PsiModificationTracker.MODIFICATION_COUNT);
+            }, false);
+
+            project.putUserData(VOTER_ATTRIBUTES, cache);
+        }
+
+        return cache.getValue();
+    }
+
+    private static boolean isVoterClass(@NotNull Project project, @NotNull String className) {
+        PhpClass phpClass = PhpElementsUtil.getClassInterface(project, className);
+        return phpClass != null && PhpElementsUtil.isInstanceOf(phpClass, VOTER_INTERFACE);
+    }
+
+    /**
+     * Attributes which are constants of foreign classes "#K#C\Foo\Bar.BAR" are only resolvable outside of the index
+     */
+    private static boolean isSignatureKey(@NotNull String key) {
+        return key.startsWith("#");
+    }
+
+    @Nullable
+    private static String getSignatureValue(@NotNull Project project, @NotNull String signature) {
+        for (PhpNamedElement phpNamedElement : PhpIndex.getInstance(project).getBySignature(signature)) {
+            if(phpNamedElement instanceof Field) {
+                String value = PhpElementsUtil.getStringValue(((Field) phpNamedElement).getDefaultValue());
+                if(StringUtils.isNotBlank(value)) {
+                    return value;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Element which exactly covers the indexed text range
+     */
+    @Nullable
+    private static PsiElement findElementWithTextRange(@NotNull PsiFile psiFile, @NotNull TextRange textRange) {
+        PsiElement psiElement = psiFile.findElementAt(textRange.getStartOffset());
+
+        while (psiElement != null && !(psiElement instanceof PsiFile)) {
+            TextRange elementTextRange = psiElement.getTextRange();
+            if(elementTextRange.equals(textRange)) {
+                return psiElement;
+            }
+
+            if(elementTextRange.getStartOffset() != textRange.getStartOffset() || elementTextRange.getLength() > textRange.getLength()) {
+                return null;
+            }
+
+            psiElement = psiElement.getParent();
+        }
+
+        return null;
+    }
+
+    /**
+     * Security attributes and roles declared in the given file; only the file itself is used, so its safe for indexing
+     */
+    public static void visitAttribute(@NotNull PsiFile psiFile, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
+        if(psiFile instanceof PhpFile) {
+            for (PhpClass phpClass : PsiTreeUtil.findChildrenOfType(psiFile, PhpClass.class)) {
+                if(!isPossibleVoterClass(phpClass)) {
+                    continue;
+                }
+
+                // Symfony\Component\Security\Core\Authorization\Voter\Voter
+                for (String methodName : new String[]{"supports", "voteOnAttribute"}) {
+                    Method method = phpClass.findOwnMethodByName(methodName);
+                    if(method != null) {
+                        visitAttribute(phpClass, method, consumer);
                     }
                 }
 
-                YAMLKeyValue accessControl = YAMLUtil.getQualifiedKeyInFile((YAMLFile) psiFile, "security", "access_control");
-                if(accessControl != null) {
-                    YAMLValue value = accessControl.getValue();
-                    if(!(value instanceof YAMLSequence)) {
+                // Symfony\Component\Security\Core\Authorization\Voter\VoterInterface
+                Method vote = phpClass.findOwnMethodByName("vote");
+                if(vote != null) {
+                    visitAttributeForeach(phpClass, vote, consumer);
+                }
+            }
+        } else if(psiFile instanceof YAMLFile && SECURITY_FILES.contains(psiFile.getName())) {
+            visitSecurityFile((YAMLFile) psiFile, consumer);
+        }
+    }
+
+    /**
+     * The class hierarchy is not available while indexing; so every class with a parent or an interface is a
+     * possible voter. Only the voter methods are visited, "VoterInterface" is checked on lookup
+     */
+    private static boolean isPossibleVoterClass(@NotNull PhpClass phpClass) {
+        return !phpClass.isInterface() && !phpClass.isTrait() && (phpClass.getSuperFQN() != null || phpClass.getInterfaceNames().length > 0);
+    }
+
+    /**
+     * Strings and constants of the class itself are resolved; constants of other classes are provided
+     * by their signature "#K#C\Foo\Bar.BAR"
+     */
+    @Nullable
+    private static String getAttributeName(@NotNull PhpClass phpClass, @Nullable PsiElement psiElement) {
+        String stringValue = PhpElementsUtil.getStringValueInClass(phpClass, psiElement);
+        if(stringValue != null) {
+            return stringValue;
+        }
+
+        if(psiElement instanceof ClassConstantReference) {
+            String signature = ((ClassConstantReference) psiElement).getSignature();
+            if(isSignatureKey(signature)) {
+                return signature;
+            }
+        }
+
+        return null;
+    }
+
+    private static void visitSecurityFile(@NotNull YAMLFile psiFile, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
+        YAMLKeyValue roleHierarchy = YAMLUtil.getQualifiedKeyInFile(psiFile, "security", "role_hierarchy");
+        if(roleHierarchy != null) {
+            YAMLValue value = roleHierarchy.getValue();
+            if(value instanceof YAMLMapping) {
+                for (YAMLPsiElement yamlPsiElement : value.getYAMLElements()) {
+                    if(!(yamlPsiElement instanceof YAMLKeyValue)) {
                         continue;
                     }
 
-                    for (YAMLPsiElement yamlPsiElement : value.getYAMLElements()) {
-                        if(!(yamlPsiElement instanceof YAMLSequenceItem)) {
-                            continue;
-                        }
+                    String keyText = ((YAMLKeyValue) yamlPsiElement).getKeyText();
+                    if(StringUtils.isNotBlank(keyText)) {
+                        consumer.accept(Pair.create(keyText, yamlPsiElement));
+                    }
 
-                        YAMLValue value1 = ((YAMLSequenceItem) yamlPsiElement).getValue();
-                        if(!(value1 instanceof YAMLMapping)) {
-                            continue;
+                    YAMLValue yamlValue = ((YAMLKeyValue) yamlPsiElement).getValue();
+                    if(yamlValue instanceof YAMLSequence) {
+                        for (String item : YamlHelper.getYamlArrayValuesAsString((YAMLSequence) yamlValue)) {
+                            consumer.accept(Pair.create(item, yamlValue));
                         }
+                    }
+                }
+            }
+        }
 
-                        YAMLKeyValue roles = ((YAMLMapping) value1).getKeyValueByKey("roles");
-                        if(roles == null) {
-                            continue;
-                        }
+        YAMLKeyValue accessControl = YAMLUtil.getQualifiedKeyInFile(psiFile, "security", "access_control");
+        if(accessControl != null) {
+            YAMLValue value = accessControl.getValue();
+            if(!(value instanceof YAMLSequence)) {
+                return;
+            }
 
-                        YAMLValue value2 = roles.getValue();
-                        if(value2 instanceof YAMLScalar) {
-                            // roles: FOOBAR
-                            String textValue = ((YAMLScalar) value2).getTextValue();
-                            if(StringUtils.isNotBlank(textValue)) {
-                                consumer.accept(Pair.create(textValue, value2));
-                            }
-                        } else if(value2 instanceof YAMLSequence) {
-                            // roles: [FOOBAR, FOOBAR_1]
-                            for (String item : YamlHelper.getYamlArrayValuesAsString((YAMLSequence) value2)) {
-                                consumer.accept(Pair.create(item, value2));
-                            }
-                        }
+            for (YAMLPsiElement yamlPsiElement : value.getYAMLElements()) {
+                if(!(yamlPsiElement instanceof YAMLSequenceItem)) {
+                    continue;
+                }
+
+                YAMLValue value1 = ((YAMLSequenceItem) yamlPsiElement).getValue();
+                if(!(value1 instanceof YAMLMapping)) {
+                    continue;
+                }
+
+                YAMLKeyValue roles = ((YAMLMapping) value1).getKeyValueByKey("roles");
+                if(roles == null) {
+                    continue;
+                }
+
+                YAMLValue value2 = roles.getValue();
+                if(value2 instanceof YAMLScalar) {
+                    // roles: FOOBAR
+                    String textValue = ((YAMLScalar) value2).getTextValue();
+                    if(StringUtils.isNotBlank(textValue)) {
+                        consumer.accept(Pair.create(textValue, value2));
+                    }
+                } else if(value2 instanceof YAMLSequence) {
+                    // roles: [FOOBAR, FOOBAR_1]
+                    for (String item : YamlHelper.getYamlArrayValuesAsString((YAMLSequence) value2)) {
+                        consumer.accept(Pair.create(item, value2));
                     }
                 }
             }
         }
     }
 
-    private static void visitAttributeForeach(@NotNull Method method, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
+    private static void visitAttributeForeach(@NotNull PhpClass phpClass, @NotNull Method method, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
         Parameter[] parameters = method.getParameters();
         if(parameters.length < 3) {
             return;
@@ -147,7 +357,7 @@ public class VoterUtil {
                 PhpPsiElement variableDecl = variable.getNextPsiSibling();
                 if(variableDecl instanceof Variable) {
                     for (Variable variable1 : PhpElementsUtil.getVariablesInScope(parent, (Variable) variableDecl)) {
-                        visitVariable(variable1, consumer);
+                        visitVariable(phpClass, variable1, consumer);
                     }
                 }
             }
@@ -159,7 +369,7 @@ public class VoterUtil {
                 if(functionCall instanceof FunctionReference && "in_array".equalsIgnoreCase(((FunctionReference) functionCall).getName())) {
                     PsiElement[] functionParameter = ((ParameterList) parameterList).getParameters();
                     if(functionParameter.length > 0) {
-                        String stringValue = PhpElementsUtil.getStringValue(functionParameter[0]);
+                        String stringValue = getAttributeName(phpClass, functionParameter[0]);
                         if(stringValue != null && StringUtils.isNotBlank(stringValue)) {
                             consumer.accept(Pair.create(stringValue, functionParameter[0]));
                         }
@@ -169,89 +379,21 @@ public class VoterUtil {
         }
     }
 
-    private static void visitAttribute(@NotNull Method method, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
+    private static void visitAttribute(@NotNull PhpClass phpClass, @NotNull Method method, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
         Parameter[] parameters = method.getParameters();
         if(parameters.length == 0) {
             return;
         }
 
         for (Variable variable : PhpElementsUtil.getVariablesInScope(method, parameters[0])) {
-            visitVariable(variable, consumer);
-        }
-    }
-
-    public static class StringPairConsumer implements Consumer<Pair<String, PsiElement>> {
-        private Set<String> values = new HashSet<>();
-
-        @Override
-        public void accept(Pair<String, PsiElement> pair) {
-            values.add(pair.getFirst());
+            visitVariable(phpClass, variable, consumer);
         }
-
-        @NotNull
-        public Set<String> getValues() {
-            return values;
-        }
-    }
-
-    public static class TargetPairConsumer implements Consumer<Pair<String, PsiElement>> {
-        @NotNull
-        private final String filterValue;
-
-        @NotNull
-        private Set<PsiElement> values = new HashSet<>();
-
-        public TargetPairConsumer(@NotNull String filterValue) {
-            this.filterValue = filterValue;
-        }
-
-        @Override
-        public void accept(Pair<String, PsiElement> pair) {
-            if(pair.getFirst().equalsIgnoreCase(filterValue)) {
-                values.add(pair.getSecond());
-            }
-        }
-
-        @NotNull
-        public Set<PsiElement> getValues() {
-            return values;
-        }
-    }
-
-    public static class LookupElementPairConsumer implements Consumer<Pair<String, PsiElement>> {
-        @NotNull
-        private final Set<String> elements = new HashSet<>();
-
-        @NotNull
-        public Collection<LookupElement> getLookupElements() {
-            return lookupElements;
-        }
-
-        @Override
-        public void accept(Pair<String, PsiElement> pair) {
-            String name = pair.getFirst();
-            if (!elements.contains(name)) {
-                LookupElementBuilder lookupElement = LookupElementBuilder.create(name).withIcon(Symfony2Icons.SYMFONY);
-
-                PhpClass phpClass = PsiTreeUtil.getParentOfType(pair.getSecond(), PhpClass.class);
-                if (phpClass != null) {
-                    lookupElement = lookupElement.withTypeText(phpClass.getName(), true);
-                }
-
-                lookupElements.add(lookupElement);
-
-                elements.add(name);
-            }
-        }
-
-        @NotNull
-        private final Collection<LookupElement> lookupElements = new ArrayList<>();
     }
 
     /**
      * Find security roles on Voter implementation and security roles in Yaml
      */
-    private static void visitVariable(@NotNull Variable resolve, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
+    private static void visitVariable(@NotNull PhpClass phpClass, @NotNull Variable resolve, @NotNull Consumer<Pair<String, PsiElement>> consumer) {
         PsiElement parent = resolve.getParent();
         if(parent instanceof BinaryExpression) {
             // 'VALUE' == $var
@@ -260,7 +402,7 @@ public class VoterUtil {
                 IElementType node = rightElement.getNode().getElementType();
                 if(isIfOperand(node)) {
                     PsiElement leftOperand = ((BinaryExpression) parent).getLeftOperand();
-                    String stringValue = PhpElementsUtil.getStringValue(leftOperand);
+                    String stringValue = getAttributeName(phpClass, leftOperand);
                     if(StringUtils.isNotBlank(stringValue)) {
                         consumer.accept(Pair.create(stringValue, leftOperand));
                     }
@@ -273,7 +415,7 @@ public class VoterUtil {
                 IElementType node = leftElement.getNode().getElementType();
                 if(isIfOperand(node)) {
                     PsiElement rightOperand = ((BinaryExpression) parent).getRightOperand();
-                    String stringValue = PhpElementsUtil.getStringValue(rightOperand);
+                    String stringValue = getAttributeName(phpClass, rightOperand);
                     if(StringUtils.isNotBlank(stringValue)) {
                         consumer.accept(Pair.create(stringValue, rightOperand));
                     }
@@ -290,7 +432,7 @@ public class VoterUtil {
                         PsiElement[] psiElements = PsiTreeUtil.collectElements(functionParameter[1], psiElement -> psiElement.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE);
                         for (PsiElement psiElement : psiElements) {
                             PsiElement firstChild = psiElement.getFirstChild();
-                            String stringValue = PhpElementsUtil.getStringValue(firstChild);
+                            String stringValue = getAttributeName(phpClass, firstChild);
                             if(StringUtils.isNotBlank(stringValue)) {
                                 consumer.accept(Pair.create(stringValue, firstChild));
                             }
@@ -298,12 +440,16 @@ public class VoterUtil {
                     } else if(functionParameter[1] instanceof MemberReference) {
                         // in_array($attribute, self::FOO);
                         // in_array($attribute, $this->foo);
-                        PsiElement PsiReference = ((PsiReference) functionParameter[1]).resolve();
-                        if(PsiReference instanceof Field) {
-                            PsiElement defaultValue = ((Field) PsiReference).getDefaultValue();
+                        Field field = PhpElementsUtil.getOwnFieldForReference(phpClass, (MemberReference) functionParameter[1]);
+                        if(field != null) {
+                            PsiElement defaultValue = field.getDefaultValue();
                             if(defaultValue instanceof ArrayCreationExpression) {
-                                for (String s : PhpElementsUtil.getArrayValuesAsString((ArrayCreationExpression) defaultValue)) {
-                                    consumer.accept(Pair.create(s, defaultValue));
+                                PsiElement[] psiElements = PsiTreeUtil.collectElements(defaultValue, psiElement -> psiElement.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE);
+                                for (PsiElement psiElement : psiElements) {
+                                    String stringValue = getAttributeName(phpClass, psiElement.getFirstChild());
+                                    if(StringUtils.isNotBlank(stringValue)) {
+                                        consumer.accept(Pair.create(stringValue, defaultValue));
+                                    }
                                 }
                             }
                         }
@@ -314,7 +460,7 @@ public class VoterUtil {
             // case "foobar":
             for (PhpCase phpCase : ((PhpSwitch) parent).getAllCases()) {
                 PhpPsiElement condition = phpCase.getCondition();
-                String stringValue = PhpElementsUtil.getStringValue(condition);
+                String stringValue = getAttributeName(phpClass, condition);
                 if(StringUtils.isNotBlank(stringValue)) {
                     consumer.accept(Pair.create(stringValue, condition));
                 }
@@ -333,4 +479,15 @@ public class VoterUtil {
                 node == PhpTokenTypes.opNOT_IDENTICAL
             ;
     }
+
+    /**
+     * Index keys of an attribute with the voter classes which declare it
+     */
+    private static class VoterAttributeDeclarations {
+        @NotNull
+        private final Set<String> keys = new HashSet<>();
+
+        @NotNull
+        private final Set<String> classNames = new LinkedHashSet<>();
+    }
 }
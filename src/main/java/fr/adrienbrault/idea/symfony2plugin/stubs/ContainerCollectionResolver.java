@@ -3,8 +3,12 @@ package fr.adrienbrault.idea.symfony2plugin.stubs;
 import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.util.indexing.FileBasedIndex;
 import fr.adrienbrault.idea.symfony2plugin.config.component.parser.ParameterServiceParser;
 import fr.adrienbrault.idea.symfony2plugin.dic.ContainerParameter;
@@ -16,10 +20,9 @@ import fr.adrienbrault.idea.symfony2plugin.dic.container.dict.ContainerBuilderCa
 import fr.adrienbrault.idea.symfony2plugin.extension.ServiceCollectorParameter;
 import fr.adrienbrault.idea.symfony2plugin.extension.ServiceParameterCollector;
 import fr.adrienbrault.idea.symfony2plugin.extension.ServiceParameterCollectorParameter;
-import fr.adrienbrault.idea.symfony2plugin.stubs.cache.FileIndexCaches;
+import fr.adrienbrault.idea.symfony2plugin.stubs.cache.ServiceDefinitionFileCache;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ContainerBuilderStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ContainerParameterStubIndex;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ServicesDefinitionStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.util.dict.ServiceUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import org.apache.commons.lang.StringUtils;
@@ -27,17 +30,18 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
 public class ContainerCollectionResolver {
 
-    private static final Key<CachedValue<Map<String, List<ServiceSerializable>>>> SERVICE_CONTAINER_INDEX = new Key<>("SYMFONY_SERVICE_CONTAINER_INDEX");
-    private static final Key<CachedValue<Map<String, List<String>>>> SERVICE_PARAMETER_INDEX = new Key<>("SERVICE_PARAMETER_INDEX");
+    private static final Key<AtomicReference<ServiceCollector>> SERVICE_CONTAINER_COLLECTOR = new Key<>("SYMFONY_SERVICE_CONTAINER_COLLECTOR");
+    private static final Key<AtomicReference<ParameterCollector>> SERVICE_PARAMETER_COLLECTOR = new Key<>("SYMFONY_SERVICE_PARAMETER_COLLECTOR");
 
-    private static final Key<CachedValue<Set<String>>> SERVICE_CONTAINER_INDEX_NAMES = new Key<>("SYMFONY_SERVICE_CONTAINER_INDEX_NAMES");
-    private static final Key<CachedValue<Set<String>>> SERVICE_PARAMETER_INDEX_NAMES = new Key<>("SERVICE_PARAMETER_INDEX_NAMES");
+    private static final Key<CachedValue<ServiceCollector.ExtensionServices>> SERVICE_EXTENSION_SERVICES = new Key<>("SYMFONY_SERVICE_EXTENSION_SERVICES");
+    private static final Key<CachedValue<Collection<ContainerParameter>>> SERVICE_EXTENSION_PARAMETERS = new Key<>("SYMFONY_SERVICE_EXTENSION_PARAMETERS");
 
     private static final ExtensionPointName<fr.adrienbrault.idea.symfony2plugin.extension.ServiceCollector> EXTENSIONS = new ExtensionPointName<>(
         "fr.adrienbrault.idea.symfony2plugin.extension.ServiceCollector"
@@ -52,14 +56,12 @@ public class ContainerCollectionResolver {
     }
 
     public static boolean hasServiceNames(@NotNull Project project, @NotNull String serviceName) {
-        // @TODO: we dont need a collection here; stop on first match
         return ServiceCollector.create(project).getNames().contains(serviceName);
     }
 
     @Nullable
     public static ContainerService getService(@NotNull Project project, @NotNull String serviceName) {
-        Map<String, ContainerService> services = getServices(project);
-        return services.containsKey(serviceName) ? services.get(serviceName) : null;
+        return getServices(project).get(serviceName);
     }
 
     public static Map<String, ContainerService> getServices(@NotNull Project project) {
@@ -128,19 +130,78 @@ public class ContainerCollectionResolver {
         return ParameterCollector.create(project).getNames();
     }
 
+    /**
+     * Merged container of compiled, extension and indexed services.
+     *
+     * Instances are shared as long as their inputs are unchanged, see "create": the compiled container, the parameters,
+     * the indexed service definitions and the extension services. A change of indexed service files only replaces the
+     * services of the changed ids on a copy; so all its data must be treated as read-only
+     */
     public static class ServiceCollector {
 
         @NotNull
         final private Project project;
 
+        @NotNull
+        private final ParameterCollector parameterCollector;
+
+        private final long containerModificationCount;
+
+        /**
+         * Lowercase service id to its definitions of ServiceDefinitionFileCache; unchanged ids share their list on a new snapshot
+         */
+        @NotNull
+        private final Map<String, List<ServiceSerializable>> definitions;
+
+        @NotNull
+        private final ExtensionServices extensionServices;
+
         @Nullable
-        private ParameterCollector parameterCollector;
+        private NavigableMap<String, ContainerService> services;
+
+        @Nullable
+        private NavigableSet<String> names;
 
+        /**
+         * Lowercase class name without leading slash to its service ids
+         */
+        @Nullable
+        private Map<String, Set<String>> classServices;
+
+        /**
+         * Compiled services with a class by their id
+         */
         @Nullable
-        private Map<String, ContainerService> services;
+        private Map<String, ServiceInterface> compiledServices;
+
+        /**
+         * Ids of aliases, decorations and their targets; a change of them builds all services again
+         */
+        @Nullable
+        private Set<String> linkedIds;
+
+        /**
+         * Names of the compiled container and the extensions
+         */
+        @Nullable
+        private Set<String> foreignNames;
 
         public ServiceCollector(@NotNull Project project) {
+            this(
+                project,
+                ParameterCollector.create(project),
+                ServiceXmlParserFactory.getModificationTracker(project, XmlServiceParser.class).getModificationCount(),
+                ServiceDefinitionFileCache.getInstance(project).getServices(),
+                ExtensionServices.create(project)
+            );
+        }
+
+        private ServiceCollector(@NotNull Project project, @NotNull ParameterCollector parameterCollector, long containerModificationCount, @NotNull Map<String, List<ServiceSerializable>> definitions, @NotNull ExtensionServices extensionServices) {
             this.project = project;
+            this.parameterCollector = parameterCollector;
+            this.containerModificationCount = containerModificationCount;
+            this.definitions = definitions;
+            this.extensionServices = extensionServices;
         }
 
         public Collection<ContainerService> collect() {
@@ -166,12 +227,13 @@ public class ContainerCollectionResolver {
         }
 
         @NotNull
-        public Map<String, ContainerService> getServices() {
+        synchronized public Map<String, ContainerService> getServices() {
             if(this.services != null) {
                 return this.services;
             }
 
-            this.services = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            NavigableMap<String, ContainerService> services = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            Map<String, ServiceInterface> compiledServices = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 
             // file system
             for(ServiceInterface entry: ServiceXmlParserFactory.getInstance(project, XmlServiceParser.class).getServiceMap().getServices()) {
@@ -179,197 +241,506 @@ public class ContainerCollectionResolver {
                 // api safe check
                 if(entry.getClassName() != null) {
                     services.put(entry.getId(), new ContainerService(entry.getId(), entry.getClassName()));
+                    compiledServices.put(entry.getId(), entry);
                 }
             }
 
+            this.compiledServices = compiledServices;
+
+            // Extension points
+            extensionServices.services.forEach(service -> services.put(service.getId(), new ContainerService(service, null)));
+
             Collection<ServiceInterface> aliases = new ArrayList<>();
             Collection<ServiceInterface> decorated = new ArrayList<>();
 
-            // Extension points
-            ServiceCollectorParameter.Service parameter = null;
-            Collection<ServiceInterface> exps = new ArrayList<>();
-            for (fr.adrienbrault.idea.symfony2plugin.extension.ServiceCollector collectorEx : EXTENSIONS.getExtensions()) {
-                if(parameter == null) {
-                    parameter = new ServiceCollectorParameter.Service(project, exps);
+            for (Map.Entry<String, List<ServiceSerializable>> entry : definitions.entrySet()) {
+                ContainerService service = createService(entry.getKey(), entry.getValue(), aliases, decorated);
+                if(service != null) {
+                    services.put(entry.getKey(), service);
                 }
+            }
+
+            Set<String> linkedIds = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
 
-                collectorEx.collectServices(parameter);
+            // replace alias with main service
+            if(aliases.size() > 0) {
+                collectAliases(services, aliases, linkedIds);
             }
 
-            if(exps.size() > 0) {
-                exps.forEach(service -> services.put(service.getId(), new ContainerService(service, null)));
+            if(decorated.size() > 0) {
+                collectDecorated(services, decorated, linkedIds);
             }
 
-            for (Map.Entry<String, List<ServiceSerializable>> entry : FileIndexCaches.getSetDataCache(project, SERVICE_CONTAINER_INDEX, SERVICE_CONTAINER_INDEX_NAMES, ServicesDefinitionStubIndex.KEY, ServiceIndexUtil.getRestrictedFileTypesScope(project)).entrySet()) {
+            this.linkedIds = linkedIds;
 
-                // dont work twice on service;
-                // @TODO: to need to optimize this to decorate as much service data as possible
-                String serviceName = entry.getKey();
+            return this.services = Collections.unmodifiableNavigableMap(services);
+        }
 
-                // fake empty service, case which is not allowed by catch it
-                List<ServiceSerializable> services = entry.getValue();
-                if(services.size() == 0) {
-                    this.services.put(serviceName, new ContainerService(serviceName, null, true));
-                    continue;
-                }
+        /**
+         * Service of an id with its compiled, extension and indexed definitions; aliases and decorations are only collected
+         */
+        @Nullable
+        private ContainerService createService(@NotNull String serviceName, @Nullable List<ServiceSerializable> definitions, @NotNull Collection<ServiceInterface> aliases, @NotNull Collection<ServiceInterface> decorated) {
+            ContainerService containerService = null;
 
-                for(ServiceInterface service: services) {
-                    String classValue = service.getClassName();
+            // a duplicate adds its class names; so never share the instance of another collector
+            ServiceInterface compiledService = compiledServices != null ? compiledServices.get(serviceName) : null;
+            if(compiledService != null) {
+                containerService = new ContainerService(compiledService.getId(), compiledService.getClassName());
+            }
 
-                    // duplicate services
-                    if(this.services.containsKey(serviceName)) {
-                        if(classValue == null) {
-                            continue;
-                        }
+            ServiceInterface extensionService = extensionServices.getService(serviceName);
+            if(extensionService != null) {
+                containerService = new ContainerService(extensionService, null);
+            }
 
-                        String compiledClassName = this.services.get(serviceName).getClassName();
-                        if(classValue.equalsIgnoreCase(compiledClassName)) {
-                            continue;
-                        }
+            if(definitions == null) {
+                return containerService;
+            }
 
-                        String resolvedClassValue = getParameterCollector().resolve(classValue);
-                        if(resolvedClassValue != null && !StringUtils.isBlank(classValue) && !resolvedClassValue.equalsIgnoreCase(compiledClassName)) {
-                            this.services.get(serviceName).addClassName(resolvedClassValue);
-                        }
+            // fake empty service, case which is not allowed by catch it
+            if(definitions.size() == 0) {
+                return new ContainerService(serviceName, null, true);
+            }
+
+            for(ServiceInterface service: definitions) {
+                String classValue = service.getClassName();
 
+                // duplicate services
+                if(containerService != null) {
+                    if(classValue == null) {
                         continue;
                     }
 
-                    if(service.getAlias() != null) {
-                        aliases.add(service);
+                    String compiledClassName = containerService.getClassName();
+                    if(classValue.equalsIgnoreCase(compiledClassName)) {
+                        continue;
                     }
 
-                    // reuse iteration for alias mapping
-                    if(service.getDecorates() != null) {
-                        decorated.add(service);
+                    String resolvedClassValue = getParameterCollector().resolve(classValue);
+                    if(resolvedClassValue != null && !StringUtils.isBlank(classValue) && !resolvedClassValue.equalsIgnoreCase(compiledClassName)) {
+                        containerService.addClassName(resolvedClassValue);
                     }
 
-                    // resolve class value, it can be null or a parameter
-                    if(!StringUtils.isBlank(classValue)) {
-                        classValue = getParameterCollector().resolve(classValue);
-                    }
+                    continue;
+                }
 
-                    // @TODO: legacy bridge; replace this with ServiceInterface
-                    this.services.put(serviceName, new ContainerService(service, classValue));
+                if(service.getAlias() != null) {
+                    aliases.add(service);
                 }
-            }
 
-            // replace alias with main service
-            if(aliases.size() > 0) {
-                collectAliases(aliases);
-            }
+                // reuse iteration for alias mapping
+                if(service.getDecorates() != null) {
+                    decorated.add(service);
+                }
 
-            if(decorated.size() > 0) {
-                collectDecorated(decorated);
+                // resolve class value, it can be null or a parameter
+                if(!StringUtils.isBlank(classValue)) {
+                    classValue = getParameterCollector().resolve(classValue);
+                }
+
+                // @TODO: legacy bridge; replace this with ServiceInterface
+                containerService = new ContainerService(service, classValue);
             }
 
-            return this.services;
+            return containerService;
         }
 
-        private void collectAliases(@NotNull Collection<ServiceInterface> aliases) {
+        private void collectAliases(@NotNull Map<String, ContainerService> services, @NotNull Collection<ServiceInterface> aliases, @NotNull Set<String> linkedIds) {
             for (ServiceInterface service : aliases) {
+                linkedIds.add(service.getId());
 
                 // double check alias name
                 String alias = service.getAlias();
-                if(alias == null || StringUtils.isBlank(alias) || !this.services.containsKey(alias)) {
+                if(alias == null || StringUtils.isBlank(alias) || !services.containsKey(alias)) {
                     continue;
                 }
 
-                this.services.put(service.getId(), this.services.get(alias));
+                linkedIds.add(alias);
+                services.put(service.getId(), services.get(alias));
             }
         }
 
-        private void collectDecorated(@NotNull Collection<ServiceInterface> decorated) {
+        private void collectDecorated(@NotNull Map<String, ContainerService> services, @NotNull Collection<ServiceInterface> decorated, @NotNull Set<String> linkedIds) {
             for (ServiceInterface service : decorated) {
+                linkedIds.add(service.getId());
+
                 String decorationInnerName = service.getDecorationInnerName();
                 if(StringUtils.isBlank(decorationInnerName)) {
                     decorationInnerName = service.getId() + ".inner";
                 }
 
-                ContainerService origin = this.services.get(service.getDecorates());
+                ContainerService origin = services.get(service.getDecorates());
                 if(origin == null) {
                     continue;
                 }
 
+                linkedIds.add(service.getDecorates());
+                linkedIds.add(decorationInnerName);
+
                 // @TODO: migrate constructor to ServiceInterface and decorate
                 ContainerService value = new ContainerService(decorationInnerName, origin.getClassName(), origin.isWeak(), true);
                 origin.getClassNames().forEach(value::addClassName);
 
-                this.services.put(decorationInnerName, value);
+                services.put(decorationInnerName, value);
             }
         }
 
         public Set<String> convertClassNameToServices(@NotNull String fqnClassName) {
+            Set<String> serviceNames = getClassServices().get(StringUtils.stripStart(fqnClassName, "\\").toLowerCase());
+            return serviceNames != null ? new HashSet<>(serviceNames) : new HashSet<>();
+        }
 
-            Set<String> serviceNames = new HashSet<>();
+        /**
+         * Reverse map of all resolved class names of a service
+         */
+        @NotNull
+        synchronized private Map<String, Set<String>> getClassServices() {
+            if(this.classServices != null) {
+                return this.classServices;
+            }
 
-            fqnClassName = StringUtils.stripStart(fqnClassName, "\\");
+            Map<String, Set<String>> classServices = new HashMap<>();
 
             for(Map.Entry<String, ContainerService> entry: this.getServices().entrySet()) {
-                for (String className : entry.getValue().getClassNames()) {
-                    String indexedClassName = this.getParameterCollector().resolve(className);
-                    if(indexedClassName != null) {
-                        if(StringUtils.stripStart(indexedClassName, "\\").equalsIgnoreCase(fqnClassName)) {
-                            serviceNames.add(entry.getKey());
-                        }
-                    }
+                for (String className : getIndexedClassNames(entry.getValue())) {
+                    classServices.computeIfAbsent(className, s -> new HashSet<>()).add(entry.getKey());
                 }
             }
 
-            return serviceNames;
+            return this.classServices = classServices;
         }
 
-        private Set<String> getNames() {
+        /**
+         * Lowercase resolved class names without leading slash
+         */
+        @NotNull
+        private Collection<String> getIndexedClassNames(@NotNull ContainerService service) {
+            Collection<String> classNames = new HashSet<>();
 
-            Set<String> serviceNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (String className : service.getClassNames()) {
+                String indexedClassName = this.getParameterCollector().resolve(className);
+                if(indexedClassName != null) {
+                    classNames.add(StringUtils.stripStart(indexedClassName, "\\").toLowerCase());
+                }
+            }
+
+            return classNames;
+        }
+
+        @NotNull
+        synchronized private Set<String> getNames() {
+            if(this.names != null) {
+                return this.names;
+            }
+
+            Set<String> foreignNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
 
             // local filesystem
-            serviceNames.addAll(
+            foreignNames.addAll(
                 ServiceXmlParserFactory.getInstance(project, XmlServiceParser.class).getServiceMap().getIds()
             );
 
             // Extension points
-            ServiceCollectorParameter.Id parameter = null;
-            for (fr.adrienbrault.idea.symfony2plugin.extension.ServiceCollector collectorEx : EXTENSIONS.getExtensions()) {
-                if(parameter == null) {
-                    parameter = new ServiceCollectorParameter.Id(project, serviceNames);
+            foreignNames.addAll(extensionServices.ids);
+
+            NavigableSet<String> serviceNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            serviceNames.addAll(foreignNames);
+
+            // index
+            serviceNames.addAll(definitions.keySet());
+
+            this.foreignNames = foreignNames;
+
+            return this.names = Collections.unmodifiableNavigableSet(serviceNames);
+        }
+
+        @NotNull
+        private ParameterCollector getParameterCollector() {
+            return this.parameterCollector;
+        }
+
+        /**
+         * Copy with the services of the changed definitions replaced; "null" if nothing was build yet or if aliases
+         * or decorations are changed, as they can point to any other service
+         */
+        @Nullable
+        synchronized private ServiceCollector createUpdated(@NotNull Map<String, List<ServiceSerializable>> definitions) {
+            if(this.services == null || this.compiledServices == null || this.linkedIds == null) {
+                return null;
+            }
+
+            Set<String> changedIds = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<String, List<ServiceSerializable>> entry : definitions.entrySet()) {
+                if(this.definitions.get(entry.getKey()) != entry.getValue()) {
+                    changedIds.add(entry.getKey());
                 }
+            }
 
-                collectorEx.collectIds(parameter);
+            for (String id : this.definitions.keySet()) {
+                if(!definitions.containsKey(id)) {
+                    changedIds.add(id);
+                }
             }
 
-            // index
-            serviceNames.addAll(
-                FileIndexCaches.getIndexKeysCache(project, SERVICE_CONTAINER_INDEX_NAMES, ServicesDefinitionStubIndex.KEY)
-            );
+            for (String id : changedIds) {
+                if(this.linkedIds.contains(id)) {
+                    return null;
+                }
+
+                for (ServiceSerializable service : definitions.getOrDefault(id, Collections.emptyList())) {
+                    if(service.getAlias() != null || service.getDecorates() != null) {
+                        return null;
+                    }
+                }
+            }
+
+            ServiceCollector collector = new ServiceCollector(project, parameterCollector, containerModificationCount, definitions, extensionServices);
+            collector.compiledServices = this.compiledServices;
+            collector.linkedIds = this.linkedIds;
+
+            NavigableMap<String, ContainerService> services = new TreeMap<>(this.services);
+            Map<String, Set<String>> classServices = this.classServices != null ? new HashMap<>(this.classServices) : null;
+            NavigableSet<String> names = this.names != null ? new TreeSet<>(this.names) : null;
+
+            // copy on write: sets of the previous reverse map are shared
+            Set<String> copiedClassNames = new HashSet<>();
+
+            Collection<ServiceInterface> ignored = new ArrayList<>();
+
+            for (String id : changedIds) {
+                // keep the original case of a compiled service id
+                String key = services.containsKey(id) ? services.ceilingKey(id) : id;
 
-            return serviceNames;
+                ContainerService previous = services.get(key);
+                ContainerService service = collector.createService(key, definitions.get(id), ignored, ignored);
+
+                if(service != null) {
+                    services.put(key, service);
+                } else {
+                    services.remove(key);
+                }
+
+                if(classServices != null) {
+                    if(previous != null) {
+                        for (String className : getIndexedClassNames(previous)) {
+                            Set<String> ids = getClassServicesCopy(classServices, className, copiedClassNames);
+                            ids.removeIf(key::equalsIgnoreCase);
+                            if(ids.isEmpty()) {
+                                classServices.remove(className);
+                            }
+                        }
+                    }
+
+                    if(service != null) {
+                        for (String className : getIndexedClassNames(service)) {
+                            getClassServicesCopy(classServices, className, copiedClassNames).add(key);
+                        }
+                    }
+                }
+
+                if(names != null) {
+                    if(definitions.containsKey(id)) {
+                        names.add(key);
+                    } else if(this.foreignNames != null && !this.foreignNames.contains(id)) {
+                        names.remove(key);
+                    }
+                }
+            }
+
+            collector.services = Collections.unmodifiableNavigableMap(services);
+            collector.classServices = classServices;
+
+            if(names != null) {
+                collector.names = Collections.unmodifiableNavigableSet(names);
+                collector.foreignNames = this.foreignNames;
+            }
+
+            return collector;
         }
 
+        @NotNull
+        private static Set<String> getClassServicesCopy(@NotNull Map<String, Set<String>> classServices, @NotNull String className, @NotNull Set<String> copiedClassNames) {
+            if(copiedClassNames.add(className)) {
+                classServices.put(className, new HashSet<>(classServices.getOrDefault(className, Collections.emptySet())));
+            }
 
-        private ParameterCollector getParameterCollector() {
-            return (this.parameterCollector != null) ? this.parameterCollector : (this.parameterCollector = ParameterCollector.create(this.project));
+            return classServices.get(className);
         }
 
+        /**
+         * Shared instance as long as its inputs are unchanged; so editing anything else than a service definition, a
+         * parameter or the compiled container keeps it. Changed service definitions only replace their services
+         */
         public static ServiceCollector create(@NotNull Project project) {
-            return new ContainerCollectionResolver.ServiceCollector(project);
+            AtomicReference<ServiceCollector> reference = getReference(project, SERVICE_CONTAINER_COLLECTOR);
+
+            // read before the services; so a change while collecting them is seen by the next lookup
+            long containerModificationCount = ServiceXmlParserFactory.getModificationTracker(project, XmlServiceParser.class).getModificationCount();
+            ParameterCollector parameterCollector = ParameterCollector.create(project);
+            ExtensionServices extensionServices = ExtensionServices.create(project);
+            Map<String, List<ServiceSerializable>> definitions = ServiceDefinitionFileCache.getInstance(project).getServices();
+
+            ServiceCollector collector = reference.get();
+            if(collector != null && collector.containerModificationCount == containerModificationCount && collector.parameterCollector == parameterCollector && collector.extensionServices.equals(extensionServices)) {
+                if(collector.definitions == definitions) {
+                    return collector;
+                }
+
+                ServiceCollector updated = collector.createUpdated(definitions);
+                if(updated != null) {
+                    reference.set(updated);
+                    return updated;
+                }
+            }
+
+            collector = new ServiceCollector(project, parameterCollector, containerModificationCount, definitions, extensionServices);
+            reference.set(collector);
+
+            return collector;
+        }
+
+        /**
+         * Services and ids of the extensions; extensions can read any psi, so they are only compared by their result
+         */
+        private static class ExtensionServices {
+            @NotNull
+            private final List<ServiceInterface> services;
+
+            @NotNull
+            private final Set<String> ids;
+
+            @NotNull
+            private final Map<String, ServiceInterface> serviceIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+            private ExtensionServices(@NotNull List<ServiceInterface> services, @NotNull Set<String> ids) {
+                this.services = services;
+                this.ids = ids;
+
+                // last one wins, same as on merging
+                services.forEach(service -> serviceIds.put(service.getId(), service));
+            }
+
+            @Nullable
+            private ServiceInterface getService(@NotNull String id) {
+                return serviceIds.get(id);
+            }
+
+            @NotNull
+            private static ExtensionServices create(@NotNull Project project) {
+                return CachedValuesManager.getManager(project).getCachedValue(project, SERVICE_EXTENSION_SERVICES, () -> {
+                    List<ServiceInterface> services = new ArrayList<>();
+                    Set<String> ids = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+                    ServiceCollectorParameter.Service serviceParameter = new ServiceCollectorParameter.Service(project, services);
+                    ServiceCollectorParameter.Id idParameter = new ServiceCollectorParameter.Id(project, ids);
+
+                    for (fr.adrienbrault.idea.symfony2plugin.extension.ServiceCollector collectorEx : EXTENSIONS.getExtensions()) {
+                        collectorEx.collectServices(serviceParameter);
+                        collectorEx.collectIds(idParameter);
+                    }
+
+                    return CachedValueProvider.Result.create(new ExtensionServices(services, ids), PsiModificationTracker.MODIFICATION_COUNT);
+                }, false);
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hash(services, ids);
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj == this || (obj instanceof ExtensionServices &&
+                    ((ExtensionServices) obj).services.equals(this.services) &&
+                    ((ExtensionServices) obj).ids.equals(this.ids));
+            }
         }
     }
 
     public static class ParameterCollector {
 
         @NotNull
-        private Project project;
+        private final Project project;
+
+        /**
+         * Counts of the trackers and the results of the psi depending inputs; a changed tracker only reads its own
+         * input again and keeps this collector, if no parameter differs
+         */
+        @NotNull
+        private volatile Inputs inputs;
+
+        /**
+         * Parameters of yaml and xml files with all their values
+         */
+        @NotNull
+        private final Map<String, List<String>> indexedParameters;
+
+        /**
+         * Names of "setParameter" calls on a ContainerBuilder
+         */
+        @NotNull
+        private final Set<String> builderParameters;
 
         @Nullable
         private Map<String, ContainerParameter> containerParameterMap;
 
         public ParameterCollector(@NotNull Project project) {
+            this(project, Inputs.create(project), getIndexedParameters(project), getBuilderParameters(project));
+        }
+
+        private ParameterCollector(@NotNull Project project, @NotNull Inputs inputs, @NotNull Map<String, List<String>> indexedParameters, @NotNull Set<String> builderParameters) {
             this.project = project;
+            this.inputs = inputs;
+            this.indexedParameters = indexedParameters;
+            this.builderParameters = builderParameters;
         }
 
+        /**
+         * Shared instance as long as no parameter differs: editing a php file only reads the "setParameter" calls
+         * again, a yaml or xml file all indexed parameters; with an equal result the instance is kept
+         */
         public static ParameterCollector create(@NotNull Project project) {
-            return new ParameterCollector(project);
+            AtomicReference<ParameterCollector> reference = getReference(project, SERVICE_PARAMETER_COLLECTOR);
+
+            // read before the parameters; so a change while collecting them is seen by the next lookup
+            Inputs inputs = Inputs.create(project);
+
+            ParameterCollector collector = reference.get();
+            if(collector == null) {
+                collector = new ParameterCollector(project, inputs, getIndexedParameters(project), getBuilderParameters(project));
+                reference.set(collector);
+
+                return collector;
+            }
+
+            Inputs previous = collector.inputs;
+            if(previous.isSame(inputs)) {
+                return collector;
+            }
+
+            Map<String, List<String>> indexedParameters = previous.parameterModificationCount == inputs.parameterModificationCount
+                ? collector.indexedParameters
+                : getIndexedParameters(project);
+
+            Set<String> builderParameters = previous.builderModificationCount == inputs.builderModificationCount
+                ? collector.builderParameters
+                : getBuilderParameters(project);
+
+            if(previous.containerModificationCount == inputs.containerModificationCount &&
+                previous.kernelParameters.equals(inputs.kernelParameters) &&
+                previous.extensionParameters.equals(inputs.extensionParameters) &&
+                indexedParameters.equals(collector.indexedParameters) &&
+                builderParameters.equals(collector.builderParameters)
+            ) {
+                collector.inputs = inputs;
+                return collector;
+            }
+
+            collector = new ParameterCollector(project, inputs, indexedParameters, builderParameters);
+            reference.set(collector);
+
+            return collector;
         }
 
         /**
@@ -403,7 +774,7 @@ public class ContainerCollectionResolver {
         }
 
 
-        private Map<String, ContainerParameter> getParameters() {
+        synchronized private Map<String, ContainerParameter> getParameters() {
 
             if(this.containerParameterMap != null) {
                 return this.containerParameterMap;
@@ -424,7 +795,7 @@ public class ContainerCollectionResolver {
             }
 
             // index
-            for (Map.Entry<String, List<String>> entry : FileIndexCaches.getStringDataCache(project, SERVICE_PARAMETER_INDEX, SERVICE_PARAMETER_INDEX_NAMES, ContainerParameterStubIndex.KEY, ServiceIndexUtil.getRestrictedFileTypesScope(project)).entrySet()) {
+            for (Map.Entry<String, List<String>> entry : indexedParameters.entrySet()) {
                 String parameterName = entry.getKey();
                 // just for secure
                 if(parameterName == null) {
@@ -438,23 +809,18 @@ public class ContainerCollectionResolver {
             }
 
             // setParameter("foo") for ContainerBuilder
-            for (ContainerBuilderCall call : FileBasedIndex.getInstance().getValues(ContainerBuilderStubIndex.KEY, "setParameter", GlobalSearchScope.allScope(project))) {
-                Collection<String> parameters = call.getParameter();
-                if(parameters == null || parameters.size() == 0) {
+            for (String parameter : builderParameters) {
+                if(this.containerParameterMap.containsKey(parameter)) {
                     continue;
                 }
 
-                for (String parameter : parameters) {
-                    if(this.containerParameterMap.containsKey(parameter)) {
-                        continue;
-                    }
-
-                    this.containerParameterMap.put(parameter, new ContainerParameter(parameter, true));
-                }
+                this.containerParameterMap.put(parameter, new ContainerParameter(parameter, true));
             }
 
+            Inputs inputs = this.inputs;
+
             // Kernel::getKernelParameters
-            for (String parameterName : ServiceUtil.getParameterParameters(project)) {
+            for (String parameterName : inputs.kernelParameters) {
                 if(this.containerParameterMap.containsKey(parameterName)) {
                     continue;
                 }
@@ -463,52 +829,113 @@ public class ContainerCollectionResolver {
             }
 
             // Extension points
-            ServiceParameterCollectorParameter.Id parameter = null;
-            Collection<ContainerParameter> exps = new ArrayList<>();
-            for (ServiceParameterCollector parameterCollector : EXTENSIONS_PARAMETER.getExtensions()) {
-                if(parameter == null) {
-                    parameter = new ServiceParameterCollectorParameter.Id(project, exps);
-                }
-
-                parameterCollector.collectIds(parameter);
-            }
-
-            for (ContainerParameter extParameter: exps) {
+            for (ContainerParameter extParameter: inputs.extensionParameters) {
                 this.containerParameterMap.put(extParameter.getName(), extParameter);
             }
 
-            return this.containerParameterMap;
+            return this.containerParameterMap = Collections.unmodifiableMap(this.containerParameterMap);
         }
 
         private Set<String> getNames() {
+            return getParameters().keySet();
+        }
 
-            // use overall map if already generated
-            if(this.containerParameterMap != null) {
-                return this.containerParameterMap.keySet();
-            }
+        @NotNull
+        private static Map<String, List<String>> getIndexedParameters(@NotNull Project project) {
+            Map<String, List<String>> parameters = new HashMap<>();
 
-            Set<String> parameterNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            GlobalSearchScope scope = ServiceIndexUtil.getRestrictedFileTypesScope(project);
+            FileBasedIndex index = FileBasedIndex.getInstance();
 
-            // local filesystem
-            parameterNames.addAll(ServiceXmlParserFactory.getInstance(project, ParameterServiceParser.class).getParameterMap().keySet());
+            for (String parameterName : SymfonyProcessors.createResult(project, ContainerParameterStubIndex.KEY)) {
+                parameters.put(parameterName, index.getValues(ContainerParameterStubIndex.KEY, parameterName, scope));
+            }
 
-            // index
-            parameterNames.addAll(
-                FileIndexCaches.getIndexKeysCache(project, SERVICE_PARAMETER_INDEX_NAMES, ContainerParameterStubIndex.KEY)
-            );
+            return parameters;
+        }
+
+        @NotNull
+        private static Set<String> getBuilderParameters(@NotNull Project project) {
+            Set<String> parameters = new HashSet<>();
 
-            // setParameter("foo") for ContainerBuilder
             for (ContainerBuilderCall call : FileBasedIndex.getInstance().getValues(ContainerBuilderStubIndex.KEY, "setParameter", GlobalSearchScope.allScope(project))) {
                 Collection<String> parameter = call.getParameter();
                 if(parameter != null) {
-                    parameterNames.addAll(parameter);
+                    parameters.addAll(parameter);
+                }
+            }
+
+            return parameters;
+        }
+
+        /**
+         * Extensions can read any psi, so they are only compared by their result
+         */
+        @NotNull
+        private static Collection<ContainerParameter> getExtensionParameters(@NotNull Project project) {
+            if(EXTENSIONS_PARAMETER.getExtensions().length == 0) {
+                return Collections.emptyList();
+            }
+
+            return CachedValuesManager.getManager(project).getCachedValue(project, SERVICE_EXTENSION_PARAMETERS, () -> {
+                Collection<ContainerParameter> exps = new ArrayList<>();
+
+                ServiceParameterCollectorParameter.Id parameter = new ServiceParameterCollectorParameter.Id(project, exps);
+                for (ServiceParameterCollector parameterCollector : EXTENSIONS_PARAMETER.getExtensions()) {
+                    parameterCollector.collectIds(parameter);
                 }
+
+                return CachedValueProvider.Result.create(exps, PsiModificationTracker.MODIFICATION_COUNT);
+            }, false);
+        }
+
+        private static class Inputs {
+            private final long containerModificationCount;
+            private final long parameterModificationCount;
+            private final long builderModificationCount;
+
+            @NotNull
+            private final Collection<String> kernelParameters;
+
+            @NotNull
+            private final Collection<ContainerParameter> extensionParameters;
+
+            private Inputs(long containerModificationCount, long parameterModificationCount, long builderModificationCount, @NotNull Collection<String> kernelParameters, @NotNull Collection<ContainerParameter> extensionParameters) {
+                this.containerModificationCount = containerModificationCount;
+                this.parameterModificationCount = parameterModificationCount;
+                this.builderModificationCount = builderModificationCount;
+                this.kernelParameters = kernelParameters;
+                this.extensionParameters = extensionParameters;
             }
 
+            @NotNull
+            private static Inputs create(@NotNull Project project) {
+                return new Inputs(
+                    ServiceXmlParserFactory.getModificationTracker(project, ParameterServiceParser.class).getModificationCount(),
+                    ContainerParameterStubIndex.getModificationTracker(project).getModificationCount(),
+                    ContainerBuilderStubIndex.getModificationTracker(project).getModificationCount(),
+                    ServiceUtil.getParameterParameters(project),
+                    getExtensionParameters(project)
+                );
+            }
 
-            return parameterNames;
+            /**
+             * Same counts and the same cached psi results; so nothing must be read again
+             */
+            private boolean isSame(@NotNull Inputs inputs) {
+                return containerModificationCount == inputs.containerModificationCount &&
+                    parameterModificationCount == inputs.parameterModificationCount &&
+                    builderModificationCount == inputs.builderModificationCount &&
+                    kernelParameters == inputs.kernelParameters &&
+                    extensionParameters == inputs.extensionParameters;
+            }
         }
+    }
 
+    @NotNull
+    private static <T> AtomicReference<T> getReference(@NotNull Project project, @NotNull Key<AtomicReference<T>> key) {
+        AtomicReference<T> reference = project.getUserData(key);
+        return reference != null ? reference : ((UserDataHolderEx) project).putUserDataIfAbsent(key, new AtomicReference<>());
     }
 
 }
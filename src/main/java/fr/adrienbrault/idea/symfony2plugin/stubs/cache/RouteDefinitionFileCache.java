@@ -0,0 +1,206 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.cache;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.StubIndexedRoute;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.RoutesStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Indexed routes grouped by their file, so that a changed file only updates its own routes.
+ *
+ * The routing index also tracks every php file for @Route annotations; so a changed file is read again and only
+ * if its routes are not equal to the known ones a new route map is provided. Callers can compare the map by identity.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class RouteDefinitionFileCache {
+
+    private static final Key<RouteDefinitionFileCache> ROUTE_DEFINITION_FILE_CACHE = new Key<>("SYMFONY_ROUTE_DEFINITION_FILE_CACHE");
+
+    @NotNull
+    private final Project project;
+
+    @Nullable
+    private volatile Snapshot snapshot;
+
+    private RouteDefinitionFileCache(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static RouteDefinitionFileCache getInstance(@NotNull Project project) {
+        RouteDefinitionFileCache cache = project.getUserData(ROUTE_DEFINITION_FILE_CACHE);
+        return cache != null ? cache : ((UserDataHolderEx) project).putUserDataIfAbsent(ROUTE_DEFINITION_FILE_CACHE, new RouteDefinitionFileCache(project));
+    }
+
+    /**
+     * Route name with all its indexed definitions; the same instance as long as no route of any file was changed
+     */
+    @NotNull
+    public Map<String, List<StubIndexedRoute>> getRoutes() {
+        return getSnapshot().routes;
+    }
+
+    /**
+     * Count is taken before the index is read; so a change while reading is always seen by the next lookup.
+     * Concurrent lookups may both create a snapshot, the last one wins as both are valid.
+     */
+    @NotNull
+    private Snapshot getSnapshot() {
+        IndexModificationTracker tracker = RoutesStubIndex.getModificationTracker(project);
+        long modificationCount = tracker.getModificationCount();
+
+        Snapshot snapshot = this.snapshot;
+        if(snapshot != null && snapshot.modificationCount == modificationCount) {
+            return snapshot;
+        }
+
+        Collection<VirtualFile> changedFiles = snapshot != null ? tracker.getChangedFiles(snapshot.modificationCount) : null;
+
+        Snapshot next;
+        if(snapshot == null || changedFiles == null) {
+            next = Snapshot.collectAll(project, modificationCount);
+        } else {
+            next = snapshot.collectChanged(project, modificationCount, changedFiles);
+        }
+
+        return this.snapshot = next;
+    }
+
+    /**
+     * Same as the indexer provides, but on the current file content
+     */
+    @NotNull
+    private static Map<String, StubIndexedRoute> getRoutesInFile(@NotNull Project project, @NotNull VirtualFile virtualFile) {
+        if(!virtualFile.isValid()) {
+            return Collections.emptyMap();
+        }
+
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+        if(psiFile == null) {
+            return Collections.emptyMap();
+        }
+
+        return RoutesStubIndex.getIndexedRoutes(virtualFile, psiFile);
+    }
+
+    /**
+     * Never changed after creation; unchanged maps and lists are shared with the previous snapshot
+     */
+    private static class Snapshot {
+        private final long modificationCount;
+
+        @NotNull
+        private final Map<VirtualFile, Map<String, StubIndexedRoute>> files;
+
+        @NotNull
+        private final Map<String, List<StubIndexedRoute>> routes;
+
+        private Snapshot(long modificationCount, @NotNull Map<VirtualFile, Map<String, StubIndexedRoute>> files, @NotNull Map<String, List<StubIndexedRoute>> routes) {
+            this.modificationCount = modificationCount;
+            this.files = files;
+            this.routes = routes;
+        }
+
+        /**
+         * Visit of all index keys with their values
+         */
+        @NotNull
+        static Snapshot collectAll(@NotNull Project project, long modificationCount) {
+            Map<VirtualFile, Map<String, StubIndexedRoute>> files = new HashMap<>();
+            Map<String, List<StubIndexedRoute>> routes = new HashMap<>();
+
+            GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+            FileBasedIndex index = FileBasedIndex.getInstance();
+
+            for (String routeName : SymfonyProcessors.createResult(project, RoutesStubIndex.KEY)) {
+                List<StubIndexedRoute> values = new ArrayList<>();
+
+                index.processValues(RoutesStubIndex.KEY, routeName, null, (virtualFile, route) -> {
+                    files.computeIfAbsent(virtualFile, f -> new HashMap<>()).put(routeName, route);
+                    values.add(route);
+                    return true;
+                }, scope);
+
+                if(values.size() > 0) {
+                    routes.put(routeName, values);
+                }
+            }
+
+            return new Snapshot(modificationCount, files, routes);
+        }
+
+        /**
+         * Changed files are read on their current content; the route map is only copied if a file provides
+         * other routes than before. Php files without any route are not kept.
+         */
+        @NotNull
+        Snapshot collectChanged(@NotNull Project project, long modificationCount, @NotNull Collection<VirtualFile> changedFiles) {
+            Map<VirtualFile, Map<String, StubIndexedRoute>> changed = new HashMap<>();
+
+            for (VirtualFile virtualFile : changedFiles) {
+                Map<String, StubIndexedRoute> routes = getRoutesInFile(project, virtualFile);
+                if(!routes.equals(this.files.getOrDefault(virtualFile, Collections.emptyMap()))) {
+                    changed.put(virtualFile, routes);
+                }
+            }
+
+            if(changed.isEmpty()) {
+                return new Snapshot(modificationCount, this.files, this.routes);
+            }
+
+            Map<VirtualFile, Map<String, StubIndexedRoute>> files = new HashMap<>(this.files);
+            Map<String, List<StubIndexedRoute>> routes = new HashMap<>(this.routes);
+
+            // copy on write: lists of the previous snapshot are shared
+            Set<String> copiedNames = new HashSet<>();
+
+            for (Map.Entry<VirtualFile, Map<String, StubIndexedRoute>> entry : changed.entrySet()) {
+                Map<String, StubIndexedRoute> removed = files.remove(entry.getKey());
+                if(removed != null) {
+                    for (StubIndexedRoute route : removed.values()) {
+                        getRoutes(routes, route.getName(), copiedNames).removeIf(r -> r == route);
+                    }
+                }
+
+                if(entry.getValue().isEmpty()) {
+                    continue;
+                }
+
+                files.put(entry.getKey(), entry.getValue());
+                for (StubIndexedRoute route : entry.getValue().values()) {
+                    getRoutes(routes, route.getName(), copiedNames).add(route);
+                }
+            }
+
+            for (String name : copiedNames) {
+                if(routes.get(name).isEmpty()) {
+                    routes.remove(name);
+                }
+            }
+
+            return new Snapshot(modificationCount, files, routes);
+        }
+
+        @NotNull
+        private static List<StubIndexedRoute> getRoutes(@NotNull Map<String, List<StubIndexedRoute>> routes, @NotNull String name, @NotNull Set<String> copiedNames) {
+            if(copiedNames.add(name)) {
+                routes.put(name, new ArrayList<>(routes.getOrDefault(name, Collections.emptyList())));
+            }
+
+            return routes.get(name);
+        }
+    }
+}
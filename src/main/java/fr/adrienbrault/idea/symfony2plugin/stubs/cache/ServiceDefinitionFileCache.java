@@ -0,0 +1,196 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.cache;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.util.indexing.FileBasedIndex;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.ServiceSerializable;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.util.ServiceContainerUtil;
+import fr.adrienbrault.idea.symfony2plugin.stubs.ServiceIndexUtil;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ServicesDefinitionStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Indexed service definitions grouped by their file, so that a changed service file only updates its own services.
+ *
+ * The whole index is only visited on first access or if changes are not known per file; afterwards the changed,
+ * added or deleted files of the index tracker are collected again. Every lookup works on an immutable snapshot.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class ServiceDefinitionFileCache {
+
+    private static final Key<ServiceDefinitionFileCache> SERVICE_DEFINITION_FILE_CACHE = new Key<>("SYMFONY_SERVICE_DEFINITION_FILE_CACHE");
+    private static final Key<CachedValue<Set<String>>> SERVICE_DEFINITION_INDEX_NAMES = new Key<>("SYMFONY_SERVICE_DEFINITION_INDEX_NAMES");
+
+    @NotNull
+    private final Project project;
+
+    @Nullable
+    private volatile Snapshot snapshot;
+
+    private ServiceDefinitionFileCache(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static ServiceDefinitionFileCache getInstance(@NotNull Project project) {
+        ServiceDefinitionFileCache cache = project.getUserData(SERVICE_DEFINITION_FILE_CACHE);
+        return cache != null ? cache : ((UserDataHolderEx) project).putUserDataIfAbsent(SERVICE_DEFINITION_FILE_CACHE, new ServiceDefinitionFileCache(project));
+    }
+
+    /**
+     * All lowercase service ids of the index
+     */
+    @NotNull
+    public static Set<String> getIndexKeys(@NotNull Project project) {
+        return FileIndexCaches.getIndexKeysCache(project, SERVICE_DEFINITION_INDEX_NAMES, ServicesDefinitionStubIndex.KEY);
+    }
+
+    /**
+     * Lowercase service id with all its indexed definitions; same as a full "getValues" of all index keys.
+     * Index keys without any service are provided with an empty list as "fake" services for api compatibility
+     */
+    @NotNull
+    public Map<String, List<ServiceSerializable>> getServices() {
+        return getSnapshot().services;
+    }
+
+    /**
+     * Count is taken before the index is read; so a change while reading is always seen by the next lookup.
+     * Concurrent lookups may both create a snapshot, the last one wins as both are valid.
+     */
+    @NotNull
+    private Snapshot getSnapshot() {
+        IndexModificationTracker tracker = ServicesDefinitionStubIndex.getModificationTracker(project);
+        long modificationCount = tracker.getModificationCount();
+
+        Snapshot snapshot = this.snapshot;
+        if(snapshot != null && snapshot.modificationCount == modificationCount) {
+            return snapshot;
+        }
+
+        Collection<VirtualFile> changedFiles = snapshot != null ? tracker.getChangedFiles(snapshot.modificationCount) : null;
+
+        Snapshot next = new Snapshot(modificationCount);
+        if(snapshot == null || changedFiles == null) {
+            next.collectAll(project);
+        } else {
+            next.collectChanged(project, snapshot, changedFiles);
+        }
+
+        return this.snapshot = next;
+    }
+
+    /**
+     * Same as the indexer provides, but on the current file content
+     */
+    @NotNull
+    private static Collection<ServiceSerializable> getServicesInFile(@NotNull Project project, @NotNull VirtualFile virtualFile) {
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+        if(psiFile == null || !Symfony2ProjectComponent.isEnabledForIndex(project) || !ServicesDefinitionStubIndex.isValidForIndex(virtualFile, psiFile)) {
+            return Collections.emptyList();
+        }
+
+        return ServiceContainerUtil.getServicesInFile(psiFile);
+    }
+
+    /**
+     * Never changed after creation; lists of unchanged services are shared with the previous snapshot
+     */
+    private static class Snapshot {
+        private final long modificationCount;
+
+        @NotNull
+        private final Map<VirtualFile, Collection<ServiceSerializable>> files = new HashMap<>();
+
+        @NotNull
+        private final Map<String, List<ServiceSerializable>> services = new HashMap<>();
+
+        Snapshot(long modificationCount) {
+            this.modificationCount = modificationCount;
+        }
+
+        /**
+         * Visit of all index keys with their values
+         */
+        void collectAll(@NotNull Project project) {
+            GlobalSearchScope scope = ServiceIndexUtil.getRestrictedFileTypesScope(project);
+            FileBasedIndex index = FileBasedIndex.getInstance();
+
+            for (String key : getIndexKeys(project)) {
+                List<ServiceSerializable> values = new ArrayList<>();
+
+                index.processValues(ServicesDefinitionStubIndex.KEY, key, null, (virtualFile, service) -> {
+                    files.computeIfAbsent(virtualFile, f -> new ArrayList<>()).add(service);
+                    values.add(service);
+                    return true;
+                }, scope);
+
+                services.put(key, values);
+            }
+        }
+
+        /**
+         * Only services of the changed files are replaced; also added files redefining known service ids are
+         * part of them. A file is read on its current content, as values of a single file can not be queried
+         * from the index without visiting every key.
+         */
+        void collectChanged(@NotNull Project project, @NotNull Snapshot previous, @NotNull Collection<VirtualFile> changedFiles) {
+            files.putAll(previous.files);
+            services.putAll(previous.services);
+
+            // copy on write: lists of the previous snapshot are shared
+            Set<String> copiedKeys = new HashSet<>();
+
+            for (VirtualFile virtualFile : changedFiles) {
+                Collection<ServiceSerializable> removed = files.remove(virtualFile);
+                if(removed != null) {
+                    for (ServiceSerializable service : removed) {
+                        getServices(service.getId().toLowerCase(), copiedKeys).removeIf(s -> s == service);
+                    }
+                }
+
+                if(!virtualFile.isValid()) {
+                    continue;
+                }
+
+                Collection<ServiceSerializable> added = getServicesInFile(project, virtualFile);
+                if(added.isEmpty()) {
+                    continue;
+                }
+
+                files.put(virtualFile, added);
+                for (ServiceSerializable service : added) {
+                    getServices(service.getId().toLowerCase(), copiedKeys).add(service);
+                }
+            }
+
+            // a removed service must not stay as a "fake" empty one
+            for (String key : copiedKeys) {
+                if(services.get(key).isEmpty()) {
+                    services.remove(key);
+                }
+            }
+        }
+
+        @NotNull
+        private List<ServiceSerializable> getServices(@NotNull String key, @NotNull Set<String> copiedKeys) {
+            if(copiedKeys.add(key)) {
+                services.put(key, new ArrayList<>(services.getOrDefault(key, Collections.emptyList())));
+            }
+
+            return services.get(key);
+        }
+    }
+}
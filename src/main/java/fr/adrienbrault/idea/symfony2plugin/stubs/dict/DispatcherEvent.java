@@ -1,7 +1,6 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.dict;
 
 import org.apache.commons.lang.builder.HashCodeBuilder;
-import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Serializable;
@@ -21,7 +20,7 @@ public class DispatcherEvent implements Serializable {
     public DispatcherEvent() {
     }
 
-    public DispatcherEvent(@NotNull String fqn, @Nullable String instance) {
+    public DispatcherEvent(@Nullable String fqn, @Nullable String instance) {
         this.fqn = fqn;
         this.instance = instance;
     }
@@ -0,0 +1,65 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.dict;
+
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Subscriber of an event inside "EventSubscriberInterface::getSubscribedEvents"
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class SubscribedEvent {
+
+    @NotNull
+    private final String className;
+
+    @Nullable
+    private final String methodName;
+
+    private final int priority;
+
+    public SubscribedEvent(@NotNull String className, @Nullable String methodName, int priority) {
+        this.className = className;
+        this.methodName = methodName;
+        this.priority = priority;
+    }
+
+    /**
+     * Subscriber class without leading backslash
+     */
+    @NotNull
+    public String getClassName() {
+        return className;
+    }
+
+    @Nullable
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+            .append(this.className)
+            .append(this.methodName)
+            .append(this.priority)
+            .toHashCode()
+        ;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SubscribedEvent &&
+            Objects.equals(((SubscribedEvent) obj).className, this.className) &&
+            Objects.equals(((SubscribedEvent) obj).methodName, this.methodName) &&
+            ((SubscribedEvent) obj).priority == this.priority
+        ;
+    }
+}
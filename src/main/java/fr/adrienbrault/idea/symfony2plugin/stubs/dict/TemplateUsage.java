@@ -4,9 +4,7 @@ import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Objects;
+import java.util.*;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
@@ -18,11 +16,20 @@ public class TemplateUsage implements Serializable {
     @NotNull
     private Collection<String> scopes = new HashSet<>();
 
+    @NotNull
+    private Map<String, TemplateVariable> variables = new HashMap<>();
+
     public TemplateUsage(@NotNull String template, @NotNull Collection<String> scopes) {
         this.template = template;
         this.scopes = scopes;
     }
 
+    public TemplateUsage(@NotNull String template, @NotNull Collection<String> scopes, @NotNull Map<String, TemplateVariable> variables) {
+        this.template = template;
+        this.scopes = scopes;
+        this.variables = variables;
+    }
+
     @NotNull
     public String getTemplate() {
         return template;
@@ -33,11 +40,20 @@ public class TemplateUsage implements Serializable {
         return scopes;
     }
 
+    /**
+     * Variables of all render calls and "@Template" return arrays of this template inside the file
+     */
+    @NotNull
+    public Map<String, TemplateVariable> getVariables() {
+        return variables;
+    }
+
     @Override
     public int hashCode() {
         return new HashCodeBuilder()
             .append(this.template)
             .append(new HashSet<>(this.scopes))
+            .append(this.variables)
             .toHashCode()
         ;
     }
@@ -46,7 +62,8 @@ public class TemplateUsage implements Serializable {
     public boolean equals(Object obj) {
         return obj instanceof TemplateUsage &&
             Objects.equals(((TemplateUsage) obj).getTemplate(), this.template) &&
-            Objects.equals(new HashSet<>(((TemplateUsage) obj).getScopes()), new HashSet<>(this.scopes))
+            Objects.equals(new HashSet<>(((TemplateUsage) obj).getScopes()), new HashSet<>(this.scopes)) &&
+            Objects.equals(((TemplateUsage) obj).getVariables(), this.variables)
         ;
     }
 }
@@ -0,0 +1,62 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.dict;
+
+import com.intellij.openapi.util.TextRange;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Variable which is given to a template: "$this->render('foo.html.twig', ['foo' => $foo])"
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TemplateVariable implements Serializable {
+
+    @NotNull
+    private final Set<String> types;
+
+    @Nullable
+    private final TextRange textRange;
+
+    public TemplateVariable(@NotNull Set<String> types, @Nullable TextRange textRange) {
+        this.types = types;
+        this.textRange = textRange;
+    }
+
+    /**
+     * Local php type signatures of the value; resolve them via PhpIndex
+     */
+    @NotNull
+    public Set<String> getTypes() {
+        return types;
+    }
+
+    /**
+     * Value expression inside the php file; "null" if the variable has no value: "$vars['foo'];"
+     */
+    @Nullable
+    public TextRange getTextRange() {
+        return textRange;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+            .append(this.types)
+            .append(this.textRange)
+            .toHashCode()
+        ;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TemplateVariable &&
+            Objects.equals(((TemplateVariable) obj).types, this.types) &&
+            Objects.equals(((TemplateVariable) obj).textRange, this.textRange)
+        ;
+    }
+}
@@ -0,0 +1,56 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.dict;
+
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * Locale of a translation file and the text offset of one of its keys
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationKeyLocation {
+
+    @NotNull
+    private final String locale;
+
+    private final int offset;
+
+    public TranslationKeyLocation(@NotNull String locale, int offset) {
+        this.locale = locale;
+        this.offset = offset;
+    }
+
+    /**
+     * "messages.de.yml" => "de"
+     */
+    @NotNull
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * Start of the key: yaml key, xliff "<source>" tag or "resname" value; "-1" if unknown
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+            .append(this.locale)
+            .append(this.offset)
+            .toHashCode()
+        ;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TranslationKeyLocation &&
+            Objects.equals(((TranslationKeyLocation) obj).locale, this.locale) &&
+            ((TranslationKeyLocation) obj).offset == this.offset
+        ;
+    }
+}
@@ -0,0 +1,92 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.dict;
+
+import com.intellij.openapi.util.TextRange;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Inclusion of a template inside a Twig file with the variables which are given to it
+ *
+ * {% include 'template.html' with {'foo': bar} only %}
+ * {{ include('template.html.twig', {'foo': bar}, with_context = false) }}
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigIncludeSite implements Serializable {
+
+    @NotNull
+    private final String type;
+
+    private final boolean only;
+
+    @NotNull
+    private final Map<String, String> variables;
+
+    @NotNull
+    private final TextRange textRange;
+
+    /**
+     * @param type name of TemplateInclude.TYPE
+     * @param only context of the including template is not given to the included one
+     * @param variables variable name in the included template to the expression in the including template
+     * @param textRange range of the include tag or function
+     */
+    public TwigIncludeSite(@NotNull String type, boolean only, @NotNull Map<String, String> variables, @NotNull TextRange textRange) {
+        this.type = type;
+        this.only = only;
+        this.variables = variables;
+        this.textRange = textRange;
+    }
+
+    @NotNull
+    public String getType() {
+        return type;
+    }
+
+    public boolean isOnly() {
+        return only;
+    }
+
+    /**
+     * {'foo': bar} => "foo" => "bar"
+     */
+    @NotNull
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    @NotNull
+    public TextRange getTextRange() {
+        return textRange;
+    }
+
+    /**
+     * No variable of the including file reaches the included template
+     */
+    public boolean isWithoutVariables() {
+        return only && variables.isEmpty();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+            .append(this.type)
+            .append(this.only)
+            .append(this.variables)
+            .append(this.textRange)
+            .toHashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TwigIncludeSite &&
+            Objects.equals(((TwigIncludeSite) obj).getType(), this.type) &&
+            ((TwigIncludeSite) obj).isOnly() == this.only &&
+            Objects.equals(((TwigIncludeSite) obj).getVariables(), this.variables) &&
+            Objects.equals(((TwigIncludeSite) obj).getTextRange(), this.textRange);
+    }
+}
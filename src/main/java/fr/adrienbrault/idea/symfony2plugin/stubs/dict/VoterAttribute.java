@@ -0,0 +1,58 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.dict;
+
+import com.intellij.openapi.util.TextRange;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Security attribute or role of a file with the text ranges of its declarations
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class VoterAttribute {
+
+    @Nullable
+    private final String className;
+
+    @NotNull
+    private final Collection<TextRange> textRanges;
+
+    public VoterAttribute(@Nullable String className, @NotNull Collection<TextRange> textRanges) {
+        this.className = className;
+        this.textRanges = textRanges;
+    }
+
+    /**
+     * Voter class without leading backslash; "null" for security configuration files
+     */
+    @Nullable
+    public String getClassName() {
+        return className;
+    }
+
+    @NotNull
+    public Collection<TextRange> getTextRanges() {
+        return textRanges;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+            .append(this.className)
+            .append(this.textRanges)
+            .toHashCode()
+        ;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof VoterAttribute &&
+            Objects.equals(((VoterAttribute) obj).className, this.className) &&
+            Objects.equals(((VoterAttribute) obj).textRanges, this.textRanges)
+        ;
+    }
+}
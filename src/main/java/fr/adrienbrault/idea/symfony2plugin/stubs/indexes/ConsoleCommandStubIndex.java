@@ -0,0 +1,214 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
+
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.php.lang.psi.PhpFile;
+import com.jetbrains.php.lang.psi.elements.*;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.util.ServiceContainerUtil;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.visitor.ServiceConsumer;
+import fr.adrienbrault.idea.symfony2plugin.dic.tags.ServiceTagInterface;
+import fr.adrienbrault.idea.symfony2plugin.dic.tags.xml.XmlServiceTag;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
+import fr.adrienbrault.idea.symfony2plugin.util.yaml.YamlHelper;
+import gnu.trove.THashMap;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.yaml.YAMLFileType;
+import org.jetbrains.yaml.psi.YAMLFile;
+import org.jetbrains.yaml.psi.YAMLKeyValue;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Console command name to its class, so command lookups dont need to visit any "Command" class
+ *
+ * PHP:
+ * protected static $defaultName = 'app:foo';
+ * $this->setName('app:foo') inside "configure"
+ *
+ * Container:
+ * - { name: console.command, command: 'app:foo' }
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class ConsoleCommandStubIndex extends FileBasedIndexExtension<String, String> {
+
+    public static final ID<String, String> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.console_command");
+
+    private static int MAX_FILE_BYTE_SIZE = 2097152;
+
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file -> {
+        FileType fileType = file.getFileType();
+        return fileType == PhpFileType.INSTANCE || fileType == XmlFileType.INSTANCE || fileType == YAMLFileType.YML;
+    };
+
+    @NotNull
+    @Override
+    public ID<String, String> getName() {
+        return KEY;
+    }
+
+    /**
+     * Changes with any php, yaml or xml file; so also with a changed parent of a command class
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, String, FileContent> getIndexer() {
+        return inputData -> {
+            Map<String, String> map = new THashMap<>();
+
+            PsiFile psiFile = inputData.getPsiFile();
+            if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
+                return map;
+            }
+
+            if(psiFile instanceof PhpFile) {
+                if(inputData.getFile().getLength() < MAX_FILE_BYTE_SIZE) {
+                    for (PhpClass phpClass : PsiTreeUtil.findChildrenOfType(psiFile, PhpClass.class)) {
+                        visitCommands(phpClass, name -> map.put(name, StringUtils.stripStart(phpClass.getFQN(), "\\")));
+                    }
+                }
+            } else if(ServicesDefinitionStubIndex.isValidForIndex(inputData, psiFile)) {
+                if(psiFile instanceof YAMLFile) {
+                    ServiceContainerUtil.visitFile((YAMLFile) psiFile, serviceConsumer -> visitTaggedCommands(serviceConsumer, map));
+                } else if(psiFile instanceof XmlFile) {
+                    ServiceContainerUtil.visitFile((XmlFile) psiFile, serviceConsumer -> visitTaggedCommands(serviceConsumer, map));
+                }
+            }
+
+            return map;
+        };
+    }
+
+    /**
+     * Only the class itself is available while indexing; so every class with a parent is a possible command,
+     * as long as it defines a command name. Its command parent is checked on lookup in SymfonyCommandUtil
+     */
+    private static void visitCommands(@NotNull PhpClass phpClass, @NotNull Consumer<String> consumer) {
+        if(phpClass.isInterface() || phpClass.isTrait() || phpClass.getSuperFQN() == null || PhpElementsUtil.isTestClassName(phpClass)) {
+            return;
+        }
+
+        // Symfony 3.4: protected static $defaultName = 'app:foo';
+        Field defaultName = phpClass.findOwnFieldByName("defaultName", false);
+        if(defaultName != null) {
+            String name = PhpElementsUtil.getStringValueInClass(phpClass, defaultName.getDefaultValue());
+            if(name != null) {
+                consumer.accept(name);
+            }
+        }
+
+        Method method = phpClass.findOwnMethodByName("configure");
+        if(method == null) {
+            return;
+        }
+
+        for (MethodReference methodReference : PsiTreeUtil.findChildrenOfType(method, MethodReference.class)) {
+            if(!"setName".equals(methodReference.getName())) {
+                continue;
+            }
+
+            PsiElement[] parameters = methodReference.getParameters();
+            if(parameters.length > 0) {
+                String name = PhpElementsUtil.getStringValueInClass(phpClass, parameters[0]);
+                if(name != null) {
+                    consumer.accept(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * foo:
+     *   class: Foo\Command
+     *   tags:
+     *     - { name: console.command, command: 'app:foo' }
+     */
+    private static void visitTaggedCommands(@NotNull ServiceConsumer serviceConsumer, @NotNull Map<String, String> map) {
+        String className = StringUtils.stripStart(serviceConsumer.attributes().getString("class"), "\\");
+        if(className == null) {
+            // Symfony 3.3: service id as class name
+            String serviceId = StringUtils.stripStart(serviceConsumer.getServiceId(), "\\");
+            if(!YamlHelper.isClassServiceId(serviceId)) {
+                return;
+            }
+
+            className = serviceId;
+        }
+
+        if(StringUtils.isBlank(className)) {
+            return;
+        }
+
+        String finalClassName = className;
+        Consumer<ServiceTagInterface> tagConsumer = serviceTag -> {
+            if(!"console.command".equals(serviceTag.getName())) {
+                return;
+            }
+
+            String command = serviceTag.getAttribute("command");
+            if(StringUtils.isNotBlank(command)) {
+                map.put(command, finalClassName);
+            }
+        };
+
+        PsiElement psiElement = serviceConsumer.getPsiElement();
+        if(psiElement instanceof YAMLKeyValue) {
+            YamlHelper.visitTagsOnServiceDefinition((YAMLKeyValue) psiElement, tagConsumer::accept);
+        } else if(psiElement instanceof XmlTag) {
+            for (XmlTag tag : ((XmlTag) psiElement).findSubTags("tag")) {
+                ServiceTagInterface serviceTag = XmlServiceTag.create(serviceConsumer.getServiceId(), tag);
+                if(serviceTag != null) {
+                    tagConsumer.accept(serviceTag);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<String> getValueExternalizer() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return INPUT_FILTER;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -17,6 +18,7 @@ import com.jetbrains.php.lang.psi.elements.*;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.dic.container.dict.ContainerBuilderCall;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.ObjectStreamDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
 import gnu.trove.THashMap;
 import org.apache.commons.lang.StringUtils;
@@ -38,6 +40,8 @@ public class ContainerBuilderStubIndex extends FileBasedIndexExtension<String, C
 
     private static int MAX_FILE_BYTE_SIZE = 2621440;
 
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = virtualFile -> virtualFile.getFileType() == PhpFileType.INSTANCE;
+
     private static final Set<String> SET = new HashSet<String>() {{
         add("Symfony\\Component\\DependencyInjection\\Container");
         add("Symfony\\Component\\DependencyInjection\\ContainerBuilder");
@@ -52,6 +56,14 @@ public class ContainerBuilderStubIndex extends FileBasedIndexExtension<String, C
         add("register");
     }};
 
+    /**
+     * Changes with any php file; callers must compare the values they read to know about a real change
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
     @NotNull
     @Override
     public DataIndexer<String, ContainerBuilderCall, FileContent> getIndexer() {
@@ -96,7 +108,7 @@ public class ContainerBuilderStubIndex extends FileBasedIndexExtension<String, C
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return virtualFile -> virtualFile.getFileType() == PhpFileType.INSTANCE;
+        return INPUT_FILTER;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
 import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.util.indexing.*;
@@ -9,6 +10,7 @@ import com.intellij.util.io.EnumeratorStringDescriptor;
 import com.intellij.util.io.KeyDescriptor;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.config.xml.XmlHelper;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.util.yaml.YamlHelper;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.yaml.YAMLFileType;
@@ -22,12 +24,23 @@ public class ContainerParameterStubIndex extends FileBasedIndexExtension<String,
     public static final ID<String, String> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.parameter2");
     private final KeyDescriptor<String> myKeyDescriptor = new EnumeratorStringDescriptor();
 
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file ->
+        file.getFileType() == XmlFileType.INSTANCE || file.getFileType() == YAMLFileType.YML;
+
     @NotNull
     @Override
     public ID<String, String> getName() {
         return KEY;
     }
 
+    /**
+     * Changes with any yaml or xml file; also provides the changed files
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
     @NotNull
     @Override
     public DataIndexer<String, String, FileContent> getIndexer() {
@@ -84,7 +97,7 @@ public class ContainerParameterStubIndex extends FileBasedIndexExtension<String,
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return file -> file.getFileType() == XmlFileType.INSTANCE || file.getFileType() == YAMLFileType.YML;
+        return INPUT_FILTER;
     }
 
     @Override
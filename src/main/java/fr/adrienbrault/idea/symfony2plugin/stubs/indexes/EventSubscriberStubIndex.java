@@ -0,0 +1,236 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.php.lang.parser.PhpElementTypes;
+import com.jetbrains.php.lang.psi.PhpFile;
+import com.jetbrains.php.lang.psi.elements.*;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.SubscribedEvent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.SubscribedEventDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
+import gnu.trove.THashMap;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events of "EventSubscriberInterface::getSubscribedEvents" with their subscriber method and priority
+ *
+ * Constants of other classes can not be resolved while indexing, their event name key is the
+ * constant signature "#K#C\Foo\Bar.BAR" instead; see "isSignatureKey". Every subscriber class of a file
+ * provides its own event for the same key. Only classes with their own method are indexed; subclasses inheriting it
+ * are resolved on lookup, see EventDispatcherSubscriberUtil.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class EventSubscriberStubIndex extends FileBasedIndexExtension<String, Collection<SubscribedEvent>> {
+
+    public static final ID<String, Collection<SubscribedEvent>> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.event_subscriber");
+
+    private static int MAX_FILE_BYTE_SIZE = 2097152;
+
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file -> file.getFileType() == PhpFileType.INSTANCE;
+
+    @NotNull
+    @Override
+    public ID<String, Collection<SubscribedEvent>> getName() {
+        return KEY;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Collection<SubscribedEvent>, FileContent> getIndexer() {
+        return inputData -> {
+            Map<String, Collection<SubscribedEvent>> map = new THashMap<>();
+
+            PsiFile psiFile = inputData.getPsiFile();
+            if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
+                return map;
+            }
+
+            if(!(psiFile instanceof PhpFile) || inputData.getFile().getLength() > MAX_FILE_BYTE_SIZE) {
+                return map;
+            }
+
+            for (PhpClass phpClass : PsiTreeUtil.findChildrenOfType(psiFile, PhpClass.class)) {
+                if(phpClass.isInterface() || PhpElementsUtil.isTestClassName(phpClass)) {
+                    continue;
+                }
+
+                Method method = phpClass.findOwnMethodByName("getSubscribedEvents");
+                if(method == null) {
+                    continue;
+                }
+
+                PhpReturn phpReturn = PsiTreeUtil.findChildOfType(method, PhpReturn.class);
+                if(phpReturn != null) {
+                    visitSubscribedEvents(phpClass, phpReturn, map);
+                }
+            }
+
+            return map;
+        };
+    }
+
+    /**
+     * Changes with any php file; so also with a changed parent of a subscriber or a changed event name constant
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
+    /**
+     * Event names of "#K#C\Foo\Bar.BAR" need to be resolved via PhpIndex
+     */
+    public static boolean isSignatureKey(@NotNull String key) {
+        return key.startsWith("#");
+    }
+
+    private static void visitSubscribedEvents(@NotNull PhpClass phpClass, @NotNull PhpReturn phpReturn, @NotNull Map<String, Collection<SubscribedEvent>> map) {
+        PhpPsiElement array = phpReturn.getFirstPsiChild();
+        if(!(array instanceof ArrayCreationExpression)) {
+            return;
+        }
+
+        String className = phpClass.getPresentableFQN();
+
+        for (ArrayHashElement arrayHashElement : ((ArrayCreationExpression) array).getHashElements()) {
+            PsiElement arrayKey = arrayHashElement.getKey();
+
+            String key = null;
+            if(arrayKey instanceof StringLiteralExpression) {
+                // ['doh' => 'method']
+                key = ((StringLiteralExpression) arrayKey).getContents();
+            } else if(arrayKey instanceof PhpReference) {
+                // [self::BAR => 'method'], [FOO::BAR => 'method']
+                key = PhpElementsUtil.getStringValueInClass(phpClass, arrayKey);
+                if(key == null) {
+                    key = ((PhpReference) arrayKey).getSignature();
+                }
+            }
+
+            if(StringUtils.isBlank(key)) {
+                continue;
+            }
+
+            // first event of a class wins; other subscribers of the same file are kept
+            Collection<SubscribedEvent> events = map.computeIfAbsent(key, k -> new ArrayList<>());
+            if(events.stream().noneMatch(event -> className.equals(event.getClassName()))) {
+                events.add(createSubscribedEvent(phpClass, className, arrayHashElement.getValue()));
+            }
+        }
+    }
+
+    /**
+     * 'pre.foo' => 'foo'
+     * 'pre.foo1' => ['onStoreOrder', 0]
+     * 'pre.foo2' => [['onStoreOrder', 0], ['onStoreOrder2', 10]]
+     *
+     * @TODO: support multiple method names, currently we only use method name if type hint, so first item helps for now
+     */
+    @NotNull
+    private static SubscribedEvent createSubscribedEvent(@NotNull PhpClass phpClass, @NotNull String className, @Nullable PhpPsiElement value) {
+        if(!(value instanceof ArrayCreationExpression)) {
+            return new SubscribedEvent(className, PhpElementsUtil.getStringValueInClass(phpClass, value), 0);
+        }
+
+        List<PhpPsiElement> arrayValues = getArrayValues(value);
+        if(arrayValues.isEmpty()) {
+            return new SubscribedEvent(className, null, 0);
+        }
+
+        PhpPsiElement first = arrayValues.get(0);
+        if(first instanceof ArrayCreationExpression) {
+            arrayValues = getArrayValues(first);
+            if(arrayValues.isEmpty()) {
+                return new SubscribedEvent(className, null, 0);
+            }
+
+            first = arrayValues.get(0);
+        }
+
+        if(!(first instanceof StringLiteralExpression)) {
+            return new SubscribedEvent(className, null, 0);
+        }
+
+        return new SubscribedEvent(
+            className,
+            PhpElementsUtil.getStringValueInClass(phpClass, first),
+            arrayValues.size() > 1 ? getPriority(arrayValues.get(1)) : 0
+        );
+    }
+
+    @NotNull
+    private static List<PhpPsiElement> getArrayValues(@NotNull PhpPsiElement arrayCreationExpression) {
+        List<PhpPsiElement> values = new ArrayList<>();
+
+        for (PsiElement child = arrayCreationExpression.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if(child instanceof PhpPsiElement && child.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE) {
+                PhpPsiElement firstPsiChild = ((PhpPsiElement) child).getFirstPsiChild();
+                if(firstPsiChild != null) {
+                    values.add(firstPsiChild);
+                }
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Only plain numbers "10" or "-10"; everything else is the default priority
+     */
+    private static int getPriority(@Nullable PsiElement psiElement) {
+        if(psiElement == null) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(psiElement.getText().replaceAll("\\s+", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<Collection<SubscribedEvent>> getValueExternalizer() {
+        return SubscribedEventDataExternalizer.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return INPUT_FILTER;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+}
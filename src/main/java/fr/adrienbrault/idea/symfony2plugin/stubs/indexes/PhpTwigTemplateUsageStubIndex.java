@@ -1,5 +1,7 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
@@ -18,8 +20,12 @@ import com.jetbrains.php.lang.psi.stubs.indexes.PhpConstantNameIndex;
 import de.espend.idea.php.annotation.util.AnnotationUtil;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateUsage;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.ObjectStreamDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateVariable;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.TemplateUsageDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.PhpMethodVariableResolveUtil;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
 import fr.adrienbrault.idea.symfony2plugin.util.AnnotationBackportUtil;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -34,7 +40,15 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
     public static final ID<String, TemplateUsage> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.twig_php_usage");
     private final KeyDescriptor<String> myKeyDescriptor = new EnumeratorStringDescriptor();
     private static int MAX_FILE_BYTE_SIZE = 2097152;
-    private static ObjectStreamDataExternalizer<TemplateUsage> EXTERNALIZER = new ObjectStreamDataExternalizer<>();
+
+    /**
+     * Index size budget for template variables; signatures of long call chains are skipped, they are rarely resolvable
+     */
+    private static final int MAX_VARIABLES = 64;
+    private static final int MAX_VARIABLE_TYPES = 8;
+    private static final int MAX_TYPE_LENGTH = 255;
+
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = PhpConstantNameIndex.PHP_INPUT_FILTER;
 
     public static Set<String> RENDER_METHODS = new HashSet<String>() {{
         add("render");
@@ -65,6 +79,7 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
                 }
 
                 Map<String, Set<String>> items = new HashMap<>();
+                Map<String, Map<String, TemplateVariable>> variables = new HashMap<>();
 
                 psiFile.accept(new PsiRecursiveElementWalkingVisitor() {
 
@@ -100,6 +115,11 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
                         }
 
                         addTemplateWithScope(contents, StringUtils.stripStart(parentOfType.getFQN(), "\\"));
+
+                        // $this->render('foo.html.twig', ['foo' => $foo])
+                        if(parameters.length > 1) {
+                            addTemplateVariables(contents, PhpMethodVariableResolveUtil.collectTemplateArrayVariables(parentOfType, parameters[1]));
+                        }
                     }
 
                     /**
@@ -128,6 +148,11 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
                             Method methodScope = AnnotationBackportUtil.getMethodScope(phpDocTag);
                             if(methodScope != null) {
                                 addTemplateWithScope(template, StringUtils.stripStart(methodScope.getFQN(), "\\"));
+
+                                // return ['foo' => $foo]
+                                for (PsiElement templateArray : PhpMethodVariableResolveUtil.collectReturnedTemplateArrays(methodScope)) {
+                                    addTemplateVariables(template, PhpMethodVariableResolveUtil.collectTemplateArrayVariables(methodScope, templateArray));
+                                }
                             }
                         }
                     }
@@ -140,12 +165,24 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
 
                         items.get(s).add(fqn);
                     }
+
+                    private void addTemplateVariables(@NotNull String contents, @NotNull Map<String, PsiVariable> psiVariables) {
+                        Map<String, TemplateVariable> templateVariables = variables.computeIfAbsent(TwigUtil.normalizeTemplateName(contents), s -> new HashMap<>());
+
+                        for (Map.Entry<String, PsiVariable> entry : psiVariables.entrySet()) {
+                            if(templateVariables.size() >= MAX_VARIABLES) {
+                                return;
+                            }
+
+                            templateVariables.put(entry.getKey(), createTemplateVariable(entry.getValue()));
+                        }
+                    }
                 });
 
                 Map<String, TemplateUsage> map = new HashMap<>();
 
                 items.forEach(
-                    (key, value) -> map.put(key, new TemplateUsage(key, value))
+                    (key, value) -> map.put(key, new TemplateUsage(key, value, variables.getOrDefault(key, Collections.emptyMap())))
                 );
 
                 return map;
@@ -153,6 +190,31 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
         };
     }
 
+    @NotNull
+    private static TemplateVariable createTemplateVariable(@NotNull PsiVariable psiVariable) {
+        Set<String> types = new HashSet<>();
+        for (String type : psiVariable.getTypes()) {
+            if(types.size() >= MAX_VARIABLE_TYPES) {
+                break;
+            }
+
+            if(type.length() <= MAX_TYPE_LENGTH) {
+                types.add(type);
+            }
+        }
+
+        PsiElement element = psiVariable.getElement();
+        return new TemplateVariable(types, element != null ? element.getTextRange() : null);
+    }
+
+    /**
+     * Changes with any php file; template usages can be anywhere
+     */
+    @NotNull
+    public static ModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
     @NotNull
     @Override
     public KeyDescriptor<String> getKeyDescriptor() {
@@ -162,13 +224,13 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
     @NotNull
     @Override
     public DataExternalizer<TemplateUsage> getValueExternalizer() {
-        return EXTERNALIZER;
+        return TemplateUsageDataExternalizer.INSTANCE;
     }
 
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return PhpConstantNameIndex.PHP_INPUT_FILTER;
+        return INPUT_FILTER;
     }
 
 
@@ -179,7 +241,7 @@ public class PhpTwigTemplateUsageStubIndex extends FileBasedIndexExtension<Strin
 
     @Override
     public int getVersion() {
-        return 3;
+        return 5;
     }
 
     public static boolean isValidForIndex(FileContent inputData) {
@@ -0,0 +1,85 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
+
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.StubIndexedRoute;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.StringSetDataExternalizer;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.yaml.YAMLFileType;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverse of RoutesStubIndex: lower case controller to all route names of a file using it
+ *
+ * "Foo\Bar::fooAction", "FooBundle:Bar:foo", "foo.bar_controller:fooAction"
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class RouteControllerStubIndex extends FileBasedIndexExtension<String, Set<String>> {
+
+    public static final ID<String, Set<String>> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.route_controller");
+    private final KeyDescriptor<String> myKeyDescriptor = new EnumeratorStringDescriptor();
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Set<String>, FileContent> getIndexer() {
+        return inputData -> {
+            Map<String, Set<String>> map = new THashMap<>();
+
+            for (StubIndexedRoute route : RoutesStubIndex.getIndexedRoutes(inputData).values()) {
+                String controller = route.getController();
+                if(controller != null) {
+                    map.computeIfAbsent(controller.toLowerCase(), s -> new HashSet<>()).add(route.getName());
+                }
+            }
+
+            return map;
+        };
+    }
+
+    @NotNull
+    @Override
+    public ID<String, Set<String>> getName() {
+        return KEY;
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return this.myKeyDescriptor;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<Set<String>> getValueExternalizer() {
+        return StringSetDataExternalizer.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return file -> {
+            FileType fileType = file.getFileType();
+            return fileType == YAMLFileType.YML || fileType == XmlFileType.INSTANCE || fileType == PhpFileType.INSTANCE;
+        };
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+}
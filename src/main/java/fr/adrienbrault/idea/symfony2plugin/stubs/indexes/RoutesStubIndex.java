@@ -2,6 +2,7 @@ package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
 import com.intellij.ide.highlighter.XmlFileType;
 import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
@@ -16,8 +17,9 @@ import com.jetbrains.php.lang.psi.PhpFile;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.routing.RouteHelper;
 import fr.adrienbrault.idea.symfony2plugin.stubs.dict.StubIndexedRoute;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.ObjectStreamDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.StubIndexedRouteDataExternalizer;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.visitor.AnnotationRouteElementWalkingVisitor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.yaml.YAMLFileType;
@@ -33,7 +35,11 @@ public class RoutesStubIndex extends FileBasedIndexExtension<String, StubIndexed
 
     public static final ID<String, StubIndexedRoute> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.routes_object");
     private final KeyDescriptor<String> myKeyDescriptor = new EnumeratorStringDescriptor();
-    private static ObjectStreamDataExternalizer<StubIndexedRoute> EXTERNALIZER = new ObjectStreamDataExternalizer<>();
+
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file -> {
+        FileType fileType = file.getFileType();
+        return fileType == YAMLFileType.YML || fileType == XmlFileType.INSTANCE || fileType == PhpFileType.INSTANCE;
+    };
 
     @NotNull
     @Override
@@ -44,45 +50,66 @@ public class RoutesStubIndex extends FileBasedIndexExtension<String, StubIndexed
     @NotNull
     @Override
     public DataIndexer<String, StubIndexedRoute, FileContent> getIndexer() {
-        return inputData -> {
-            Map<String, StubIndexedRoute> map = new THashMap<>();
+        return RoutesStubIndex::getIndexedRoutes;
+    }
 
-            PsiFile psiFile = inputData.getPsiFile();
-            if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
-                return map;
-            }
+    /**
+     * Changes only if a file of the routing index was changed; not on every psi change. Php files without routes are
+     * also counted, so see RouteDefinitionFileCache for changes of the routes
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
 
-            if(psiFile instanceof YAMLFile) {
-                if(!isValidForIndex(inputData, psiFile)) {
-                    return map;
-                }
+    /**
+     * All routes of a file which are valid for indexing; shared with RouteControllerStubIndex
+     */
+    @NotNull
+    public static Map<String, StubIndexedRoute> getIndexedRoutes(@NotNull FileContent inputData) {
+        return getIndexedRoutes(inputData.getFile(), inputData.getPsiFile());
+    }
 
-                YAMLDocument yamlDocument = PsiTreeUtil.getChildOfType(psiFile, YAMLDocument.class);
-                if(yamlDocument == null) {
-                    return map;
-                }
+    /**
+     * Same as the indexer provides, but on any psi file; so also on the current content of a changed file
+     */
+    @NotNull
+    public static Map<String, StubIndexedRoute> getIndexedRoutes(@NotNull VirtualFile virtualFile, @NotNull PsiFile psiFile) {
+        Map<String, StubIndexedRoute> map = new THashMap<>();
 
-                for(StubIndexedRoute indexedRoutes: RouteHelper.getYamlRouteDefinitions(yamlDocument)) {
-                    map.put(indexedRoutes.getName(), indexedRoutes);
-                }
+        if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
+            return map;
+        }
 
+        if(psiFile instanceof YAMLFile) {
+            if(!isValidForIndex(virtualFile, psiFile)) {
                 return map;
-            } else if(psiFile instanceof XmlFile) {
-                for(StubIndexedRoute indexedRoutes: RouteHelper.getXmlRouteDefinitions((XmlFile) psiFile)) {
-                    map.put(indexedRoutes.getName(), indexedRoutes);
-                }
-            } else if(psiFile instanceof PhpFile) {
-                // annotations: @Route()
-                if(!isValidForIndex(inputData, psiFile)) {
-                    return map;
-                }
-
-                psiFile.accept(new AnnotationRouteElementWalkingVisitor(map));
+            }
+
+            YAMLDocument yamlDocument = PsiTreeUtil.getChildOfType(psiFile, YAMLDocument.class);
+            if(yamlDocument == null) {
+                return map;
+            }
+
+            for(StubIndexedRoute indexedRoutes: RouteHelper.getYamlRouteDefinitions(yamlDocument)) {
+                map.put(indexedRoutes.getName(), indexedRoutes);
             }
 
             return map;
-        };
+        } else if(psiFile instanceof XmlFile) {
+            for(StubIndexedRoute indexedRoutes: RouteHelper.getXmlRouteDefinitions((XmlFile) psiFile)) {
+                map.put(indexedRoutes.getName(), indexedRoutes);
+            }
+        } else if(psiFile instanceof PhpFile) {
+            // annotations: @Route()
+            if(!isValidForIndex(virtualFile, psiFile)) {
+                return map;
+            }
+
+            psiFile.accept(new AnnotationRouteElementWalkingVisitor(map));
+        }
 
+        return map;
     }
 
     @NotNull
@@ -94,16 +121,13 @@ public class RoutesStubIndex extends FileBasedIndexExtension<String, StubIndexed
     @NotNull
     @Override
     public DataExternalizer<StubIndexedRoute> getValueExternalizer() {
-        return EXTERNALIZER;
+        return StubIndexedRouteDataExternalizer.INSTANCE;
     }
 
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return file -> {
-            FileType fileType = file.getFileType();
-            return fileType == YAMLFileType.YML || fileType == XmlFileType.INSTANCE || fileType == PhpFileType.INSTANCE;
-        };
+        return INPUT_FILTER;
     }
 
     @Override
@@ -113,23 +137,23 @@ public class RoutesStubIndex extends FileBasedIndexExtension<String, StubIndexed
 
     @Override
     public int getVersion() {
-        return 4;
+        return 5;
     }
 
-    private static boolean isValidForIndex(FileContent inputData, PsiFile psiFile) {
+    private static boolean isValidForIndex(@NotNull VirtualFile virtualFile, @NotNull PsiFile psiFile) {
 
         String fileName = psiFile.getName();
         if(fileName.startsWith(".") || fileName.endsWith("Test")) {
             return false;
         }
 
-        VirtualFile baseDir = inputData.getProject().getBaseDir();
+        VirtualFile baseDir = psiFile.getProject().getBaseDir();
         if(baseDir == null) {
             return false;
         }
 
         // is Test file in path name
-        String relativePath = VfsUtil.getRelativePath(inputData.getFile(), baseDir, '/');
+        String relativePath = VfsUtil.getRelativePath(virtualFile, baseDir, '/');
         if(relativePath != null && (relativePath.contains("/Test/") || relativePath.contains("/Fixtures/"))) {
             return false;
         }
@@ -1,7 +1,9 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
 import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.indexing.*;
 import com.intellij.util.io.DataExternalizer;
@@ -10,7 +12,8 @@ import com.intellij.util.io.KeyDescriptor;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.dic.container.ServiceSerializable;
 import fr.adrienbrault.idea.symfony2plugin.dic.container.util.ServiceContainerUtil;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.ObjectStreamDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.ServiceSerializableDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.yaml.YAMLFileType;
@@ -28,7 +31,9 @@ public class ServicesDefinitionStubIndex extends FileBasedIndexExtension<String,
 
     public static final ID<String, ServiceSerializable> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.service_definition");
     private final KeyDescriptor<String> myKeyDescriptor = new EnumeratorStringDescriptor();
-    private static ObjectStreamDataExternalizer<ServiceSerializable> EXTERNALIZER = new ObjectStreamDataExternalizer<>();
+
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file ->
+        file.getFileType() == XmlFileType.INSTANCE || file.getFileType() == YAMLFileType.YML;
 
     @NotNull
     @Override
@@ -57,6 +62,14 @@ public class ServicesDefinitionStubIndex extends FileBasedIndexExtension<String,
         return KEY;
     }
 
+    /**
+     * Changes with any service file; also provides the changed files, so caches can update only them
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
 
     @NotNull
     @Override
@@ -66,14 +79,13 @@ public class ServicesDefinitionStubIndex extends FileBasedIndexExtension<String,
 
     @NotNull
     public DataExternalizer<ServiceSerializable> getValueExternalizer() {
-        return EXTERNALIZER;
+        return ServiceSerializableDataExternalizer.INSTANCE;
     }
 
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return file ->
-            file.getFileType() == XmlFileType.INSTANCE || file.getFileType() == YAMLFileType.YML;
+        return INPUT_FILTER;
     }
 
     @Override
@@ -83,10 +95,14 @@ public class ServicesDefinitionStubIndex extends FileBasedIndexExtension<String,
 
     @Override
     public int getVersion() {
-        return 4;
+        return 5;
     }
 
     public static boolean isValidForIndex(FileContent inputData, PsiFile psiFile) {
+        return isValidForIndex(inputData.getFile(), psiFile);
+    }
+
+    public static boolean isValidForIndex(@NotNull VirtualFile virtualFile, @NotNull PsiFile psiFile) {
 
         String fileName = psiFile.getName();
         if(fileName.startsWith(".") || fileName.endsWith("Test")) {
@@ -94,14 +110,14 @@ public class ServicesDefinitionStubIndex extends FileBasedIndexExtension<String,
         }
 
         // container file need to be xml file, eg xsd filetypes are not valid
-        String extension = inputData.getFile().getExtension();
+        String extension = virtualFile.getExtension();
         if(extension == null || !(extension.equalsIgnoreCase("xml") || extension.equalsIgnoreCase("yml") || extension.equalsIgnoreCase("yaml"))) {
             return false;
         }
 
         // possible fixture or test file
         // to support also library paths, only filter them on project files
-        String relativePath = VfsUtil.getRelativePath(inputData.getFile(), psiFile.getProject().getBaseDir(), '/');
+        String relativePath = VfsUtil.getRelativePath(virtualFile, psiFile.getProject().getBaseDir(), '/');
         if(relativePath != null && (relativePath.contains("/Test/") || relativePath.contains("/Tests/") || relativePath.contains("/Fixture/") || relativePath.contains("/Fixtures/"))) {
             return false;
         }
@@ -109,13 +125,13 @@ public class ServicesDefinitionStubIndex extends FileBasedIndexExtension<String,
         // dont add configured service paths
         Collection<File> settingsServiceFiles = psiFile.getProject().getComponent(Symfony2ProjectComponent.class).getContainerFiles();
         for(File file: settingsServiceFiles) {
-            if(VfsUtil.isAncestor(VfsUtil.virtualToIoFile(inputData.getFile()), file, false)) {
+            if(VfsUtil.isAncestor(VfsUtil.virtualToIoFile(virtualFile), file, false)) {
                 return false;
             }
         }
 
         // dont index files larger then files; use 5 MB here
-        if(inputData.getFile().getLength() > MAX_FILE_BYTE_SIZE) {
+        if(virtualFile.getLength() > MAX_FILE_BYTE_SIZE) {
             return false;
         }
 
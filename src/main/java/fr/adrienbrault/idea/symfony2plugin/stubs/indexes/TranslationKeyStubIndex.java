@@ -0,0 +1,98 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
+
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TranslationKeyLocation;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.TranslationKeyLocationDataExternalizer;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.yaml.YAMLFileType;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Translation key with its domain as one key and the locale of the file with the offset of the key as value:
+ * "messages\0foo.bar" => "de", 120
+ *
+ * Allows keyed existence checks without loading all keys of a domain in every locale like TranslationStubIndex,
+ * and navigation to the key without visiting the translation file
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationKeyStubIndex extends FileBasedIndexExtension<String, TranslationKeyLocation> {
+    public static final ID<String, TranslationKeyLocation> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.translation_keys");
+
+    /**
+     * Domains are part of the file name, so they never contain it
+     */
+    private static final char SEPARATOR = '\0';
+
+    @NotNull
+    public static String createKey(@NotNull String domain, @NotNull String key) {
+        return domain + SEPARATOR + key;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, TranslationKeyLocation, FileContent> getIndexer() {
+        return inputData -> {
+            String locale = TranslationStubIndex.getLocale(inputData.getFileName());
+            if(locale == null) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, Map<String, Integer>> domainTranslations = TranslationStubIndex.getDomainTranslations(inputData);
+            if(domainTranslations.size() == 0) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, TranslationKeyLocation> map = new THashMap<>();
+
+            for (Map.Entry<String, Map<String, Integer>> entry : domainTranslations.entrySet()) {
+                for (Map.Entry<String, Integer> key : entry.getValue().entrySet()) {
+                    map.put(createKey(entry.getKey(), key.getKey()), new TranslationKeyLocation(locale, key.getValue()));
+                }
+            }
+
+            return map;
+        };
+    }
+
+    @NotNull
+    @Override
+    public ID<String, TranslationKeyLocation> getName() {
+        return KEY;
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<TranslationKeyLocation> getValueExternalizer() {
+        return TranslationKeyLocationDataExternalizer.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return file ->
+            file.getFileType() == YAMLFileType.YML || "xlf".equalsIgnoreCase(file.getExtension()) || "xliff".equalsIgnoreCase(file.getExtension());
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+}
@@ -1,5 +1,7 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.indexing.*;
@@ -8,6 +10,7 @@ import com.intellij.util.io.EnumeratorStringDescriptor;
 import com.intellij.util.io.KeyDescriptor;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.StringSetDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.translation.collector.YamlTranslationVisitor;
 import fr.adrienbrault.idea.symfony2plugin.translation.dict.TranslationUtil;
 import gnu.trove.THashMap;
@@ -29,127 +32,169 @@ public class TranslationStubIndex extends FileBasedIndexExtension<String, Set<St
     private static final StringSetDataExternalizer DATA_EXTERNALIZER = new StringSetDataExternalizer();
     private final KeyDescriptor<String> myKeyDescriptor = new EnumeratorStringDescriptor();
 
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file ->
+        file.getFileType() == YAMLFileType.YML || "xlf".equalsIgnoreCase(file.getExtension()) || "xliff".equalsIgnoreCase(file.getExtension());
+
     @NotNull
     @Override
     public DataIndexer<String, Set<String>, FileContent> getIndexer() {
+        return inputData -> {
+            Map<String, Set<String>> map = new THashMap<>();
 
-        return new DataIndexer<String, Set<String>, FileContent>() {
-            @NotNull
-            @Override
-            public Map<String, Set<String>> map(@NotNull FileContent inputData) {
-                if(!Symfony2ProjectComponent.isEnabledForIndex(inputData.getProject())) {
-                    return Collections.emptyMap();
-                }
-
-                String extension = inputData.getFile().getExtension();
-                if("xlf".equalsIgnoreCase(extension) || "xliff".equalsIgnoreCase(extension)) {
-                    return getXlfStringMap(inputData);
-                }
-
-                PsiFile psiFile = inputData.getPsiFile();
-                if(!(psiFile instanceof YAMLFile)) {
-                    return Collections.emptyMap();
-                }
-
-                // check physical file position
-                if (!isValidTranslationFile(inputData, psiFile)) {
-                    return Collections.emptyMap();
-                }
-
-                String domainName = this.getDomainName(inputData.getFileName());
-                if(domainName == null) {
-                    return Collections.emptyMap();
-                }
-
-                Set<String> translationKeySet = new HashSet<>();
-                YamlTranslationVisitor.collectFileTranslations((YAMLFile) psiFile, (keyName, yamlKeyValue) -> {
-                    translationKeySet.add(keyName);
-                    return true;
-                });
-
-                if(translationKeySet.size() == 0) {
-                    return Collections.emptyMap();
-                }
-
-                Map<String, Set<String>> map = new THashMap<>();
-
-                map.put(domainName, translationKeySet);
-
-                return map;
+            for (Map.Entry<String, Map<String, Integer>> entry : getDomainTranslations(inputData).entrySet()) {
+                map.put(entry.getKey(), new HashSet<>(entry.getValue().keySet()));
             }
 
-            private boolean isValidTranslationFile(@NotNull FileContent inputData, @NotNull PsiFile psiFile) {
-                // dont index all yaml files; valid:
-                //  - "Resources/translations"
-                //  - "translations/[.../]foo.de.yml"
-                String relativePath = VfsUtil.getRelativePath(inputData.getFile(), psiFile.getProject().getBaseDir(), '/');
-                if(relativePath != null) {
-                    return relativePath.contains("/translations") || relativePath.startsWith("translations/");
-                }
-
-                // Resources/translations/messages.de.yml
-                // @TODO: Resources/translations/de/messages.yml
-                String path = inputData.getFile().getPath();
-                return path.endsWith("/translations/" + inputData.getFileName());
-            }
+            return map;
+        };
+    }
 
-            @NotNull
-            private Map<String, Set<String>> getXlfStringMap(@NotNull FileContent inputData) {
-                // testing files are not that nice
-                String relativePath = VfsUtil.getRelativePath(inputData.getFile(), inputData.getProject().getBaseDir(), '/');
-                if(relativePath != null && (relativePath.contains("/Test/") || relativePath.contains("/Tests/") || relativePath.contains("/Fixture/") || relativePath.contains("/Fixtures/"))) {
-                    return Collections.emptyMap();
-                }
-
-                // extract domain name
-                String domainName = getDomainName(inputData.getFileName());
-                if(domainName == null) {
-                    return Collections.emptyMap();
-                }
-
-                InputStream inputStream;
-                try {
-                    inputStream = inputData.getFile().getInputStream();
-                } catch (IOException e) {
-                    return Collections.emptyMap();
-                }
-
-                Set<String> set = TranslationUtil.getXliffTranslations(inputStream);
-                if(set.size() == 0) {
-                    return Collections.emptyMap();
-                }
-
-                // wrap with domain
-                Map<String, Set<String>> map = new THashMap<>();
-                map.put(domainName, set);
-                return map;
-            }
+    /**
+     * Changes with any translation file; not on every psi change
+     */
+    @NotNull
+    public static ModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
 
-            @Nullable
-            private String getDomainName(@NotNull String fileName) {
-                String[] split = fileName.split("\\.");
-                if(split.length < 2 || Arrays.stream(split).anyMatch(s -> s.length() == 0)) {
-                    return null;
-                }
-
-                // foo.fr.yml
-                // dont index fr.yml
-                int domainSplit = fileName.lastIndexOf(".");
-                if(domainSplit <= 2) {
-                    return null;
-                }
-
-                String domain = StringUtils.join(Arrays.copyOfRange(split, 0, split.length - 2), ".");
-
-                if (domain.endsWith("+intl-icu")) {
-                    // Remove +intl-icu suffix, as it is not part of the domain
-                    // https://symfony.com/blog/new-in-symfony-4-2-intlmessageformatter
-                    domain = domain.replace("+intl-icu", "");
-                }
-
-                return domain;
-            }
-        };
+    /**
+     * Translation keys of a valid translation file with their text offset, wrapped with its domain; shared by all translation indexes
+     */
+    @NotNull
+    static Map<String, Map<String, Integer>> getDomainTranslations(@NotNull FileContent inputData) {
+        if(!Symfony2ProjectComponent.isEnabledForIndex(inputData.getProject())) {
+            return Collections.emptyMap();
+        }
+
+        String extension = inputData.getFile().getExtension();
+        if("xlf".equalsIgnoreCase(extension) || "xliff".equalsIgnoreCase(extension)) {
+            return getXlfStringMap(inputData);
+        }
+
+        PsiFile psiFile = inputData.getPsiFile();
+        if(!(psiFile instanceof YAMLFile)) {
+            return Collections.emptyMap();
+        }
+
+        // check physical file position
+        if (!isValidTranslationFile(inputData, psiFile)) {
+            return Collections.emptyMap();
+        }
+
+        String domainName = getDomainName(inputData.getFileName());
+        if(domainName == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Integer> translationKeySet = new HashMap<>();
+        YamlTranslationVisitor.collectFileTranslations((YAMLFile) psiFile, (keyName, yamlKeyValue) -> {
+            translationKeySet.putIfAbsent(keyName, yamlKeyValue.getTextRange().getStartOffset());
+            return true;
+        });
+
+        if(translationKeySet.size() == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Map<String, Integer>> map = new THashMap<>();
+
+        map.put(domainName, translationKeySet);
+
+        return map;
+    }
+
+    private static boolean isValidTranslationFile(@NotNull FileContent inputData, @NotNull PsiFile psiFile) {
+        // dont index all yaml files; valid:
+        //  - "Resources/translations"
+        //  - "translations/[.../]foo.de.yml"
+        String relativePath = VfsUtil.getRelativePath(inputData.getFile(), psiFile.getProject().getBaseDir(), '/');
+        if(relativePath != null) {
+            return relativePath.contains("/translations") || relativePath.startsWith("translations/");
+        }
+
+        // Resources/translations/messages.de.yml
+        // @TODO: Resources/translations/de/messages.yml
+        String path = inputData.getFile().getPath();
+        return path.endsWith("/translations/" + inputData.getFileName());
+    }
+
+    @NotNull
+    private static Map<String, Map<String, Integer>> getXlfStringMap(@NotNull FileContent inputData) {
+        // testing files are not that nice
+        String relativePath = VfsUtil.getRelativePath(inputData.getFile(), inputData.getProject().getBaseDir(), '/');
+        if(relativePath != null && (relativePath.contains("/Test/") || relativePath.contains("/Tests/") || relativePath.contains("/Fixture/") || relativePath.contains("/Fixtures/"))) {
+            return Collections.emptyMap();
+        }
+
+        // extract domain name
+        String domainName = getDomainName(inputData.getFileName());
+        if(domainName == null) {
+            return Collections.emptyMap();
+        }
+
+        InputStream inputStream;
+        try {
+            inputStream = inputData.getFile().getInputStream();
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+
+        Set<String> set = TranslationUtil.getXliffTranslations(inputStream);
+        if(set.size() == 0) {
+            return Collections.emptyMap();
+        }
+
+        // offsets are searched on text level; xliff files are not always registered as xml
+        Map<String, Integer> offsets = TranslationUtil.getXliffTranslationOffsets(inputData.getContentAsText());
+
+        Map<String, Integer> translationKeys = new HashMap<>();
+        for (String key : set) {
+            translationKeys.put(key, offsets.getOrDefault(key, -1));
+        }
+
+        // wrap with domain
+        Map<String, Map<String, Integer>> map = new THashMap<>();
+        map.put(domainName, translationKeys);
+        return map;
+    }
+
+    @Nullable
+    private static String getDomainName(@NotNull String fileName) {
+        String[] split = fileName.split("\\.");
+        if(split.length < 2 || Arrays.stream(split).anyMatch(s -> s.length() == 0)) {
+            return null;
+        }
+
+        // foo.fr.yml
+        // dont index fr.yml
+        int domainSplit = fileName.lastIndexOf(".");
+        if(domainSplit <= 2) {
+            return null;
+        }
+
+        String domain = StringUtils.join(Arrays.copyOfRange(split, 0, split.length - 2), ".");
+
+        if (domain.endsWith("+intl-icu")) {
+            // Remove +intl-icu suffix, as it is not part of the domain
+            // https://symfony.com/blog/new-in-symfony-4-2-intlmessageformatter
+            domain = domain.replace("+intl-icu", "");
+        }
+
+        return domain;
+    }
+
+    /**
+     * Locale of a translation file "messages.de.yml"
+     */
+    @Nullable
+    public static String getLocale(@NotNull String fileName) {
+        String[] split = fileName.split("\\.");
+        if(split.length < 3) {
+            return null;
+        }
+
+        String locale = split[split.length - 2];
+        return locale.length() > 0 ? locale : null;
     }
 
     @NotNull
@@ -172,8 +217,7 @@ public class TranslationStubIndex extends FileBasedIndexExtension<String, Set<St
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return file ->
-            file.getFileType() == YAMLFileType.YML || "xlf".equalsIgnoreCase(file.getExtension()) || "xliff".equalsIgnoreCase(file.getExtension());
+        return INPUT_FILTER;
     }
 
     @Override
@@ -0,0 +1,167 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.php.lang.psi.PhpFile;
+import com.jetbrains.php.lang.psi.elements.MethodReference;
+import com.jetbrains.php.lang.psi.elements.StringLiteralExpression;
+import com.jetbrains.twig.TwigFile;
+import com.jetbrains.twig.TwigFileType;
+import com.jetbrains.twig.TwigTokenTypes;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.StringSetDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.templating.TwigPattern;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import gnu.trove.THashMap;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translation keys used inside a file grouped by their domain:
+ *
+ * {{ 'foo'|trans({}, 'domain') }}
+ * $translator->trans('foo', [], 'domain');
+ *
+ * Php calls are matched by method name only, as types can not be resolved while indexing
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationUsageStubIndex extends FileBasedIndexExtension<String, Set<String>> {
+    public static final ID<String, Set<String>> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.translation_usages");
+    private static final StringSetDataExternalizer DATA_EXTERNALIZER = new StringSetDataExternalizer();
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Set<String>, FileContent> getIndexer() {
+        return inputData -> {
+            PsiFile psiFile = inputData.getPsiFile();
+            if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, Set<String>> map = new THashMap<>();
+
+            if(psiFile instanceof TwigFile) {
+                visitTwigFile((TwigFile) psiFile, map);
+            } else if(psiFile instanceof PhpFile && PhpTwigTemplateUsageStubIndex.isValidForIndex(inputData)) {
+                visitPhpFile((PhpFile) psiFile, map);
+            }
+
+            return map;
+        };
+    }
+
+    /**
+     * {{ 'foo'|trans }}, {{ 'foo'|transchoice(2, {}, 'domain') }}
+     */
+    private static void visitTwigFile(@NotNull TwigFile twigFile, @NotNull Map<String, Set<String>> map) {
+        twigFile.accept(new PsiRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitElement(PsiElement element) {
+                if(element.getNode().getElementType() == TwigTokenTypes.STRING_TEXT && TwigPattern.getTranslationKeyPattern("trans", "transchoice").accepts(element)) {
+                    String text = element.getText();
+                    if(StringUtils.isNotBlank(text) && !fr.adrienbrault.idea.symfony2plugin.util.StringUtils.isInterpolatedString(text)) {
+                        map.computeIfAbsent(TwigUtil.getPsiElementTranslationDomain(element), s -> new HashSet<>()).add(text);
+                    }
+                }
+
+                super.visitElement(element);
+            }
+        });
+    }
+
+    /**
+     * $translator->trans('foo', [], 'domain'), $translator->transChoice('foo', 2, [], 'domain')
+     */
+    private static void visitPhpFile(@NotNull PhpFile phpFile, @NotNull Map<String, Set<String>> map) {
+        phpFile.accept(new PsiRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitElement(PsiElement element) {
+                if(element instanceof MethodReference) {
+                    visitMethodReference((MethodReference) element);
+                }
+
+                super.visitElement(element);
+            }
+
+            private void visitMethodReference(@NotNull MethodReference methodReference) {
+                String methodName = methodReference.getName();
+                if(!"trans".equals(methodName) && !"transChoice".equals(methodName)) {
+                    return;
+                }
+
+                PsiElement[] parameters = methodReference.getParameters();
+                if(parameters.length == 0 || !(parameters[0] instanceof StringLiteralExpression)) {
+                    return;
+                }
+
+                // should not collect "foo$bar"
+                String key = ((StringLiteralExpression) parameters[0]).getContents();
+                if(StringUtils.isBlank(key) || key.contains("$")) {
+                    return;
+                }
+
+                int domainParameter = "transChoice".equals(methodName) ? 3 : 2;
+
+                String domain = "messages";
+                if(parameters.length > domainParameter) {
+                    // domain is not resolvable
+                    if(!(parameters[domainParameter] instanceof StringLiteralExpression)) {
+                        return;
+                    }
+
+                    domain = ((StringLiteralExpression) parameters[domainParameter]).getContents();
+                }
+
+                if(StringUtils.isNotBlank(domain)) {
+                    map.computeIfAbsent(domain, s -> new HashSet<>()).add(key);
+                }
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public ID<String, Set<String>> getName() {
+        return KEY;
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<Set<String>> getValueExternalizer() {
+        return DATA_EXTERNALIZER;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return file -> file.getFileType() == TwigFileType.INSTANCE || file.getFileType() == PhpFileType.INSTANCE;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
@@ -14,6 +15,7 @@ import com.jetbrains.twig.elements.TwigCompositeElement;
 import com.jetbrains.twig.elements.TwigElementTypes;
 import com.jetbrains.twig.elements.TwigExtendsTag;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.StringSetDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.templating.TwigPattern;
 import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigBlock;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
@@ -36,6 +38,8 @@ public class TwigBlockIndexExtension extends FileBasedIndexExtension<String, Set
     private final KeyDescriptor<String> KEY_DESCRIPTOR = new EnumeratorStringDescriptor();
     private static final StringSetDataExternalizer DATA_EXTERNALIZER = new StringSetDataExternalizer();
 
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file -> file.getFileType() == TwigFileType.INSTANCE;
+
     @NotNull
     @Override
     public DataIndexer<String, Set<String>, FileContent> getIndexer() {
@@ -85,6 +89,14 @@ public class TwigBlockIndexExtension extends FileBasedIndexExtension<String, Set
         };
     }
 
+    /**
+     * Changes with any template; also provides the changed templates, so caches can update only them
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
     @NotNull
     @Override
     public ID<String, Set<String>> getName() {
@@ -111,7 +123,7 @@ public class TwigBlockIndexExtension extends FileBasedIndexExtension<String, Set
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return file -> file.getFileType() == TwigFileType.INSTANCE;
+        return INPUT_FILTER;
     }
 
     @Override
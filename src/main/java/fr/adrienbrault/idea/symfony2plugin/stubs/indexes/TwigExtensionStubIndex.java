@@ -0,0 +1,442 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.php.lang.parser.PhpElementTypes;
+import com.jetbrains.php.lang.psi.PhpFile;
+import com.jetbrains.php.lang.psi.PhpPsiUtil;
+import com.jetbrains.php.lang.psi.elements.*;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.TwigExtensionDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigExtension;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigExtensionParser.TwigExtensionType;
+import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
+import gnu.trove.THashMap;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Functions, filters, tests and operators of Twig extensions; key is "<category>:<name>" eg "filter:trans",
+ * as one extension is allowed to provide a function and a filter with the same name
+ *
+ * Only the class itself is available while indexing, so Twig classes like "Twig_SimpleFilter" are matched by name
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigExtensionStubIndex extends FileBasedIndexExtension<String, TwigExtension> {
+
+    public static final ID<String, TwigExtension> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.twig_extension");
+
+    public static final String FUNCTION = "function";
+    public static final String FILTER = "filter";
+    public static final String TEST = "test";
+    public static final String OPERATOR = "operator";
+
+    private static final String[] FILTER_CLASSES = new String[] {"Twig_SimpleFilter", "Twig_Filter", "Twig\\TwigFilter"};
+    private static final String[] FUNCTION_CLASSES = new String[] {"Twig_SimpleFunction", "Twig_Function", "Twig\\TwigFunction"};
+    private static final String[] TEST_CLASSES = new String[] {"Twig_SimpleTest", "Twig_Test", "Twig\\TwigTest"};
+
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file -> file.getFileType() == PhpFileType.INSTANCE;
+
+    private static int MAX_FILE_BYTE_SIZE = 2097152;
+
+    @NotNull
+    @Override
+    public ID<String, TwigExtension> getName() {
+        return KEY;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, TwigExtension, FileContent> getIndexer() {
+        return inputData -> getExtensions(inputData.getFile(), inputData.getPsiFile());
+    }
+
+    /**
+     * Same as the indexer provides, but on any psi file; so also on the current content of a changed file
+     */
+    @NotNull
+    public static Map<String, TwigExtension> getExtensions(@NotNull VirtualFile virtualFile, @NotNull PsiFile psiFile) {
+        Map<String, TwigExtension> map = new THashMap<>();
+
+        if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
+            return map;
+        }
+
+        if(psiFile instanceof PhpFile && virtualFile.getLength() < MAX_FILE_BYTE_SIZE) {
+            for (PhpClass phpClass : PsiTreeUtil.findChildrenOfType(psiFile, PhpClass.class)) {
+                if(!phpClass.isInterface() && !phpClass.isTrait() && !PhpElementsUtil.isTestClassName(phpClass)) {
+                    visitExtension(phpClass, map);
+                }
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Changes only if a php file was changed; not on changes of templates or other files. Php files without any
+     * extension are also counted, so the changed files must be compared
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
+    @NotNull
+    public static String getKey(@NotNull String category, @NotNull String name) {
+        return category + ":" + name;
+    }
+
+    private static void visitExtension(@NotNull PhpClass phpClass, @NotNull Map<String, TwigExtension> map) {
+        Method filters = phpClass.findOwnMethodByName("getFilters");
+        if(filters != null) {
+            for (NewExpression newExpression : PsiTreeUtil.findChildrenOfType(filters, NewExpression.class)) {
+                visitFilter(phpClass, newExpression, map);
+            }
+        }
+
+        Method functions = phpClass.findOwnMethodByName("getFunctions");
+        if(functions != null) {
+            for (NewExpression newExpression : PsiTreeUtil.findChildrenOfType(functions, NewExpression.class)) {
+                visitFunction(phpClass, newExpression, map);
+            }
+        }
+
+        Method tests = phpClass.findOwnMethodByName("getTests");
+        if(tests != null) {
+            for (NewExpression newExpression : PsiTreeUtil.findChildrenOfType(tests, NewExpression.class)) {
+                visitTest(phpClass, newExpression, map);
+            }
+        }
+
+        // operators are plain arrays, only trust classes which look like a Twig extension
+        Method operators = phpClass.findOwnMethodByName("getOperators");
+        if(operators != null && isExtensionClassName(phpClass)) {
+            visitOperators(phpClass, operators, map);
+        }
+    }
+
+    private static void visitFilter(@NotNull PhpClass phpClass, @NotNull NewExpression element, @NotNull Map<String, TwigExtension> map) {
+        // new \Twig_SimpleFilter('url', array($this, 'getUrl'), array('is_safe_callback' => array($this, 'isUrlGenerationSafe'))),
+        if(isNewExpressionOfClass(element, FILTER_CLASSES)) {
+            PsiElement[] psiElement = element.getParameters();
+            if(psiElement.length > 0) {
+                String funcName = PhpElementsUtil.getStringValueInClass(phpClass, psiElement[0]);
+                if(funcName != null && !funcName.contains("*")) {
+                    String signature = psiElement.length > 1 ? getCallableSignature(phpClass, psiElement[1]) : null;
+                    map.put(getKey(FILTER, funcName), new TwigExtension(TwigExtensionType.FILTER, signature, getOptions(psiElement)));
+                }
+            }
+
+            return;
+        }
+
+        // array('shuffle' => new Twig_Filter_Function('twig_shuffle_filter'),)
+        if(isNewExpressionOfClass(element, "Twig_Filter_Function")) {
+            String funcName = getArrayHashKey(phpClass, element);
+            if(funcName != null && !funcName.contains("*")) {
+                PsiElement[] parameters = element.getParameters();
+                String signature = parameters.length > 0 ? getCallableSignature(phpClass, parameters[0]) : null;
+                map.put(getKey(FILTER, funcName), new TwigExtension(TwigExtensionType.FILTER, signature));
+            }
+
+            return;
+        }
+
+        // return array('serialize'  => new \Twig_Filter_Method($this, 'serialize'), );
+        if(isNewExpressionOfClass(element, "Twig_Filter_Method")) {
+            String funcName = getArrayHashKey(phpClass, element);
+            if(funcName != null && funcName.matches("\\w+")) {
+                map.put(getKey(FILTER, funcName), new TwigExtension(TwigExtensionType.FILTER, getThisMethodSignature(phpClass, element.getParameters())));
+            }
+        }
+    }
+
+    private static void visitFunction(@NotNull PhpClass phpClass, @NotNull NewExpression element, @NotNull Map<String, TwigExtension> map) {
+        // new \Twig_SimpleFunction('url', array($this, 'getUrl'), array('is_safe_callback' => array($this, 'isUrlGenerationSafe'))),
+        if(isNewExpressionOfClass(element, FUNCTION_CLASSES)) {
+            PsiElement[] psiElement = element.getParameters();
+            if(psiElement.length > 0) {
+                String funcName = PhpElementsUtil.getStringValueInClass(phpClass, psiElement[0]);
+                if(funcName != null && !funcName.contains("*")) {
+                    String signature = psiElement.length > 1 ? getCallableSignature(phpClass, psiElement[1]) : null;
+                    map.put(getKey(FUNCTION, funcName), new TwigExtension(TwigExtensionType.SIMPLE_FUNCTION, signature, getOptions(psiElement)));
+                }
+            }
+
+            return;
+        }
+
+        // array('form_javascript' => new \Twig_Function_Method($this, 'renderJavascript', array('is_safe' => array('html'))),);
+        if(isNewExpressionOfClass(element, "Twig_Function_Method")) {
+            String funcName = getArrayHashKey(phpClass, element);
+            if(funcName != null && !funcName.contains("*")) {
+                map.put(getKey(FUNCTION, funcName), new TwigExtension(TwigExtensionType.FUNCTION_METHOD, getThisMethodSignature(phpClass, element.getParameters())));
+            }
+
+            return;
+        }
+
+        // array('form_help' => new \Twig_Function_Node('Symfony\Bridge\Twig\Node\SearchAndRenderBlockNode', array('is_safe' => array('html'))),)
+        if(isNewExpressionOfClass(element, "Twig_Function_Node")) {
+            String funcName = getArrayHashKey(phpClass, element);
+            if(funcName != null && !funcName.contains("*")) {
+                PsiElement[] parameters = element.getParameters();
+                String signature = null;
+                if(parameters.length > 0) {
+                    String className = PhpElementsUtil.getStringValueInClass(phpClass, parameters[0]);
+                    if(className != null) {
+                        signature = String.format("#M#C\\%s.%s", StringUtils.stripStart(className, "\\"), "compile");
+                    }
+                }
+
+                map.put(getKey(FUNCTION, funcName), new TwigExtension(TwigExtensionType.FUNCTION_NODE, signature));
+            }
+        }
+    }
+
+    private static void visitTest(@NotNull PhpClass phpClass, @NotNull NewExpression element, @NotNull Map<String, TwigExtension> map) {
+        // new Twig_SimpleTest('even', null, array('node_class' => 'Twig_Node_Expression_Test_Even')),
+        if(!isNewExpressionOfClass(element, TEST_CLASSES)) {
+            return;
+        }
+
+        PsiElement[] psiElement = element.getParameters();
+        if(psiElement.length == 0) {
+            return;
+        }
+
+        String funcName = PhpElementsUtil.getStringValueInClass(phpClass, psiElement[0]);
+        if(funcName == null || funcName.contains("*")) {
+            return;
+        }
+
+        String signature = null;
+
+        // new \Twig_SimpleTest('empty', 'foo_test')
+        if(psiElement.length > 1 && psiElement[1] instanceof StringLiteralExpression) {
+            String contents = ((StringLiteralExpression) psiElement[1]).getContents();
+            if(StringUtils.isNotBlank(contents)) {
+                signature = "#F" + contents;
+            }
+        }
+
+        // new \Twig_SimpleTest('my_test', null, array('node_class' => 'My_Node_Test'))
+        if(signature == null && psiElement.length > 2 && psiElement[2] instanceof ArrayCreationExpression) {
+            String nodeClass = PhpElementsUtil.getArrayHashValue((ArrayCreationExpression) psiElement[2], "node_class");
+            if(StringUtils.isNotBlank(nodeClass)) {
+                signature = String.format("#M#C\\%s.%s", StringUtils.stripStart(nodeClass, "\\"), "compile");
+            }
+        }
+
+        map.put(getKey(TEST, funcName), new TwigExtension(TwigExtensionType.SIMPLE_TEST, signature));
+    }
+
+    /**
+     * return array(
+     *   array('not' => array()),
+     *   array('or' => array()),
+     * );
+     */
+    private static void visitOperators(@NotNull PhpClass phpClass, @NotNull Method method, @NotNull Map<String, TwigExtension> map) {
+        for (PhpReturn phpReturn : PsiTreeUtil.findChildrenOfType(method, PhpReturn.class)) {
+            PhpPsiElement firstPsiChild = phpReturn.getFirstPsiChild();
+            if(!(firstPsiChild instanceof ArrayCreationExpression)) {
+                continue;
+            }
+
+            // twig core returns nested array with 2 items array creation elements
+            List<PsiElement> arrayValues = PhpPsiUtil.getChildren(firstPsiChild, psiElement -> psiElement.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE);
+            for (PsiElement psiElement : arrayValues) {
+                if(!(psiElement instanceof PhpPsiElement)) {
+                    continue;
+                }
+
+                PhpPsiElement arrayValue = ((PhpPsiElement) psiElement).getFirstPsiChild();
+                if(arrayValue instanceof ArrayCreationExpression) {
+                    for (ArrayHashElement arrayHashElement : PsiTreeUtil.findChildrenOfType(arrayValue, ArrayHashElement.class)) {
+                        String stringValue = PhpElementsUtil.getStringValueInClass(phpClass, arrayHashElement.getKey());
+                        if(StringUtils.isNotBlank(stringValue)) {
+                            map.put(getKey(OPERATOR, stringValue), new TwigExtension(TwigExtensionType.OPERATOR));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get signature for callable like array($this, 'getUrl'), or 'function'
+     */
+    @Nullable
+    private static String getCallableSignature(@NotNull PhpClass phpClass, @NotNull PsiElement psiElement) {
+        // array($this, 'getUrl')
+        if(psiElement instanceof ArrayCreationExpression) {
+            List<PsiElement> arrayValues = PhpPsiUtil.getChildren(psiElement, child -> child.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE);
+            if(arrayValues.size() > 1) {
+                PsiElement firstChild = arrayValues.get(0).getFirstChild();
+                if(firstChild instanceof Variable && "this".equals(((Variable) firstChild).getName())) {
+                    String methodName = PhpElementsUtil.getStringValueInClass(phpClass, arrayValues.get(1).getFirstChild());
+                    if(StringUtils.isNotBlank(methodName)) {
+                        return String.format("#M#C\\%s.%s", phpClass.getPresentableFQN(), methodName);
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        String funcTargetName = PhpElementsUtil.getStringValueInClass(phpClass, psiElement);
+        if(funcTargetName == null) {
+            return null;
+        }
+
+        if(funcTargetName.contains("::")) {
+            // 'SqlFormatter::format'
+            String[] splits = funcTargetName.split("::");
+            return splits.length >= 2 ? String.format("#M#C\\%s.%s", splits[0], splits[1]) : null;
+        }
+
+        return "#F" + funcTargetName;
+    }
+
+    /**
+     * new \Twig_Function_Method($this, 'renderJavascript')
+     */
+    @Nullable
+    private static String getThisMethodSignature(@NotNull PhpClass phpClass, @NotNull PsiElement[] parameters) {
+        if(parameters.length > 1 && parameters[0] instanceof Variable && "this".equals(((Variable) parameters[0]).getName())) {
+            String methodName = PhpElementsUtil.getStringValueInClass(phpClass, parameters[1]);
+            if(methodName != null) {
+                return String.format("#M#C\\%s.%s", phpClass.getPresentableFQN(), methodName);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * array('shuffle' => new Twig_Filter_Function('twig_shuffle_filter'))
+     */
+    @Nullable
+    private static String getArrayHashKey(@NotNull PhpClass phpClass, @NotNull NewExpression newExpression) {
+        PsiElement arrayValue = newExpression.getParent();
+        if(arrayValue == null || arrayValue.getNode().getElementType() != PhpElementTypes.ARRAY_VALUE) {
+            return null;
+        }
+
+        PsiElement arrayHash = arrayValue.getParent();
+        if(!(arrayHash instanceof ArrayHashElement)) {
+            return null;
+        }
+
+        return PhpElementsUtil.getStringValueInClass(phpClass, ((ArrayHashElement) arrayHash).getKey());
+    }
+
+    /**
+     * Add needs_environment, needs_context values of the third creation parameter
+     */
+    @NotNull
+    private static Map<String, String> getOptions(@NotNull PsiElement[] parameters) {
+        Map<String, String> options = new HashMap<>();
+        if(parameters.length < 3 || !(parameters[2] instanceof ArrayCreationExpression)) {
+            return options;
+        }
+
+        for(String optionTrue: new String[] {"needs_environment", "needs_context"}) {
+            PhpPsiElement phpPsiElement = PhpElementsUtil.getArrayValue((ArrayCreationExpression) parameters[2], optionTrue);
+            if(phpPsiElement instanceof ConstantReference) {
+                String value = phpPsiElement.getName();
+                if(value != null && value.toLowerCase().equals("true")) {
+                    options.put(optionTrue, "true");
+                }
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * Imports are resolved by the class reference itself, so no index access is needed
+     */
+    private static boolean isNewExpressionOfClass(@NotNull NewExpression newExpression, @NotNull String... classNames) {
+        ClassReference classReference = newExpression.getClassReference();
+        if(classReference == null) {
+            return false;
+        }
+
+        String fqn = StringUtils.stripStart(classReference.getFQN(), "\\");
+        if(fqn == null) {
+            return false;
+        }
+
+        for (String className : classNames) {
+            if(className.equalsIgnoreCase(fqn)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * "Twig_Extension", "AbstractExtension", "Twig_ExtensionInterface" or any project specific "Extension" base class
+     */
+    private static boolean isExtensionClassName(@NotNull PhpClass phpClass) {
+        String superFQN = phpClass.getSuperFQN();
+        if(superFQN != null && (superFQN.contains("Extension") || superFQN.contains("Twig"))) {
+            return true;
+        }
+
+        for (String interfaceName : phpClass.getInterfaceNames()) {
+            if(interfaceName.contains("Extension") || interfaceName.contains("Twig")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<TwigExtension> getValueExternalizer() {
+        return TwigExtensionDataExternalizer.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return INPUT_FILTER;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+}
@@ -1,58 +1,82 @@
 package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
 
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.indexing.*;
 import com.intellij.util.io.DataExternalizer;
 import com.intellij.util.io.EnumeratorStringDescriptor;
 import com.intellij.util.io.KeyDescriptor;
-import com.intellij.util.io.VoidDataExternalizer;
 import com.jetbrains.twig.TwigFile;
 import com.jetbrains.twig.TwigFileType;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TwigIncludeSite;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.TwigIncludeSiteDataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Map;
+import java.util.*;
 
 /**
+ * Included template name to all its inclusions inside a file, with the variables given to them
+ *
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class TwigIncludeStubIndex extends FileBasedIndexExtension<String, Void> {
+public class TwigIncludeStubIndex extends FileBasedIndexExtension<String, Collection<TwigIncludeSite>> {
 
-    public static final ID<String, Void> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.twig_include_tags");
+    public static final ID<String, Collection<TwigIncludeSite>> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.twig_include_tags");
     private final KeyDescriptor<String> myKeyDescriptor = new EnumeratorStringDescriptor();
 
+    private static final FileBasedIndex.InputFilter INPUT_FILTER = file -> file.getFileType() == TwigFileType.INSTANCE;
+
     @NotNull
     @Override
-    public ID<String, Void> getName() {
+    public ID<String, Collection<TwigIncludeSite>> getName() {
         return KEY;
     }
 
     @NotNull
     @Override
-    public DataIndexer<String, Void, FileContent> getIndexer() {
+    public DataIndexer<String, Collection<TwigIncludeSite>, FileContent> getIndexer() {
         return inputData -> {
-            final Map<String, Void> map = new THashMap<>();
-
             PsiFile psiFile = inputData.getPsiFile();
             if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
-                return map;
+                return Collections.emptyMap();
             }
 
             if(!(psiFile instanceof TwigFile)) {
-                return map;
+                return Collections.emptyMap();
             }
 
-            TwigUtil.visitTemplateIncludes((TwigFile) psiFile, templateInclude ->
-                map.put(TwigUtil.normalizeTemplateName(templateInclude.getTemplateName()), null)
-            );
-
-            return map;
+            return getIncludeSites((TwigFile) psiFile);
         };
 
     }
 
+    /**
+     * Values of the index for the given file: normalized included template name to its inclusions
+     */
+    @NotNull
+    public static Map<String, Collection<TwigIncludeSite>> getIncludeSites(@NotNull TwigFile twigFile) {
+        Map<String, Collection<TwigIncludeSite>> map = new THashMap<>();
+
+        TwigUtil.visitTemplateIncludes(twigFile, templateInclude ->
+            map.computeIfAbsent(TwigUtil.normalizeTemplateName(templateInclude.getTemplateName()), s -> new ArrayList<>())
+                .add(TwigUtil.createIncludeSite(templateInclude))
+        );
+
+        return map;
+    }
+
+    /**
+     * Changes with any template; also provides the changed templates, so caches can update only their includes
+     */
+    @NotNull
+    public static IndexModificationTracker getModificationTracker(@NotNull Project project) {
+        return IndexModificationTracker.getInstance(project, KEY, INPUT_FILTER);
+    }
+
     @NotNull
     @Override
     public KeyDescriptor<String> getKeyDescriptor() {
@@ -61,14 +85,14 @@ public class TwigIncludeStubIndex extends FileBasedIndexExtension<String, Void>
 
     @NotNull
     @Override
-    public DataExternalizer<Void> getValueExternalizer() {
-        return VoidDataExternalizer.INSTANCE;
+    public DataExternalizer<Collection<TwigIncludeSite>> getValueExternalizer() {
+        return TwigIncludeSiteDataExternalizer.INSTANCE;
     }
 
     @NotNull
     @Override
     public FileBasedIndex.InputFilter getInputFilter() {
-        return file -> file.getFileType() == TwigFileType.INSTANCE;
+        return INPUT_FILTER;
     }
 
     @Override
@@ -78,7 +102,7 @@ public class TwigIncludeStubIndex extends FileBasedIndexExtension<String, Void>
 
     @Override
     public int getVersion() {
-        return 3;
+        return 4;
     }
 
 }
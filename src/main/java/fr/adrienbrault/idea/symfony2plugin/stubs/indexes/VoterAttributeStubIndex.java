@@ -0,0 +1,112 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.php.lang.psi.PhpFile;
+import com.jetbrains.php.lang.psi.elements.PhpClass;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.security.utils.VoterUtil;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.VoterAttribute;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.VoterAttributeDataExternalizer;
+import gnu.trove.THashMap;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.yaml.YAMLFileType;
+
+import java.util.*;
+
+/**
+ * Security attributes of voters and roles of "security.yml" with the text ranges of their declarations
+ *
+ * Voter classes and constants of other classes "#K#C\Foo\Bar.BAR" can not be resolved while indexing;
+ * both are checked on lookup in VoterUtil
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class VoterAttributeStubIndex extends FileBasedIndexExtension<String, VoterAttribute> {
+
+    public static final ID<String, VoterAttribute> KEY = ID.create("fr.adrienbrault.idea.symfony2plugin.voter_attribute");
+
+    private static int MAX_FILE_BYTE_SIZE = 2097152;
+
+    @NotNull
+    @Override
+    public ID<String, VoterAttribute> getName() {
+        return KEY;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, VoterAttribute, FileContent> getIndexer() {
+        return inputData -> {
+            PsiFile psiFile = inputData.getPsiFile();
+            if(!Symfony2ProjectComponent.isEnabledForIndex(psiFile.getProject())) {
+                return Collections.emptyMap();
+            }
+
+            if(psiFile instanceof PhpFile && inputData.getFile().getLength() > MAX_FILE_BYTE_SIZE) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, String> classNames = new HashMap<>();
+            Map<String, Set<TextRange>> textRanges = new HashMap<>();
+
+            VoterUtil.visitAttribute(psiFile, pair -> {
+                String name = pair.getFirst();
+
+                textRanges.computeIfAbsent(name, s -> new LinkedHashSet<>()).add(pair.getSecond().getTextRange());
+
+                PhpClass phpClass = PsiTreeUtil.getParentOfType(pair.getSecond(), PhpClass.class);
+                if(phpClass != null) {
+                    classNames.putIfAbsent(name, StringUtils.stripStart(phpClass.getFQN(), "\\"));
+                }
+            });
+
+            Map<String, VoterAttribute> map = new THashMap<>();
+
+            textRanges.forEach((name, ranges) ->
+                map.put(name, new VoterAttribute(classNames.get(name), new ArrayList<>(ranges)))
+            );
+
+            return map;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<VoterAttribute> getValueExternalizer() {
+        return VoterAttributeDataExternalizer.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return file -> {
+            FileType fileType = file.getFileType();
+            return fileType == PhpFileType.INSTANCE || (fileType == YAMLFileType.YML && VoterUtil.SECURITY_FILES.contains(file.getName()));
+        };
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+}
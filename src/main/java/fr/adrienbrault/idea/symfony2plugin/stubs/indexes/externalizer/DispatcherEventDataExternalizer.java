@@ -0,0 +1,49 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.DispatcherEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary format of an event: a flag byte for the nullable properties and the present strings
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class DispatcherEventDataExternalizer implements DataExternalizer<DispatcherEvent> {
+
+    public static final DispatcherEventDataExternalizer INSTANCE = new DispatcherEventDataExternalizer();
+
+    private static final int FQN = 1;
+    private static final int INSTANCE_CLASS = 1 << 1;
+
+    @Override
+    public void save(@NotNull DataOutput out, DispatcherEvent value) throws IOException {
+        String fqn = value.getFqn();
+        String instance = value.getInstance();
+
+        out.writeByte((fqn != null ? FQN : 0) | (instance != null ? INSTANCE_CLASS : 0));
+
+        if(fqn != null) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, fqn);
+        }
+
+        if(instance != null) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, instance);
+        }
+    }
+
+    @Override
+    public DispatcherEvent read(@NotNull DataInput in) throws IOException {
+        int flags = in.readByte();
+
+        String fqn = (flags & FQN) != 0 ? EnumeratorStringDescriptor.INSTANCE.read(in) : null;
+        String instance = (flags & INSTANCE_CLASS) != 0 ? EnumeratorStringDescriptor.INSTANCE.read(in) : null;
+
+        return new DispatcherEvent(fqn, instance);
+    }
+}
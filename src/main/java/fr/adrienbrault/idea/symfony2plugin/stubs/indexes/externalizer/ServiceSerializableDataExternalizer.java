@@ -0,0 +1,95 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.SerializableService;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.ServiceSerializable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary format of a service: id, a varint bit mask for all flags and nullable properties and then only the present strings.
+ *
+ * Only non default flags are stored, like SerializableService does on its json representation.
+ * Every format change needs a version bump of the using index
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class ServiceSerializableDataExternalizer implements DataExternalizer<ServiceSerializable> {
+
+    public static final ServiceSerializableDataExternalizer INSTANCE = new ServiceSerializableDataExternalizer();
+
+    private static final int CLASS = 1;
+    private static final int ALIAS = 1 << 1;
+    private static final int DECORATES = 1 << 2;
+    private static final int DECORATION_INNER_NAME = 1 << 3;
+    private static final int PARENT = 1 << 4;
+    private static final int PRIVATE = 1 << 5;
+    private static final int LAZY = 1 << 6;
+    private static final int ABSTRACT = 1 << 7;
+    private static final int AUTOWIRE = 1 << 8;
+    private static final int DEPRECATED = 1 << 9;
+
+    @Override
+    public void save(@NotNull DataOutput out, ServiceSerializable value) throws IOException {
+        EnumeratorStringDescriptor.INSTANCE.save(out, value.getId());
+
+        int flags = 0;
+
+        if(value.getClassName() != null) flags |= CLASS;
+        if(value.getAlias() != null) flags |= ALIAS;
+        if(value.getDecorates() != null) flags |= DECORATES;
+        if(value.getDecorationInnerName() != null) flags |= DECORATION_INNER_NAME;
+        if(value.getParent() != null) flags |= PARENT;
+        if(!value.isPublic()) flags |= PRIVATE;
+        if(value.isLazy()) flags |= LAZY;
+        if(value.isAbstract()) flags |= ABSTRACT;
+        if(value.isAutowire()) flags |= AUTOWIRE;
+        if(value.isDeprecated()) flags |= DEPRECATED;
+
+        DataInputOutputUtil.writeINT(out, flags);
+
+        writeString(out, value.getClassName());
+        writeString(out, value.getAlias());
+        writeString(out, value.getDecorates());
+        writeString(out, value.getDecorationInnerName());
+        writeString(out, value.getParent());
+    }
+
+    @Override
+    public ServiceSerializable read(@NotNull DataInput in) throws IOException {
+        SerializableService service = new SerializableService(EnumeratorStringDescriptor.INSTANCE.read(in));
+
+        int flags = DataInputOutputUtil.readINT(in);
+
+        service.setClassName(readString(in, flags, CLASS))
+            .setAlias(readString(in, flags, ALIAS))
+            .setDecorates(readString(in, flags, DECORATES))
+            .setDecorationInnerName(readString(in, flags, DECORATION_INNER_NAME))
+            .setParent(readString(in, flags, PARENT));
+
+        if((flags & PRIVATE) != 0) service.setIsPublic(false);
+        if((flags & LAZY) != 0) service.setIsLazy(true);
+        if((flags & ABSTRACT) != 0) service.setIsAbstract(true);
+        if((flags & AUTOWIRE) != 0) service.setIsAutowire(true);
+        if((flags & DEPRECATED) != 0) service.setIsDeprecated(true);
+
+        return service;
+    }
+
+    private static void writeString(@NotNull DataOutput out, @Nullable String value) throws IOException {
+        if(value != null) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, value);
+        }
+    }
+
+    @Nullable
+    private static String readString(@NotNull DataInput in, int flags, int flag) throws IOException {
+        return (flags & flag) != 0 ? EnumeratorStringDescriptor.INSTANCE.read(in) : null;
+    }
+}
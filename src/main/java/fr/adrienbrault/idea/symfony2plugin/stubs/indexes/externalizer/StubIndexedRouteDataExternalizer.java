@@ -0,0 +1,75 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.StubIndexedRoute;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Binary format of a route: name, varint bit mask for controller and path, the present strings and a varint counted method list
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class StubIndexedRouteDataExternalizer implements DataExternalizer<StubIndexedRoute> {
+
+    public static final StubIndexedRouteDataExternalizer INSTANCE = new StubIndexedRouteDataExternalizer();
+
+    private static final int CONTROLLER = 1;
+    private static final int PATH = 1 << 1;
+
+    @Override
+    public void save(@NotNull DataOutput out, StubIndexedRoute value) throws IOException {
+        EnumeratorStringDescriptor.INSTANCE.save(out, value.getName());
+
+        String controller = value.getController();
+        String path = value.getPath();
+
+        DataInputOutputUtil.writeINT(out, (controller != null ? CONTROLLER : 0) | (path != null ? PATH : 0));
+
+        if(controller != null) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, controller);
+        }
+
+        if(path != null) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, path);
+        }
+
+        Collection<String> methods = value.getMethods();
+        DataInputOutputUtil.writeINT(out, methods.size());
+        for (String method : methods) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, method);
+        }
+    }
+
+    @Override
+    public StubIndexedRoute read(@NotNull DataInput in) throws IOException {
+        StubIndexedRoute route = new StubIndexedRoute(EnumeratorStringDescriptor.INSTANCE.read(in));
+
+        int flags = DataInputOutputUtil.readINT(in);
+
+        if((flags & CONTROLLER) != 0) {
+            route.setController(EnumeratorStringDescriptor.INSTANCE.read(in));
+        }
+
+        if((flags & PATH) != 0) {
+            route.setPath(EnumeratorStringDescriptor.INSTANCE.read(in));
+        }
+
+        int size = DataInputOutputUtil.readINT(in);
+        Collection<String> methods = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            methods.add(EnumeratorStringDescriptor.INSTANCE.read(in));
+        }
+
+        route.setMethods(methods);
+
+        return route;
+    }
+}
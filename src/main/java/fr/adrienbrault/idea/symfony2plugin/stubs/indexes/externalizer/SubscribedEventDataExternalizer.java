@@ -0,0 +1,57 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.SubscribedEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Binary format of all subscribed events of one event name inside a file: a varint counted list of class,
+ * optional method and the priority
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class SubscribedEventDataExternalizer implements DataExternalizer<Collection<SubscribedEvent>> {
+
+    public static final SubscribedEventDataExternalizer INSTANCE = new SubscribedEventDataExternalizer();
+
+    @Override
+    public void save(@NotNull DataOutput out, Collection<SubscribedEvent> value) throws IOException {
+        DataInputOutputUtil.writeINT(out, value.size());
+
+        for (SubscribedEvent subscribedEvent : value) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, subscribedEvent.getClassName());
+
+            String methodName = subscribedEvent.getMethodName();
+            out.writeBoolean(methodName != null);
+            if(methodName != null) {
+                EnumeratorStringDescriptor.INSTANCE.save(out, methodName);
+            }
+
+            // priorities are signed
+            out.writeInt(subscribedEvent.getPriority());
+        }
+    }
+
+    @Override
+    public Collection<SubscribedEvent> read(@NotNull DataInput in) throws IOException {
+        int size = DataInputOutputUtil.readINT(in);
+
+        Collection<SubscribedEvent> subscribedEvents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String className = EnumeratorStringDescriptor.INSTANCE.read(in);
+            String methodName = in.readBoolean() ? EnumeratorStringDescriptor.INSTANCE.read(in) : null;
+
+            subscribedEvents.add(new SubscribedEvent(className, methodName, in.readInt()));
+        }
+
+        return subscribedEvents;
+    }
+}
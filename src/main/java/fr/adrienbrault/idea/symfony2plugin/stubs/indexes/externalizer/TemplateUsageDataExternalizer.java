@@ -0,0 +1,87 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateUsage;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateVariable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Binary format of a template usage: template name, a varint counted scope list and a varint counted variable list
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TemplateUsageDataExternalizer implements DataExternalizer<TemplateUsage> {
+
+    public static final TemplateUsageDataExternalizer INSTANCE = new TemplateUsageDataExternalizer();
+
+    @Override
+    public void save(@NotNull DataOutput out, TemplateUsage value) throws IOException {
+        EnumeratorStringDescriptor.INSTANCE.save(out, value.getTemplate());
+
+        Collection<String> scopes = value.getScopes();
+        DataInputOutputUtil.writeINT(out, scopes.size());
+        for (String scope : scopes) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, scope);
+        }
+
+        Map<String, TemplateVariable> variables = value.getVariables();
+        DataInputOutputUtil.writeINT(out, variables.size());
+        for (Map.Entry<String, TemplateVariable> entry : variables.entrySet()) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, entry.getKey());
+
+            Set<String> types = entry.getValue().getTypes();
+            DataInputOutputUtil.writeINT(out, types.size());
+            for (String type : types) {
+                EnumeratorStringDescriptor.INSTANCE.save(out, type);
+            }
+
+            TextRange textRange = entry.getValue().getTextRange();
+            out.writeBoolean(textRange != null);
+            if(textRange != null) {
+                DataInputOutputUtil.writeINT(out, textRange.getStartOffset());
+                DataInputOutputUtil.writeINT(out, textRange.getLength());
+            }
+        }
+    }
+
+    @Override
+    public TemplateUsage read(@NotNull DataInput in) throws IOException {
+        String template = EnumeratorStringDescriptor.INSTANCE.read(in);
+
+        int size = DataInputOutputUtil.readINT(in);
+        Collection<String> scopes = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            scopes.add(EnumeratorStringDescriptor.INSTANCE.read(in));
+        }
+
+        int variableSize = DataInputOutputUtil.readINT(in);
+        Map<String, TemplateVariable> variables = new HashMap<>(variableSize);
+        for (int i = 0; i < variableSize; i++) {
+            String name = EnumeratorStringDescriptor.INSTANCE.read(in);
+
+            int typeSize = DataInputOutputUtil.readINT(in);
+            Set<String> types = new HashSet<>(typeSize);
+            for (int j = 0; j < typeSize; j++) {
+                types.add(EnumeratorStringDescriptor.INSTANCE.read(in));
+            }
+
+            TextRange textRange = null;
+            if(in.readBoolean()) {
+                int start = DataInputOutputUtil.readINT(in);
+                textRange = TextRange.from(start, DataInputOutputUtil.readINT(in));
+            }
+
+            variables.put(name, new TemplateVariable(types, textRange));
+        }
+
+        return new TemplateUsage(template, scopes, variables);
+    }
+}
@@ -0,0 +1,33 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TranslationKeyLocation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary format of a translation key location: locale and varint offset
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationKeyLocationDataExternalizer implements DataExternalizer<TranslationKeyLocation> {
+
+    public static final TranslationKeyLocationDataExternalizer INSTANCE = new TranslationKeyLocationDataExternalizer();
+
+    @Override
+    public void save(@NotNull DataOutput out, TranslationKeyLocation value) throws IOException {
+        EnumeratorStringDescriptor.INSTANCE.save(out, value.getLocale());
+        DataInputOutputUtil.writeINT(out, value.getOffset());
+    }
+
+    @Override
+    public TranslationKeyLocation read(@NotNull DataInput in) throws IOException {
+        String locale = EnumeratorStringDescriptor.INSTANCE.read(in);
+        return new TranslationKeyLocation(locale, DataInputOutputUtil.readINT(in));
+    }
+}
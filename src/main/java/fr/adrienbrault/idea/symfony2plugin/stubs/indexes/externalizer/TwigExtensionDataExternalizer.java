@@ -0,0 +1,59 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigExtension;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigExtensionParser;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary format of a Twig extension: type ordinal, optional callable signature and varint counted options
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigExtensionDataExternalizer implements DataExternalizer<TwigExtension> {
+
+    public static final TwigExtensionDataExternalizer INSTANCE = new TwigExtensionDataExternalizer();
+
+    private static final TwigExtensionParser.TwigExtensionType[] TYPES = TwigExtensionParser.TwigExtensionType.values();
+
+    @Override
+    public void save(@NotNull DataOutput out, TwigExtension value) throws IOException {
+        DataInputOutputUtil.writeINT(out, value.getTwigExtensionType().ordinal());
+
+        String signature = value.getSignature();
+        out.writeBoolean(signature != null);
+        if(signature != null) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, signature);
+        }
+
+        Map<String, String> options = value.getOptions();
+        DataInputOutputUtil.writeINT(out, options.size());
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, option.getKey());
+            EnumeratorStringDescriptor.INSTANCE.save(out, option.getValue());
+        }
+    }
+
+    @Override
+    public TwigExtension read(@NotNull DataInput in) throws IOException {
+        TwigExtensionParser.TwigExtensionType type = TYPES[DataInputOutputUtil.readINT(in)];
+        String signature = in.readBoolean() ? EnumeratorStringDescriptor.INSTANCE.read(in) : null;
+
+        int size = DataInputOutputUtil.readINT(in);
+        Map<String, String> options = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            String key = EnumeratorStringDescriptor.INSTANCE.read(in);
+            options.put(key, EnumeratorStringDescriptor.INSTANCE.read(in));
+        }
+
+        return new TwigExtension(type, signature, options);
+    }
+}
@@ -0,0 +1,68 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TwigIncludeSite;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Binary format of all inclusions of one template inside a file: a varint counted list of type, "only" flag,
+ * varint counted variable map and range
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigIncludeSiteDataExternalizer implements DataExternalizer<Collection<TwigIncludeSite>> {
+
+    public static final TwigIncludeSiteDataExternalizer INSTANCE = new TwigIncludeSiteDataExternalizer();
+
+    @Override
+    public void save(@NotNull DataOutput out, Collection<TwigIncludeSite> value) throws IOException {
+        DataInputOutputUtil.writeINT(out, value.size());
+
+        for (TwigIncludeSite includeSite : value) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, includeSite.getType());
+            out.writeBoolean(includeSite.isOnly());
+
+            Map<String, String> variables = includeSite.getVariables();
+            DataInputOutputUtil.writeINT(out, variables.size());
+            for (Map.Entry<String, String> entry : variables.entrySet()) {
+                EnumeratorStringDescriptor.INSTANCE.save(out, entry.getKey());
+                EnumeratorStringDescriptor.INSTANCE.save(out, entry.getValue());
+            }
+
+            DataInputOutputUtil.writeINT(out, includeSite.getTextRange().getStartOffset());
+            DataInputOutputUtil.writeINT(out, includeSite.getTextRange().getLength());
+        }
+    }
+
+    @Override
+    public Collection<TwigIncludeSite> read(@NotNull DataInput in) throws IOException {
+        int size = DataInputOutputUtil.readINT(in);
+
+        Collection<TwigIncludeSite> includeSites = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String type = EnumeratorStringDescriptor.INSTANCE.read(in);
+            boolean only = in.readBoolean();
+
+            int variableSize = DataInputOutputUtil.readINT(in);
+            Map<String, String> variables = new HashMap<>(variableSize);
+            for (int j = 0; j < variableSize; j++) {
+                variables.put(EnumeratorStringDescriptor.INSTANCE.read(in), EnumeratorStringDescriptor.INSTANCE.read(in));
+            }
+
+            int start = DataInputOutputUtil.readINT(in);
+            TextRange textRange = TextRange.from(start, DataInputOutputUtil.readINT(in));
+
+            includeSites.add(new TwigIncludeSite(type, only, variables, textRange));
+        }
+
+        return includeSites;
+    }
+}
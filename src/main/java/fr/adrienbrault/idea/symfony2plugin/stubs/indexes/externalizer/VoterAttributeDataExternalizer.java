@@ -0,0 +1,55 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.VoterAttribute;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Binary format of a voter attribute: optional class and varint counted text ranges as start and length
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class VoterAttributeDataExternalizer implements DataExternalizer<VoterAttribute> {
+
+    public static final VoterAttributeDataExternalizer INSTANCE = new VoterAttributeDataExternalizer();
+
+    @Override
+    public void save(@NotNull DataOutput out, VoterAttribute value) throws IOException {
+        String className = value.getClassName();
+
+        out.writeBoolean(className != null);
+        if(className != null) {
+            EnumeratorStringDescriptor.INSTANCE.save(out, className);
+        }
+
+        Collection<TextRange> textRanges = value.getTextRanges();
+        DataInputOutputUtil.writeINT(out, textRanges.size());
+        for (TextRange textRange : textRanges) {
+            DataInputOutputUtil.writeINT(out, textRange.getStartOffset());
+            DataInputOutputUtil.writeINT(out, textRange.getLength());
+        }
+    }
+
+    @Override
+    public VoterAttribute read(@NotNull DataInput in) throws IOException {
+        String className = in.readBoolean() ? EnumeratorStringDescriptor.INSTANCE.read(in) : null;
+
+        int size = DataInputOutputUtil.readINT(in);
+        Collection<TextRange> textRanges = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int start = DataInputOutputUtil.readINT(in);
+            textRanges.add(TextRange.from(start, DataInputOutputUtil.readINT(in)));
+        }
+
+        return new VoterAttribute(className, textRanges);
+    }
+}
@@ -0,0 +1,225 @@
+package fr.adrienbrault.idea.symfony2plugin.stubs.util;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.ID;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Modification tracker for caches over the values of a file index; it only changes for files the index accepts.
+ *
+ * Changes are taken from psi and file system events, so indexers stay free of side effects and reading the count
+ * never indexes anything. Directory, root and dumb mode changes are counted for all indexes.
+ *
+ * The last changed files are kept, so caches can update only them instead of reading the whole index again.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class IndexModificationTracker implements ModificationTracker {
+
+    private static final Key<ConcurrentMap<ID<?, ?>, IndexModificationTracker>> TRACKERS = new Key<>("SYMFONY_INDEX_MODIFICATION_TRACKERS");
+
+    /**
+     * More changes are mostly a checkout or a generator, so reading the whole index again is cheaper
+     */
+    private static final int CHANGED_FILES_LIMIT = 256;
+
+    @NotNull
+    private final FileBasedIndex.InputFilter inputFilter;
+
+    private long modificationCount = 0;
+
+    /**
+     * Changes up to this count are not known per file
+     */
+    private long unknownModificationCount = 0;
+
+    @NotNull
+    private final Deque<ChangedFile> changedFiles = new ArrayDeque<>();
+
+    private IndexModificationTracker(@NotNull Project project, @NotNull FileBasedIndex.InputFilter inputFilter) {
+        this.inputFilter = inputFilter;
+
+        MessageBusConnection connection = project.getMessageBus().connect(project);
+
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if(event instanceof VFilePropertyChangeEvent && !((VFilePropertyChangeEvent) event).isRename()) {
+                        continue;
+                    }
+
+                    VirtualFile virtualFile = event instanceof VFileCopyEvent ? ((VFileCopyEvent) event).findCreatedFile() : event.getFile();
+                    if(virtualFile == null || virtualFile.isDirectory()) {
+                        unknownChange();
+                    } else if(event instanceof VFileDeleteEvent || event instanceof VFilePropertyChangeEvent || inputFilter.acceptInput(virtualFile)) {
+                        // deleted files and files renamed to other types can not be checked for their old type
+                        fileChanged(virtualFile);
+                    }
+                }
+            }
+        });
+
+        connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                unknownChange();
+            }
+        });
+
+        connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+            @Override
+            public void enteredDumbMode() {
+                unknownChange();
+            }
+
+            @Override
+            public void exitDumbMode() {
+                unknownChange();
+            }
+        });
+
+        // editor changes are not saved yet, but the index already provides their values
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+            @Override
+            public void childAdded(@NotNull PsiTreeChangeEvent event) {
+                psiChanged(event);
+            }
+
+            @Override
+            public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+                psiChanged(event);
+            }
+
+            @Override
+            public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+                psiChanged(event);
+            }
+
+            @Override
+            public void childMoved(@NotNull PsiTreeChangeEvent event) {
+                psiChanged(event);
+            }
+
+            @Override
+            public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+                psiChanged(event);
+            }
+        }, project);
+    }
+
+    /**
+     * Tracker of the given index; the filter must be the input filter of the index
+     */
+    @NotNull
+    public static IndexModificationTracker getInstance(@NotNull Project project, @NotNull ID<?, ?> id, @NotNull FileBasedIndex.InputFilter inputFilter) {
+        ConcurrentMap<ID<?, ?>, IndexModificationTracker> trackers = project.getUserData(TRACKERS);
+        if(trackers == null) {
+            trackers = ((UserDataHolderEx) project).putUserDataIfAbsent(TRACKERS, new ConcurrentHashMap<>());
+        }
+
+        return trackers.computeIfAbsent(id, i -> new IndexModificationTracker(project, inputFilter));
+    }
+
+    @Override
+    synchronized public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Files changed after the given modification count; deleted files are included and invalid.
+     *
+     * @return null if changes are not known per file, so the whole index must be read again
+     */
+    @Nullable
+    synchronized public Collection<VirtualFile> getChangedFiles(long modificationCount) {
+        if(modificationCount < unknownModificationCount) {
+            return null;
+        }
+
+        Set<VirtualFile> files = new HashSet<>();
+
+        Iterator<ChangedFile> iterator = changedFiles.descendingIterator();
+        while (iterator.hasNext()) {
+            ChangedFile changedFile = iterator.next();
+            if(changedFile.modificationCount <= modificationCount) {
+                break;
+            }
+
+            files.add(changedFile.virtualFile);
+        }
+
+        return files;
+    }
+
+    private void psiChanged(@NotNull PsiTreeChangeEvent event) {
+        PsiFile psiFile = event.getFile();
+        if(psiFile == null) {
+            return;
+        }
+
+        VirtualFile virtualFile = psiFile.getVirtualFile();
+        if(virtualFile != null && inputFilter.acceptInput(virtualFile)) {
+            fileChanged(virtualFile);
+        }
+    }
+
+    synchronized private void fileChanged(@NotNull VirtualFile virtualFile) {
+        modificationCount++;
+
+        // same file is mostly changed on every keystroke
+        ChangedFile last = changedFiles.peekLast();
+        if(last != null && last.virtualFile.equals(virtualFile)) {
+            last.modificationCount = modificationCount;
+            return;
+        }
+
+        changedFiles.addLast(new ChangedFile(virtualFile, modificationCount));
+
+        if(changedFiles.size() > CHANGED_FILES_LIMIT) {
+            unknownModificationCount = changedFiles.removeFirst().modificationCount;
+        }
+    }
+
+    synchronized private void unknownChange() {
+        unknownModificationCount = ++modificationCount;
+        changedFiles.clear();
+    }
+
+    private static class ChangedFile {
+        @NotNull
+        private final VirtualFile virtualFile;
+
+        private long modificationCount;
+
+        ChangedFile(@NotNull VirtualFile virtualFile, long modificationCount) {
+            this.virtualFile = virtualFile;
+            this.modificationCount = modificationCount;
+        }
+    }
+}
@@ -10,20 +10,26 @@ import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.*;
 public class IndexUtil {
     public static void forceReindex() {
         ID<?,?>[] indexIds = new ID<?,?>[] {
+            ConsoleCommandStubIndex.KEY,
             ContainerBuilderStubIndex.KEY,
             ContainerParameterStubIndex.KEY,
             DoctrineMetadataFileStubIndex.KEY,
             EventAnnotationStubIndex.KEY,
+            EventSubscriberStubIndex.KEY,
             FileResourcesIndex.KEY,
             PhpTwigTemplateUsageStubIndex.KEY,
+            RouteControllerStubIndex.KEY,
             RoutesStubIndex.KEY,
             ServicesDefinitionStubIndex.KEY,
             ServicesTagStubIndex.KEY,
+            TaggedServicesStubIndex.KEY,
             TwigExtendsStubIndex.KEY,
+            TwigExtensionStubIndex.KEY,
             TwigIncludeStubIndex.KEY,
             TwigMacroFunctionStubIndex.KEY,
             TranslationStubIndex.KEY,
-            TwigBlockIndexExtension.KEY
+            TwigBlockIndexExtension.KEY,
+            VoterAttributeStubIndex.KEY
         };
 
         for(ID<?,?> id: indexIds) {
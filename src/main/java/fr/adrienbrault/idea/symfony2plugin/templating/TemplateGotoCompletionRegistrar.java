@@ -1,8 +1,8 @@
 package fr.adrienbrault.idea.symfony2plugin.templating;
 
-import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.psi.PsiElement;
 import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionProvider;
+import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionProviderLookupArguments;
 import fr.adrienbrault.idea.symfony2plugin.codeInsight.utils.GotoCompletionUtil;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
 import org.jetbrains.annotations.NotNull;
@@ -19,10 +19,9 @@ public class TemplateGotoCompletionRegistrar extends GotoCompletionProvider {
         super(element);
     }
 
-    @NotNull
     @Override
-    public Collection<LookupElement> getLookupElements() {
-        return TwigUtil.getAllTemplateLookupElements(getElement().getProject());
+    public void getLookupElements(@NotNull GotoCompletionProviderLookupArguments arguments) {
+        TwigUtil.addTemplateLookupElements(getProject(), arguments.getResultSet(), true);
     }
 
     @NotNull
@@ -1,6 +1,5 @@
 package fr.adrienbrault.idea.symfony2plugin.templating;
 
-import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.lang.xml.XMLLanguage;
 import com.intellij.patterns.PlatformPatterns;
 import com.intellij.patterns.PsiElementPattern;
@@ -10,6 +9,7 @@ import com.intellij.psi.xml.XmlToken;
 import com.jetbrains.twig.elements.TwigCompositeElement;
 import com.jetbrains.twig.elements.TwigElementTypes;
 import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionProvider;
+import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionProviderLookupArguments;
 import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionRegistrar;
 import fr.adrienbrault.idea.symfony2plugin.codeInsight.GotoCompletionRegistrarParameter;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
@@ -87,10 +87,9 @@ public class TranslationTagGotoCompletionRegistrar implements GotoCompletionRegi
             this.domain = domain;
         }
 
-        @NotNull
         @Override
-        public Collection<LookupElement> getLookupElements() {
-            return TranslationUtil.getTranslationLookupElementsOnDomain(getProject(), domain);
+        public void getLookupElements(@NotNull GotoCompletionProviderLookupArguments arguments) {
+            TranslationUtil.addTranslationLookupElementsOnDomain(getProject(), domain, arguments.getResultSet());
         }
 
         @NotNull
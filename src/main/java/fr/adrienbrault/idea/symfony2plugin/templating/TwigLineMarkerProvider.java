@@ -15,19 +15,17 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.presentation.java.SymbolPresentationUtil;
-import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.ConstantFunction;
-import com.intellij.util.indexing.FileBasedIndex;
 import com.jetbrains.php.PhpIcons;
 import com.jetbrains.php.lang.psi.elements.Function;
 import com.jetbrains.twig.TwigFile;
-import com.jetbrains.twig.TwigFileType;
 import com.jetbrains.twig.elements.TwigElementTypes;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2Icons;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.dic.RelatedPopupGotoLineMarker;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigIncludeStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TwigIncludeSite;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.twig.include.TwigIncludeGraph;
 import fr.adrienbrault.idea.symfony2plugin.twig.loader.FileImplementsLazyLoader;
 import fr.adrienbrault.idea.symfony2plugin.twig.loader.FileOverwritesLazyLoader;
 import fr.adrienbrault.idea.symfony2plugin.twig.utils.TwigBlockUtil;
@@ -116,22 +114,8 @@ public class TwigLineMarkerProvider implements LineMarkerProvider {
     private LineMarkerInfo attachIncludes(@NotNull TwigFile twigFile) {
         Collection<String> templateNames = TwigUtil.getTemplateNamesForFile(twigFile);
 
-        boolean found = false;
-        for(String templateName: templateNames) {
-            Project project = twigFile.getProject();
-
-            Collection<VirtualFile> containingFiles = FileBasedIndex.getInstance().getContainingFiles(
-                TwigIncludeStubIndex.KEY, templateName, GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), TwigFileType.INSTANCE)
-            );
-
-            // stop on first target, we load them lazily afterwards
-            if(containingFiles.size() > 0) {
-                found = true;
-                break;
-            }
-        }
-
-        if(!found) {
+        // we load targets lazily afterwards
+        if(!TwigIncludeGraph.getInstance(twigFile.getProject()).isIncluded(templateNames)) {
             return null;
         }
 
@@ -307,36 +291,28 @@ public class TwigLineMarkerProvider implements LineMarkerProvider {
         @NotNull
         @Override
         protected Collection<? extends PsiElement> compute() {
-            Collection<VirtualFile> twigFiles = new ArrayList<>();
-
             Project project = twigFile.getProject();
 
-            for(String templateName: this.templateNames) {
-                // collect files which contains given template name for inclusion
-                twigFiles.addAll(FileBasedIndex.getInstance().getContainingFiles(
-                    TwigIncludeStubIndex.KEY,
-                    templateName,
-                    GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), TwigFileType.INSTANCE))
-                );
-            }
+            TwigIncludeGraph graph = TwigIncludeGraph.getInstance(project);
 
             Collection<PsiElement> targets = new ArrayList<>();
 
-            for (VirtualFile virtualFile : twigFiles) {
+            // collect files which contains given template name for inclusion
+            for (Map.Entry<VirtualFile, Collection<TwigIncludeSite>> entry : graph.getIncludingFiles(this.templateNames).entrySet()) {
                 // resolve virtual file
-                PsiFile myTwigFile = PsiManager.getInstance(project).findFile(virtualFile);
+                PsiFile myTwigFile = PsiManager.getInstance(project).findFile(entry.getKey());
                 if(!(myTwigFile instanceof TwigFile)) {
                     continue;
                 }
 
                 Collection<PsiElement> fileTargets = new ArrayList<>();
 
-                TwigUtil.visitTemplateIncludes((TwigFile) myTwigFile, templateInclude -> {
-                        if(this.templateNames.contains(templateInclude.getTemplateName()) || this.templateNames.contains(TwigUtil.normalizeTemplateName(templateInclude.getTemplateName()))) {
-                            fileTargets.add(templateInclude.getPsiElement());
-                        }
+                for (TwigIncludeSite includeSite : entry.getValue()) {
+                    PsiElement includeElement = TwigIncludeGraph.getIncludeElement(myTwigFile, includeSite);
+                    if(includeElement != null) {
+                        fileTargets.add(includeElement);
                     }
-                );
+                }
 
                 // navigate to include pattern; else fallback to file scope
                 if(fileTargets.size() > 0) {
@@ -86,7 +86,7 @@ public class TwigTemplateCompletionContributor extends CompletionContributor {
                     PsiElement psiElement = parameters.getPosition();
                     String domainName =  TwigUtil.getPsiElementTranslationDomain(psiElement);
 
-                    resultSet.addAllElements(TranslationUtil.getTranslationLookupElementsOnDomain(psiElement.getProject(), domainName));
+                    TranslationUtil.addTranslationLookupElementsOnDomain(psiElement.getProject(), domainName, resultSet);
                 }
             }
         );
@@ -487,7 +487,7 @@ public class TwigTemplateCompletionContributor extends CompletionContributor {
                 return;
             }
 
-            resultSet.addAllElements(TwigUtil.getTwigLookupElements(parameters.getPosition().getProject()));
+            TwigUtil.addTemplateLookupElements(parameters.getPosition().getProject(), resultSet, false);
         }
     }
 
@@ -555,7 +555,7 @@ public class TwigTemplateCompletionContributor extends CompletionContributor {
                 return;
             }
 
-            resultSet.addAllElements(TwigUtil.getTwigLookupElements(parameters.getPosition().getProject()));
+            TwigUtil.addTemplateLookupElements(parameters.getPosition().getProject(), resultSet, false);
         }
     }
 
@@ -19,8 +19,6 @@ import fr.adrienbrault.idea.symfony2plugin.translation.dict.TranslationUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
@@ -125,13 +123,9 @@ public class TwigHtmlCompletionContributor extends CompletionContributor {
                 TwigUtil.DomainScope domainScope = TwigUtil.getTwigFileDomainScope(element != null ? element : position);
 
                 String finalDomain = domainScope.getDomain();
-                List<LookupElement> collect = TranslationUtil.getTranslationLookupElementsOnDomain(position.getProject(), domainScope.getDomain())
-                    .stream()
-                    .map((Function<LookupElement, LookupElement>) lookupElement ->
-                        new TranslatorLookupElement(lookupElement.getLookupString(), finalDomain, TwigTranslationFilterInsertHandler.getInstance())
-                    ).collect(Collectors.toList());
-
-                resultSet.addAllElements(collect);
+                TranslationUtil.addTranslationLookupElementsOnDomain(position.getProject(), finalDomain, resultSet, (key, weak) ->
+                    new TranslatorLookupElement(key, finalDomain, TwigTranslationFilterInsertHandler.getInstance())
+                );
             }
         });
     }
@@ -1,11 +1,14 @@
 package fr.adrienbrault.idea.symfony2plugin.templating.dict;
 
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigExtensionParser;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
@@ -53,4 +56,31 @@ public class TwigExtension {
     String getOption(String key) {
         return options.getOrDefault(key, null);
     }
+
+    /**
+     * Creation options like "needs_environment" or "needs_context"
+     */
+    @NotNull
+    public Map<String, String> getOptions() {
+        return Collections.unmodifiableMap(options);
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+            .append(this.twigExtensionType)
+            .append(this.signature)
+            .append(this.options)
+            .toHashCode()
+        ;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TwigExtension &&
+            ((TwigExtension) obj).twigExtensionType == this.twigExtensionType &&
+            Objects.equals(((TwigExtension) obj).signature, this.signature) &&
+            Objects.equals(((TwigExtension) obj).options, this.options)
+        ;
+    }
 }
@@ -1,6 +1,9 @@
 package fr.adrienbrault.idea.symfony2plugin.templating.path;
 
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.util.PsiModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtension;
 import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtensionParameter;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
@@ -43,4 +46,14 @@ public class BundleTwigNamespaceExtension implements TwigNamespaceExtension {
 
         return twigPaths;
     }
+
+    /**
+     * Bundles are classes and its "Resources/views" directories; so method bodies changes are not relevant
+     */
+    @NotNull
+    @Override
+    public ModificationTracker getModificationTracker(@NotNull TwigNamespaceExtensionParameter parameter) {
+        ModificationTracker tracker = PsiModificationTracker.getInstance(parameter.getProject()).getOutOfCodeBlockModificationTracker();
+        return () -> tracker.getModificationCount() + VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS.getModificationCount();
+    }
 }
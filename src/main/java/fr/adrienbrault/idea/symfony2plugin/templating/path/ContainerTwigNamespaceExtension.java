@@ -1,5 +1,6 @@
 package fr.adrienbrault.idea.symfony2plugin.templating.path;
 
+import com.intellij.openapi.util.ModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtension;
 import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtensionParameter;
 import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
@@ -28,4 +29,10 @@ public class ContainerTwigNamespaceExtension implements TwigNamespaceExtension {
             twigPathServiceParser.getTwigPathIndex().getTwigPaths()
         );
     }
+
+    @NotNull
+    @Override
+    public ModificationTracker getModificationTracker(@NotNull TwigNamespaceExtensionParameter parameter) {
+        return ServiceXmlParserFactory.getModificationTracker(parameter.getProject(), TwigPathServiceParser.class);
+    }
 }
@@ -1,7 +1,9 @@
 package fr.adrienbrault.idea.symfony2plugin.templating.path;
 
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtension;
 import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtensionParameter;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
@@ -49,4 +51,13 @@ public class GlobalAppTwigNamespaceExtension implements TwigNamespaceExtension {
 
         return paths;
     }
+
+    /**
+     * Only directories are collected; a changed "app" directory setting is handled by the namespace registry itself
+     */
+    @NotNull
+    @Override
+    public ModificationTracker getModificationTracker(@NotNull TwigNamespaceExtensionParameter parameter) {
+        return VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS;
+    }
 }
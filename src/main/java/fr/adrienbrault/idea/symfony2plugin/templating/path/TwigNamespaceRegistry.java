@@ -0,0 +1,289 @@
+package fr.adrienbrault.idea.symfony2plugin.templating.path;
+
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import fr.adrienbrault.idea.symfony2plugin.Settings;
+import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtension;
+import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtensionParameter;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Project wide Twig namespaces of all TwigNamespaceExtension, including the user settings.
+ *
+ * Every extension is only visited again if its own modification tracker changed; so eg a bundle scan
+ * is not triggered by a modified config file. Lookups by namespace and by directory of a file are precomputed.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigNamespaceRegistry {
+
+    private static final ExtensionPointName<TwigNamespaceExtension> EXTENSIONS = new ExtensionPointName<>(
+        "fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtension"
+    );
+
+    private static final Key<TwigNamespaceRegistry> REGISTRY = new Key<>("TWIG_NAMESPACE_REGISTRY");
+
+    /**
+     * Global counter; so a recreated registry never reuses an already provided modification count
+     */
+    private static final AtomicLong MODIFICATION_COUNT = new AtomicLong();
+
+    @NotNull
+    private final Project project;
+
+    @NotNull
+    private final AtomicReference<State> state = new AtomicReference<>(new State());
+
+    private TwigNamespaceRegistry(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static TwigNamespaceRegistry getInstance(@NotNull Project project) {
+        TwigNamespaceRegistry registry = project.getUserData(REGISTRY);
+        return registry != null ? registry : ((UserDataHolderEx) project).putUserDataIfAbsent(REGISTRY, new TwigNamespaceRegistry(project));
+    }
+
+    /**
+     * Tracker for caches build on top of the namespaces; it changes whenever any namespace was added, removed or changed.
+     * Other file structure changes are not included; eg a created template
+     */
+    @NotNull
+    public static ModificationTracker getModificationTracker(@NotNull Project project) {
+        return () -> getInstance(project).getModificationCount();
+    }
+
+    /**
+     * @param includeSettings include custom namespaces of the user
+     */
+    @NotNull
+    public List<TwigPath> getTwigPaths(boolean includeSettings) {
+        Namespaces namespaces = getState().namespaces;
+        return new ArrayList<>(includeSettings ? namespaces.twigPaths : namespaces.extensionTwigPaths);
+    }
+
+    /**
+     * Enabled paths of a namespace, "__main__" for the global one
+     */
+    @NotNull
+    public Collection<TwigPath> getNamespacePaths(@NotNull String namespace) {
+        return getState().namespaces.namespacePaths.getOrDefault(namespace, Collections.emptyList());
+    }
+
+    /**
+     * Enabled paths which contain the given file, with the file path relative to them; no file system access needed
+     */
+    @NotNull
+    public Collection<Pair<TwigPath, String>> getRelativePathsForFile(@NotNull VirtualFile virtualFile) {
+        return getState().namespaces.directories.getRelativePaths(virtualFile.getPath());
+    }
+
+    public long getModificationCount() {
+        return getState().modificationCount;
+    }
+
+    /**
+     * Extensions are visited without any lock, as they may read indexes or other caches. Concurrent lookups
+     * may both create a state; only one replaces the state they started from, the other one is still valid
+     * for its own lookup.
+     */
+    @NotNull
+    private State getState() {
+        State previous = this.state.get();
+
+        TwigNamespaceExtensionParameter parameter = new TwigNamespaceExtensionParameter(project);
+
+        // user settings change eg the "app" directory; so drop everything
+        String settingsHash = getSettingsHash(project);
+        boolean settingsChanged = !settingsHash.equals(previous.settingsHash);
+
+        TwigNamespaceExtension[] extensions = EXTENSIONS.getExtensions();
+        boolean modified = settingsChanged || extensions.length != previous.extensionNamespaces.size();
+
+        Map<TwigNamespaceExtension, ExtensionNamespaces> extensionNamespaces = new HashMap<>();
+        for (TwigNamespaceExtension extension : extensions) {
+            long extensionModificationCount = extension.getModificationTracker(parameter).getModificationCount();
+
+            ExtensionNamespaces namespaces = settingsChanged ? null : previous.extensionNamespaces.get(extension);
+            if(namespaces == null || namespaces.modificationCount != extensionModificationCount) {
+                namespaces = new ExtensionNamespaces(extensionModificationCount, new ArrayList<>(extension.getNamespaces(parameter)));
+                modified = true;
+            }
+
+            extensionNamespaces.put(extension, namespaces);
+        }
+
+        // directories of the namespaces are resolved once per file structure change;
+        // most of them dont change any namespace, so dependent caches are kept
+        long vfsModificationCount = VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS.getModificationCount();
+        if(!modified && vfsModificationCount == previous.vfsModificationCount) {
+            return previous;
+        }
+
+        Namespaces namespaces = createNamespaces(extensions, extensionNamespaces);
+
+        // only a changed namespace changes dependent caches
+        long modificationCount = namespaces.signature.equals(previous.namespaces.signature)
+            ? previous.modificationCount
+            : MODIFICATION_COUNT.incrementAndGet();
+
+        State next = new State(settingsHash, extensionNamespaces, vfsModificationCount, modificationCount, namespaces);
+        this.state.compareAndSet(previous, next);
+
+        return next;
+    }
+
+    @NotNull
+    private Namespaces createNamespaces(@NotNull TwigNamespaceExtension[] extensions, @NotNull Map<TwigNamespaceExtension, ExtensionNamespaces> extensionNamespaces) {
+        Namespaces namespaces = new Namespaces();
+
+        // extension paths are shared with the extension caches, so never change them
+        List<TwigPath> twigPaths = new ArrayList<>();
+        for (TwigNamespaceExtension extension : extensions) {
+            for (TwigPath twigPath : extensionNamespaces.get(extension).twigPaths) {
+                twigPaths.add(twigPath.clone());
+            }
+        }
+
+        // disable namespace explicitly disabled by user
+        Map<String, List<TwigNamespaceSetting>> managedNamespaces = new HashMap<>();
+        List<TwigNamespaceSetting> twigNamespaceSettings = Settings.getInstance(project).twigNamespaces;
+        if(twigNamespaceSettings != null) {
+            for (TwigNamespaceSetting twigNamespaceSetting : twigNamespaceSettings) {
+                managedNamespaces.computeIfAbsent(twigNamespaceSetting.getNamespaceType() + twigNamespaceSetting.getNamespace(), s -> new ArrayList<>()).add(twigNamespaceSetting);
+            }
+        }
+
+        for (TwigPath twigPath : twigPaths) {
+            List<TwigNamespaceSetting> settings = managedNamespaces.get(twigPath.getNamespaceType() + twigPath.getNamespace());
+            if(settings != null && settings.stream().anyMatch(setting -> setting.equals(project, twigPath))) {
+                twigPath.setEnabled(false);
+            }
+        }
+
+        namespaces.extensionTwigPaths.addAll(TwigUtil.getUniqueTwigTemplatesList(twigPaths));
+        namespaces.twigPaths.addAll(namespaces.extensionTwigPaths);
+
+        if(twigNamespaceSettings != null) {
+            for(TwigNamespaceSetting twigNamespaceSetting: twigNamespaceSettings) {
+                if(twigNamespaceSetting.isCustom()) {
+                    namespaces.twigPaths.add(new TwigPath(twigNamespaceSetting.getPath(), twigNamespaceSetting.getNamespace(), twigNamespaceSetting.getNamespaceType(), true).setEnabled(twigNamespaceSetting.isEnabled()));
+                }
+            }
+        }
+
+        StringBuilder signature = new StringBuilder();
+
+        for (TwigPath twigPath : namespaces.twigPaths) {
+            signature.append(twigPath.getNamespaceType()).append(twigPath.getNamespace()).append('\0')
+                .append(twigPath.getPath()).append(twigPath.isEnabled()).append('\0');
+
+            if(!twigPath.isEnabled()) {
+                continue;
+            }
+
+            namespaces.namespacePaths.computeIfAbsent(twigPath.getNamespace(), s -> new ArrayList<>()).add(twigPath);
+
+            VirtualFile directory = twigPath.getDirectory(project);
+            if(directory != null) {
+                namespaces.directories.add(directory.getPath(), twigPath);
+                signature.append(directory.getPath());
+            }
+
+            signature.append('\0');
+        }
+
+        namespaces.signature = signature.toString();
+
+        return namespaces;
+    }
+
+    @NotNull
+    private static String getSettingsHash(@NotNull Project project) {
+        Settings settings = Settings.getInstance(project);
+
+        StringBuilder hash = new StringBuilder(String.valueOf(settings.directoryToApp));
+        if(settings.twigNamespaces != null) {
+            for (TwigNamespaceSetting setting : settings.twigNamespaces) {
+                hash.append('\0').append(setting.getNamespaceType()).append(setting.getNamespace()).append('\0')
+                    .append(setting.getPath()).append(setting.isEnabled()).append(setting.isCustom());
+            }
+        }
+
+        return hash.toString();
+    }
+
+    private static class ExtensionNamespaces {
+        private final long modificationCount;
+
+        @NotNull
+        private final Collection<TwigPath> twigPaths;
+
+        ExtensionNamespaces(long modificationCount, @NotNull Collection<TwigPath> twigPaths) {
+            this.modificationCount = modificationCount;
+            this.twigPaths = twigPaths;
+        }
+    }
+
+    /**
+     * Never changed after creation
+     */
+    private static class State {
+        @Nullable
+        private final String settingsHash;
+
+        @NotNull
+        private final Map<TwigNamespaceExtension, ExtensionNamespaces> extensionNamespaces;
+
+        private final long vfsModificationCount;
+
+        private final long modificationCount;
+
+        @NotNull
+        private final Namespaces namespaces;
+
+        State() {
+            this(null, Collections.emptyMap(), -1, 0, new Namespaces());
+        }
+
+        State(@Nullable String settingsHash, @NotNull Map<TwigNamespaceExtension, ExtensionNamespaces> extensionNamespaces, long vfsModificationCount, long modificationCount, @NotNull Namespaces namespaces) {
+            this.settingsHash = settingsHash;
+            this.extensionNamespaces = extensionNamespaces;
+            this.vfsModificationCount = vfsModificationCount;
+            this.modificationCount = modificationCount;
+            this.namespaces = namespaces;
+        }
+    }
+
+    private static class Namespaces {
+        @NotNull
+        private final List<TwigPath> extensionTwigPaths = new ArrayList<>();
+
+        @NotNull
+        private final List<TwigPath> twigPaths = new ArrayList<>();
+
+        @NotNull
+        private final Map<String, List<TwigPath>> namespacePaths = new HashMap<>();
+
+        @NotNull
+        private final TwigPathTrie directories = new TwigPathTrie();
+
+        /**
+         * All paths with their resolved directories; equal signatures provide equal lookups
+         */
+        @NotNull
+        private String signature = "";
+    }
+}
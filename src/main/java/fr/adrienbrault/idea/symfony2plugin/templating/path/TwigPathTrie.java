@@ -0,0 +1,103 @@
+package fr.adrienbrault.idea.symfony2plugin.templating.path;
+
+import com.intellij.openapi.util.Pair;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Directory path segments to its Twig paths; so all roots of a file are found in O(depth) instead of checking every path
+ *
+ * "/project/templates" => [TwigPath(__main__), TwigPath(App)]
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigPathTrie {
+
+    @NotNull
+    private final Node root = new Node();
+
+    private int position = 0;
+
+    /**
+     * @param directory system independent path of a directory
+     */
+    public void add(@NotNull String directory, @NotNull TwigPath twigPath) {
+        String[] segments = getSegments(directory);
+
+        Node node = root;
+        for (String segment : segments) {
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+
+        node.twigPaths.add(new Entry(position++, segments.length, twigPath));
+    }
+
+    /**
+     * All Twig paths which are a parent directory of the given file path, with the file path relative to them;
+     * in order of adding them
+     *
+     * "/project/templates/foo/bar.html.twig" => [TwigPath("/project/templates"), "foo/bar.html.twig"]
+     */
+    @NotNull
+    public List<Pair<TwigPath, String>> getRelativePaths(@NotNull String path) {
+        String[] segments = getSegments(path);
+
+        List<Pair<TwigPath, String>> relativePaths = new ArrayList<>();
+        for (Entry entry : getEntries(segments)) {
+            relativePaths.add(Pair.create(entry.twigPath, StringUtils.join(segments, '/', entry.depth, segments.length)));
+        }
+
+        return relativePaths;
+    }
+
+    @NotNull
+    private List<Entry> getEntries(@NotNull String[] segments) {
+        List<Entry> entries = new ArrayList<>(root.twigPaths);
+
+        Node node = root;
+        for (String segment : segments) {
+            node = node.children.get(segment);
+            if(node == null) {
+                break;
+            }
+
+            entries.addAll(node.twigPaths);
+        }
+
+        if(entries.size() > 1) {
+            entries.sort(Comparator.comparingInt(entry -> entry.position));
+        }
+
+        return entries;
+    }
+
+    @NotNull
+    private static String[] getSegments(@NotNull String path) {
+        return StringUtils.split(path.replace("\\", "/"), "/");
+    }
+
+    private static class Node {
+        @NotNull
+        private final Map<String, Node> children = new HashMap<>();
+
+        @NotNull
+        private final List<Entry> twigPaths = new ArrayList<>(1);
+    }
+
+    private static class Entry {
+        private final int position;
+
+        private final int depth;
+
+        @NotNull
+        private final TwigPath twigPath;
+
+        Entry(int position, int depth, @NotNull TwigPath twigPath) {
+            this.position = position;
+            this.depth = depth;
+            this.twigPath = twigPath;
+        }
+    }
+}
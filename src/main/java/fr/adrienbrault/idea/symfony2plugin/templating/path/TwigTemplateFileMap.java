@@ -0,0 +1,228 @@
+package fr.adrienbrault.idea.symfony2plugin.templating.path;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.twig.TwigFileType;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Template files of all enabled namespaces by their path relative to the namespace directory:
+ * "@Foo/bar/index.html.twig" or "FooBundle:bar:index.html.twig" are a single map lookup in the "Foo" namespace.
+ *
+ * Namespace directories are fully visited on first access; afterwards created, moved, renamed or deleted files are
+ * updated from VFS events. Directory changes or namespace changes visit all namespaces again on next access.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigTemplateFileMap {
+
+    private static final Key<TwigTemplateFileMap> FILE_MAP = new Key<>("TWIG_TEMPLATE_FILE_MAP");
+
+    @NotNull
+    private final Project project;
+
+    /**
+     * Path of a Twig path, as it is configured, to the relative path of every template inside its directory
+     */
+    @NotNull
+    private final Map<String, Map<String, VirtualFile>> files = new HashMap<>();
+
+    /**
+     * Template to its Twig paths with the relative path; so a moved or deleted file is removed without its old path
+     */
+    @NotNull
+    private final Map<VirtualFile, Collection<Pair<String, String>>> fileKeys = new HashMap<>();
+
+    @NotNull
+    private final Set<VirtualFile> changedFiles = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean valid = false;
+
+    private long namespaceModificationCount = -1;
+
+    private TwigTemplateFileMap(@NotNull Project project) {
+        this.project = project;
+
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if(event instanceof VFileContentChangeEvent || (event instanceof VFilePropertyChangeEvent && !((VFilePropertyChangeEvent) event).isRename())) {
+                        continue;
+                    }
+
+                    VirtualFile virtualFile = event instanceof VFileCopyEvent ? ((VFileCopyEvent) event).findCreatedFile() : event.getFile();
+                    if(virtualFile == null || virtualFile.isDirectory()) {
+                        valid = false;
+                    } else {
+                        changedFiles.add(virtualFile);
+                    }
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public static TwigTemplateFileMap getInstance(@NotNull Project project) {
+        TwigTemplateFileMap fileMap = project.getUserData(FILE_MAP);
+        return fileMap != null ? fileMap : ((UserDataHolderEx) project).putUserDataIfAbsent(FILE_MAP, new TwigTemplateFileMap(project));
+    }
+
+    /**
+     * Template inside the directory of the Twig path; same as "VfsUtil.findRelativeFile" on the directory would provide
+     *
+     * @param templatePath relative path "bar/index.html.twig"
+     */
+    @Nullable
+    public VirtualFile getFile(@NotNull TwigPath twigPath, @NotNull String templatePath) {
+        String key = getKey(templatePath);
+        if(key == null) {
+            // "../" leaves the namespace; only the file system knows where it ends
+            VirtualFile directory = twigPath.getDirectory(project);
+            return directory != null ? VfsUtil.findRelativeFile(directory, templatePath.split("/")) : null;
+        }
+
+        VirtualFile virtualFile;
+        synchronized (this) {
+            update();
+
+            Map<String, VirtualFile> templates = files.get(twigPath.getPath());
+            virtualFile = templates != null ? templates.get(key) : null;
+        }
+
+        return virtualFile != null && virtualFile.isValid() ? virtualFile : null;
+    }
+
+    private void update() {
+        long namespaceModificationCount = TwigNamespaceRegistry.getInstance(project).getModificationCount();
+        if(!valid || namespaceModificationCount != this.namespaceModificationCount) {
+            // events of this build must visit the directories again
+            valid = true;
+            changedFiles.clear();
+            this.namespaceModificationCount = namespaceModificationCount;
+
+            build();
+            return;
+        }
+
+        if(changedFiles.isEmpty()) {
+            return;
+        }
+
+        List<VirtualFile> virtualFiles = new ArrayList<>(changedFiles);
+        changedFiles.removeAll(virtualFiles);
+
+        for (VirtualFile virtualFile : virtualFiles) {
+            removeFile(virtualFile);
+
+            if(virtualFile.isValid() && isTemplateFile(virtualFile)) {
+                for (Pair<TwigPath, String> pair : TwigNamespaceRegistry.getInstance(project).getRelativePathsForFile(virtualFile)) {
+                    addFile(pair.getFirst().getPath(), pair.getSecond(), virtualFile);
+                }
+            }
+        }
+    }
+
+    private void build() {
+        files.clear();
+        fileKeys.clear();
+
+        for (TwigPath twigPath : TwigUtil.getTwigNamespaces(project)) {
+            if(!twigPath.isEnabled() || files.containsKey(twigPath.getPath())) {
+                continue;
+            }
+
+            VirtualFile directory = twigPath.getDirectory(project);
+            if(directory == null) {
+                continue;
+            }
+
+            files.put(twigPath.getPath(), new HashMap<>());
+
+            VfsUtilCore.visitChildrenRecursively(directory, new VirtualFileVisitor() {
+                @Override
+                public boolean visitFile(@NotNull VirtualFile virtualFile) {
+                    if(!virtualFile.isDirectory() && isTemplateFile(virtualFile)) {
+                        String relativePath = VfsUtilCore.getRelativePath(virtualFile, directory, '/');
+                        if(relativePath != null) {
+                            addFile(twigPath.getPath(), relativePath, virtualFile);
+                        }
+                    }
+
+                    return true;
+                }
+            });
+        }
+    }
+
+    private void addFile(@NotNull String twigPath, @NotNull String relativePath, @NotNull VirtualFile virtualFile) {
+        String key = getKey(relativePath);
+        if(key == null) {
+            return;
+        }
+
+        files.computeIfAbsent(twigPath, s -> new HashMap<>()).put(key, virtualFile);
+        fileKeys.computeIfAbsent(virtualFile, f -> new ArrayList<>()).add(Pair.create(twigPath, key));
+    }
+
+    private void removeFile(@NotNull VirtualFile virtualFile) {
+        Collection<Pair<String, String>> keys = fileKeys.remove(virtualFile);
+        if(keys == null) {
+            return;
+        }
+
+        for (Pair<String, String> key : keys) {
+            Map<String, VirtualFile> templates = files.get(key.getFirst());
+            if(templates != null) {
+                templates.remove(key.getSecond(), virtualFile);
+            }
+        }
+    }
+
+    /**
+     * "bar//./index.html.twig" => "bar/index.html.twig"; file names are only compared ignoring case if the file system does.
+     * Null for paths with "..", which are not inside the namespace directory
+     */
+    @Nullable
+    private static String getKey(@NotNull String relativePath) {
+        StringBuilder key = new StringBuilder();
+
+        for (String part : relativePath.split("/")) {
+            if(part.isEmpty() || ".".equals(part)) {
+                continue;
+            }
+
+            if("..".equals(part)) {
+                return null;
+            }
+
+            if(key.length() > 0) {
+                key.append('/');
+            }
+
+            key.append(part);
+        }
+
+        return SystemInfo.isFileSystemCaseSensitive ? key.toString() : key.toString().toLowerCase();
+    }
+
+    private static boolean isTemplateFile(@NotNull VirtualFile virtualFile) {
+        return virtualFile.getFileType() instanceof TwigFileType || virtualFile.getFileType() instanceof PhpFileType;
+    }
+}
@@ -0,0 +1,448 @@
+package fr.adrienbrault.idea.symfony2plugin.templating.path;
+
+import com.intellij.codeInsight.completion.PrefixMatcher;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.twig.TwigFileType;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All template names of the enabled namespaces, searchable by the start of any of their words:
+ * "@App/layout/base.html.twig" is found by "@App", "layout", "base", "html" or "twig".
+ *
+ * Namespace directories are only visited once; afterwards created, moved or deleted files are updated from VFS events.
+ * Directory changes or namespace changes visit all namespaces again on next access.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigTemplateNameStore {
+
+    private static final Key<TwigTemplateNameStore> NAME_STORE = new Key<>("TWIG_TEMPLATE_NAME_STORE");
+
+    /**
+     * Characters after them start a new word
+     */
+    private static final String WORD_SEPARATORS = "@:/_-.";
+
+    /**
+     * See "getPriority"
+     */
+    private static final int PRIORITIES = 4;
+
+    /**
+     * Names are handed out in batches; so the store is never locked while a processor is running
+     */
+    private static final int BATCH_SIZE = 100;
+
+    @NotNull
+    private final Project project;
+
+    @NotNull
+    private final Map<String, TemplateName> names = new HashMap<>();
+
+    /**
+     * Names by their priority, in name order
+     */
+    @NotNull
+    private final List<NavigableSet<String>> priorityNames = createPrioritySets();
+
+    /**
+     * Lower case word start of a name joined with the name "word\0name", by priority of the name
+     */
+    @NotNull
+    private final List<NavigableSet<String>> priorityWords = createPrioritySets();
+
+    @NotNull
+    private final Map<VirtualFile, Set<String>> fileNames = new HashMap<>();
+
+    /**
+     * Directory of a Twig path to its directories which were visited within the limits of the directory visitor;
+     * changed files are only added inside them, same as a new visit would do
+     */
+    @NotNull
+    private final Map<VirtualFile, Set<VirtualFile>> visitedDirectories = new HashMap<>();
+
+    @NotNull
+    private final Set<VirtualFile> changedFiles = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean valid = false;
+
+    private long namespaceModificationCount = -1;
+
+    private TwigTemplateNameStore(@NotNull Project project) {
+        this.project = project;
+
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if(event instanceof VFileContentChangeEvent || (event instanceof VFilePropertyChangeEvent && !((VFilePropertyChangeEvent) event).isRename())) {
+                        continue;
+                    }
+
+                    VirtualFile virtualFile = event instanceof VFileCopyEvent ? ((VFileCopyEvent) event).findCreatedFile() : event.getFile();
+                    if(virtualFile == null || virtualFile.isDirectory()) {
+                        valid = false;
+                    } else {
+                        changedFiles.add(virtualFile);
+                    }
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public static TwigTemplateNameStore getInstance(@NotNull Project project) {
+        TwigTemplateNameStore store = project.getUserData(NAME_STORE);
+        return store != null ? store : ((UserDataHolderEx) project).putUserDataIfAbsent(NAME_STORE, new TwigTemplateNameStore(project));
+    }
+
+    /**
+     * Names which have a word starting with the prefix, by namespace priority. Processing stops if processor returns false
+     *
+     * @param prefix case insensitive; empty for all names
+     * @param withPhp include names of php templates
+     */
+    public void processTemplateNames(@NotNull String prefix, boolean withPhp, @NotNull Processor<TemplateName> processor) {
+        String word = prefix.toLowerCase();
+
+        // a name is found by each of its matching words
+        Set<String> processed = new HashSet<>();
+
+        for (int priority = 0; priority < PRIORITIES; priority++) {
+            String last = null;
+            boolean hasNext = true;
+
+            while (hasNext) {
+                List<TemplateName> templateNames = new ArrayList<>(BATCH_SIZE);
+
+                synchronized (this) {
+                    update();
+
+                    NavigableSet<String> keys = word.isEmpty()
+                        ? priorityNames.get(priority)
+                        : priorityWords.get(priority).subSet(word, true, word + Character.MAX_VALUE, false);
+
+                    // names changed between two batches are visited in their current order
+                    Iterator<String> iterator = (last != null ? keys.tailSet(last, false) : keys).iterator();
+                    while (iterator.hasNext() && templateNames.size() < BATCH_SIZE) {
+                        last = iterator.next();
+
+                        TemplateName templateName = names.get(word.isEmpty() ? last : last.substring(last.indexOf('\0') + 1));
+                        if(templateName != null) {
+                            templateNames.add(templateName);
+                        }
+                    }
+
+                    hasNext = iterator.hasNext();
+                }
+
+                for (TemplateName templateName : templateNames) {
+                    if(processed.add(templateName.getName()) && (withPhp || templateName.getTwigFile() != null) && !processor.process(templateName)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Names matching the completion prefix matcher, by namespace priority. Names with a word starting with the typed word
+     * are visited first; all other names are filtered afterwards, so middle matches like "out" for "layout" are kept.
+     * Processing stops if processor returns false
+     *
+     * @param withPhp include names of php templates
+     */
+    public void processTemplateNames(@NotNull PrefixMatcher prefixMatcher, boolean withPhp, @NotNull Processor<TemplateName> processor) {
+        Set<String> processed = new HashSet<>();
+
+        Processor<TemplateName> matchingProcessor = templateName ->
+            !processed.add(templateName.getName()) || !prefixMatcher.prefixMatches(templateName.getName()) || processor.process(templateName);
+
+        String word = getLastWord(prefixMatcher.getPrefix());
+        if(!word.isEmpty()) {
+            final boolean[] stopped = {false};
+
+            processTemplateNames(word, withPhp, templateName -> {
+                stopped[0] = !matchingProcessor.process(templateName);
+                return !stopped[0];
+            });
+
+            if(stopped[0]) {
+                return;
+            }
+        }
+
+        processTemplateNames("", withPhp, matchingProcessor);
+    }
+
+    @Nullable
+    synchronized public TemplateName getTemplateName(@NotNull String name) {
+        update();
+        return names.get(name);
+    }
+
+    private void update() {
+        long namespaceModificationCount = TwigNamespaceRegistry.getInstance(project).getModificationCount();
+        if(!valid || namespaceModificationCount != this.namespaceModificationCount) {
+            // events of this build must visit the directories again
+            valid = true;
+            changedFiles.clear();
+            this.namespaceModificationCount = namespaceModificationCount;
+
+            build();
+            return;
+        }
+
+        if(changedFiles.isEmpty()) {
+            return;
+        }
+
+        List<VirtualFile> virtualFiles = new ArrayList<>(changedFiles);
+        changedFiles.removeAll(virtualFiles);
+
+        for (VirtualFile virtualFile : virtualFiles) {
+            removeFile(virtualFile);
+
+            if(virtualFile.isValid() && isTemplateFile(virtualFile)) {
+                for (Pair<TwigPath, String> pair : TwigNamespaceRegistry.getInstance(project).getRelativePathsForFile(virtualFile)) {
+                    if(isInsideVisitedDirectory(pair.getFirst(), virtualFile)) {
+                        addName(TwigUtil.getTemplateNameForTwigPath(pair.getFirst(), pair.getSecond()), pair.getFirst(), virtualFile);
+                    }
+                }
+            }
+        }
+    }
+
+    private void build() {
+        names.clear();
+        priorityNames.forEach(Set::clear);
+        priorityWords.forEach(Set::clear);
+        fileNames.clear();
+        visitedDirectories.clear();
+
+        for (TwigPath twigPath : TwigUtil.getTwigNamespaces(project)) {
+            if(!twigPath.isEnabled()) {
+                continue;
+            }
+
+            VirtualFile directory = twigPath.getDirectory(project);
+            if(directory == null) {
+                continue;
+            }
+
+            Set<VirtualFile> directories = visitedDirectories.computeIfAbsent(directory, d -> new HashSet<>());
+            for (Map.Entry<String, VirtualFile> entry : TwigUtil.getTemplateFilesInDirectory(directory, twigPath, directories).entrySet()) {
+                addName(entry.getKey(), twigPath, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Depth and directory count limits of the directory visitor; all directories are visited again on a directory change
+     */
+    private boolean isInsideVisitedDirectory(@NotNull TwigPath twigPath, @NotNull VirtualFile virtualFile) {
+        VirtualFile directory = twigPath.getDirectory(project);
+        if(directory == null) {
+            return false;
+        }
+
+        Set<VirtualFile> directories = visitedDirectories.get(directory);
+        return directories != null && directories.contains(virtualFile.getParent());
+    }
+
+    private void addName(@NotNull String name, @NotNull TwigPath twigPath, @NotNull VirtualFile virtualFile) {
+        TemplateName templateName = names.computeIfAbsent(name, TemplateName::new);
+
+        int priority = templateName.priority;
+        templateName.files.merge(virtualFile, getPriority(twigPath), Math::min);
+        updatePriority(templateName, priority);
+
+        fileNames.computeIfAbsent(virtualFile, f -> new HashSet<>()).add(name);
+    }
+
+    private void removeFile(@NotNull VirtualFile virtualFile) {
+        Set<String> templateNames = fileNames.remove(virtualFile);
+        if(templateNames == null) {
+            return;
+        }
+
+        for (String name : templateNames) {
+            TemplateName templateName = names.get(name);
+            if(templateName == null) {
+                continue;
+            }
+
+            int priority = templateName.priority;
+            templateName.files.remove(virtualFile);
+            if(templateName.files.isEmpty()) {
+                names.remove(name);
+            }
+
+            updatePriority(templateName, priority);
+        }
+    }
+
+    /**
+     * A name is always listed under the highest priority of its files
+     */
+    private void updatePriority(@NotNull TemplateName templateName, int previousPriority) {
+        int priority = templateName.files.values().stream().min(Integer::compare).orElse(Integer.MAX_VALUE);
+        if(priority == previousPriority) {
+            return;
+        }
+
+        String name = templateName.getName();
+        Collection<String> words = getWords(name);
+
+        if(previousPriority != Integer.MAX_VALUE) {
+            priorityNames.get(previousPriority).remove(name);
+            for (String word : words) {
+                priorityWords.get(previousPriority).remove(word + '\0' + name);
+            }
+        }
+
+        if(priority != Integer.MAX_VALUE) {
+            priorityNames.get(priority).add(name);
+            for (String word : words) {
+                priorityWords.get(priority).add(word + '\0' + name);
+            }
+        }
+
+        templateName.priority = priority;
+    }
+
+    @NotNull
+    private static List<NavigableSet<String>> createPrioritySets() {
+        List<NavigableSet<String>> sets = new ArrayList<>(PRIORITIES);
+        for (int i = 0; i < PRIORITIES; i++) {
+            sets.add(new TreeSet<>());
+        }
+
+        return sets;
+    }
+
+    /**
+     * "@App/base_layout.html.twig" => "@app/base_layout.html.twig", "app/base_layout.html.twig", "base_layout.html.twig", "layout.html.twig", "html.twig", "twig"
+     */
+    @NotNull
+    private static Collection<String> getWords(@NotNull String name) {
+        String lowerName = name.toLowerCase();
+
+        Collection<String> words = new ArrayList<>();
+        words.add(lowerName);
+
+        for (int i = 0; i < lowerName.length() - 1; i++) {
+            if(WORD_SEPARATORS.indexOf(lowerName.charAt(i)) >= 0) {
+                words.add(lowerName.substring(i + 1));
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Last word of a typed template name, which is always a word start of the name: "@App/lay" => "lay"
+     */
+    @NotNull
+    private static String getLastWord(@NotNull String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            if(WORD_SEPARATORS.indexOf(prefix.charAt(i)) >= 0) {
+                return prefix.substring(i + 1);
+            }
+        }
+
+        return prefix;
+    }
+
+    /**
+     * Global template paths first, then namespaces and bundles
+     */
+    private static int getPriority(@NotNull TwigPath twigPath) {
+        if(twigPath.getNamespaceType() == TwigUtil.NamespaceType.ADD_PATH) {
+            return twigPath.isGlobalNamespace() ? 0 : 1;
+        }
+
+        return twigPath.isGlobalNamespace() ? 2 : 3;
+    }
+
+    private static boolean isTemplateFile(@NotNull VirtualFile virtualFile) {
+        return virtualFile.getFileType() instanceof TwigFileType || virtualFile.getFileType() instanceof PhpFileType;
+    }
+
+    public static class TemplateName {
+        @NotNull
+        private final String name;
+
+        /**
+         * File to the priority of its Twig path; read outside of the store lock, while the store may update it
+         */
+        @NotNull
+        private final Map<VirtualFile, Integer> files = new ConcurrentHashMap<>();
+
+        private volatile int priority = Integer.MAX_VALUE;
+
+        private TemplateName(@NotNull String name) {
+            this.name = name;
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Lower is more important
+         */
+        public int getPriority() {
+            return priority;
+        }
+
+        @NotNull
+        public Collection<VirtualFile> getFiles(boolean withPhp) {
+            Set<VirtualFile> virtualFiles = new HashSet<>();
+
+            for (VirtualFile file : files.keySet()) {
+                if(withPhp || file.getFileType() instanceof TwigFileType) {
+                    virtualFiles.add(file);
+                }
+            }
+
+            return virtualFiles;
+        }
+
+        @Nullable
+        public VirtualFile getTwigFile() {
+            for (VirtualFile file : files.keySet()) {
+                if(file.getFileType() instanceof TwigFileType) {
+                    return file;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Twig file first; null if all files were removed meanwhile
+         */
+        @Nullable
+        public VirtualFile getFile() {
+            VirtualFile twigFile = getTwigFile();
+            return twigFile != null ? twigFile : ContainerUtil.getFirstItem(files.keySet());
+        }
+    }
+}
@@ -34,63 +34,89 @@ public class PhpMethodVariableResolveUtil {
         Map<String, PsiVariable> collectedTypes = new HashMap<>();
 
         for(PsiElement var: collectPossibleTemplateArrays(method)) {
-            if(var instanceof ArrayCreationExpression) {
-                // "return array(...)" we dont need any parsing
-                collectedTypes.putAll(getTypesOnArrayHash((ArrayCreationExpression) var));
-            } else if(var instanceof Variable) {
-                // we need variable declaration line so resolve it and search for references which attach other values to array
-                // find definition and search for references on it
-                PsiElement resolvedVariable = ((Variable) var).resolve();
-                if(resolvedVariable instanceof Variable) {
-                    collectedTypes.putAll(collectOnVariableReferences(method, (Variable) resolvedVariable));
-                }
-            } else if(var instanceof FunctionReference && "array_merge".equalsIgnoreCase(((FunctionReference) var).getName())) {
-                // array_merge($var, ['foobar' => $var]);
-
-                String name = ((FunctionReference) var).getName();
-                if("array_merge".equalsIgnoreCase(name) || "array_merge_recursive".equalsIgnoreCase(name) || "array_push".equalsIgnoreCase(name) || "array_replace".equalsIgnoreCase(name)) {
-                    for (PsiElement psiElement : ((FunctionReference) var).getParameters()) {
-                        collectVariablesForPsiElement(method, collectedTypes, psiElement);
-                    }
-                }
-            } else if(var instanceof BinaryExpression && var.getNode().getElementType() == PhpElementTypes.ADDITIVE_EXPRESSION) {
-                // $var + ['foobar' => $foobar]
-                PsiElement leftOperand = ((BinaryExpression) var).getLeftOperand();
-                if(leftOperand != null) {
-                    collectVariablesForPsiElement(method, collectedTypes, leftOperand);
-                }
+            collectedTypes.putAll(collectTemplateArrayVariables(method, var));
+        }
 
-                PsiElement rightOperand = ((BinaryExpression) var).getRightOperand();
-                if(rightOperand != null) {
-                    collectVariablesForPsiElement(method, collectedTypes, rightOperand);
-                }
-            } else if(var instanceof SelfAssignmentExpression) {
-                // $var += ['foobar' => $foobar]
-                PhpPsiElement variable = ((SelfAssignmentExpression) var).getVariable();
-                if(variable != null) {
-                    collectVariablesForPsiElement(method, collectedTypes, variable);
-                }
+        return collectedTypes;
+    }
+
+    /**
+     * Variables of a template parameter or of a returned template array: "['foobar' => $var]", "$var", "array_merge($var, ['foobar' => $var])"
+     *
+     * Only the function scope itself is visited and variables are matched by name; so it is also usable while indexing
+     */
+    @NotNull
+    public static Map<String, PsiVariable> collectTemplateArrayVariables(@NotNull Function method, @NotNull PsiElement var) {
+        Map<String, PsiVariable> collectedTypes = new HashMap<>();
 
-                PhpPsiElement value = ((SelfAssignmentExpression) var).getValue();
-                if(value != null) {
-                    collectVariablesForPsiElement(method, collectedTypes, value);
+        if(var instanceof ArrayCreationExpression) {
+            // "return array(...)" we dont need any parsing
+            collectedTypes.putAll(getTypesOnArrayHash((ArrayCreationExpression) var));
+        } else if(var instanceof Variable) {
+            // we need variable declaration line so search for references which attach other values to array
+            collectedTypes.putAll(collectOnVariableReferences(method, (Variable) var));
+        } else if(var instanceof FunctionReference && "array_merge".equalsIgnoreCase(((FunctionReference) var).getName())) {
+            // array_merge($var, ['foobar' => $var]);
+
+            String name = ((FunctionReference) var).getName();
+            if("array_merge".equalsIgnoreCase(name) || "array_merge_recursive".equalsIgnoreCase(name) || "array_push".equalsIgnoreCase(name) || "array_replace".equalsIgnoreCase(name)) {
+                for (PsiElement psiElement : ((FunctionReference) var).getParameters()) {
+                    collectVariablesForPsiElement(method, collectedTypes, psiElement);
                 }
             }
+        } else if(var instanceof BinaryExpression && var.getNode().getElementType() == PhpElementTypes.ADDITIVE_EXPRESSION) {
+            // $var + ['foobar' => $foobar]
+            PsiElement leftOperand = ((BinaryExpression) var).getLeftOperand();
+            if(leftOperand != null) {
+                collectVariablesForPsiElement(method, collectedTypes, leftOperand);
+            }
+
+            PsiElement rightOperand = ((BinaryExpression) var).getRightOperand();
+            if(rightOperand != null) {
+                collectVariablesForPsiElement(method, collectedTypes, rightOperand);
+            }
+        } else if(var instanceof SelfAssignmentExpression) {
+            // $var += ['foobar' => $foobar]
+            PhpPsiElement variable = ((SelfAssignmentExpression) var).getVariable();
+            if(variable != null) {
+                collectVariablesForPsiElement(method, collectedTypes, variable);
+            }
+
+            PhpPsiElement value = ((SelfAssignmentExpression) var).getValue();
+            if(value != null) {
+                collectVariablesForPsiElement(method, collectedTypes, value);
+            }
         }
 
         return collectedTypes;
     }
 
+    /**
+     * Arrays which are returned for "@Template" annotated methods: "return $var", "return array('foo' => $var)"
+     */
+    @NotNull
+    public static Collection<PsiElement> collectReturnedTemplateArrays(@NotNull Function method) {
+        Collection<PsiElement> arrays = new ArrayList<>();
+
+        for(PhpReturn phpReturn : PsiTreeUtil.findChildrenOfType(method, PhpReturn.class)) {
+            PhpPsiElement returnPsiElement = phpReturn.getFirstPsiChild();
+
+            // @TODO: think of support all types here
+            if(returnPsiElement instanceof Variable || returnPsiElement instanceof ArrayCreationExpression) {
+                arrays.add(returnPsiElement);
+            }
+        }
+
+        return arrays;
+    }
+
     private static void collectVariablesForPsiElement(@NotNull Function method, @NotNull Map<String, PsiVariable> collectedTypes, @NotNull PsiElement psiElement) {
         if(psiElement instanceof ArrayCreationExpression) {
             // reuse array collector: ['foobar' => $var]
             collectedTypes.putAll(getTypesOnArrayHash((ArrayCreationExpression) psiElement));
         } else if(psiElement instanceof Variable) {
             // reuse variable collector: [$var]
-            PsiElement resolvedVariable = ((Variable) psiElement).resolve();
-            if(resolvedVariable instanceof Variable) {
-                collectedTypes.putAll(collectOnVariableReferences(method, (Variable) resolvedVariable));
-            }
+            collectedTypes.putAll(collectOnVariableReferences(method, (Variable) psiElement));
         }
     }
 
@@ -104,17 +130,7 @@ public class PhpMethodVariableResolveUtil {
 
         // Annotation controller
         // @TODO: check for phpdoc tag
-        for(PhpReturn phpReturn : PsiTreeUtil.findChildrenOfType(method, PhpReturn.class)) {
-            PhpPsiElement returnPsiElement = phpReturn.getFirstPsiChild();
-
-            // @TODO: think of support all types here
-            // return $template
-            // return array('foo' => $var)
-            if(returnPsiElement instanceof Variable || returnPsiElement instanceof ArrayCreationExpression) {
-                collectedTemplateVariables.add(returnPsiElement);
-            }
-
-        }
+        collectedTemplateVariables.addAll(collectReturnedTemplateArrays(method));
 
         // twig render calls:
         // $twig->render('foo', $vars);
@@ -135,7 +151,7 @@ public class PhpMethodVariableResolveUtil {
      * search for references of variable declaration and collect the types
      *
      * @param function should be function / method scope
-     * @param variable the variable declaration psi $var = array();
+     * @param variable any reference of the variable; all references in scope are matched by name
      */
     @NotNull
     private static Map<String, PsiVariable> collectOnVariableReferences(@NotNull Function function, @NotNull Variable variable) {
@@ -180,7 +196,7 @@ public class PhpMethodVariableResolveUtil {
                 collectedTypes.put(variableName, new PsiVariable(variableTypes, ((AssignmentExpression) parent).getValue()));
 
             } else {
-                collectedTypes.put(variableName, new PsiVariable(variableTypes, null));
+                collectedTypes.put(variableName, new PsiVariable(variableTypes, (PsiElement) null));
             }
 
 
@@ -1,314 +1,335 @@
 package fr.adrienbrault.idea.symfony2plugin.templating.util;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.Key;
-import com.intellij.patterns.PlatformPatterns;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
-import com.intellij.psi.util.*;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.indexing.FileBasedIndex;
 import com.jetbrains.php.PhpIcons;
 import com.jetbrains.php.PhpIndex;
-import com.jetbrains.php.lang.parser.PhpElementTypes;
-import com.jetbrains.php.lang.psi.PhpPsiUtil;
-import com.jetbrains.php.lang.psi.elements.*;
+import com.jetbrains.php.lang.psi.elements.PhpClass;
+import com.jetbrains.php.lang.psi.elements.PhpNamedElement;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlTagParser;
+import fr.adrienbrault.idea.symfony2plugin.stubs.ContainerCollectionResolver;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ServicesDefinitionStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigExtensionStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigExtension;
 import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
-import fr.adrienbrault.idea.symfony2plugin.util.PsiElementUtils;
+import fr.adrienbrault.idea.symfony2plugin.util.dict.ServiceUtil;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
+ * Twig extension model on top of TwigExtensionStubIndex; a changed php file only replaces its own extensions,
+ * see "ExtensionCache"
+ *
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
 public class TwigExtensionParser  {
 
-    private static final Key<CachedValue<Map<String, TwigExtension>>> FUNCTION_CACHE = new Key<>("TWIG_EXTENSIONS_FUNCTION");
-    private static final Key<CachedValue<Map<String, TwigExtension>>> TEST_CACHE = new Key<>("TWIG_EXTENSIONS_TEST");
-    private static final Key<CachedValue<Map<String, TwigExtension>>> FILTERS_CACHE = new Key<>("TWIG_EXTENSIONS_FILTERS");
-    private static final Key<CachedValue<Map<String, TwigExtension>>> OPERATORS_CACHE = new Key<>("TWIG_EXTENSIONS_OPERATORS");
+    private static final Key<ExtensionCache> EXTENSIONS_CACHE = new Key<>("TWIG_EXTENSIONS_INDEX");
+    private static final Key<CachedValue<Set<String>>> REGISTERED_EXTENSIONS_CACHE = new Key<>("TWIG_REGISTERED_EXTENSIONS");
 
     @NotNull
     private Project project;
 
-    private Map<String, TwigExtension> functions;
-    private Map<String, TwigExtension> simpleTest;
-    private Map<String, TwigExtension> filters;
-    private Map<String, TwigExtension> operators;
-
     public TwigExtensionParser(@NotNull Project project) {
         this.project = project;
     }
 
     @NotNull
     public Map<String, TwigExtension> getFunctions() {
-        if(functions == null) {
-            this.parseElementType(TwigElementType.METHOD);
-        }
-        return functions;
+        return getExtensions(TwigExtensionStubIndex.FUNCTION);
     }
 
     @NotNull
     public Map<String, TwigExtension> getFilters() {
-        if(filters == null) {
-            this.parseElementType(TwigElementType.FILTER);
-        }
-        return filters;
+        return getExtensions(TwigExtensionStubIndex.FILTER);
     }
 
     @NotNull
     public Map<String, TwigExtension> getSimpleTest() {
-        if(simpleTest == null) {
-            this.parseElementType(TwigElementType.SIMPLE_TEST);
-        }
-        return simpleTest;
+        return getExtensions(TwigExtensionStubIndex.TEST);
     }
 
     @NotNull
     public Map<String, TwigExtension> getOperators() {
-        if(operators == null) {
-            this.parseElementType(TwigElementType.OPERATOR);
-        }
-        return operators;
-    }
-
-    private enum TwigElementType {
-        FILTER, METHOD, SIMPLE_TEST, OPERATOR
+        return getExtensions(TwigExtensionStubIndex.OPERATOR);
     }
 
     public enum TwigExtensionType {
         FUNCTION_METHOD, FUNCTION_NODE, SIMPLE_FUNCTION, FILTER, SIMPLE_TEST, OPERATOR
     }
 
-    private void parseElementType(@NotNull TwigElementType type) {
-
-        if(type.equals(TwigElementType.FILTER)) {
-
-            CachedValue<Map<String, TwigExtension>> cache = project.getUserData(FILTERS_CACHE);
-            if(cache == null) {
-                cache = CachedValuesManager.getManager(project).createCachedValue(() ->
-                    CachedValueProvider.Result.create(parseFilters(TwigUtil.getTwigExtensionClasses(project)), PsiModificationTracker.MODIFICATION_COUNT),
-                    false
-                );
+    @NotNull
+    private Map<String, TwigExtension> getExtensions(@NotNull String category) {
+        return ExtensionCache.getInstance(project).getExtensions().getOrDefault(category, new HashMap<>());
+    }
 
-                project.putUserData(FILTERS_CACHE, cache);
+    /**
+     * Class names of all "twig.extension" services; only the service definitions and the compiled container matter
+     */
+    @NotNull
+    private static Set<String> getRegisteredExtensionClasses(@NotNull Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(project, REGISTERED_EXTENSIONS_CACHE, () -> {
+            Set<String> classNames = new HashSet<>();
+
+            ContainerCollectionResolver.ServiceCollector collector = ContainerCollectionResolver.ServiceCollector.create(project);
+            for (String serviceName : ServiceUtil.getTaggedServices(project, "twig.extension")) {
+                String className = collector.resolve(serviceName);
+                if(StringUtils.isNotBlank(className)) {
+                    classNames.add(StringUtils.stripStart(className, "\\"));
+                }
             }
 
-            this.filters = cache.getValue();
+            Collection<String> compiledClassNames = ServiceXmlParserFactory.getInstance(project, XmlTagParser.class).getTaggedClass("twig.extension");
+            if(compiledClassNames != null) {
+                for (String className : compiledClassNames) {
+                    classNames.add(StringUtils.stripStart(className, "\\"));
+                }
+            }
 
-        } else if(type.equals(TwigElementType.METHOD)) {
+            return CachedValueProvider.Result.create(
+                classNames,
+                ServicesDefinitionStubIndex.getModificationTracker(project),
+                ServiceXmlParserFactory.getModificationTracker(project, XmlTagParser.class)
+            );
+        }, false);
+    }
 
-            CachedValue<Map<String, TwigExtension>> cache = project.getUserData(FUNCTION_CACHE);
-            if(cache == null) {
-                cache = CachedValuesManager.getManager(project).createCachedValue(() ->
-                    CachedValueProvider.Result.create(parseFunctions(TwigUtil.getTwigExtensionClasses(project)), PsiModificationTracker.MODIFICATION_COUNT),
-                    false
-                );
+    /**
+     * Index key "filter:trans" to category "filter" with its extension names.
+     *
+     * A name provided by more than one file is resolved in a fixed order, so it never depends on the index order:
+     * files of registered "twig.extension" services first, then the file path
+     */
+    @NotNull
+    private static Map<String, Map<String, TwigExtension>> resolveExtensions(@NotNull Project project, @NotNull Map<VirtualFile, Map<String, TwigExtension>> files, @NotNull Set<String> registeredClasses) {
+        Map<String, Map<VirtualFile, TwigExtension>> keys = new HashMap<>();
 
-                project.putUserData(FUNCTION_CACHE, cache);
+        for (Map.Entry<VirtualFile, Map<String, TwigExtension>> file : files.entrySet()) {
+            for (Map.Entry<String, TwigExtension> entry : file.getValue().entrySet()) {
+                keys.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(file.getKey(), entry.getValue());
             }
+        }
 
-            this.functions = cache.getValue();
-
-        } else if(type.equals(TwigElementType.SIMPLE_TEST)) {
+        Map<String, Map<String, TwigExtension>> extensions = new HashMap<>();
 
-            CachedValue<Map<String, TwigExtension>> cache = project.getUserData(TEST_CACHE);
-            if(cache == null) {
-                cache = CachedValuesManager.getManager(project).createCachedValue(() ->
-                    CachedValueProvider.Result.create(parseTests(TwigUtil.getTwigExtensionClasses(project)), PsiModificationTracker.MODIFICATION_COUNT),
-                    false
-                );
+        Set<VirtualFile> registeredFiles = null;
 
-                project.putUserData(TEST_CACHE, cache);
+        for (Map.Entry<String, Map<VirtualFile, TwigExtension>> entry : keys.entrySet()) {
+            String key = entry.getKey();
+            int separator = key.indexOf(':');
+            if(separator <= 0) {
+                continue;
             }
 
-            this.simpleTest = cache.getValue();
+            Map<VirtualFile, TwigExtension> candidates = entry.getValue();
 
-        } else if(type.equals(TwigElementType.OPERATOR)) {
+            VirtualFile virtualFile = candidates.keySet().iterator().next();
+            if(candidates.size() > 1) {
+                if(registeredFiles == null) {
+                    registeredFiles = getRegisteredFiles(project, registeredClasses);
+                }
 
-            CachedValue<Map<String, TwigExtension>> cache = project.getUserData(OPERATORS_CACHE);
-            if(cache == null) {
-                cache = CachedValuesManager.getManager(project).createCachedValue(() ->
-                    CachedValueProvider.Result.create(parseOperators(TwigUtil.getTwigExtensionClasses(project)), PsiModificationTracker.MODIFICATION_COUNT),
-                    false
+                Set<VirtualFile> finalRegisteredFiles = registeredFiles;
+                virtualFile = Collections.min(candidates.keySet(), Comparator
+                    .comparing((VirtualFile file) -> !finalRegisteredFiles.contains(file))
+                    .thenComparing(VirtualFile::getPath)
                 );
-
-                project.putUserData(OPERATORS_CACHE, cache);
             }
 
-            this.operators = cache.getValue();
+            extensions
+                .computeIfAbsent(key.substring(0, separator), category -> new HashMap<>())
+                .put(key.substring(separator + 1), candidates.get(virtualFile));
         }
+
+        return extensions;
     }
 
     @NotNull
-    private Map<String, TwigExtension> parseFilters(@NotNull Collection<PhpClass> phpClasses) {
-        Map<String, TwigExtension> extensions = new HashMap<>();
-
-        for(PhpClass phpClass : phpClasses) {
-            Method method = phpClass.findMethodByName("getFilters");
-            if(method != null) {
-                parseFilter(method, extensions);
+    private static Set<VirtualFile> getRegisteredFiles(@NotNull Project project, @NotNull Set<String> registeredClasses) {
+        Set<VirtualFile> virtualFiles = new HashSet<>();
+
+        for (String className : registeredClasses) {
+            for (PhpClass phpClass : PhpElementsUtil.getClassesInterface(project, className)) {
+                VirtualFile virtualFile = phpClass.getContainingFile().getVirtualFile();
+                if(virtualFile != null) {
+                    virtualFiles.add(virtualFile);
+                }
             }
         }
 
-        return extensions;
+        return virtualFiles;
     }
 
-    @NotNull
-    private Map<String, TwigExtension> parseFunctions(@NotNull Collection<PhpClass> phpClasses) {
-        Map<String, TwigExtension> extensions = new HashMap<>();
+    /**
+     * Extensions of TwigExtensionStubIndex grouped by their file. Its tracker changes with any php file, so only the
+     * changed files are read again; the model is only resolved again if one of them provides other extensions or
+     * the registered extension services are changed
+     */
+    private static class ExtensionCache {
+        @NotNull
+        private final Project project;
 
-        for(PhpClass phpClass : phpClasses) {
-            Method method = phpClass.findMethodByName("getFunctions");
-            if(method != null) {
-                parseFunctions(method, extensions);
-            }
+        @Nullable
+        private volatile Snapshot snapshot;
+
+        @Nullable
+        private volatile Resolved resolved;
+
+        private ExtensionCache(@NotNull Project project) {
+            this.project = project;
         }
 
-        return extensions;
-    }
+        @NotNull
+        private static ExtensionCache getInstance(@NotNull Project project) {
+            ExtensionCache cache = project.getUserData(EXTENSIONS_CACHE);
+            return cache != null ? cache : ((UserDataHolderEx) project).putUserDataIfAbsent(EXTENSIONS_CACHE, new ExtensionCache(project));
+        }
 
-    @NotNull
-    private Map<String, TwigExtension> parseTests(@NotNull Collection<PhpClass> phpClasses) {
-        Map<String, TwigExtension> extensions = new HashMap<>();
+        @NotNull
+        private Map<String, Map<String, TwigExtension>> getExtensions() {
+            Map<VirtualFile, Map<String, TwigExtension>> files = getSnapshot().files;
+            Set<String> registeredClasses = getRegisteredExtensionClasses(project);
 
-        for(PhpClass phpClass : phpClasses) {
-            Method method = phpClass.findMethodByName("getTests");
-            if(method != null) {
-                method.acceptChildren(new TwigSimpleTestVisitor(extensions));
+            Resolved resolved = this.resolved;
+            if(resolved != null && resolved.files == files && resolved.registeredClasses.equals(registeredClasses)) {
+                return resolved.extensions;
             }
-        }
 
-        return extensions;
-    }
+            resolved = new Resolved(files, registeredClasses, resolveExtensions(project, files, registeredClasses));
+            this.resolved = resolved;
 
-    @NotNull
-    private Map<String, TwigExtension> parseOperators(@NotNull Collection<PhpClass> phpClasses) {
-        Map<String, TwigExtension> extensions = new HashMap<>();
+            return resolved.extensions;
+        }
 
-        for(PhpClass phpClass : phpClasses) {
-            Method method = phpClass.findMethodByName("getOperators");
-            if(method != null) {
-                parseOperators(method, extensions);
+        /**
+         * Count is taken before the index is read; so a change while reading is always seen by the next lookup
+         */
+        @NotNull
+        private Snapshot getSnapshot() {
+            IndexModificationTracker tracker = TwigExtensionStubIndex.getModificationTracker(project);
+            long modificationCount = tracker.getModificationCount();
+
+            Snapshot snapshot = this.snapshot;
+            if(snapshot != null && snapshot.modificationCount == modificationCount) {
+                return snapshot;
             }
-        }
 
-        return extensions;
-    }
+            Collection<VirtualFile> changedFiles = snapshot != null ? tracker.getChangedFiles(snapshot.modificationCount) : null;
 
-    private void parseFunctions(@NotNull Method method, @NotNull Map<String, TwigExtension> filters) {
-        final PhpClass containingClass = method.getContainingClass();
-        if(containingClass == null) {
-            return;
+            return this.snapshot = (snapshot == null || changedFiles == null)
+                ? Snapshot.collectAll(project, modificationCount)
+                : snapshot.collectChanged(project, modificationCount, changedFiles);
         }
-
-        method.acceptChildren(new TwigFunctionVisitor(method, filters, containingClass));
     }
 
     /**
-     *  Get signature for callable like array($this, 'getUrl'), or 'function'
+     * Never changed after creation; the file map is shared with the previous snapshot as long as no file provides
+     * other extensions
      */
-    @Nullable
-    private static String getCallableSignature(PsiElement psiElement, Method method) {
-        // array($this, 'getUrl')
-        if(psiElement instanceof ArrayCreationExpression) {
-            List<PsiElement> arrayValues = (List<PsiElement>) PsiElementUtils.getChildrenOfTypeAsList(psiElement, PlatformPatterns.psiElement(PhpElementTypes.ARRAY_VALUE));
-            if(arrayValues.size() > 1) {
-                PsiElement firstChild = arrayValues.get(0).getFirstChild();
-                if(firstChild instanceof Variable && "this".equals(((Variable) firstChild).getName())) {
-                    String methodName = PhpElementsUtil.getStringValue(arrayValues.get(1).getFirstChild());
-                    if(StringUtils.isNotBlank(methodName)) {
-                        PhpClass phpClass = method.getContainingClass();
-                        if(phpClass != null) {
-                            return String.format("#M#C\\%s.%s", phpClass.getPresentableFQN(), methodName);
-                        }
-                    }
-                }
+    private static class Snapshot {
+        private final long modificationCount;
+
+        @NotNull
+        private final Map<VirtualFile, Map<String, TwigExtension>> files;
+
+        private Snapshot(long modificationCount, @NotNull Map<VirtualFile, Map<String, TwigExtension>> files) {
+            this.modificationCount = modificationCount;
+            this.files = files;
+        }
+
+        @NotNull
+        static Snapshot collectAll(@NotNull Project project, long modificationCount) {
+            Map<VirtualFile, Map<String, TwigExtension>> files = new HashMap<>();
+
+            FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+            GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+            // keys are never removed from the index, outdated ones have no values
+            for (String key : fileBasedIndex.getAllKeys(TwigExtensionStubIndex.KEY, project)) {
+                fileBasedIndex.processValues(TwigExtensionStubIndex.KEY, key, null, (virtualFile, extension) -> {
+                    files.computeIfAbsent(virtualFile, f -> new HashMap<>()).put(key, extension);
+                    return true;
+                }, scope);
             }
-        } else {
-            String funcTargetName = PhpElementsUtil.getStringValue(psiElement);
-            if(funcTargetName != null) {
-
-                if(funcTargetName.contains("::")) {
-                    // 'SqlFormatter::format'
-                    String[] splits = funcTargetName.split("::");
-                    if(splits.length >= 2) {
-                        return String.format("#M#C\\%s.%s", splits[0], splits[1]);
-                    }
+
+            return new Snapshot(modificationCount, files);
+        }
+
+        /**
+         * Changed files are read from their psi, like "TwigIncludeGraph"; so only they are parsed
+         */
+        @NotNull
+        Snapshot collectChanged(@NotNull Project project, long modificationCount, @NotNull Collection<VirtualFile> changedFiles) {
+            Map<VirtualFile, Map<String, TwigExtension>> files = null;
+
+            for (VirtualFile virtualFile : changedFiles) {
+                Map<String, TwigExtension> extensions = getExtensionsInFile(project, virtualFile);
+                if(extensions.equals(this.files.getOrDefault(virtualFile, Collections.emptyMap()))) {
+                    continue;
+                }
+
+                if(files == null) {
+                    files = new HashMap<>(this.files);
+                }
+
+                if(extensions.isEmpty()) {
+                    files.remove(virtualFile);
                 } else {
-                    return "#F" + funcTargetName;
+                    files.put(virtualFile, extensions);
                 }
             }
+
+            return new Snapshot(modificationCount, files != null ? files : this.files);
         }
 
-        return null;
-    }
+        @NotNull
+        private static Map<String, TwigExtension> getExtensionsInFile(@NotNull Project project, @NotNull VirtualFile virtualFile) {
+            if(!virtualFile.isValid()) {
+                return Collections.emptyMap();
+            }
 
-    private void parseFilter(@NotNull Method method, @NotNull Map<String, TwigExtension> filters) {
-        final PhpClass containingClass = method.getContainingClass();
-        if(containingClass == null) {
-            return;
-        }
+            PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+            if(psiFile == null) {
+                return Collections.emptyMap();
+            }
 
-        method.acceptChildren(new TwigFilterVisitor(method, filters, containingClass));
+            return TwigExtensionStubIndex.getExtensions(virtualFile, psiFile);
+        }
     }
 
-    private void parseOperators(@NotNull Method method, @NotNull Map<String, TwigExtension> filters) {
-        final PhpClass containingClass = method.getContainingClass();
-        if(containingClass == null) {
-            return;
-        }
+    /**
+     * Resolved model with the inputs it was build of
+     */
+    private static class Resolved {
+        @NotNull
+        private final Map<VirtualFile, Map<String, TwigExtension>> files;
 
-        /*
-        return array(
-            array(
-                'not' => array(),
-            ),
-            array(
-                'or' => array(),
-            ),
-        );
-         */
+        @NotNull
+        private final Set<String> registeredClasses;
 
-        // getOperator return values, should one one by default
-        for (PhpReturn phpReturn : PsiTreeUtil.findChildrenOfType(method, PhpReturn.class)) {
-
-            // return element needs to be an array
-            PhpPsiElement firstPsiChild = phpReturn.getFirstPsiChild();
-            if(firstPsiChild instanceof ArrayCreationExpression) {
-
-                // twig core returns nested array with 2 items array creation elements
-                List<PsiElement> arrayValues = PhpPsiUtil.getChildren(firstPsiChild, new PsiElementTypCondition());
-                if(arrayValues.size() > 0) {
-                    for (PsiElement psiElement : arrayValues) {
-
-                        // double check for non crazy syntax
-                        if(!(psiElement instanceof PhpPsiElement)) {
-                            continue;
-                        }
-
-                        // finally get all array keys with operator string
-                        PhpPsiElement arrayValue = ((PhpPsiElement) psiElement).getFirstPsiChild();
-                        if(arrayValue instanceof ArrayCreationExpression) {
-                            for (ArrayHashElement arrayHashElement : PsiTreeUtil.findChildrenOfType(arrayValue, ArrayHashElement.class)) {
-                                PhpPsiElement key = arrayHashElement.getKey();
-                                String stringValue = PhpElementsUtil.getStringValue(key);
-                                if(stringValue != null && StringUtils.isNotBlank(stringValue)) {
-                                    filters.put(stringValue, new TwigExtension(TwigExtensionType.OPERATOR));
-                                }
-                            }
-                        }
-
-                    }
-                }
-            }
+        @NotNull
+        private final Map<String, Map<String, TwigExtension>> extensions;
+
+        private Resolved(@NotNull Map<VirtualFile, Map<String, TwigExtension>> files, @NotNull Set<String> registeredClasses, @NotNull Map<String, Map<String, TwigExtension>> extensions) {
+            this.files = files;
+            this.registeredClasses = registeredClasses;
+            this.extensions = extensions;
         }
     }
 
@@ -355,297 +376,4 @@ public class TwigExtensionParser  {
 
         return elements.iterator().next();
     }
-
-    private static class TwigFilterVisitor extends PsiRecursiveElementWalkingVisitor {
-        @NotNull
-        private final Method method;
-
-        @NotNull
-        private final Map<String, TwigExtension> filters;
-
-        @NotNull
-        private final PhpClass containingClass;
-
-        TwigFilterVisitor(@NotNull Method method, @NotNull Map<String, TwigExtension> filters, @NotNull PhpClass containingClass) {
-            this.method = method;
-            this.filters = filters;
-            this.containingClass = containingClass;
-        }
-
-        @Override
-        public void visitElement(@NotNull PsiElement element) {
-            if(element instanceof NewExpression) {
-                this.visitNewExpression((NewExpression) element);
-            }
-
-            super.visitElement(element);
-        }
-
-        private void visitNewExpression(@NotNull NewExpression element) {
-
-            // new \Twig_SimpleFilter('url', array($this, 'getUrl'), array('is_safe_callback' => array($this, 'isUrlGenerationSafe'))),
-            if(PhpElementsUtil.isNewExpressionPhpClassWithInstance(element, "Twig_SimpleFilter", "Twig_Filter", "Twig\\TwigFilter")) {
-                PsiElement[] psiElement = element.getParameters();
-                if(psiElement.length > 0) {
-                    String funcName = PhpElementsUtil.getStringValue(psiElement[0]);
-                    if(funcName != null && !funcName.contains("*")) {
-
-                        String signature = null;
-                        if(psiElement.length > 1) {
-                            signature = getCallableSignature(psiElement[1], method);
-                        }
-
-                        // creation options like: needs_environment
-                        Map<String, String> options;
-                        if(psiElement.length > 2 && psiElement[2] instanceof ArrayCreationExpression) {
-                            options = getOptions((ArrayCreationExpression) psiElement[2]);
-                        } else {
-                            options = new HashMap<>();
-                        }
-
-                        filters.put(funcName, new TwigExtension(TwigExtensionType.FILTER, signature, options));
-                    }
-                }
-
-                return;
-            }
-
-            // array('shuffle' => new Twig_Filter_Function('twig_shuffle_filter'),)
-            if(PhpElementsUtil.isNewExpressionPhpClassWithInstance(element, "Twig_Filter_Function")) {
-                PsiElement arrayValue = element.getParent();
-                if(arrayValue != null && arrayValue.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE) {
-                    PsiElement arrayHash = arrayValue.getParent();
-                    if(arrayHash instanceof ArrayHashElement) {
-                        PsiElement arrayKey = ((ArrayHashElement) arrayHash).getKey();
-                        String funcName = PhpElementsUtil.getStringValue(arrayKey);
-                        if(funcName != null && !funcName.contains("*")) {
-
-                            PsiElement[] parameters = element.getParameters();
-                            String signature = null;
-                            if(parameters.length > 0) {
-                                signature = getCallableSignature(parameters[0], method);
-                            }
-
-                            filters.put(funcName, new TwigExtension(TwigExtensionType.FILTER, signature));
-                        }
-                    }
-                }
-
-                return;
-            }
-
-            // return array('serialize'  => new \Twig_Filter_Method($this, 'serialize'), );
-            if(PhpElementsUtil.isNewExpressionPhpClassWithInstance(element, "Twig_Filter_Method")) {
-                PsiElement arrayValue = element.getParent();
-                if(arrayValue != null && arrayValue.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE) {
-                    PsiElement arrayHash = arrayValue.getParent();
-                    if(arrayHash instanceof ArrayHashElement) {
-                        PsiElement arrayKey = ((ArrayHashElement) arrayHash).getKey();
-                        String funcName = PhpElementsUtil.getStringValue(arrayKey);
-                        if(funcName != null && funcName.matches("\\w+")) {
-
-                            PsiElement[] parameters = element.getParameters();
-                            String signature = null;
-                            if(parameters.length > 1) {
-                                if(parameters[0] instanceof Variable && "this".equals(((Variable) parameters[0]).getName())) {
-                                    String methodName = PhpElementsUtil.getStringValue(parameters[1]);
-                                    if(methodName != null) {
-                                        signature = String.format("#M#C\\%s.%s", containingClass.getPresentableFQN(), methodName);
-                                    }
-
-                                }
-                            }
-
-                            filters.put(funcName, new TwigExtension(TwigExtensionType.FILTER, signature));
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    /**
-     * Add needs_environment, needs_context values to twig extension object
-     */
-    static private Map<String, String> getOptions(@NotNull ArrayCreationExpression arrayCreationExpression) {
-        Map<String, String> options = new HashMap<>();
-
-        for(String optionTrue: new String[] {"needs_environment", "needs_context"}) {
-            PhpPsiElement phpPsiElement = PhpElementsUtil.getArrayValue(arrayCreationExpression, optionTrue);
-            if(phpPsiElement instanceof ConstantReference) {
-                String value = phpPsiElement.getName();
-                if(value != null && value.toLowerCase().equals("true")) {
-                    options.put(optionTrue, "true");
-                }
-            }
-        }
-
-        return options;
-    }
-
-    private static class TwigFunctionVisitor extends PsiRecursiveElementWalkingVisitor {
-        @NotNull
-        private final Method method;
-
-        @NotNull
-        private final Map<String, TwigExtension> filters;
-
-        @NotNull
-        private final PhpClass containingClass;
-
-        TwigFunctionVisitor(@NotNull Method method, @NotNull Map<String, TwigExtension> filters, @NotNull PhpClass containingClass) {
-            this.method = method;
-            this.filters = filters;
-            this.containingClass = containingClass;
-        }
-
-        @Override
-        public void visitElement(PsiElement element) {
-            if(element instanceof NewExpression) {
-                this.visitNewExpression((NewExpression) element);
-            }
-            super.visitElement(element);
-        }
-
-        private void visitNewExpression(@NotNull NewExpression element) {
-
-            // new \Twig_SimpleFunction('url', array($this, 'getUrl'), array('is_safe_callback' => array($this, 'isUrlGenerationSafe'))),
-            if(PhpElementsUtil.isNewExpressionPhpClassWithInstance(element, "Twig_SimpleFunction", "Twig_Function", "Twig\\TwigFunction")) {
-                PsiElement[] psiElement = element.getParameters();
-                if(psiElement.length > 0) {
-                    String funcName = PhpElementsUtil.getStringValue(psiElement[0]);
-                    if(funcName != null && !funcName.contains("*")) {
-
-                        String signature = null;
-                        if(psiElement.length > 1) {
-                            signature = getCallableSignature(psiElement[1], method);
-                        }
-
-                        // creation options like: needs_environment
-                        Map<String, String> options;
-                        if(psiElement.length > 2 && psiElement[2] instanceof ArrayCreationExpression) {
-                            options = getOptions((ArrayCreationExpression) psiElement[2]);
-                        } else {
-                            options = new HashMap<>();
-                        }
-
-                        filters.put(funcName, new TwigExtension(TwigExtensionType.SIMPLE_FUNCTION, signature, options));
-                    }
-                }
-
-                return;
-            }
-
-            //array('form_javascript' => new \Twig_Function_Method($this, 'renderJavascript', array('is_safe' => array('html'))),);
-            if(PhpElementsUtil.isNewExpressionPhpClassWithInstance(element, "Twig_Function_Method")) {
-                PsiElement arrayValue = element.getParent();
-                if(arrayValue != null && arrayValue.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE) {
-                    PsiElement arrayHash = arrayValue.getParent();
-                    if(arrayHash instanceof ArrayHashElement) {
-                        PsiElement arrayKey = ((ArrayHashElement) arrayHash).getKey();
-                        String funcName = PhpElementsUtil.getStringValue(arrayKey);
-                        if(funcName != null && !funcName.contains("*")) {
-
-                            PsiElement[] parameters = element.getParameters();
-                            String signature = null;
-                            if(parameters.length > 1) {
-                                if(parameters[0] instanceof Variable && "this".equals(((Variable) parameters[0]).getName())) {
-                                    String methodName = PhpElementsUtil.getStringValue(parameters[1]);
-                                    if(methodName != null) {
-                                        signature = String.format("#M#C\\%s.%s", containingClass.getPresentableFQN(), methodName);
-                                    }
-
-                                }
-                            }
-
-                            filters.put(funcName, new TwigExtension(TwigExtensionType.FUNCTION_METHOD, signature));
-                        }
-                    }
-                }
-
-                return;
-            }
-
-            // array('form_help' => new \Twig_Function_Node('Symfony\Bridge\Twig\Node\SearchAndRenderBlockNode', array('is_safe' => array('html'))),)
-            if(PhpElementsUtil.isNewExpressionPhpClassWithInstance(element, "Twig_Function_Node")) {
-                PsiElement arrayValue = element.getParent();
-                if(arrayValue != null && arrayValue.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE) {
-                    PsiElement arrayHash = arrayValue.getParent();
-                    if(arrayHash instanceof ArrayHashElement) {
-                        PsiElement arrayKey = ((ArrayHashElement) arrayHash).getKey();
-                        String funcName = PhpElementsUtil.getStringValue(arrayKey);
-                        if(funcName != null && !funcName.contains("*")) {
-
-                            PsiElement[] parameters = element.getParameters();
-                            String signature = null;
-                            if(parameters.length > 0) {
-                                String className = PhpElementsUtil.getStringValue(parameters[0]);
-                                if(className != null) {
-                                    signature = String.format("#M#C\\%s.%s", StringUtils.stripStart(className, "\\"), "compile");
-                                }
-                            }
-
-                            filters.put(funcName, new TwigExtension(TwigExtensionType.FUNCTION_NODE, signature));
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private static class TwigSimpleTestVisitor extends PsiRecursiveElementWalkingVisitor {
-        @NotNull
-        private final Map<String, TwigExtension> filters;
-
-        TwigSimpleTestVisitor(@NotNull Map<String, TwigExtension> filters) {
-            this.filters = filters;
-        }
-
-        @Override
-        public void visitElement(PsiElement element) {
-            if(element instanceof NewExpression) {
-                this.visitNewExpression((NewExpression) element);
-            }
-            super.visitElement(element);
-        }
-
-        private void visitNewExpression(@NotNull NewExpression element) {
-
-            // new Twig_SimpleTest('even', null, array('node_class' => 'Twig_Node_Expression_Test_Even')),
-            if(PhpElementsUtil.isNewExpressionPhpClassWithInstance(element, "Twig_SimpleTest", "Twig_Test", "Twig\\TwigTest")) {
-                PsiElement[] psiElement = element.getParameters();
-                if(psiElement.length > 0) {
-                    String funcName = PhpElementsUtil.getStringValue(psiElement[0]);
-                    if(funcName != null && !funcName.contains("*")) {
-                        String signature = null;
-
-                        // new \Twig_SimpleTest('my_test', null, array('node_class' => 'My_Node_Test'))
-                        if(psiElement.length > 1 && psiElement[1] instanceof StringLiteralExpression) {
-                            String contents = ((StringLiteralExpression) psiElement[1]).getContents();
-                            if(StringUtils.isNotBlank(contents)) {
-                                signature = "#F" + contents;
-                            }
-                        }
-
-                        // new \Twig_SimpleTest('empty', 'foo_test')
-                        if(signature == null && psiElement.length > 2 && psiElement[2] instanceof ArrayCreationExpression) {
-                            String nodeClass = PhpElementsUtil.getArrayHashValue((ArrayCreationExpression) psiElement[2], "node_class");
-                            if(StringUtils.isNotBlank(nodeClass)) {
-                                signature = String.format("#M#C\\%s.%s", StringUtils.stripStart(nodeClass, "\\"), "compile");
-                            }
-                        }
-
-                        filters.put(funcName, new TwigExtension(TwigExtensionType.SIMPLE_TEST, signature));
-                    }
-                }
-            }
-        }
-    }
-
-    private static class PsiElementTypCondition implements Condition<PsiElement> {
-        @Override
-        public boolean value(PsiElement psiElement) {
-            return psiElement.getNode().getElementType() == PhpElementTypes.ARRAY_VALUE;
-        }
-    }
 }
@@ -0,0 +1,366 @@
+package fr.adrienbrault.idea.symfony2plugin.templating.util;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.patterns.PlatformPatterns;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.jetbrains.twig.TwigTokenTypes;
+import com.jetbrains.twig.elements.TwigElementTypes;
+import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigMacroTagInterface;
+import fr.adrienbrault.idea.symfony2plugin.util.PsiElementUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Imports, macros and "set" declarations of a Twig file, collected in one tree walk per file modification
+ *
+ * {% from 'foobar.html.twig' import foobar as input %}
+ * {% import _self as foobar %}
+ * {% macro input(name, value) %}{% endmacro %}
+ * {% set foobar = 'foo' %}
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigFileSymbolTable {
+
+    private static final Key<CachedValue<TwigFileSymbolTable>> SYMBOL_TABLE = new Key<>("TWIG_FILE_SYMBOL_TABLE");
+
+    private static final Pattern MACRO_ALIAS_PATTERN = Pattern.compile("(\\w+)\\s+as\\s+(\\w+)");
+
+    @NotNull
+    private final Collection<MacroImport> macroImports = new ArrayList<>();
+
+    @NotNull
+    private final Collection<NamespaceImport> namespaceImports = new ArrayList<>();
+
+    @NotNull
+    private final Collection<Macro> macros = new ArrayList<>();
+
+    @NotNull
+    private final Collection<SetDeclaration> setDeclarations = new ArrayList<>();
+
+    private TwigFileSymbolTable() {
+    }
+
+    @NotNull
+    public static TwigFileSymbolTable getInstance(@NotNull PsiFile psiFile) {
+        return CachedValuesManager.getCachedValue(
+            psiFile,
+            SYMBOL_TABLE,
+            () -> CachedValueProvider.Result.create(create(psiFile), psiFile)
+        );
+    }
+
+    /**
+     * {% from _self import foobar as input, foobar %}
+     */
+    @NotNull
+    public Collection<MacroImport> getMacroImports() {
+        return Collections.unmodifiableCollection(macroImports);
+    }
+
+    /**
+     * {% import _self as foobar %}
+     */
+    @NotNull
+    public Collection<NamespaceImport> getNamespaceImports() {
+        return Collections.unmodifiableCollection(namespaceImports);
+    }
+
+    /**
+     * {% macro input(name, value) %}{% endmacro %}
+     */
+    @NotNull
+    public Collection<Macro> getMacros() {
+        return Collections.unmodifiableCollection(macros);
+    }
+
+    /**
+     * {% set foobar = 'foo' %}
+     */
+    @NotNull
+    public Collection<SetDeclaration> getSetDeclarations() {
+        return Collections.unmodifiableCollection(setDeclarations);
+    }
+
+    /**
+     * Macro tags of the given name; resolved on the ranges of the table, so the file must be the one of the table
+     */
+    @NotNull
+    public Collection<PsiElement> getMacroTags(@NotNull PsiFile psiFile, @NotNull String name) {
+        Collection<PsiElement> psiElements = new ArrayList<>();
+
+        for (Macro macro : macros) {
+            if(!name.equals(macro.getName())) {
+                continue;
+            }
+
+            PsiElement psiElement = findElement(psiFile, macro.getTextRange(), TwigElementTypes.MACRO_TAG);
+            if(psiElement != null) {
+                psiElements.add(psiElement);
+            }
+        }
+
+        return psiElements;
+    }
+
+    @NotNull
+    private static TwigFileSymbolTable create(@NotNull PsiFile psiFile) {
+        TwigFileSymbolTable symbolTable = new TwigFileSymbolTable();
+
+        PsiTreeUtil.processElements(psiFile, psiElement -> {
+            IElementType elementType = psiElement.getNode().getElementType();
+
+            if(elementType == TwigElementTypes.IMPORT_TAG) {
+                symbolTable.visitImportTag(psiFile, psiElement);
+            } else if(elementType == TwigElementTypes.MACRO_TAG) {
+                Pair<String, String> macro = TwigUtil.getTwigMacroNameAndParameter(psiElement);
+                if(macro != null) {
+                    symbolTable.macros.add(new Macro(macro.getFirst(), macro.getSecond(), psiElement.getTextRange()));
+                }
+            } else if(elementType == TwigElementTypes.SET_TAG) {
+                symbolTable.visitSetTag(psiElement);
+            }
+
+            return true;
+        });
+
+        return symbolTable;
+    }
+
+    /**
+     * {% from _self import foobar as input, foobar %}
+     * {% import 'foobar.html.twig' as foobar %}
+     */
+    private void visitImportTag(@NotNull PsiFile psiFile, @NotNull PsiElement psiElement) {
+        PsiElement firstChild = psiElement.getFirstChild();
+        if(firstChild == null) {
+            return;
+        }
+
+        PsiElement tagName = PsiElementUtils.getNextSiblingAndSkip(firstChild, TwigTokenTypes.TAG_NAME);
+        if(tagName == null) {
+            return;
+        }
+
+        if("from".equals(tagName.getText())) {
+            Pair<String, PsiElement> pair = TwigUtil.getTemplateNameOnStringAndSelfWithNextPsiElement(tagName, TwigTokenTypes.IMPORT_KEYWORD);
+            if(pair == null) {
+                return;
+            }
+
+            // find end block to extract variables
+            PsiElement endBlock = PsiElementUtils.getNextSiblingOfType(
+                pair.getSecond(),
+                PlatformPatterns.psiElement().withElementType(TwigTokenTypes.STATEMENT_BLOCK_END)
+            );
+
+            if(endBlock == null) {
+                return;
+            }
+
+            String substring = psiFile.getText().substring(pair.getSecond().getTextRange().getEndOffset(), endBlock.getTextOffset()).trim();
+
+            for(String macroName : substring.split(",")) {
+                // not nice here search for as "macro as macro_alias"
+                Matcher asMatcher = MACRO_ALIAS_PATTERN.matcher(macroName.trim());
+                if(asMatcher.find()) {
+                    macroImports.add(new MacroImport(asMatcher.group(2), pair.getFirst(), asMatcher.group(1)));
+                } else {
+                    macroImports.add(new MacroImport(macroName.trim(), pair.getFirst(), null));
+                }
+            }
+        } else if("import".equals(tagName.getText())) {
+            Pair<String, PsiElement> pair = TwigUtil.getTemplateNameOnStringAndSelfWithNextPsiElement(tagName, TwigTokenTypes.AS_KEYWORD);
+            if(pair == null) {
+                return;
+            }
+
+            PsiElement asVariable = PsiElementUtils.getNextSiblingAndSkip(pair.getSecond(), TwigTokenTypes.IDENTIFIER);
+            if(asVariable != null) {
+                namespaceImports.add(new NamespaceImport(asVariable.getText(), pair.getFirst()));
+            }
+        }
+    }
+
+    /**
+     * {% set foobar = 'foo' %}
+     * {% set foo %}{% endset %}
+     *
+     * TODO: {% set foo, bar = 'foo', 'bar' %}
+     */
+    private void visitSetTag(@NotNull PsiElement psiElement) {
+        PsiElement firstChild = psiElement.getFirstChild();
+        if(firstChild == null) {
+            return;
+        }
+
+        PsiElement tagName = PsiElementUtils.getNextSiblingAndSkip(firstChild, TwigTokenTypes.TAG_NAME);
+        if(tagName == null || !"set".equals(tagName.getText())) {
+            return;
+        }
+
+        PsiElement setVariable = PsiElementUtils.getNextSiblingAndSkip(tagName, TwigTokenTypes.IDENTIFIER);
+        if(setVariable == null) {
+            return;
+        }
+
+        String text = setVariable.getText();
+        if(StringUtils.isNotBlank(text)) {
+            setDeclarations.add(new SetDeclaration(text, setVariable.getTextRange()));
+        }
+    }
+
+    @Nullable
+    private static PsiElement findElement(@NotNull PsiFile psiFile, @NotNull TextRange textRange, @NotNull IElementType elementType) {
+        PsiElement psiElement = psiFile.findElementAt(textRange.getStartOffset());
+
+        while (psiElement != null && !(psiElement instanceof PsiFile)) {
+            if(psiElement.getNode().getElementType() == elementType && textRange.equals(psiElement.getTextRange())) {
+                return psiElement;
+            }
+
+            psiElement = psiElement.getParent();
+        }
+
+        return null;
+    }
+
+    public static class MacroImport {
+        @NotNull
+        private final String name;
+
+        @NotNull
+        private final String template;
+
+        @Nullable
+        private final String originalName;
+
+        private MacroImport(@NotNull String name, @NotNull String template, @Nullable String originalName) {
+            this.name = name;
+            this.template = template;
+            this.originalName = originalName;
+        }
+
+        /**
+         * Name or alias in the importing file
+         */
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        @NotNull
+        public String getTemplate() {
+            return template;
+        }
+
+        /**
+         * Name inside the template, if imported with an alias
+         */
+        @Nullable
+        public String getOriginalName() {
+            return originalName;
+        }
+    }
+
+    public static class NamespaceImport {
+        @NotNull
+        private final String alias;
+
+        @NotNull
+        private final String template;
+
+        private NamespaceImport(@NotNull String alias, @NotNull String template) {
+            this.alias = alias;
+            this.template = template;
+        }
+
+        @NotNull
+        public String getAlias() {
+            return alias;
+        }
+
+        @NotNull
+        public String getTemplate() {
+            return template;
+        }
+    }
+
+    public static class Macro implements TwigMacroTagInterface {
+        @NotNull
+        private final String name;
+
+        @Nullable
+        private final String parameters;
+
+        @NotNull
+        private final TextRange textRange;
+
+        private Macro(@NotNull String name, @Nullable String parameters, @NotNull TextRange textRange) {
+            this.name = name;
+            this.parameters = parameters;
+            this.textRange = textRange;
+        }
+
+        @NotNull
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Nullable
+        @Override
+        public String getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Range of the MACRO_TAG
+         */
+        @NotNull
+        public TextRange getTextRange() {
+            return textRange;
+        }
+    }
+
+    public static class SetDeclaration {
+        @NotNull
+        private final String name;
+
+        @NotNull
+        private final TextRange textRange;
+
+        private SetDeclaration(@NotNull String name, @NotNull TextRange textRange) {
+            this.name = name;
+            this.textRange = textRange;
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Range of the variable name
+         */
+        @NotNull
+        public TextRange getTextRange() {
+            return textRange;
+        }
+    }
+}
@@ -2,12 +2,17 @@ package fr.adrienbrault.idea.symfony2plugin.templating.util;
 
 import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.patterns.PlatformPatterns;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiWhiteSpace;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.jetbrains.php.PhpIndex;
 import com.jetbrains.php.lang.psi.elements.Field;
@@ -20,6 +25,7 @@ import com.jetbrains.twig.TwigTokenTypes;
 import com.jetbrains.twig.elements.TwigCompositeElement;
 import com.jetbrains.twig.elements.TwigElementTypes;
 import fr.adrienbrault.idea.symfony2plugin.templating.TwigPattern;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigNamespaceRegistry;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollector;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollectorParameter;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigTypeContainer;
@@ -43,6 +49,8 @@ import java.util.stream.Collectors;
  */
 public class TwigTypeResolveUtil {
 
+    private static final Key<CachedValue<FileScopeVariables>> FILE_SCOPE_VARIABLES = new Key<>("TWIG_FILE_SCOPE_VARIABLES");
+
     /**
      * {# variable \AppBundle\Entity\Foo[] #}
      */
@@ -240,18 +248,42 @@ public class TwigTypeResolveUtil {
 
     @NotNull
     public static Map<String, PsiVariable> collectScopeVariables(@NotNull PsiElement psiElement, @NotNull Set<VirtualFile> visitedFiles) {
+        return collectScopeVariables(psiElement, visitedFiles, new HashSet<>());
+    }
+
+    /**
+     * @param dependencies collects everything the variables are resolved from, beside the file of the element
+     */
+    @NotNull
+    public static Map<String, PsiVariable> collectScopeVariables(@NotNull PsiElement psiElement, @NotNull Set<VirtualFile> visitedFiles, @NotNull Set<Object> dependencies) {
         Map<String, Set<String>> globalVars = new HashMap<>();
         Map<String, PsiVariable> controllerVars = new HashMap<>();
 
-        VirtualFile virtualFile = psiElement.getContainingFile().getVirtualFile();
+        PsiFile psiFile = psiElement.getContainingFile();
+        VirtualFile virtualFile = psiFile.getVirtualFile();
         if(visitedFiles.contains(virtualFile)) {
             return controllerVars;
         }
 
+        // nested resolves of included templates depend on the files visited before; so only the root file is cached
+        boolean cacheable = visitedFiles.isEmpty() && psiFile instanceof TwigFile;
+
         visitedFiles.add(virtualFile);
 
-        TwigFileVariableCollectorParameter collectorParameter = new TwigFileVariableCollectorParameter(psiElement, visitedFiles);
+        if(cacheable) {
+            FileScopeVariables fileScopeVariables = getFileScopeVariables((TwigFile) psiFile);
+
+            // types are extended below; so never hand out the cached ones
+            fileScopeVariables.globalVars.forEach((name, types) -> globalVars.put(name, new HashSet<>(types)));
+            fileScopeVariables.psiVariables.forEach((name, variable) -> controllerVars.put(name, new PsiVariable(new HashSet<>(variable.getTypes()), variable)));
+        }
+
+        TwigFileVariableCollectorParameter collectorParameter = new TwigFileVariableCollectorParameter(psiElement, visitedFiles, dependencies);
         for(TwigFileVariableCollector collector: TWIG_FILE_VARIABLE_COLLECTORS.getExtensions()) {
+            if(cacheable && collector.isFileScope()) {
+                continue;
+            }
+
             collector.collect(collectorParameter, globalVars);
             collector.collectPsiVariables(collectorParameter, controllerVars);
         }
@@ -268,7 +300,7 @@ public class TwigTypeResolveUtil {
             types.addAll(collectIteratorReturns(psiElement, entry.getValue()));
 
             // convert to variable model
-            controllerVars.put(entry.getKey(), new PsiVariable(types, null));
+            controllerVars.put(entry.getKey(), new PsiVariable(types, (PsiElement) null));
         }
 
         // check if we are in "for" scope and resolve types ending with []
@@ -277,6 +309,32 @@ public class TwigTypeResolveUtil {
         return controllerVars;
     }
 
+    /**
+     * Variables of all file scoped collectors; they are the same for every element of the file
+     */
+    @NotNull
+    private static FileScopeVariables getFileScopeVariables(@NotNull TwigFile twigFile) {
+        return CachedValuesManager.getCachedValue(twigFile, FILE_SCOPE_VARIABLES, () -> {
+            Set<VirtualFile> visitedFiles = new HashSet<>(Collections.singletonList(twigFile.getVirtualFile()));
+
+            Set<Object> dependencies = new HashSet<>();
+            dependencies.add(twigFile);
+            dependencies.add(TwigNamespaceRegistry.getModificationTracker(twigFile.getProject()));
+
+            FileScopeVariables fileScopeVariables = new FileScopeVariables();
+
+            TwigFileVariableCollectorParameter collectorParameter = new TwigFileVariableCollectorParameter(twigFile, visitedFiles, dependencies);
+            for(TwigFileVariableCollector collector: TWIG_FILE_VARIABLE_COLLECTORS.getExtensions()) {
+                if(collector.isFileScope()) {
+                    collector.collect(collectorParameter, fileScopeVariables.globalVars);
+                    collector.collectPsiVariables(collectorParameter, fileScopeVariables.psiVariables);
+                }
+            }
+
+            return CachedValueProvider.Result.create(fileScopeVariables, dependencies.toArray());
+        });
+    }
+
     /**
      * Extract magic iterator implementation like "getIterator" or "__iterator"
      *
@@ -610,5 +668,12 @@ public class TwigTypeResolveUtil {
 
         return TwigTypeResolveUtil.formatPsiTypeName(afterInVarPsiElement);
     }
-}
 
+    private static class FileScopeVariables {
+        @NotNull
+        private final Map<String, Set<String>> globalVars = new HashMap<>();
+
+        @NotNull
+        private final Map<String, PsiVariable> psiVariables = new HashMap<>();
+    }
+}
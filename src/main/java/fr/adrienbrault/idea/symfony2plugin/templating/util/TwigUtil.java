@@ -1,10 +1,10 @@
 package fr.adrienbrault.idea.symfony2plugin.templating.util;
 
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.PrioritizedLookupElement;
 import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
-import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VfsUtil;
@@ -33,24 +33,24 @@ import com.jetbrains.twig.TwigLanguage;
 import com.jetbrains.twig.TwigTokenTypes;
 import com.jetbrains.twig.elements.*;
 import de.espend.idea.php.annotation.util.AnnotationUtil;
-import fr.adrienbrault.idea.symfony2plugin.Settings;
 import fr.adrienbrault.idea.symfony2plugin.action.comparator.ValueComparator;
 import fr.adrienbrault.idea.symfony2plugin.asset.AssetDirectoryReader;
-import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtension;
-import fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtensionParameter;
 import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
 import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateUsage;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateVariable;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TwigIncludeSite;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.PhpTwigTemplateUsageStubIndex;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigBlockIndexExtension;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigExtendsStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigMacroFunctionStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.templating.TemplateLookupElement;
 import fr.adrienbrault.idea.symfony2plugin.templating.TwigPattern;
 import fr.adrienbrault.idea.symfony2plugin.templating.dict.*;
-import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigNamespaceSetting;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigNamespaceRegistry;
 import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPath;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigTemplateFileMap;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigTemplateNameStore;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
 import fr.adrienbrault.idea.symfony2plugin.twig.assets.TwigNamedAssetsServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.twig.inheritance.TwigInheritanceGraph;
 import fr.adrienbrault.idea.symfony2plugin.util.FilesystemUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.PsiElementUtils;
@@ -92,13 +92,25 @@ public class TwigUtil {
         BUNDLE, ADD_PATH
     }
 
-    private static final ExtensionPointName<TwigNamespaceExtension> EXTENSIONS = new ExtensionPointName<>(
-        "fr.adrienbrault.idea.symfony2plugin.extension.TwigNamespaceExtension"
-    );
+    /**
+     * "BarBundle:Foo:steps/step_finish.html.twig"
+     */
+    private static final Pattern BUNDLE_TEMPLATE_WITH_PATH = Pattern.compile("^.*?:.*?:.*?/.*?$");
+
+    /**
+     * "BarBundle:..."
+     */
+    private static final Pattern BUNDLE_TEMPLATE = Pattern.compile("^\\w+Bundle:.*");
 
-    private static final Key<CachedValue<Map<String, Set<VirtualFile>>>> TEMPLATE_CACHE_TWIG = new Key<>("TEMPLATE_CACHE_TWIG");
+    /**
+     * {% include 'template.html' with {'foo': 'bar'} only %}
+     */
+    private static final Pattern INCLUDE_WITH_PATTERN = Pattern.compile("with\\s*\\{\\s*(.*[^%])\\}\\s*");
 
-    private static final Key<CachedValue<Map<String, Set<VirtualFile>>>> TEMPLATE_CACHE_ALL = new Key<>("TEMPLATE_CACHE_ALL");
+    /**
+     * {{include('template.html.twig',{'foo2':foo},with_context=false)}}
+     */
+    private static final Pattern INCLUDE_FUNCTION_PATTERN = Pattern.compile("include\\((['|\"].*['|\"],(.*))\\)");
 
     public static String[] CSS_FILES_EXTENSIONS = new String[] { "css", "less", "sass", "scss" };
 
@@ -415,7 +427,7 @@ public class TwigUtil {
      * {% from _self import %}
      * {% from 'forms.html' import %}
      */
-    private static Pair<String, PsiElement> getTemplateNameOnStringAndSelfWithNextPsiElement(@NotNull PsiElement tagPsiElement, @NotNull IElementType elementType) {
+    static Pair<String, PsiElement> getTemplateNameOnStringAndSelfWithNextPsiElement(@NotNull PsiElement tagPsiElement, @NotNull IElementType elementType) {
         PsiElement lastElementMatch = null;
         String template = null;
 
@@ -449,54 +461,13 @@ public class TwigUtil {
      */
     @NotNull
     public static Collection<TwigMacro> getImportedMacros(@NotNull PsiFile psiFile) {
-        PsiElement[] importPsiElements = PsiTreeUtil.collectElements(psiFile, paramPsiElement ->
-            PlatformPatterns.psiElement(TwigElementTypes.IMPORT_TAG).accepts(paramPsiElement)
-        );
-
-        if(importPsiElements.length == 0) {
-            return Collections.emptyList();
-        }
-
         Collection<TwigMacro> macros = new ArrayList<>();
 
-        for(PsiElement psiImportTag: importPsiElements) {
-            PsiElement firstChild = psiImportTag.getFirstChild();
-            if(firstChild == null) {
-                continue;
-            }
-
-            PsiElement tagName = PsiElementUtils.getNextSiblingAndSkip(firstChild, TwigTokenTypes.TAG_NAME);
-            if(tagName == null || !"from".equals(tagName.getText())) {
-                continue;
-            }
-
-            Pair<String, PsiElement> pair = getTemplateNameOnStringAndSelfWithNextPsiElement(tagName, TwigTokenTypes.IMPORT_KEYWORD);
-            if(pair == null) {
-                continue;
-            }
-
-            String templateName = pair.getFirst();
-
-            // find end block to extract variables
-            PsiElement endBlock = PsiElementUtils.getNextSiblingOfType(
-                pair.getSecond(),
-                PlatformPatterns.psiElement().withElementType(TwigTokenTypes.STATEMENT_BLOCK_END)
-            );
-
-            if(endBlock == null) {
-                continue;
-            }
-
-            String substring = psiFile.getText().substring(pair.getSecond().getTextRange().getEndOffset(), endBlock.getTextOffset()).trim();
-
-            for(String macroName : substring.split(",")) {
-                // not nice here search for as "macro as macro_alias"
-                Matcher asMatcher = Pattern.compile("(\\w+)\\s+as\\s+(\\w+)").matcher(macroName.trim());
-                if(asMatcher.find()) {
-                    macros.add(new TwigMacro(asMatcher.group(2), templateName, asMatcher.group(1)));
-                } else {
-                    macros.add(new TwigMacro(macroName.trim(), templateName));
-                }
+        for (TwigFileSymbolTable.MacroImport macroImport : TwigFileSymbolTable.getInstance(psiFile).getMacroImports()) {
+            if(macroImport.getOriginalName() != null) {
+                macros.add(new TwigMacro(macroImport.getName(), macroImport.getTemplate(), macroImport.getOriginalName()));
+            } else {
+                macros.add(new TwigMacro(macroImport.getName(), macroImport.getTemplate()));
             }
         }
 
@@ -513,28 +484,15 @@ public class TwigUtil {
     public static Collection<PsiElement> getImportedMacros(@NotNull PsiFile psiFile, @NotNull String funcName) {
         Collection<PsiElement> psiElements = new ArrayList<>();
 
-        for (TwigMacro twigMacro : TwigUtil.getImportedMacros(psiFile)) {
-            if (!twigMacro.getName().equals(funcName)) {
+        for (TwigFileSymbolTable.MacroImport macroImport : TwigFileSymbolTable.getInstance(psiFile).getMacroImports()) {
+            if (!macroImport.getName().equals(funcName)) {
                 continue;
             }
 
             // switch to alias mode
-            String macroName = twigMacro.getOriginalName() == null ? funcName : twigMacro.getOriginalName();
-
-            Collection<PsiFile> foreignPsiFile = new HashSet<>();
-            if ("_self".equals(twigMacro.getTemplate())) {
-                foreignPsiFile.add(psiFile);
-            } else {
-                foreignPsiFile.addAll(getTemplatePsiElements(psiFile.getProject(), twigMacro.getTemplate()));
-            }
+            String macroName = macroImport.getOriginalName() == null ? funcName : macroImport.getOriginalName();
 
-            for (PsiFile file : foreignPsiFile) {
-                visitMacros(file, pair -> {
-                    if(macroName.equals(pair.getFirst().getName())) {
-                        psiElements.add(pair.getSecond());
-                    }
-                });
-            }
+            psiElements.addAll(getMacroTags(psiFile, macroImport.getTemplate(), macroName));
         }
 
         return psiElements;
@@ -547,7 +505,24 @@ public class TwigUtil {
     public static Collection<TwigMacro> getImportedMacrosNamespaces(@NotNull PsiFile psiFile) {
         Collection<TwigMacro> macros = new ArrayList<>();
 
-        visitImportedMacrosNamespaces(psiFile, pair -> macros.add(pair.getFirst()));
+        TwigFileSymbolTable symbolTable = TwigFileSymbolTable.getInstance(psiFile);
+        for (TwigFileSymbolTable.NamespaceImport namespaceImport : symbolTable.getNamespaceImports()) {
+            String template = namespaceImport.getTemplate();
+
+            // own macros are known by the table; others are read from index without touching the template psi
+            Collection<TwigMacroTagInterface> macroTags = new ArrayList<>();
+            if(template.equals("_self")) {
+                macroTags.addAll(symbolTable.getMacros());
+            } else {
+                for (VirtualFile virtualFile : getTemplateFiles(psiFile.getProject(), template)) {
+                    macroTags.addAll(getMacros(psiFile.getProject(), virtualFile));
+                }
+            }
+
+            for (TwigMacroTagInterface macroTag : macroTags) {
+                macros.add(new TwigMacro(namespaceImport.getAlias() + '.' + macroTag.getName(), template).withParameter(macroTag.getParameters()));
+            }
+        }
 
         return macros;
     }
@@ -559,69 +534,53 @@ public class TwigUtil {
      * {{ foobar.bar() }}
      */
     public static Collection<PsiElement> getImportedMacrosNamespaces(@NotNull PsiFile psiFile, @NotNull String macroName) {
+        int dot = macroName.indexOf('.');
+        if(dot <= 0) {
+            return Collections.emptyList();
+        }
+
+        String alias = macroName.substring(0, dot);
+        String name = macroName.substring(dot + 1);
+
         Collection<PsiElement> macros = new ArrayList<>();
 
-        visitImportedMacrosNamespaces(psiFile, pair -> {
-            if(pair.getFirst().getName().equals(macroName)) {
-                macros.add(pair.getSecond());
+        for (TwigFileSymbolTable.NamespaceImport namespaceImport : TwigFileSymbolTable.getInstance(psiFile).getNamespaceImports()) {
+            if(alias.equals(namespaceImport.getAlias())) {
+                macros.addAll(getMacroTags(psiFile, namespaceImport.getTemplate(), name));
             }
-        });
+        }
 
         return macros;
     }
 
     /**
-     * {% import _self as foobar %}
-     * {% import 'foobar.html.twig' as foobar %}
+     * Macro tags of an imported template; only files which provide the macro on index are visited
+     *
+     * @param template template name or "_self"
      */
-    private static void visitImportedMacrosNamespaces(@NotNull PsiFile psiFile, @NotNull Consumer<Pair<TwigMacro, PsiElement>> consumer) {
-        PsiElement[] importPsiElements = PsiTreeUtil.collectElements(psiFile, psiElement ->
-            psiElement.getNode().getElementType() == TwigElementTypes.IMPORT_TAG
-        );
-
-        for (PsiElement importPsiElement : importPsiElements) {
-            PsiElement firstChild = importPsiElement.getFirstChild();
-            if(firstChild == null) {
-                continue;
-            }
-
-            PsiElement tagName = PsiElementUtils.getNextSiblingAndSkip(firstChild, TwigTokenTypes.TAG_NAME);
-            if(tagName == null || !"import".equals(tagName.getText())) {
-                continue;
-            }
-
-            Collection<PsiFile> macroFiles = new HashSet<>();
-
+    @NotNull
+    private static Collection<PsiElement> getMacroTags(@NotNull PsiFile psiFile, @NotNull String template, @NotNull String macroName) {
+        if("_self".equals(template)) {
+            return TwigFileSymbolTable.getInstance(psiFile).getMacroTags(psiFile, macroName);
+        }
 
-            Pair<String, PsiElement> pair = getTemplateNameOnStringAndSelfWithNextPsiElement(tagName, TwigTokenTypes.AS_KEYWORD);
-            if(pair == null) {
-                continue;
-            }
+        Project project = psiFile.getProject();
 
-            PsiElement asVariable = PsiElementUtils.getNextSiblingAndSkip(pair.getSecond(), TwigTokenTypes.IDENTIFIER);
-            if(asVariable == null) {
-                continue;
-            }
+        Collection<VirtualFile> templateFiles = getTemplateFiles(project, template);
+        if(templateFiles.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            String asName = asVariable.getText();
-            String template = pair.getFirst();
+        Collection<PsiElement> psiElements = new ArrayList<>();
 
-            // resolve _self and template name
-            if(template.equals("_self")) {
-                macroFiles.add(psiFile);
-            } else {
-                macroFiles.addAll(getTemplatePsiElements(psiFile.getProject(), template));
-            }
+        Collection<VirtualFile> macroFiles = FileBasedIndex.getInstance()
+            .getContainingFiles(TwigMacroFunctionStubIndex.KEY, macroName, GlobalSearchScope.filesScope(project, templateFiles));
 
-            if(macroFiles.size() > 0) {
-                for (PsiFile macroFile : macroFiles) {
-                    TwigUtil.visitMacros(macroFile, tagPair -> consumer.consume(Pair.create(
-                        new TwigMacro(asName + '.' + tagPair.getFirst().getName(), template).withParameter(tagPair.getFirst().getParameters()),
-                        tagPair.getSecond()
-                    )));
-                }
-            }
+        for (PsiFile macroFile : PsiElementUtils.convertVirtualFilesToPsiFiles(project, macroFiles)) {
+            psiElements.addAll(TwigFileSymbolTable.getInstance(macroFile).getMacroTags(macroFile, macroName));
         }
+
+        return psiElements;
     }
 
     /**
@@ -634,30 +593,8 @@ public class TwigUtil {
     public static Collection<String> getSetDeclaration(@NotNull PsiFile psiFile) {
         Collection<String> sets = new ArrayList<>();
 
-        PsiElement[] psiElements = PsiTreeUtil.collectElements(psiFile, psiElement ->
-            psiElement.getNode().getElementType() == TwigElementTypes.SET_TAG
-        );
-
-        for (PsiElement psiElement : psiElements) {
-            PsiElement firstChild = psiElement.getFirstChild();
-            if(firstChild == null) {
-                continue;
-            }
-
-            PsiElement tagName = PsiElementUtils.getNextSiblingAndSkip(firstChild, TwigTokenTypes.TAG_NAME);
-            if(tagName == null || !"set".equals(tagName.getText())) {
-                continue;
-            }
-
-            PsiElement setVariable = PsiElementUtils.getNextSiblingAndSkip(tagName, TwigTokenTypes.IDENTIFIER);
-            if(setVariable == null) {
-                continue;
-            }
-
-            String text = setVariable.getText();
-            if(StringUtils.isNotBlank(text)) {
-                sets.add(text);
-            }
+        for (TwigFileSymbolTable.SetDeclaration setDeclaration : TwigFileSymbolTable.getInstance(psiFile).getSetDeclarations()) {
+            sets.add(setDeclaration.getName());
         }
 
         return sets;
@@ -738,14 +675,77 @@ public class TwigUtil {
             vars.putAll(PhpMethodVariableResolveUtil.collectMethodVariables(method));
         }
 
-        for(Function methodIndex : getTwigFileMethodUsageOnIndex(twigFile)) {
-            vars.putAll(PhpMethodVariableResolveUtil.collectMethodVariables(methodIndex));
-        }
+        vars.putAll(getTemplateUsageVariablesOnIndex(twigFile.getProject(), getTemplateNamesForFile(twigFile)));
 
         return vars;
 
     }
 
+    /**
+     * Variables given to the templates by render calls or "@Template" returns: "['foo' => $foo]"
+     *
+     * Names and types are read from the index; the php file is only loaded if the element of a variable is needed
+     */
+    @NotNull
+    public static Map<String, PsiVariable> getTemplateUsageVariablesOnIndex(@NotNull Project project, @NotNull Collection<String> templateNames) {
+        return getTemplateUsageVariablesOnIndex(project, templateNames, new HashSet<>());
+    }
+
+    /**
+     * Same as above; every file with a usage of the templates is added to the given collection, eg as cache dependency
+     */
+    @NotNull
+    public static Map<String, PsiVariable> getTemplateUsageVariablesOnIndex(@NotNull Project project, @NotNull Collection<String> templateNames, @NotNull Collection<VirtualFile> usageFiles) {
+        Map<String, PsiVariable> variables = new HashMap<>();
+
+        for (String templateName : templateNames) {
+            FileBasedIndex.getInstance().processValues(PhpTwigTemplateUsageStubIndex.KEY, templateName, null, (virtualFile, usage) -> {
+                usageFiles.add(virtualFile);
+
+                for (Map.Entry<String, TemplateVariable> entry : usage.getVariables().entrySet()) {
+                    Set<String> types = new HashSet<>(entry.getValue().getTypes());
+
+                    TextRange textRange = entry.getValue().getTextRange();
+                    if(textRange != null) {
+                        variables.put(entry.getKey(), new PsiVariable(types, () -> findTemplateVariableElement(project, virtualFile, textRange)));
+                    } else {
+                        variables.put(entry.getKey(), new PsiVariable(types));
+                    }
+                }
+
+                return true;
+            }, GlobalSearchScope.allScope(project));
+        }
+
+        return variables;
+    }
+
+    /**
+     * Innermost php element with exactly the indexed text range: "['foo' => $form->createView()]" => "$form->createView()"
+     */
+    @Nullable
+    private static PsiElement findTemplateVariableElement(@NotNull Project project, @NotNull VirtualFile virtualFile, @NotNull TextRange textRange) {
+        if(!virtualFile.isValid()) {
+            return null;
+        }
+
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+        if(psiFile == null) {
+            return null;
+        }
+
+        PsiElement psiElement = psiFile.findElementAt(textRange.getStartOffset());
+        while(psiElement != null && !(psiElement instanceof PsiFile) && textRange.contains(psiElement.getTextRange())) {
+            if(psiElement instanceof PhpPsiElement && textRange.equals(psiElement.getTextRange())) {
+                return psiElement;
+            }
+
+            psiElement = psiElement.getParent();
+        }
+
+        return null;
+    }
+
     /**
      * Collect function variables scopes for given Twig file
      */
@@ -875,91 +875,51 @@ public class TwigUtil {
      * Generate a mapped template name file multiple relation:
      *
      * foo.html.twig => ["views/foo.html.twig", "templates/foo.html.twig"]
+     *
+     * Copy of the whole TwigTemplateNameStore; use "getTemplateNames" or the store itself if files are not needed
      */
     @NotNull
-    public static synchronized Map<String, Set<VirtualFile>> getTemplateMap(@NotNull Project project, boolean usePhp) {
-        Map<String, Set<VirtualFile>> templateMapProxy;
-
-        // cache twig and all files,
-        // only PHP files we dont need to cache
-        if(!usePhp) {
-            // cache twig files only, most use case
-            CachedValue<Map<String, Set<VirtualFile>>> cache = project.getUserData(TEMPLATE_CACHE_TWIG);
-            if (cache == null) {
-                cache = CachedValuesManager.getManager(project).createCachedValue(new MyAllTemplateFileMapCachedValueProvider(project), false);
-                project.putUserData(TEMPLATE_CACHE_TWIG, cache);
-            }
-
-            templateMapProxy = cache.getValue();
-        } else {
-            // cache all files
-            CachedValue<Map<String, Set<VirtualFile>>> cache = project.getUserData(TEMPLATE_CACHE_ALL);
-            if (cache == null) {
-                cache = CachedValuesManager.getManager(project).createCachedValue(new MyAllTemplateFileMapCachedValueProvider(project, true), false);
-                project.putUserData(TEMPLATE_CACHE_ALL, cache);
-            }
+    public static Map<String, Set<VirtualFile>> getTemplateMap(@NotNull Project project, boolean usePhp) {
+        Map<String, Set<VirtualFile>> templateNames = new HashMap<>();
 
-            templateMapProxy = cache.getValue();
-        }
+        TwigTemplateNameStore.getInstance(project).processTemplateNames("", usePhp, templateName -> {
+            templateNames.put(templateName.getName(), new HashSet<>(templateName.getFiles(usePhp)));
+            return true;
+        });
 
-        return templateMapProxy;
+        return templateNames;
     }
 
     /**
-     * Cache less visiting template files
+     * All template names without copying their files; see TwigTemplateNameStore for streaming them
      */
     @NotNull
-    private static Map<String, Set<VirtualFile>> getTemplateMapProxy(@NotNull Project project, boolean usePhp) {
-        List<TwigPath> twigPaths = new ArrayList<>(getTwigNamespaces(project));
-        if(twigPaths.size() == 0) {
-            return Collections.emptyMap();
-        }
-
-        Map<String, Set<VirtualFile>> templateNames = new HashMap<>();
-
-        for (TwigPath twigPath : twigPaths) {
-            if(!twigPath.isEnabled()) {
-                continue;
-            }
+    public static Collection<String> getTemplateNames(@NotNull Project project, boolean usePhp) {
+        Collection<String> templateNames = new ArrayList<>();
 
-            VirtualFile virtualDirectoryFile = twigPath.getDirectory(project);
-            if(virtualDirectoryFile == null) {
-                continue;
-            }
-
-            Map<String, VirtualFile> visitor = MyLimitedVirtualFileVisitor.createResult(
-                virtualDirectoryFile,
-                project,
-                twigPath,
-                usePhp
-            );
-
-            for (Map.Entry<String, VirtualFile> entry : visitor.entrySet()) {
-                if(!templateNames.containsKey(entry.getKey())) {
-                    templateNames.put(entry.getKey(), new HashSet<>());
-                }
-
-                templateNames.get(entry.getKey()).add(entry.getValue());
-            }
-        }
+        TwigTemplateNameStore.getInstance(project).processTemplateNames("", usePhp, templateName -> {
+            templateNames.add(templateName.getName());
+            return true;
+        });
 
         return templateNames;
     }
 
-    @Nullable
-    private static TwigNamespaceSetting findManagedTwigNamespace(@NotNull Project project, @NotNull TwigPath twigPath) {
-        List<TwigNamespaceSetting> twigNamespaces = Settings.getInstance(project).twigNamespaces;
-        if(twigNamespaces == null) {
-            return null;
-        }
-
-        for(TwigNamespaceSetting twigNamespace: twigNamespaces) {
-           if(twigNamespace.equals(project, twigPath)) {
-                return twigNamespace;
-           }
-        }
+    /**
+     * Template files of a Twig path by their name; visits the directory and is not cached
+     */
+    @NotNull
+    public static Map<String, VirtualFile> getTemplateFilesInDirectory(@NotNull VirtualFile directory, @NotNull TwigPath twigPath) {
+        return MyLimitedVirtualFileVisitor.createResult(directory, twigPath, true, null);
+    }
 
-        return null;
+    /**
+     * Template files of a Twig path by their name; every directory, whose children were visited within the
+     * depth and directory limits, is added to the given collection
+     */
+    @NotNull
+    public static Map<String, VirtualFile> getTemplateFilesInDirectory(@NotNull VirtualFile directory, @NotNull TwigPath twigPath, @NotNull Collection<VirtualFile> visitedDirectories) {
+        return MyLimitedVirtualFileVisitor.createResult(directory, twigPath, true, visitedDirectories);
     }
 
     /**
@@ -975,7 +935,7 @@ public class TwigUtil {
         // force linux path style
         templateName = templateName.replace("\\", "/");
 
-        if(templateName.startsWith("@") || !templateName.matches("^.*?:.*?:.*?/.*?$")) {
+        if(templateName.startsWith("@") || !BUNDLE_TEMPLATE_WITH_PATH.matcher(templateName).matches()) {
             // Symfony 3.4 overwrite
             // {% extends '@!FOSUser/layout.html.twig' %}
             if(templateName.startsWith("@!")) {
@@ -1009,7 +969,7 @@ public class TwigUtil {
         String normalizedTemplateName = normalizeTemplateName(templateName);
 
         Collection<VirtualFile> virtualFiles = new HashSet<>();
-        for (TwigPath twigPath : getTwigNamespaces(project)) {
+        for (TwigPath twigPath : getTwigPathCandidates(project, normalizedTemplateName)) {
             if(!twigPath.isEnabled()) {
                 continue;
             }
@@ -1132,7 +1092,7 @@ public class TwigUtil {
 
         Set<VirtualFile> virtualFiles = new HashSet<>();
 
-        for (TwigPath twigPath : getTwigNamespaces(project)) {
+        for (TwigPath twigPath : getTwigPathCandidates(project, templatePath)) {
             if(!twigPath.isEnabled()) {
                 continue;
             }
@@ -1239,29 +1199,17 @@ public class TwigUtil {
      */
     @NotNull
     public static Collection<String> getTemplateNamesForFile(@NotNull Project project, @NotNull VirtualFile virtualFile) {
-        List<TwigPath> collect = getTwigNamespaces(project, true)
-            .stream()
-            .filter(TwigPath::isEnabled)
-            .collect(Collectors.toList());
-
-        return collect.stream()
-            .map(twigPath -> getTemplateNameForTwigPath(project, twigPath, virtualFile))
-            .filter(Objects::nonNull)
+        return TwigNamespaceRegistry.getInstance(project).getRelativePathsForFile(virtualFile).stream()
+            .filter(pair -> StringUtils.isNotBlank(pair.getSecond()))
+            .map(pair -> getTemplateNameForTwigPath(pair.getFirst(), pair.getSecond()))
             .collect(Collectors.toList());
     }
 
-    @Nullable
-    static String getTemplateNameForTwigPath(@NotNull Project project, @NotNull TwigPath twigPath, @NotNull VirtualFile virtualFile) {
-        VirtualFile directory = twigPath.getDirectory(project);
-        if(directory == null) {
-            return null;
-        }
-
-        String templatePath = VfsUtil.getRelativePath(virtualFile, directory, '/');
-        if(templatePath == null) {
-            return null;
-        }
-
+    /**
+     * @param templatePath file path relative to the Twig path directory: "foo/bar.html.twig"
+     */
+    @NotNull
+    static String getTemplateNameForTwigPath(@NotNull TwigPath twigPath, @NotNull String templatePath) {
         String templateDirectory; // xxx:XXX:xxx
         String templateFile; // xxx:xxx:XXX
 
@@ -1295,7 +1243,7 @@ public class TwigUtil {
     }
 
     private static void addFileInsideTwigPath(@NotNull Project project, @NotNull String templatePath, @NotNull Collection<VirtualFile> virtualFiles, @NotNull TwigPath twigPath) {
-        VirtualFile virtualFile = VfsUtil.findRelativeFile(twigPath.getDirectory(project), templatePath.split("/"));
+        VirtualFile virtualFile = TwigTemplateFileMap.getInstance(project).getFile(twigPath, templatePath);
 
         if(virtualFile != null) {
             virtualFiles.add(virtualFile);
@@ -1306,38 +1254,35 @@ public class TwigUtil {
        return getTwigNamespaces(project, true);
     }
 
+    /**
+     * Namespaces are provided by TwigNamespaceRegistry; which only visits changed extensions again
+     */
     @NotNull
     public static List<TwigPath> getTwigNamespaces(@NotNull Project project, boolean includeSettings) {
-        List<TwigPath> twigPaths = new ArrayList<>();
+        return TwigNamespaceRegistry.getInstance(project).getTwigPaths(includeSettings);
+    }
 
-        // load extension
-        TwigNamespaceExtensionParameter parameter = new TwigNamespaceExtensionParameter(project);
-        for (TwigNamespaceExtension namespaceExtension : EXTENSIONS.getExtensions()) {
-            twigPaths.addAll(namespaceExtension.getNamespaces(parameter));
-        }
+    /**
+     * Only namespaces which are able to resolve given normalized template name:
+     * "@Foo/..." => "Foo"; "FooBundle:..." => "FooBundle" and global; "::..." => global
+     */
+    @NotNull
+    private static Collection<TwigPath> getTwigPathCandidates(@NotNull Project project, @NotNull String templateName) {
+        TwigNamespaceRegistry registry = TwigNamespaceRegistry.getInstance(project);
 
-        // disable namespace explicitly disabled by user
-        for(TwigPath twigPath: twigPaths) {
-            TwigNamespaceSetting twigNamespaceSetting = findManagedTwigNamespace(project, twigPath);
-            if(twigNamespaceSetting != null) {
-                twigPath.setEnabled(false);
-            }
+        if(templateName.startsWith("@")) {
+            int i = templateName.indexOf("/");
+            return registry.getNamespacePaths(i > 0 ? templateName.substring(1, i) : templateName.substring(1));
         }
 
-        twigPaths = getUniqueTwigTemplatesList(twigPaths);
-
-        if(!includeSettings) {
-            return twigPaths;
+        if(templateName.startsWith(":")) {
+            return registry.getNamespacePaths(MAIN);
         }
 
-        List<TwigNamespaceSetting> twigNamespaceSettings = Settings.getInstance(project).twigNamespaces;
-        if(twigNamespaceSettings != null) {
-            for(TwigNamespaceSetting twigNamespaceSetting: twigNamespaceSettings) {
-                if(twigNamespaceSetting.isCustom()) {
-                    twigPaths.add(new TwigPath(twigNamespaceSetting.getPath(), twigNamespaceSetting.getNamespace(), twigNamespaceSetting.getNamespaceType(), true).setEnabled(twigNamespaceSetting.isEnabled()));
-                }
-            }
-        }
+        int i = StringUtils.indexOfAny(templateName, ":/");
+
+        List<TwigPath> twigPaths = new ArrayList<>(registry.getNamespacePaths(i > 0 ? templateName.substring(0, i) : templateName));
+        twigPaths.addAll(registry.getNamespacePaths(MAIN));
 
         return twigPaths;
     }
@@ -1479,15 +1424,7 @@ public class TwigUtil {
      */
     @NotNull
     public static Collection<LookupElement> getTwigLookupElements(@NotNull Project project) {
-        VirtualFile baseDir = project.getBaseDir();
-
-        return getTemplateMap(project).entrySet()
-            .stream()
-            .filter(entry -> entry.getValue().size() > 0)
-            .map((java.util.function.Function<Map.Entry<String, Set<VirtualFile>>, LookupElement>) entry ->
-                new TemplateLookupElement(entry.getKey(), entry.getValue().iterator().next(), baseDir)
-            )
-            .collect(Collectors.toList());
+        return getTemplateLookupElements(project, false);
     }
 
     /**
@@ -1495,15 +1432,55 @@ public class TwigUtil {
      */
     @NotNull
     public static Collection<LookupElement> getAllTemplateLookupElements(@NotNull Project project) {
+        return getTemplateLookupElements(project, true);
+    }
+
+    @NotNull
+    private static Collection<LookupElement> getTemplateLookupElements(@NotNull Project project, boolean withPhp) {
         VirtualFile baseDir = project.getBaseDir();
 
-        return getTemplateMap(project, true).entrySet()
-            .stream()
-            .filter(entry -> entry.getValue().size() > 0)
-            .map((java.util.function.Function<Map.Entry<String, Set<VirtualFile>>, LookupElement>) entry ->
-                new TemplateLookupElement(entry.getKey(), entry.getValue().iterator().next(), baseDir)
-            )
-            .collect(Collectors.toList());
+        Collection<LookupElement> lookupElements = new ArrayList<>();
+
+        TwigTemplateNameStore.getInstance(project).processTemplateNames("", withPhp, templateName -> {
+            LookupElement lookupElement = createTemplateLookupElement(templateName, baseDir);
+            if(lookupElement != null) {
+                lookupElements.add(lookupElement);
+            }
+
+            return true;
+        });
+
+        return lookupElements;
+    }
+
+    /**
+     * Adds template lookup elements matching the current prefix; most important namespaces first.
+     * Names with a word starting with the prefix are added first, so the popup is not blocked by all project templates
+     */
+    public static void addTemplateLookupElements(@NotNull Project project, @NotNull CompletionResultSet resultSet, boolean withPhp) {
+        VirtualFile baseDir = project.getBaseDir();
+
+        TwigTemplateNameStore.getInstance(project).processTemplateNames(resultSet.getPrefixMatcher(), withPhp, templateName -> {
+            LookupElement lookupElement = createTemplateLookupElement(templateName, baseDir);
+            if(lookupElement != null) {
+                resultSet.addElement(lookupElement);
+            }
+
+            return !resultSet.isStopped();
+        });
+    }
+
+    @Nullable
+    private static LookupElement createTemplateLookupElement(@NotNull TwigTemplateNameStore.TemplateName templateName, @NotNull VirtualFile baseDir) {
+        VirtualFile virtualFile = templateName.getFile();
+        if(virtualFile == null) {
+            return null;
+        }
+
+        return PrioritizedLookupElement.withPriority(
+            new TemplateLookupElement(templateName.getName(), virtualFile, baseDir),
+            -templateName.getPriority()
+        );
     }
 
     /**
@@ -2143,7 +2120,7 @@ public class TwigUtil {
                 if(i > 0 && templateName.substring(1, i).equals(twigPath.getNamespace())) {
                     paths.add(twigPath.getRelativePath(project) + "/" + templateName.substring(i + 1));
                 }
-            } else if(twigPath.getNamespaceType() == NamespaceType.BUNDLE && templateName.matches("^\\w+Bundle:.*")) {
+            } else if(twigPath.getNamespaceType() == NamespaceType.BUNDLE && BUNDLE_TEMPLATE.matcher(templateName).matches()) {
 
                 int i = templateName.indexOf("Bundle:");
                 String substring = templateName.substring(0, i + 6);
@@ -2164,52 +2141,15 @@ public class TwigUtil {
      */
     @NotNull
     public static Collection<VirtualFile> getTemplatesExtendingFile(@NotNull Project project, @NotNull VirtualFile virtualFile) {
-        Set<VirtualFile> twigChild = new HashSet<>();
-        getTemplatesExtendingFile(project, virtualFile, twigChild, 8);
-        return twigChild;
-    }
-
-    private static void getTemplatesExtendingFile(@NotNull Project project, @NotNull VirtualFile virtualFile, @NotNull Set<VirtualFile> twigChild, int depth) {
-        if(depth <= 0) {
-            return;
-        }
-
-        // use set here, we have multiple shortcut on one file, but only one is required
-        HashSet<VirtualFile> virtualFiles = new LinkedHashSet<>();
-
-        for(String templateName: getTemplateNamesForFile(project, virtualFile)) {
-            // getFilesWithKey dont support keyset with > 1 items (bug?), so we cant merge calls
-            FileBasedIndex.getInstance().getFilesWithKey(TwigExtendsStubIndex.KEY, new HashSet<>(Collections.singletonList(templateName)), myVirtualFile -> {
-                virtualFiles.add(myVirtualFile);
-                return true;
-            }, GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), TwigFileType.INSTANCE));
-        }
-
-        // finally resolve virtual file to twig files
-        for(VirtualFile myVirtualFile: virtualFiles) {
-            // stop if already inside
-            if(twigChild.contains(myVirtualFile)) {
-                continue;
-            }
-
-            twigChild.add(myVirtualFile);
-            getTemplatesExtendingFile(project, myVirtualFile, twigChild, --depth);
-        }
+        return TwigInheritanceGraph.getInstance(project).getExtendingFiles(virtualFile, 8);
     }
 
+    /**
+     * Block names of all given files; resolved in one lookup of the inheritance graph
+     */
     @NotNull
     public static Map<VirtualFile, Collection<String>> getBlockNamesForFiles(@NotNull Project project, @NotNull Collection<VirtualFile> virtualFiles) {
-        Map<VirtualFile, Collection<String>> blocks = new HashMap<>();
-
-        for (VirtualFile virtualFile : virtualFiles) {
-            FileBasedIndex.getInstance().getValues(TwigBlockIndexExtension.KEY, "block", GlobalSearchScope.fileScope(project, virtualFile))
-                .forEach(strings -> {
-                    blocks.putIfAbsent(virtualFile, new HashSet<>());
-                    blocks.get(virtualFile).addAll(strings);
-                });
-        }
-
-        return blocks;
+        return TwigInheritanceGraph.getInstance(project).getBlockNames(virtualFiles);
     }
 
     /**
@@ -2336,6 +2276,79 @@ public class TwigUtil {
         });
     }
 
+    /**
+     * Variables given to an included template and if the context of the including template is given too
+     *
+     * {% include 'template.html' with {'foo': 'bar'} only %}
+     * {% embed "template.html.twig" with {'foo': 'bar'} only %}
+     * {{ include('template.html.twig', {'foo2': foo}, with_context = false) }}
+     */
+    @NotNull
+    public static TwigIncludeSite createIncludeSite(@NotNull TemplateInclude templateInclude) {
+        PsiElement psiElement = templateInclude.getPsiElement();
+        TemplateInclude.TYPE type = templateInclude.getType();
+
+        boolean only = true;
+        Map<String, String> variables = new HashMap<>();
+
+        if(type == TemplateInclude.TYPE.INCLUDE || type == TemplateInclude.TYPE.EMBED) {
+            only = PsiElementUtils.getChildrenOfType(psiElement, TwigPattern.getIncludeOnlyPattern()) != null;
+            variables = getIncludeWithVarNames(psiElement.getText());
+        } else if(type == TemplateInclude.TYPE.INCLUDE_FUNCTION) {
+            // not nice but its working :)
+            // strip all whitespace psi elements; "source()" is also a function include, but without any variable
+            String text = psiElement.getText().replaceAll("\\r|\\n|\\s+", "");
+            only = !text.contains("include(");
+
+            Matcher matcher = INCLUDE_FUNCTION_PATTERN.matcher(text);
+            if (!only && matcher.find()) {
+                String[] group = matcher.group(1).split(",");
+                if(group.length > 1) {
+                    // json alias map: {'foo2': foo}
+                    if(group[1].startsWith("{")) {
+                        variables = getVariableAliasMap(group[1]);
+                    }
+
+                    // try to find context in one of the parameter:
+                    // include('template.html', with_context = false)
+                    // include('template.html', {foo: 'bar'}, with_context = false)
+                    for (int i = 1; i < group.length; i++) {
+                        if(group[i].equals("with_context=false")) {
+                            only = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return new TwigIncludeSite(type.name(), only, variables, psiElement.getTextRange());
+    }
+
+    @NotNull
+    private static Map<String, String> getIncludeWithVarNames(@NotNull String includeText) {
+        Matcher matcher = INCLUDE_WITH_PATTERN.matcher(includeText.replace("\r\n", " ").replace("\n", " "));
+
+        if (matcher.find()) {
+            String group = matcher.group(1);
+            return getVariableAliasMap("{" + group + "}");
+        }
+
+        return new HashMap<>();
+    }
+
+    @NotNull
+    private static Map<String, String> getVariableAliasMap(@NotNull String jsonLike) {
+        Map<String, String> map = new HashMap<>();
+
+        String[] parts = jsonLike.replaceAll("^\\{|\\}$","").split("\"?(:|,)(?![^\\{]*\\})\"?");
+
+        for (int i = 0; i < parts.length -1; i+=2) {
+            map.put(StringUtils.trim(parts[i]).replaceAll("^\"|\"$|\'|\'$", ""), StringUtils.trim(parts[i+1]).replaceAll("^\"|\"$|\'|\'$", ""));
+        }
+
+        return map;
+    }
+
     /**
      * Get all macros inside file
      *
@@ -2344,25 +2357,43 @@ public class TwigUtil {
      */
     @NotNull
     public static Collection<TwigMacroTagInterface> getMacros(@NotNull PsiFile file) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        if(virtualFile == null) {
+            return new ArrayList<>(TwigFileSymbolTable.getInstance(file).getMacros());
+        }
+
+        return getMacros(file.getProject(), virtualFile);
+    }
+
+    /**
+     * Get all macros inside file from index
+     *
+     * {% macro foobar %}{% endmacro %}
+     * {% macro input(name, value, type, size) %}{% endmacro %}
+     */
+    @NotNull
+    public static Collection<TwigMacroTagInterface> getMacros(@NotNull Project project, @NotNull VirtualFile virtualFile) {
         Collection<TwigMacroTagInterface> macros = new ArrayList<>();
 
         Collection<String> keys = new ArrayList<>();
 
+        GlobalSearchScope scope = GlobalSearchScope.fileScope(project, virtualFile);
+
         FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
         fileBasedIndex.processAllKeys(TwigMacroFunctionStubIndex.KEY, s -> {
             keys.add(s);
             return true;
-        }, GlobalSearchScope.fileScope(file), null);
+        }, scope, null);
 
         for (String key : keys) {
-            macros.addAll(fileBasedIndex.getValues(TwigMacroFunctionStubIndex.KEY, key, GlobalSearchScope.fileScope(file)));
+            macros.addAll(fileBasedIndex.getValues(TwigMacroFunctionStubIndex.KEY, key, scope));
         }
 
         return macros;
     }
 
     /**
-     * Get all macros inside file
+     * Get all macros inside file by walking its psi; for indexing, else see TwigFileSymbolTable
      *
      * {% macro foobar %}{% endmacro %}
      * {% macro input(name, value, type, size) %}{% endmacro %}
@@ -2766,28 +2797,6 @@ public class TwigUtil {
         }
     }
 
-    private static class MyAllTemplateFileMapCachedValueProvider implements CachedValueProvider<Map<String, Set<VirtualFile>>> {
-        @NotNull
-        private final Project project;
-
-        private final boolean includePhpFiles;
-
-        MyAllTemplateFileMapCachedValueProvider(@NotNull Project project) {
-            this(project, false);
-        }
-
-        MyAllTemplateFileMapCachedValueProvider(@NotNull Project project, boolean includePhpFiles) {
-            this.project = project;
-            this.includePhpFiles = includePhpFiles;
-        }
-
-        @Nullable
-        @Override
-        public Result<Map<String, Set<VirtualFile>>> compute() {
-            return Result.create(getTemplateMapProxy(project, includePhpFiles), PsiModificationTracker.MODIFICATION_COUNT);
-        }
-    }
-
     /**
      * Twig template visitor, which scan given TwigPath for template names
      *
@@ -2799,8 +2808,11 @@ public class TwigUtil {
         @NotNull
         private final TwigPath twigPath;
 
+        /**
+         * Directory path with trailing slash; template names are the relative path of a visited file
+         */
         @NotNull
-        private final Project project;
+        private final String directoryPath;
 
         @NotNull
         private Map<String, VirtualFile> results = new HashMap<>();
@@ -2812,17 +2824,26 @@ public class TwigUtil {
         @NotNull
         private Set<String> workedOn = new HashSet<>();
 
-        private MyLimitedVirtualFileVisitor(@NotNull Project project, @NotNull TwigPath twigPath, boolean withPhp, int maxDepth, int maxDirs) {
+        @Nullable
+        private final Collection<VirtualFile> visitedDirectories;
+
+        private MyLimitedVirtualFileVisitor(@NotNull VirtualFile directory, @NotNull TwigPath twigPath, boolean withPhp, int maxDepth, int maxDirs, @Nullable Collection<VirtualFile> visitedDirectories) {
             super(VirtualFileVisitor.limit(maxDepth));
 
-            this.project = project;
+            this.directoryPath = StringUtils.stripEnd(directory.getPath(), "/") + "/";
             this.twigPath = twigPath;
             this.withPhp = withPhp;
             this.childrenAllowToVisit = maxDirs;
+            this.visitedDirectories = visitedDirectories;
         }
 
         @Override
         public boolean visitFile(@NotNull VirtualFile virtualFile) {
+            // any visited child proves that the children of its parent are visited
+            if(visitedDirectories != null && virtualFile.getParent() != null && virtualFile.getPath().startsWith(directoryPath)) {
+                visitedDirectories.add(virtualFile.getParent());
+            }
+
             // per path directory limit
             if (virtualFile.isDirectory() && childrenAllowToVisit-- <= 0) {
                 return false;
@@ -2847,9 +2868,8 @@ public class TwigUtil {
 
             workedOn.add(filePath);
 
-            String templateName = getTemplateNameForTwigPath(project, twigPath, virtualFile);
-            if(templateName != null) {
-                results.put(templateName, virtualFile);
+            if(filePath.startsWith(directoryPath) && filePath.length() > directoryPath.length()) {
+                results.put(getTemplateNameForTwigPath(twigPath, filePath.substring(directoryPath.length())), virtualFile);
             }
         }
 
@@ -2875,8 +2895,12 @@ public class TwigUtil {
         }
 
         @NotNull
-        static Map<String, VirtualFile> createResult(@NotNull VirtualFile virtualFile, @NotNull Project project, @NotNull TwigPath twigPath, boolean withPhp) {
-            MyLimitedVirtualFileVisitor visitor = new MyLimitedVirtualFileVisitor(project, twigPath, withPhp, 5, 150);
+        static Map<String, VirtualFile> createResult(@NotNull VirtualFile virtualFile, @NotNull TwigPath twigPath, boolean withPhp, @Nullable Collection<VirtualFile> visitedDirectories) {
+            if(visitedDirectories != null) {
+                visitedDirectories.add(virtualFile);
+            }
+
+            MyLimitedVirtualFileVisitor visitor = new MyLimitedVirtualFileVisitor(virtualFile, twigPath, withPhp, 5, 150, visitedDirectories);
             VfsUtil.visitChildrenRecursively(virtualFile, visitor);
             return visitor.getResults();
         }
@@ -14,4 +14,13 @@ public interface TwigFileVariableCollector {
     default void collect(@NotNull TwigFileVariableCollectorParameter parameter, @NotNull Map<String, Set<String>> variables) {}
 
     default void collectPsiVariables(@NotNull TwigFileVariableCollectorParameter parameter, @NotNull Map<String, PsiVariable> variables) {}
+
+    /**
+     * Variables only depend on the file and not on the element position inside it; they are cached per file.
+     * Everything besides the file itself, which the variables are resolved from, must be reported via
+     * TwigFileVariableCollectorParameter.addDependency
+     */
+    default boolean isFileScope() {
+        return false;
+    }
 }
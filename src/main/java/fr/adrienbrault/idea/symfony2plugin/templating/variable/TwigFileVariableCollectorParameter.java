@@ -3,7 +3,9 @@ package fr.adrienbrault.idea.symfony2plugin.templating.variable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
 
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -13,10 +15,16 @@ public class TwigFileVariableCollectorParameter {
 
     private final PsiElement psiElement;
     private final Set<VirtualFile> visitedFiles;
+    private final Set<Object> dependencies;
 
     public TwigFileVariableCollectorParameter(PsiElement psiElement, Set<VirtualFile> visitedFiles) {
+        this(psiElement, visitedFiles, new HashSet<>());
+    }
+
+    public TwigFileVariableCollectorParameter(PsiElement psiElement, Set<VirtualFile> visitedFiles, Set<Object> dependencies) {
         this.psiElement = psiElement;
         this.visitedFiles = visitedFiles;
+        this.dependencies = dependencies;
     }
 
     public PsiElement getElement() {
@@ -31,4 +39,15 @@ public class TwigFileVariableCollectorParameter {
         return visitedFiles;
     }
 
+    /**
+     * Cache dependency of the collected variables: a PsiFile or a ModificationTracker
+     */
+    public void addDependency(@NotNull Object dependency) {
+        dependencies.add(dependency);
+    }
+
+    @NotNull
+    public Set<Object> getDependencies() {
+        return dependencies;
+    }
 }
@@ -29,4 +29,9 @@ public class FileDocVariableCollector implements TwigFileVariableCollector {
 
         return globalVars;
     }
+
+    @Override
+    public boolean isFileScope() {
+        return true;
+    }
 }
@@ -3,11 +3,13 @@ package fr.adrienbrault.idea.symfony2plugin.templating.variable.collector;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.jetbrains.php.lang.psi.elements.*;
 import com.jetbrains.php.phpunit.PhpUnitUtil;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlServiceParser;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.PhpMethodVariableResolveUtil;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollector;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollectorParameter;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
@@ -19,10 +21,18 @@ import java.util.Map;
 public class GlobalExtensionVariableCollector implements TwigFileVariableCollector {
     @Override
     public void collectPsiVariables(@NotNull TwigFileVariableCollectorParameter parameter, @NotNull Map<String, PsiVariable> variables) {
+        // getGlobals types can be services of the compiled container
+        parameter.addDependency(ServiceXmlParserFactory.getModificationTracker(parameter.getProject(), XmlServiceParser.class));
+
         for(PhpClass phpClass : TwigUtil.getTwigExtensionClasses(parameter.getProject())) {
             if(!PhpUnitUtil.isPhpUnitTestFile(phpClass.getContainingFile())) {
+                // also an extension without globals, as "getGlobals" can be added later on
+                parameter.addDependency(phpClass.getContainingFile());
+
                 Method method = phpClass.findMethodByName("getGlobals");
                 if(method != null) {
+                    parameter.addDependency(method.getContainingFile());
+
                     Collection<PhpReturn> phpReturns = PsiTreeUtil.findChildrenOfType(method, PhpReturn.class);
                     for(PhpReturn phpReturn: phpReturns) {
                         PhpPsiElement returnPsiElement = phpReturn.getFirstPsiChild();
@@ -34,4 +44,9 @@ public class GlobalExtensionVariableCollector implements TwigFileVariableCollect
             }
         }
     }
+
+    @Override
+    public boolean isFileScope() {
+        return true;
+    }
 }
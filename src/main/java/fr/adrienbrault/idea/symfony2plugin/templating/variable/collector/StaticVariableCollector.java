@@ -14,4 +14,9 @@ public class StaticVariableCollector implements TwigFileVariableCollector {
     public void collect(@NotNull TwigFileVariableCollectorParameter parameter, @NotNull Map<String, Set<String>> variables) {
         variables.put("app", new HashSet<>(Collections.singletonList("\\Symfony\\Bundle\\FrameworkBundle\\Templating\\GlobalVariables")));
     }
+
+    @Override
+    public boolean isFileScope() {
+        return true;
+    }
 }
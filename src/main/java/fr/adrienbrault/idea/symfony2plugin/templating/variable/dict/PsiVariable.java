@@ -6,28 +6,61 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
 public class PsiVariable {
+    /**
+     * Element is not resolved by its supplier yet
+     */
+    private static final Object UNRESOLVED = new Object();
+
     @NotNull
     final private Set<String> types;
 
+    /**
+     * Element, null or UNRESOLVED; shared with copies of this variable, so an element is only resolved once for all of them
+     */
+    @NotNull
+    final private AtomicReference<Object> psiElement;
+
+    /**
+     * Finds the element on first access, eg for variables of an index. Variables are shared between threads; the supplier
+     * is called without any lock and the first resolved element is published for all threads
+     */
     @Nullable
-    private PsiElement psiElement;
+    final private Supplier<PsiElement> psiElementSupplier;
 
     public PsiVariable(@NotNull Set<String> types, @Nullable PsiElement psiElement) {
         this.types = types;
-        this.psiElement = psiElement;
+        this.psiElement = new AtomicReference<>(psiElement);
+        this.psiElementSupplier = null;
     }
 
-    public PsiVariable(@NotNull Set<String> types) {
+    public PsiVariable(@NotNull Set<String> types, @NotNull Supplier<PsiElement> psiElementSupplier) {
         this.types = types;
+        this.psiElement = new AtomicReference<>(UNRESOLVED);
+        this.psiElementSupplier = psiElementSupplier;
+    }
+
+    /**
+     * Same element as the given variable, without resolving it
+     */
+    public PsiVariable(@NotNull Set<String> types, @NotNull PsiVariable psiVariable) {
+        this.types = types;
+        this.psiElement = psiVariable.psiElement;
+        this.psiElementSupplier = psiVariable.psiElementSupplier;
+    }
+
+    public PsiVariable(@NotNull Set<String> types) {
+        this(types, (PsiElement) null);
     }
 
     public PsiVariable(@NotNull String type) {
-        this.types = Collections.singleton(type);;
+        this(Collections.singleton(type));
     }
 
     @NotNull
@@ -37,6 +70,13 @@ public class PsiVariable {
 
     @Nullable
     public PsiElement getElement() {
-        return psiElement;
+        Object psiElement = this.psiElement.get();
+        if(psiElement == UNRESOLVED && psiElementSupplier != null) {
+            // concurrent lookups may both resolve; only the first one is published
+            this.psiElement.compareAndSet(UNRESOLVED, psiElementSupplier.get());
+            psiElement = this.psiElement.get();
+        }
+
+        return (PsiElement) psiElement;
     }
 }
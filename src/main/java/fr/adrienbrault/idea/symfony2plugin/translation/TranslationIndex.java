@@ -1,18 +1,30 @@
 package fr.adrienbrault.idea.symfony2plugin.translation;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import fr.adrienbrault.idea.symfony2plugin.Settings;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
-import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationPsiParser;
+import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationCatalogueReader;
 import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationStringMap;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Translations of the compiled catalogues inside the translation cache directory.
+ *
+ * Only catalogues with a changed modification time are read again. An outdated map is still served while the new one
+ * is built by the update executor; without a translation directory the empty map is a valid state.
+ *
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
 public class TranslationIndex {
@@ -22,9 +34,30 @@ public class TranslationIndex {
     protected Project project;
 
     @Nullable
-    private TranslationStringMap translationStringMap;
+    private volatile TranslationStringMap translationStringMap;
+
+    /**
+     * Served without any catalogue; always the same instance, so caches over the map are kept
+     */
+    @NotNull
+    private final TranslationStringMap emptyTranslationStringMap = new TranslationStringMap();
     private Long translationStringMapModified;
 
+    /**
+     * Catalogue file name to its last read state
+     */
+    @NotNull
+    private final Map<String, Catalogue> catalogues = new HashMap<>();
+
+    @NotNull
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+    /**
+     * Runs the scheduled updates; tests can replace it to run them in place
+     */
+    @NotNull
+    private volatile Executor updateExecutor = runnable -> ApplicationManager.getApplication().executeOnPooledThread(runnable);
+
     public static TranslationIndex getInstance(Project project){
 
         TranslationIndex projectInstance = instance.get(project);
@@ -43,30 +76,139 @@ public class TranslationIndex {
         this.project = project;
     }
 
+    @NotNull
+    public TranslationStringMap getTranslationMap() {
+        TranslationStringMap translationStringMap = this.translationStringMap;
+        if(translationStringMap != null && this.isCacheValid(translationStringMap)) {
+            return translationStringMap;
+        }
+
+        // never freeze ui on reading catalogues; serve what we have until the new map is ready
+        if(translationStringMap != null || ApplicationManager.getApplication().isDispatchThread()) {
+            this.scheduleUpdate();
+
+            // an executor may have finished the update already
+            TranslationStringMap current = this.translationStringMap;
+            return current != null ? current : emptyTranslationStringMap;
+        }
 
-    synchronized public TranslationStringMap getTranslationMap() {
+        return this.update();
+    }
+
+    /**
+     * Executor of the background updates; eg "Runnable::run" to update in place
+     */
+    @TestOnly
+    public void setUpdateExecutor(@NotNull Executor updateExecutor) {
+        this.updateExecutor = updateExecutor;
+    }
+
+    private void scheduleUpdate() {
+        if(!updateScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        updateExecutor.execute(() -> {
+            try {
+                this.update();
+            } finally {
+                updateScheduled.set(false);
+            }
+        });
+    }
 
-        if(this.translationStringMap != null && this.isCacheValid()) {
-            return this.translationStringMap;
+    @NotNull
+    synchronized private TranslationStringMap update() {
+        // other thread was faster
+        TranslationStringMap current = this.translationStringMap;
+        if(current != null && this.isCacheValid(current)) {
+            return current;
         }
 
         File translationDirectory = this.getTranslationRoot();
         if(null == translationDirectory) {
-            return new TranslationStringMap();
+            // valid until the directory exists; so lookups dont schedule an update on every call
+            this.catalogues.clear();
+            this.translationStringMapModified = null;
+            return this.translationStringMap = emptyTranslationStringMap;
         }
 
         Symfony2ProjectComponent.getLogger().info("translations changed: " + translationDirectory.toString());
 
-        this.translationStringMapModified = translationDirectory.lastModified();
-        return this.translationStringMap = new TranslationPsiParser(project).parsePathMatcher(translationDirectory.getPath());
+        long translationModified = translationDirectory.lastModified();
+
+        Map<String, Catalogue> catalogues = new HashMap<>();
+
+        // strings of unchanged catalogues are reused; so new ones can share them
+        Map<String, String> interner = new HashMap<>();
+
+        File[] files = translationDirectory.listFiles();
+        if(files != null) {
+            for (File fileEntry : files) {
+                String fileName = fileEntry.getName();
+                if(fileEntry.isDirectory() || !isCatalogueFile(fileName)) {
+                    continue;
+                }
+
+                Catalogue catalogue = this.catalogues.get(fileName);
+                if(catalogue != null && catalogue.modified == fileEntry.lastModified()) {
+                    catalogue.domains.forEach((domain, keys) -> {
+                        interner.putIfAbsent(domain, domain);
+                        keys.forEach(key -> interner.putIfAbsent(key, key));
+                    });
+
+                    catalogues.put(fileName, catalogue);
+                }
+            }
+
+            for (File fileEntry : files) {
+                String fileName = fileEntry.getName();
+                if(fileEntry.isDirectory() || !isCatalogueFile(fileName) || catalogues.containsKey(fileName)) {
+                    continue;
+                }
+
+                // modification time before reading; a catalogue written meanwhile is read again
+                long modified = fileEntry.lastModified();
+
+                Symfony2ProjectComponent.getLogger().info("update translations: " + fileEntry.getPath());
+
+                try {
+                    catalogues.put(fileName, new Catalogue(modified, TranslationCatalogueReader.read(fileEntry, interner)));
+                } catch (IOException e) {
+                    Symfony2ProjectComponent.getLogger().info("invalid translation catalogue: " + fileEntry.getPath());
+                }
+            }
+        }
+
+        TranslationStringMap translationStringMap = new TranslationStringMap();
+        for (Map.Entry<String, Catalogue> entry : catalogues.entrySet()) {
+            for (Map.Entry<String, Set<String>> domain : entry.getValue().domains.entrySet()) {
+                translationStringMap.addDomain(domain.getKey());
+                for (String key : domain.getValue()) {
+                    translationStringMap.addString(domain.getKey(), key);
+                }
+            }
+
+            translationStringMap.addFile(entry.getKey(), entry.getValue().modified);
+        }
+
+        this.catalogues.clear();
+        this.catalogues.putAll(catalogues);
+
+        this.translationStringMapModified = translationModified;
+        return this.translationStringMap = translationStringMap;
     }
 
-    protected boolean isCacheValid() {
+    private static boolean isCatalogueFile(@NotNull String fileName) {
+        return fileName.startsWith("catalogue") && fileName.endsWith("php");
+    }
+
+    protected boolean isCacheValid(@NotNull TranslationStringMap translationStringMap) {
 
         // symfony2 recreates translation file on change, so folder modtime is caching indicator
         File translationRootPath = this.getTranslationRoot();
         if (null == translationRootPath) {
-            return false;
+            return translationStringMap == emptyTranslationStringMap;
         }
 
         Long translationModified = translationRootPath.lastModified();
@@ -74,44 +216,34 @@ public class TranslationIndex {
             return false;
         }
 
-        // @TODO make this more abstract
         // we check for possible file modifications here per translation file
-        if(this.translationStringMap != null) {
-
-
-            File file = new File(translationRootPath.getPath());
-
-            // use cache in any i/o error
-            File[] files = file.listFiles();
-            if(null == files) {
-                return true;
-            }
-
-            // directory is empty or not exits, before and after instance
-            Map<String, Long> fileNames = this.translationStringMap.getFileNames();
-            if(files.length == 0 && fileNames.size() == 0) {
-                return true;
-            }
-
-            for (File fileEntry : files) {
-                if (!fileEntry.isDirectory()) {
-                    String fileName = fileEntry.getName();
-                    if(fileName.startsWith("catalogue") && fileName.endsWith("php")) {
+        File file = new File(translationRootPath.getPath());
 
+        // use cache in any i/o error
+        File[] files = file.listFiles();
+        if(null == files) {
+            return true;
+        }
 
-                        if(!fileNames.containsKey(fileName)) {
-                            return false;
-                        }
+        // directory is empty or not exits, before and after instance
+        Map<String, Long> fileNames = translationStringMap.getFileNames();
+        if(files.length == 0 && fileNames.size() == 0) {
+            return true;
+        }
 
-                        if(!fileNames.get(fileName).equals(fileEntry.lastModified())) {
-                            return false;
-                        }
+        for (File fileEntry : files) {
+            if (!fileEntry.isDirectory()) {
+                String fileName = fileEntry.getName();
+                if(isCatalogueFile(fileName)) {
+                    if(!fileNames.containsKey(fileName)) {
+                        return false;
+                    }
 
+                    if(!fileNames.get(fileName).equals(fileEntry.lastModified())) {
+                        return false;
                     }
                 }
             }
-
-
         }
 
         return true;
@@ -133,5 +265,18 @@ public class TranslationIndex {
         return file;
     }
 
+    private static class Catalogue {
+        private final long modified;
 
+        /**
+         * Domain to its translation keys
+         */
+        @NotNull
+        private final Map<String, Set<String>> domains;
+
+        private Catalogue(long modified, @NotNull Map<String, Set<String>> domains) {
+            this.modified = modified;
+            this.domains = domains;
+        }
+    }
 }
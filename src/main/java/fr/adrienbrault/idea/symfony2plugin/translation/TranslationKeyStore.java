@@ -0,0 +1,213 @@
+package fr.adrienbrault.idea.symfony2plugin.translation;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TranslationStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationStringMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Translation keys of a domain over all locales of the compiled catalogues and the translation index, as one sorted
+ * array with each key only once.
+ *
+ * Domains are built on first access and dropped if translation keys of any file or the compiled catalogues were
+ * changed; so completion does not merge the key sets of all locale files on every popup.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationKeyStore {
+
+    private static final Key<TranslationKeyStore> STORE = new Key<>("SYMFONY_TRANSLATION_KEY_STORE");
+
+    @NotNull
+    private final Project project;
+
+    @Nullable
+    private volatile Domains domains;
+
+    private TranslationKeyStore(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static TranslationKeyStore getInstance(@NotNull Project project) {
+        TranslationKeyStore store = project.getUserData(STORE);
+        return store != null ? store : ((UserDataHolderEx) project).putUserDataIfAbsent(STORE, new TranslationKeyStore(project));
+    }
+
+    /**
+     * Catalogues and index are read outside of any lock; concurrent lookups of a new domain may both build it
+     */
+    @NotNull
+    public DomainKeys getDomainKeys(@NotNull String domain) {
+        Domains domains = getDomains();
+
+        DomainKeys domainKeys = domains.keys.get(domain);
+        if(domainKeys == null) {
+            domainKeys = createDomainKeys(domains.translationStringMap, domain);
+            domains.keys.putIfAbsent(domain, domainKeys);
+        }
+
+        return domainKeys;
+    }
+
+    /**
+     * Count is taken before the index is read; so a change while reading is always seen by the next lookup
+     */
+    @NotNull
+    private Domains getDomains() {
+        long modificationCount = TranslationStubIndex.getModificationTracker(project).getModificationCount();
+        TranslationStringMap translationStringMap = TranslationIndex.getInstance(project).getTranslationMap();
+
+        // catalogue map is only replaced if any catalogue was changed
+        Domains domains = this.domains;
+        if(domains == null || domains.modificationCount != modificationCount || domains.translationStringMap != translationStringMap) {
+            this.domains = domains = new Domains(modificationCount, translationStringMap);
+        }
+
+        return domains;
+    }
+
+    @NotNull
+    private DomainKeys createDomainKeys(@NotNull TranslationStringMap translationStringMap, @NotNull String domain) {
+        Set<String> compiledKeys = translationStringMap.getDomainMap(domain);
+
+        Set<String> keys = compiledKeys != null ? new HashSet<>(compiledKeys) : new HashSet<>();
+        FileBasedIndex.getInstance().processValues(TranslationStubIndex.KEY, domain, null, (virtualFile, values) -> {
+            keys.addAll(values);
+            return true;
+        }, GlobalSearchScope.allScope(project));
+
+        String[] sortedKeys = keys.toArray(new String[0]);
+        Arrays.sort(sortedKeys);
+
+        // keys only known by index are weak ones
+        BitSet weak = new BitSet(sortedKeys.length);
+        for (int i = 0; i < sortedKeys.length; i++) {
+            if(compiledKeys == null || !compiledKeys.contains(sortedKeys[i])) {
+                weak.set(i);
+            }
+        }
+
+        return new DomainKeys(sortedKeys, weak);
+    }
+
+    /**
+     * Built domains of one state of the index and the compiled catalogues
+     */
+    private static class Domains {
+        private final long modificationCount;
+
+        @NotNull
+        private final TranslationStringMap translationStringMap;
+
+        @NotNull
+        private final ConcurrentMap<String, DomainKeys> keys = new ConcurrentHashMap<>();
+
+        Domains(long modificationCount, @NotNull TranslationStringMap translationStringMap) {
+            this.modificationCount = modificationCount;
+            this.translationStringMap = translationStringMap;
+        }
+    }
+
+    /**
+     * Sorted translation keys of a domain
+     */
+    public static class DomainKeys {
+
+        @NotNull
+        private final String[] keys;
+
+        @NotNull
+        private final BitSet weak;
+
+        DomainKeys(@NotNull String[] keys, @NotNull BitSet weak) {
+            this.keys = keys;
+            this.weak = weak;
+        }
+
+        public int size() {
+            return keys.length;
+        }
+
+        @NotNull
+        public List<String> getKeys() {
+            return Collections.unmodifiableList(Arrays.asList(keys));
+        }
+
+        /**
+         * Visits all keys in order
+         */
+        public boolean processKeys(@NotNull KeyProcessor processor) {
+            return processKeys(0, keys.length, processor);
+        }
+
+        /**
+         * Visits keys starting with the prefix, found with a binary search: "foo.bar" for "foo.b"
+         */
+        public boolean processKeys(@NotNull String prefix, @NotNull KeyProcessor processor) {
+            int start = getPrefixStart(prefix);
+            int end = start;
+            while (end < keys.length && keys[end].startsWith(prefix)) {
+                end++;
+            }
+
+            return processKeys(start, end, processor);
+        }
+
+        /**
+         * Next segments of a dot path, like a key tree: "bar", "baz" for "foo" on "foo.bar.title", "foo.baz";
+         * an empty path gives the first segments
+         */
+        @NotNull
+        public Set<String> getSegments(@NotNull String path) {
+            String prefix = path.isEmpty() ? "" : path + ".";
+
+            Set<String> segments = new LinkedHashSet<>();
+            processKeys(prefix, (key, weak) -> {
+                int end = key.indexOf('.', prefix.length());
+                String segment = key.substring(prefix.length(), end < 0 ? key.length() : end);
+                if(!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+
+                return true;
+            });
+
+            return segments;
+        }
+
+        private boolean processKeys(int start, int end, @NotNull KeyProcessor processor) {
+            for (int i = start; i < end; i++) {
+                if(!processor.process(keys[i], weak.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * First index which is not lower than the prefix; keys with the prefix all follow it
+         */
+        private int getPrefixStart(@NotNull String prefix) {
+            int index = Arrays.binarySearch(keys, prefix);
+            return index < 0 ? -index - 1 : index;
+        }
+    }
+
+    public interface KeyProcessor {
+        /**
+         * @param weak key is only known by index and not by the compiled catalogues
+         */
+        boolean process(@NotNull String key, boolean weak);
+    }
+}
@@ -0,0 +1,59 @@
+package fr.adrienbrault.idea.symfony2plugin.translation.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.testFramework.LightVirtualFile;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2Icons;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.translation.dict.TranslationCoverage;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Opens a matrix of all used translation keys which are found or missing in every locale
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationCoverageAction extends AnAction {
+
+    public TranslationCoverageAction() {
+        super("Translation Coverage", "Used translation keys found per locale", Symfony2Icons.TRANSLATION);
+    }
+
+    public void update(AnActionEvent e) {
+        Project project = CommonDataKeys.PROJECT.getData(e.getDataContext());
+        e.getPresentation().setEnabledAndVisible(project != null && Symfony2ProjectComponent.isEnabled(project));
+    }
+
+    public void actionPerformed(AnActionEvent e) {
+        Project project = CommonDataKeys.PROJECT.getData(e.getDataContext());
+        if (project == null) {
+            return;
+        }
+
+        new Task.Backgroundable(project, "Symfony: Translation Coverage", true) {
+            private String report;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                report = TranslationCoverage.createReport(new TranslationCoverage(project).collect(indicator));
+            }
+
+            @Override
+            public void onSuccess() {
+                if(project.isDisposed()) {
+                    return;
+                }
+
+                LightVirtualFile virtualFile = new LightVirtualFile("Translation Coverage.txt", PlainTextFileType.INSTANCE, report);
+                virtualFile.setWritable(false);
+                FileEditorManager.getInstance(project).openFile(virtualFile, true);
+            }
+        }.queue();
+    }
+}
@@ -0,0 +1,253 @@
+package fr.adrienbrault.idea.symfony2plugin.translation.dict;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TranslationStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TranslationUsageStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.translation.TranslationIndex;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coverage of all translation keys used inside the project against the translation files of every locale:
+ *
+ * messages: de 12/14, en 14/14
+ *
+ * Used keys are collected once from TranslationUsageStubIndex; domains are independent of each other so they are
+ * checked concurrently, each one reading its translation files only once for all of its keys
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationCoverage {
+
+    @NotNull
+    private final Project project;
+
+    public TranslationCoverage(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Coverage of all domains with usages sorted by domain name
+     */
+    @NotNull
+    public Collection<DomainCoverage> collect(@Nullable ProgressIndicator indicator) {
+        Map<String, Set<String>> usages = ApplicationManager.getApplication().runReadAction((Computable<Map<String, Set<String>>>) this::getUsedKeys);
+
+        Set<String> compiledDomains = TranslationIndex.getInstance(project).getTranslationMap().getDomainList();
+
+        Map<String, DomainCoverage> coverages = new ConcurrentHashMap<>();
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(new ArrayList<>(usages.keySet()), indicator, true, false, domain -> {
+            coverages.put(domain, createDomainCoverage(domain, usages.get(domain), compiledDomains.contains(domain)));
+            return true;
+        });
+
+        return new TreeMap<>(coverages).values();
+    }
+
+    /**
+     * "domain" => "foo", "bar"
+     */
+    @NotNull
+    private Map<String, Set<String>> getUsedKeys() {
+        Map<String, Set<String>> usages = new HashMap<>();
+
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+        for (String domain : index.getAllKeys(TranslationUsageStubIndex.KEY, project)) {
+            index.processValues(TranslationUsageStubIndex.KEY, domain, null, (virtualFile, keys) -> {
+                usages.computeIfAbsent(domain, s -> new HashSet<>()).addAll(keys);
+                return true;
+            }, scope);
+        }
+
+        return usages;
+    }
+
+    @NotNull
+    private DomainCoverage createDomainCoverage(@NotNull String domain, @NotNull Set<String> usedKeys, boolean compiledDomain) {
+        // key sets of every translation file grouped by its locale; values are used as they are and not merged
+        Map<String, List<Set<String>>> localeKeys = new TreeMap<>();
+        FileBasedIndex.getInstance().processValues(TranslationStubIndex.KEY, domain, null, (virtualFile, keys) -> {
+            String locale = TranslationStubIndex.getLocale(virtualFile.getName());
+            if(locale != null) {
+                localeKeys.computeIfAbsent(locale, s -> new ArrayList<>()).add(keys);
+            }
+
+            return true;
+        }, GlobalSearchScope.allScope(project));
+
+        Set<String> compiledKeys = compiledDomain ? TranslationIndex.getInstance(project).getTranslationMap().getDomainMap(domain) : null;
+
+        List<String> keys = new ArrayList<>(usedKeys);
+        Collections.sort(keys);
+
+        Map<String, List<String>> missingKeys = new TreeMap<>();
+        for (String locale : localeKeys.keySet()) {
+            missingKeys.put(locale, new ArrayList<>());
+        }
+
+        List<String> unknownKeys = new ArrayList<>();
+
+        for (String key : keys) {
+            boolean found = false;
+
+            for (Map.Entry<String, List<Set<String>>> entry : localeKeys.entrySet()) {
+                if(containsKey(entry.getValue(), key)) {
+                    found = true;
+                } else {
+                    missingKeys.get(entry.getKey()).add(key);
+                }
+            }
+
+            if(!found && (compiledKeys == null || !compiledKeys.contains(key))) {
+                unknownKeys.add(key);
+            }
+        }
+
+        return new DomainCoverage(domain, keys, missingKeys, unknownKeys);
+    }
+
+    private static boolean containsKey(@NotNull List<Set<String>> keySets, @NotNull String key) {
+        for (Set<String> keySet : keySets) {
+            if(keySet.contains(key)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Plain text matrix of used keys found per locale; missing keys are listed below each domain
+     *
+     * domain       de      en
+     * messages     12/14   14/14
+     */
+    @NotNull
+    public static String createReport(@NotNull Collection<DomainCoverage> coverages) {
+        Set<String> locales = new TreeSet<>();
+        int domainWidth = "domain".length();
+        for (DomainCoverage coverage : coverages) {
+            locales.addAll(coverage.getLocales());
+            domainWidth = Math.max(domainWidth, coverage.getDomain().length());
+        }
+
+        StringBuilder report = new StringBuilder();
+
+        report.append(StringUtils.rightPad("domain", domainWidth + 2));
+        for (String locale : locales) {
+            report.append(StringUtils.rightPad(locale, 14));
+        }
+        report.append("unknown\n");
+
+        for (DomainCoverage coverage : coverages) {
+            report.append(StringUtils.rightPad(coverage.getDomain(), domainWidth + 2));
+            for (String locale : locales) {
+                String cell = "-";
+                if(coverage.getLocales().contains(locale)) {
+                    cell = coverage.getFoundCount(locale) + "/" + coverage.getKeys().size();
+                }
+
+                report.append(StringUtils.rightPad(cell, 14));
+            }
+
+            report.append(coverage.getUnknownKeys().size()).append("\n");
+        }
+
+        for (DomainCoverage coverage : coverages) {
+            for (String locale : coverage.getLocales()) {
+                List<String> missingKeys = coverage.getMissingKeys(locale);
+                if(missingKeys.size() > 0) {
+                    report.append("\n").append(coverage.getDomain()).append(" (").append(locale).append(") missing:\n");
+                    for (String key : missingKeys) {
+                        report.append("  ").append(key).append("\n");
+                    }
+                }
+            }
+
+            if(coverage.getUnknownKeys().size() > 0) {
+                report.append("\n").append(coverage.getDomain()).append(" unknown:\n");
+                for (String key : coverage.getUnknownKeys()) {
+                    report.append("  ").append(key).append("\n");
+                }
+            }
+        }
+
+        return report.toString();
+    }
+
+    public static class DomainCoverage {
+
+        @NotNull
+        private final String domain;
+
+        @NotNull
+        private final List<String> keys;
+
+        @NotNull
+        private final Map<String, List<String>> missingKeys;
+
+        @NotNull
+        private final List<String> unknownKeys;
+
+        DomainCoverage(@NotNull String domain, @NotNull List<String> keys, @NotNull Map<String, List<String>> missingKeys, @NotNull List<String> unknownKeys) {
+            this.domain = domain;
+            this.keys = keys;
+            this.missingKeys = missingKeys;
+            this.unknownKeys = unknownKeys;
+        }
+
+        @NotNull
+        public String getDomain() {
+            return domain;
+        }
+
+        /**
+         * Used keys, sorted
+         */
+        @NotNull
+        public List<String> getKeys() {
+            return Collections.unmodifiableList(keys);
+        }
+
+        /**
+         * Locales with at least one translation file of the domain
+         */
+        @NotNull
+        public Set<String> getLocales() {
+            return Collections.unmodifiableSet(missingKeys.keySet());
+        }
+
+        /**
+         * Used keys without a translation in the locale
+         */
+        @NotNull
+        public List<String> getMissingKeys(@NotNull String locale) {
+            List<String> keys = missingKeys.get(locale);
+            return keys != null ? Collections.unmodifiableList(keys) : Collections.emptyList();
+        }
+
+        public int getFoundCount(@NotNull String locale) {
+            return keys.size() - getMissingKeys(locale).size();
+        }
+
+        /**
+         * Used keys not found in any locale file or compiled catalogue
+         */
+        @NotNull
+        public List<String> getUnknownKeys() {
+            return Collections.unmodifiableList(unknownKeys);
+        }
+    }
+}
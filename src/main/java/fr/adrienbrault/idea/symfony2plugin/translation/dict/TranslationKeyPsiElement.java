@@ -0,0 +1,90 @@
+package fr.adrienbrault.idea.symfony2plugin.translation.dict;
+
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.FakePsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Navigation target of a translation key inside a file without a matching psi structure, like xliff files which
+ * are not registered as xml and only provide plain text
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationKeyPsiElement extends FakePsiElement {
+
+    @NotNull
+    private final PsiFile psiFile;
+
+    @NotNull
+    private final String key;
+
+    private final int offset;
+
+    public TranslationKeyPsiElement(@NotNull PsiFile psiFile, @NotNull String key, int offset) {
+        this.psiFile = psiFile;
+        this.key = key;
+        this.offset = offset;
+    }
+
+    @Override
+    public PsiElement getParent() {
+        return psiFile;
+    }
+
+    @NotNull
+    @Override
+    public PsiFile getContainingFile() {
+        return psiFile;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return key;
+    }
+
+    @NotNull
+    @Override
+    public String getPresentableText() {
+        return key;
+    }
+
+    @Nullable
+    @Override
+    public String getLocationString() {
+        return psiFile.getName();
+    }
+
+    @Override
+    public int getTextOffset() {
+        return offset;
+    }
+
+    @Override
+    public TextRange getTextRange() {
+        return TextRange.from(offset, 0);
+    }
+
+    @Override
+    public boolean isValid() {
+        return psiFile.isValid();
+    }
+
+    @Override
+    public boolean canNavigate() {
+        return psiFile.getVirtualFile() != null;
+    }
+
+    @Override
+    public void navigate(boolean requestFocus) {
+        VirtualFile virtualFile = psiFile.getVirtualFile();
+        if(virtualFile != null) {
+            new OpenFileDescriptor(getProject(), virtualFile, offset).navigate(requestFocus);
+        }
+    }
+}
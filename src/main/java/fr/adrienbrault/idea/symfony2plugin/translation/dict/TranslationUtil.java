@@ -1,8 +1,11 @@
 package fr.adrienbrault.idea.symfony2plugin.translation.dict;
 
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.PrefixMatcher;
 import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -15,11 +18,12 @@ import com.intellij.util.Consumer;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.jetbrains.php.PhpIndex;
 import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TranslationKeyLocation;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TranslationKeyStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TranslationStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.translation.TranslationIndex;
+import fr.adrienbrault.idea.symfony2plugin.translation.TranslationKeyStore;
 import fr.adrienbrault.idea.symfony2plugin.translation.TranslatorLookupElement;
-import fr.adrienbrault.idea.symfony2plugin.translation.collector.YamlTranslationCollector;
-import fr.adrienbrault.idea.symfony2plugin.translation.collector.YamlTranslationVisitor;
 import fr.adrienbrault.idea.symfony2plugin.translation.parser.DomainMappings;
 import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationStringMap;
 import fr.adrienbrault.idea.symfony2plugin.util.MethodMatcher;
@@ -27,6 +31,7 @@ import fr.adrienbrault.idea.symfony2plugin.util.PsiElementUtils;
 import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.yaml.YAMLFileType;
 import org.jetbrains.yaml.YAMLUtil;
 import org.jetbrains.yaml.psi.YAMLDocument;
@@ -46,6 +51,7 @@ import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -67,6 +73,11 @@ public class TranslationUtil {
         "//xliff/file/unit/segment/source"
     };
 
+    private static final Pattern XLIFF_SOURCE_PATTERN = Pattern.compile("<source(?:\\s[^>]*)?>(.*?)</source>", Pattern.DOTALL);
+    private static final Pattern XLIFF_RESNAME_PATTERN = Pattern.compile("\\sresname\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+    private static final Pattern XLIFF_CDATA_PATTERN = Pattern.compile("<!\\[CDATA\\[(.*?)]]>", Pattern.DOTALL);
+    private static final Pattern XLIFF_INLINE_TAG_PATTERN = Pattern.compile("<[^>]*>");
+
     static public VirtualFile[] getDomainFilePsiElements(Project project, String domainName) {
 
         DomainMappings domainMappings = ServiceXmlParserFactory.getInstance(project, DomainMappings.class);
@@ -86,12 +97,37 @@ public class TranslationUtil {
 
     public static PsiElement[] getTranslationPsiElements(final Project project, final String translationKey, final String domain) {
         List<PsiElement> psiFoundElements = new ArrayList<>();
-        List<VirtualFile> virtualFilesFound = new ArrayList<>();
+        Set<VirtualFile> virtualFilesFound = new HashSet<>();
+
+        // collect on index; only files providing the key are loaded, targets are resolved on the indexed key offset
+        FileBasedIndex.getInstance().processValues(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey(domain, translationKey), null, (virtualFile, location) -> {
+            PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+            if(psiFile == null) {
+                return true;
+            }
+
+            PsiElement target = getTranslationTarget(psiFile, translationKey, location.getOffset());
+            if(target != null) {
+                psiFoundElements.add(target);
+                virtualFilesFound.add(virtualFile);
+            }
+
+            return true;
+        }, GlobalSearchScope.allScope(project));
 
         // @TODO: completely remove this? support translation paths from service compiler
-        // search for available domain files
+        // search for available domain files which are not part of the index
+        Collection<VirtualFile> indexedFiles = null;
         for(VirtualFile translationVirtualFile : getDomainFilePsiElements(project, domain)) {
-            if(translationVirtualFile.getFileType() != YAMLFileType.YML) {
+            if(translationVirtualFile.getFileType() != YAMLFileType.YML || virtualFilesFound.contains(translationVirtualFile)) {
+                continue;
+            }
+
+            if(indexedFiles == null) {
+                indexedFiles = FileBasedIndex.getInstance().getContainingFiles(TranslationStubIndex.KEY, domain, GlobalSearchScope.allScope(project));
+            }
+
+            if(indexedFiles.contains(translationVirtualFile)) {
                 continue;
             }
 
@@ -110,50 +146,37 @@ public class TranslationUtil {
             }
         }
 
-        // collect on index
-        final YamlTranslationCollector translationCollector = (keyName, yamlKeyValue) -> {
-            if (keyName.equals(translationKey)) {
-
-                // multiline "line values" are not resolve properly on psiElements use key as fallback target
-                PsiElement valuePsiElement = yamlKeyValue.getValue();
-                psiFoundElements.add(valuePsiElement != null ? valuePsiElement : yamlKeyValue);
-
-                return false;
-            }
-
-            return true;
-        };
+        return psiFoundElements.toArray(new PsiElement[psiFoundElements.size()]);
+    }
 
-        FileBasedIndex.getInstance().getFilesWithKey(TranslationStubIndex.KEY, new HashSet<>(Collections.singletonList(domain)), virtualFile -> {
-            // prevent duplicate targets and dont walk same file twice
-            if(virtualFilesFound.contains(virtualFile)) {
-                return true;
-            }
+    /**
+     * Target of a translation key on its indexed offset inside the translation file
+     */
+    @Nullable
+    private static PsiElement getTranslationTarget(@NotNull PsiFile psiFile, @NotNull String translationKey, int offset) {
+        // unknown or outdated offset; file is the only target
+        if(offset < 0 || offset >= psiFile.getTextLength()) {
+            return psiFile instanceof YAMLFile ? null : psiFile;
+        }
 
-            PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
-            if(psiFile == null) {
-                return true;
+        if(psiFile instanceof YAMLFile) {
+            YAMLKeyValue yamlKeyValue = PsiTreeUtil.getParentOfType(psiFile.findElementAt(offset), YAMLKeyValue.class);
+            if(yamlKeyValue == null) {
+                return null;
             }
 
-            if(psiFile instanceof YAMLFile) {
-                YamlTranslationVisitor.collectFileTranslations((YAMLFile) psiFile, translationCollector);
-            } else if(isSupportedXlfFile(psiFile)) {
-                // fine: xlf registered as XML file. try to find source value
-                psiFoundElements.addAll(getTargetForXlfAsXmlFile((XmlFile) psiFile, translationKey));
-            } else if(("xlf".equalsIgnoreCase(virtualFile.getExtension()) || "xliff".equalsIgnoreCase(virtualFile.getExtension()))) {
-                // xlf are plain text because not supported by jetbrains
-                // for now we can only set file target
-                psiFoundElements.addAll(FileBasedIndex.getInstance()
-                    .getValues(TranslationStubIndex.KEY, domain, GlobalSearchScope.filesScope(project, Collections.singletonList(virtualFile))).stream()
-                    .filter(string -> string.contains(translationKey)).map(string -> psiFile)
-                    .collect(Collectors.toList())
-                );
-            }
+            // multiline "line values" are not resolve properly on psiElements use key as fallback target
+            PsiElement valuePsiElement = yamlKeyValue.getValue();
+            return valuePsiElement != null ? valuePsiElement : yamlKeyValue;
+        }
 
-            return true;
-        }, GlobalSearchScope.allScope(project));
+        if(isSupportedXlfFile(psiFile)) {
+            // fine: xlf registered as XML file; "<source>" or "<trans-unit>" of the "resname"
+            return PsiTreeUtil.getParentOfType(psiFile.findElementAt(offset), XmlTag.class);
+        }
 
-        return psiFoundElements.toArray(new PsiElement[psiFoundElements.size()]);
+        // xlf are plain text because not supported by jetbrains
+        return new TranslationKeyPsiElement(psiFile, translationKey, offset);
     }
 
     /**
@@ -219,70 +242,96 @@ public class TranslationUtil {
 
     public static boolean hasDomain(Project project, String domainName) {
         return TranslationIndex.getInstance(project).getTranslationMap().getDomainList().contains(domainName) ||
-            FileBasedIndex.getInstance().getValues(
+            !FileBasedIndex.getInstance().getContainingFiles(
                 TranslationStubIndex.KEY,
                 domainName,
                 GlobalSearchScope.allScope(project)
-            ).size() > 0;
+            ).isEmpty();
     }
 
+    /**
+     * Compiled catalogue or one keyed index lookup; key sets of the domain are never loaded
+     */
     public static boolean hasTranslationKey(@NotNull Project project, String keyName, String domainName) {
-
-        if(!hasDomain(project, domainName)) {
-            return false;
-        }
-
         Set<String> domainMap = TranslationIndex.getInstance(project).getTranslationMap().getDomainMap(domainName);
         if(domainMap != null && domainMap.contains(keyName)) {
             return true;
         }
 
-        for(Set<String> keys: FileBasedIndex.getInstance().getValues(TranslationStubIndex.KEY, domainName, GlobalSearchScope.allScope(project))){
-            if(keys.contains(keyName)) {
-                return true;
+        return !FileBasedIndex.getInstance().getContainingFiles(
+            TranslationKeyStubIndex.KEY,
+            TranslationKeyStubIndex.createKey(domainName, keyName),
+            GlobalSearchScope.allScope(project)
+        ).isEmpty();
+    }
+
+    /**
+     * Locales of all translation files providing the key: "de", "en"
+     */
+    @NotNull
+    public static Set<String> getTranslationKeyLocales(@NotNull Project project, @NotNull String keyName, @NotNull String domainName) {
+        return FileBasedIndex.getInstance().getValues(
+            TranslationKeyStubIndex.KEY,
+            TranslationKeyStubIndex.createKey(domainName, keyName),
+            GlobalSearchScope.allScope(project)
+        ).stream().map(TranslationKeyLocation::getLocale).collect(Collectors.toSet());
+    }
+
+    /**
+     * Locales of translation files of the domain which are not providing the key
+     */
+    @NotNull
+    public static Set<String> getMissingTranslationKeyLocales(@NotNull Project project, @NotNull String keyName, @NotNull String domainName) {
+        Set<String> locales = new HashSet<>();
+
+        for (VirtualFile virtualFile : FileBasedIndex.getInstance().getContainingFiles(TranslationStubIndex.KEY, domainName, GlobalSearchScope.allScope(project))) {
+            String locale = TranslationStubIndex.getLocale(virtualFile.getName());
+            if(locale != null) {
+                locales.add(locale);
             }
         }
 
-        return false;
+        locales.removeAll(getTranslationKeyLocales(project, keyName, domainName));
+
+        return locales;
     }
 
     @NotNull
     public static List<LookupElement> getTranslationLookupElementsOnDomain(@NotNull Project project, @NotNull String domainName) {
+        TranslationKeyStore.DomainKeys domainKeys = TranslationKeyStore.getInstance(project).getDomainKeys(domainName);
 
-        Set<String> keySet = new HashSet<>();
-        List<Set<String>> test = FileBasedIndex.getInstance().getValues(TranslationStubIndex.KEY, domainName, GlobalSearchScope.allScope(project));
-        for(Set<String> keys: test ){
-            keySet.addAll(keys);
-        }
+        List<LookupElement> lookupElements = new ArrayList<>(domainKeys.size());
 
-        List<LookupElement> lookupElements = new ArrayList<>();
+        // keys of php translation parser are not weak and valid keys; index keys are weak ones
+        domainKeys.processKeys((key, weak) ->
+            lookupElements.add(new TranslatorLookupElement(key, domainName, weak))
+        );
 
-        TranslationStringMap map = TranslationIndex.getInstance(project).getTranslationMap();
-        Collection<String> domainMap = map.getDomainMap(domainName);
+        return lookupElements;
+    }
 
-        if(domainMap != null) {
+    /**
+     * Only keys matching the completion prefix get a lookup element
+     */
+    public static void addTranslationLookupElementsOnDomain(@NotNull Project project, @NotNull String domainName, @NotNull CompletionResultSet resultSet) {
+        addTranslationLookupElementsOnDomain(project, domainName, resultSet, (key, weak) -> new TranslatorLookupElement(key, domainName, weak));
+    }
 
-            // php translation parser; are not weak and valid keys
-            for(String stringId : domainMap) {
-                lookupElements.add(new TranslatorLookupElement(stringId, domainName));
-            }
+    /**
+     * Only keys matching the completion prefix get a lookup element
+     *
+     * @param factory translation key and its weak state to lookup element
+     */
+    public static void addTranslationLookupElementsOnDomain(@NotNull Project project, @NotNull String domainName, @NotNull CompletionResultSet resultSet, @NotNull BiFunction<String, Boolean, LookupElement> factory) {
+        PrefixMatcher prefixMatcher = resultSet.getPrefixMatcher();
 
-            // attach weak translations keys on file index
-            for(String stringId : keySet) {
-                if(!domainMap.contains(stringId)) {
-                    lookupElements.add(new TranslatorLookupElement(stringId, domainName, true));
-                }
+        TranslationKeyStore.getInstance(project).getDomainKeys(domainName).processKeys((key, weak) -> {
+            if(prefixMatcher.prefixMatches(key)) {
+                resultSet.addElement(factory.apply(key, weak));
             }
 
-            return lookupElements;
-        }
-
-        // fallback on index
-        for(String stringId : keySet) {
-            lookupElements.add(new TranslatorLookupElement(stringId, domainName, true));
-        }
-
-        return lookupElements;
+            return !resultSet.isStopped();
+        });
     }
 
     @NotNull
@@ -347,6 +396,47 @@ public class TranslationUtil {
         return set;
     }
 
+    /**
+     * Offsets of translation keys of a xliff file in one pass over its text: "<source>" tag or "resname" value
+     */
+    @NotNull
+    public static Map<String, Integer> getXliffTranslationOffsets(@NotNull CharSequence content) {
+        Map<String, Integer> offsets = new HashMap<>();
+
+        Matcher matcher = XLIFF_RESNAME_PATTERN.matcher(content);
+        while(matcher.find()) {
+            int group = matcher.group(1) != null ? 1 : 2;
+            offsets.putIfAbsent(StringUtil.unescapeXml(matcher.group(group)), matcher.start(group));
+        }
+
+        matcher = XLIFF_SOURCE_PATTERN.matcher(content);
+        while(matcher.find()) {
+            offsets.putIfAbsent(getXliffText(matcher.group(1)), matcher.start());
+        }
+
+        return offsets;
+    }
+
+    /**
+     * Text content of an element like the dom provides it: inline tags removed, entities and CDATA resolved
+     */
+    @NotNull
+    private static String getXliffText(@NotNull String content) {
+        StringBuilder text = new StringBuilder();
+
+        int last = 0;
+        Matcher matcher = XLIFF_CDATA_PATTERN.matcher(content);
+        while(matcher.find()) {
+            text.append(StringUtil.unescapeXml(XLIFF_INLINE_TAG_PATTERN.matcher(content.substring(last, matcher.start())).replaceAll("")));
+            text.append(matcher.group(1));
+            last = matcher.end();
+        }
+
+        text.append(StringUtil.unescapeXml(XLIFF_INLINE_TAG_PATTERN.matcher(content.substring(last)).replaceAll("")));
+
+        return text.toString();
+    }
+
     private static void visitXliffTranslations(@NotNull InputStream content, @NotNull Consumer<Pair<String, Node>> consumer) {
         Document document;
 
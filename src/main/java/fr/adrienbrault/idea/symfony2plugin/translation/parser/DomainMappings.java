@@ -1,11 +1,12 @@
 package fr.adrienbrault.idea.symfony2plugin.translation.parser;
 
 import fr.adrienbrault.idea.symfony2plugin.translation.dict.DomainFileMap;
-import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceParser;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import fr.adrienbrault.idea.symfony2plugin.util.service.AbstractServiceStreamParser;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -13,36 +14,61 @@ import java.util.concurrent.CopyOnWriteArrayList;
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
-public class DomainMappings extends AbstractServiceParser {
+public class DomainMappings extends AbstractServiceStreamParser {
+
+    private static final String TRANSLATOR_CLASS = "Symfony\\Bundle\\FrameworkBundle\\Translation\\Translator";
 
     protected List<DomainFileMap> domainFileMaps = new CopyOnWriteArrayList<>();
 
-    @Override
-    public String getXPathFilter() {
-        return "/container/services/service[@class=\"Symfony\\Bundle\\FrameworkBundle\\Translation\\Translator\"]//call[@method=\"addResource\"]";
-    }
+    /**
+     * Current "addResource" call and all its nested arguments in document order
+     */
+    @Nullable
+    private ServiceXmlElement call;
 
-    public void parser(InputStream file) {
+    @NotNull
+    private List<ServiceXmlElement> arguments = new ArrayList<>();
 
-        NodeList nodeList = this.parserer(file);
+    /**
+     * "/container/services/service[@class="Symfony\Bundle\FrameworkBundle\Translation\Translator"]//call[@method="addResource"]"
+     */
+    @Override
+    public void startElement(@NotNull ServiceXmlElement element) {
+        if(this.call != null) {
+            if("argument".equals(element.getName())) {
+                this.arguments.add(element);
+            }
 
-        if(nodeList == null) {
             return;
         }
 
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Element node = (Element) nodeList.item(i);
-            NodeList arguments = node.getElementsByTagName("argument");
+        if(!"call".equals(element.getName()) || !"addResource".equals(element.getAttribute("method"))) {
+            return;
+        }
 
-            if(arguments.getLength() == 4) {
-                this.domainFileMaps.add(new DomainFileMap(arguments.item(0).getTextContent(), arguments.item(1).getTextContent(), arguments.item(2).getTextContent(), arguments.item(3).getTextContent()));
-            }
+        ServiceXmlElement service = element.getAncestor(3);
+        if(service != null && TRANSLATOR_CLASS.equals(service.getAttribute("class")) && service.isPath("container", "services", "service")) {
+            this.call = element;
+            this.arguments = new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void endElement(@NotNull ServiceXmlElement element) {
+        if(element != this.call) {
+            return;
+        }
+
+        if(arguments.size() == 4) {
+            this.domainFileMaps.add(new DomainFileMap(arguments.get(0).getTextContent(), arguments.get(1).getTextContent(), arguments.get(2).getTextContent(), arguments.get(3).getTextContent()));
         }
 
+        this.call = null;
+        this.arguments = new ArrayList<>();
     }
 
     public List<DomainFileMap> getDomainFileMaps() {
         return Collections.synchronizedList(domainFileMaps);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,408 @@
+package fr.adrienbrault.idea.symfony2plugin.translation.parser;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads domains and translation keys of a compiled Symfony catalogue "catalogue.de.php" in one pass over its characters,
+ * without building any psi:
+ *
+ * $catalogue = new MessageCatalogue('de', array (
+ *   'validators' => array (
+ *     'This value should be false.' => 'Dieser Wert sollte false sein.',
+ *   ),
+ * ));
+ *
+ * Short array syntax and fallback catalogues of the same file are supported; all other code is skipped.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TranslationCatalogueReader {
+
+    private static final int EOF = -1;
+
+    @NotNull
+    private final Reader reader;
+
+    /**
+     * Keys are mostly the same in every locale; share them between all catalogues
+     */
+    @NotNull
+    private final Map<String, String> interner;
+
+    @NotNull
+    private final Map<String, Set<String>> domains = new HashMap<>();
+
+    @NotNull
+    private final char[] buffer = new char[8192];
+
+    private int position = 0;
+
+    private int length = 0;
+
+    private TranslationCatalogueReader(@NotNull Reader reader, @NotNull Map<String, String> interner) {
+        this.reader = reader;
+        this.interner = interner;
+    }
+
+    /**
+     * @return domain to its translation keys
+     */
+    @NotNull
+    public static Map<String, Set<String>> read(@NotNull File file, @NotNull Map<String, String> interner) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return read(reader, interner);
+        }
+    }
+
+    /**
+     * @return domain to its translation keys
+     */
+    @NotNull
+    public static Map<String, Set<String>> read(@NotNull Reader reader, @NotNull Map<String, String> interner) throws IOException {
+        TranslationCatalogueReader catalogueReader = new TranslationCatalogueReader(reader, interner);
+        catalogueReader.readFile();
+        return catalogueReader.domains;
+    }
+
+    private void readFile() throws IOException {
+        int c;
+        while ((c = peek()) != EOF) {
+            if(c == '\'' || c == '"') {
+                skipString();
+            } else if(isCommentStart(c)) {
+                skipComment();
+            } else if(isIdentifierPart(c)) {
+                String identifier = readIdentifier();
+                if("new".equalsIgnoreCase(identifier)) {
+                    readNewExpression();
+                }
+            } else {
+                next();
+            }
+        }
+    }
+
+    /**
+     * new \Symfony\Component\Translation\MessageCatalogue('de', array(...))
+     */
+    private void readNewExpression() throws IOException {
+        skipWhitespace();
+
+        String className = readIdentifier();
+        if(!className.endsWith("MessageCatalogue") || !consume('(')) {
+            return;
+        }
+
+        // locale
+        skipExpression();
+        if(!consume(',')) {
+            return;
+        }
+
+        char end = readArrayStart();
+        if(end == 0) {
+            return;
+        }
+
+        while (true) {
+            skipWhitespace();
+            if(consume(end) || !hasArrayElement()) {
+                return;
+            }
+
+            String domain = readKey();
+            char messagesEnd = domain != null ? readArrayStart() : 0;
+            if(messagesEnd != 0) {
+                if(!readMessages(domains.computeIfAbsent(intern(domain), s -> new HashSet<>()), messagesEnd)) {
+                    return;
+                }
+            } else {
+                skipExpression();
+            }
+
+            consume(',');
+        }
+    }
+
+    /**
+     * 'This value should be false.' => 'Dieser Wert sollte false sein.',
+     *
+     * @return false if the array is not closed by its own char, so the catalogue is malformed
+     */
+    private boolean readMessages(@NotNull Set<String> keys, char end) throws IOException {
+        while (true) {
+            skipWhitespace();
+            if(consume(end)) {
+                return true;
+            }
+
+            if(!hasArrayElement()) {
+                return false;
+            }
+
+            String key = readKey();
+            if(key != null) {
+                keys.add(intern(key));
+            }
+
+            skipExpression();
+            consume(',');
+        }
+    }
+
+    /**
+     * String key followed by "=>"; else nothing is consumed beside the string
+     */
+    @Nullable
+    private String readKey() throws IOException {
+        int c = peek();
+        if(c != '\'' && c != '"') {
+            return null;
+        }
+
+        String key = readString();
+
+        skipWhitespace();
+        if(!consume('=')) {
+            return null;
+        }
+
+        if(!consume('>')) {
+            return null;
+        }
+
+        skipWhitespace();
+        return key;
+    }
+
+    /**
+     * "array (" or "["
+     *
+     * @return closing char of the array; 0 if there is no array
+     */
+    private char readArrayStart() throws IOException {
+        skipWhitespace();
+
+        if(consume('[')) {
+            return ']';
+        }
+
+        if(!isIdentifierPart(peek())) {
+            return 0;
+        }
+
+        if(!"array".equalsIgnoreCase(readIdentifier()) || !consume('(')) {
+            return 0;
+        }
+
+        return ')';
+    }
+
+    /**
+     * Next char starts an array element; an unexpected closing char like "]" for "array (" is never consumed by the
+     * element loops, so they must stop on it
+     */
+    private boolean hasArrayElement() throws IOException {
+        int c = peek();
+        return c != EOF && c != ')' && c != ']' && c != '}';
+    }
+
+    /**
+     * Skips up to the next "," or closing char on the same nesting level; both are not consumed
+     */
+    private void skipExpression() throws IOException {
+        int depth = 0;
+
+        int c;
+        while ((c = peek()) != EOF) {
+            if(c == '\'' || c == '"') {
+                skipString();
+                continue;
+            }
+
+            if(isCommentStart(c)) {
+                skipComment();
+                continue;
+            }
+
+            if(c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if(c == ')' || c == ']' || c == '}') {
+                if(depth == 0) {
+                    return;
+                }
+
+                depth--;
+            } else if(c == ',' && depth == 0) {
+                return;
+            }
+
+            next();
+        }
+    }
+
+    /**
+     * PHP string with its escape sequences resolved; var_export only writes single quoted strings
+     */
+    @NotNull
+    private String readString() throws IOException {
+        int quote = next();
+        StringBuilder builder = new StringBuilder();
+
+        int c;
+        while ((c = next()) != EOF && c != quote) {
+            if(c != '\\') {
+                builder.append((char) c);
+                continue;
+            }
+
+            int escaped = next();
+            if(escaped == EOF) {
+                break;
+            }
+
+            if(escaped == quote || escaped == '\\') {
+                builder.append((char) escaped);
+            } else if(quote == '"' && escaped == 'n') {
+                builder.append('\n');
+            } else if(quote == '"' && escaped == 't') {
+                builder.append('\t');
+            } else if(quote == '"' && escaped == 'r') {
+                builder.append('\r');
+            } else if(quote == '"' && escaped == '$') {
+                builder.append('$');
+            } else {
+                builder.append('\\').append((char) escaped);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Translations are the main part of the file; they are never needed as string
+     */
+    private void skipString() throws IOException {
+        int quote = next();
+
+        int c;
+        while ((c = next()) != EOF && c != quote) {
+            if(c == '\\' && next() == EOF) {
+                return;
+            }
+        }
+    }
+
+    @NotNull
+    private String readIdentifier() throws IOException {
+        StringBuilder builder = new StringBuilder();
+
+        while (isIdentifierPart(peek())) {
+            builder.append((char) next());
+        }
+
+        return builder.toString();
+    }
+
+    private static boolean isCommentStart(int c) {
+        return c == '#' || c == '/';
+    }
+
+    /**
+     * "#" and "//" up to line end, block comments up to their end; a single "/" is consumed as it is
+     */
+    private void skipComment() throws IOException {
+        int c = next();
+        if(c == '/') {
+            int nextChar = peek();
+            if(nextChar == '*') {
+                next();
+
+                int last = 0;
+                while ((c = next()) != EOF) {
+                    if(last == '*' && c == '/') {
+                        return;
+                    }
+
+                    last = c;
+                }
+
+                return;
+            } else if(nextChar != '/') {
+                return;
+            }
+        }
+
+        while ((c = peek()) != EOF && c != '\n') {
+            next();
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != EOF) {
+            if(Character.isWhitespace(c)) {
+                next();
+            } else if(isCommentStart(c)) {
+                skipComment();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private boolean consume(char c) throws IOException {
+        skipWhitespace();
+
+        if(peek() != c) {
+            return false;
+        }
+
+        next();
+        return true;
+    }
+
+    private static boolean isIdentifierPart(int c) {
+        return c == '\\' || c == '_' || (c != EOF && Character.isLetterOrDigit(c));
+    }
+
+    private int peek() throws IOException {
+        if(position >= length) {
+            // reader may return an empty read
+            do {
+                length = reader.read(buffer, 0, buffer.length);
+            } while (length == 0);
+
+            position = 0;
+            if(length < 0) {
+                length = 0;
+                return EOF;
+            }
+        }
+
+        return buffer[position];
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        if(c != EOF) {
+            position++;
+        }
+
+        return c;
+    }
+
+    @NotNull
+    private String intern(@NotNull String value) {
+        String interned = interner.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+}
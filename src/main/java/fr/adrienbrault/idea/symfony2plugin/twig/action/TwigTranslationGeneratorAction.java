@@ -2,7 +2,6 @@ package fr.adrienbrault.idea.symfony2plugin.twig.action;
 
 import com.intellij.codeInsight.CodeInsightActionHandler;
 import com.intellij.codeInsight.actions.CodeInsightAction;
-import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
@@ -15,13 +14,12 @@ import com.jetbrains.php.completion.insert.PhpInsertHandlerUtil;
 import com.jetbrains.twig.TwigFile;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
-import fr.adrienbrault.idea.symfony2plugin.translation.dict.TranslationUtil;
+import fr.adrienbrault.idea.symfony2plugin.translation.TranslationKeyStore;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
@@ -81,11 +79,7 @@ public class TwigTranslationGeneratorAction extends CodeInsightAction {
             final String defaultDomain = twigFileDomainScope.getDefaultDomain();
             final String domain = twigFileDomainScope.getDomain();
 
-            List<String> collect = TranslationUtil.getTranslationLookupElementsOnDomain(project, domain)
-                .stream()
-                .map(LookupElement::getLookupString)
-                .sorted()
-                .collect(Collectors.toList());
+            List<String> collect = TranslationKeyStore.getInstance(project).getDomainKeys(domain).getKeys();
 
             final JBList<String> list = new JBList<>(collect);
 
@@ -0,0 +1,230 @@
+package fr.adrienbrault.idea.symfony2plugin.twig.include;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.jetbrains.twig.TwigFile;
+import com.jetbrains.twig.TwigFileType;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TwigIncludeSite;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigIncludeStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Reverse inclusion of templates: included template name to the files including it, with the variables they give.
+ *
+ * Every lookup works on an immutable snapshot. It is read in one sweep over the include index only on the first
+ * lookup or if changes are not known per file; otherwise only the edges of the changed templates are replaced.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigIncludeGraph {
+
+    private static final Key<TwigIncludeGraph> GRAPH = new Key<>("TWIG_INCLUDE_GRAPH");
+
+    @NotNull
+    private final Project project;
+
+    @Nullable
+    private volatile Snapshot snapshot;
+
+    private TwigIncludeGraph(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static TwigIncludeGraph getInstance(@NotNull Project project) {
+        TwigIncludeGraph graph = project.getUserData(GRAPH);
+        return graph != null ? graph : ((UserDataHolderEx) project).putUserDataIfAbsent(GRAPH, new TwigIncludeGraph(project));
+    }
+
+    /**
+     * Files including any of the template names with the inclusions of them
+     */
+    @NotNull
+    public Map<VirtualFile, Collection<TwigIncludeSite>> getIncludingFiles(@NotNull Collection<String> templateNames) {
+        Snapshot snapshot = getSnapshot();
+
+        Map<VirtualFile, Collection<TwigIncludeSite>> files = new HashMap<>();
+
+        for (String templateName : templateNames) {
+            for (VirtualFile virtualFile : snapshot.includingFiles.getOrDefault(templateName, Collections.emptySet())) {
+                if(virtualFile.isValid()) {
+                    files.computeIfAbsent(virtualFile, f -> new ArrayList<>()).addAll(snapshot.includes.get(virtualFile).get(templateName));
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Any file includes one of the template names
+     */
+    public boolean isIncluded(@NotNull Collection<String> templateNames) {
+        Snapshot snapshot = getSnapshot();
+
+        for (String templateName : templateNames) {
+            for (VirtualFile virtualFile : snapshot.includingFiles.getOrDefault(templateName, Collections.emptySet())) {
+                if(virtualFile.isValid()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Include tag or function of an inclusion inside its file
+     */
+    @Nullable
+    public static PsiElement getIncludeElement(@NotNull PsiFile psiFile, @NotNull TwigIncludeSite includeSite) {
+        TextRange textRange = includeSite.getTextRange();
+        if(textRange.getEndOffset() > psiFile.getTextLength()) {
+            return null;
+        }
+
+        PsiElement psiElement = psiFile.findElementAt(textRange.getStartOffset());
+        while (psiElement != null && !(psiElement instanceof PsiFile)) {
+            if(textRange.equals(psiElement.getTextRange()) && psiElement.getFirstChild() != null) {
+                return psiElement;
+            }
+
+            psiElement = psiElement.getParent();
+        }
+
+        return null;
+    }
+
+    /**
+     * Count is taken before the index is read; so a change while reading is always seen by the next lookup.
+     * Concurrent lookups may both create a snapshot, the last one wins as both are valid.
+     */
+    @NotNull
+    private Snapshot getSnapshot() {
+        IndexModificationTracker tracker = TwigIncludeStubIndex.getModificationTracker(project);
+        long modificationCount = tracker.getModificationCount();
+
+        Snapshot snapshot = this.snapshot;
+        if(snapshot != null && snapshot.modificationCount == modificationCount) {
+            return snapshot;
+        }
+
+        Collection<VirtualFile> changedFiles = snapshot != null ? tracker.getChangedFiles(snapshot.modificationCount) : null;
+
+        Snapshot next = new Snapshot(modificationCount);
+        if(snapshot == null || changedFiles == null) {
+            next.build(project);
+        } else {
+            next.update(project, snapshot, changedFiles);
+        }
+
+        return this.snapshot = next;
+    }
+
+    /**
+     * Never changed after creation; inclusions of unchanged files are shared with the previous snapshot
+     */
+    private static class Snapshot {
+        private final long modificationCount;
+
+        /**
+         * Including file to its inclusions by the included template name
+         */
+        @NotNull
+        private final Map<VirtualFile, Map<String, Collection<TwigIncludeSite>>> includes;
+
+        /**
+         * Included template name to the files including it
+         */
+        @NotNull
+        private final Map<String, Set<VirtualFile>> includingFiles;
+
+        Snapshot(long modificationCount) {
+            this.modificationCount = modificationCount;
+            this.includes = new HashMap<>();
+            this.includingFiles = new HashMap<>();
+        }
+
+        void build(@NotNull Project project) {
+            GlobalSearchScope scope = GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), TwigFileType.INSTANCE);
+
+            Collection<String> templateNames = new HashSet<>();
+            FileBasedIndex.getInstance().processAllKeys(TwigIncludeStubIndex.KEY, templateName -> {
+                templateNames.add(templateName);
+                return true;
+            }, scope, null);
+
+            for (String templateName : templateNames) {
+                FileBasedIndex.getInstance().processValues(TwigIncludeStubIndex.KEY, templateName, null, (virtualFile, sites) -> {
+                    includes.computeIfAbsent(virtualFile, f -> new HashMap<>())
+                        .computeIfAbsent(templateName, s -> new ArrayList<>())
+                        .addAll(sites);
+
+                    includingFiles.computeIfAbsent(templateName, s -> new HashSet<>()).add(virtualFile);
+
+                    return true;
+                }, scope);
+            }
+        }
+
+        /**
+         * Changed templates are read from their psi; so only they are parsed, not the index of all templates
+         */
+        void update(@NotNull Project project, @NotNull Snapshot previous, @NotNull Collection<VirtualFile> changedFiles) {
+            includes.putAll(previous.includes);
+            includingFiles.putAll(previous.includingFiles);
+
+            // copy on write: sets of the previous snapshot are shared
+            Set<String> copiedNames = new HashSet<>();
+
+            for (VirtualFile virtualFile : changedFiles) {
+                Map<String, Collection<TwigIncludeSite>> removed = includes.remove(virtualFile);
+                if(removed != null) {
+                    for (String templateName : removed.keySet()) {
+                        getIncludingFiles(templateName, copiedNames).remove(virtualFile);
+                    }
+                }
+
+                if(!virtualFile.isValid()) {
+                    continue;
+                }
+
+                PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+                if(!(psiFile instanceof TwigFile)) {
+                    continue;
+                }
+
+                Map<String, Collection<TwigIncludeSite>> sites = TwigIncludeStubIndex.getIncludeSites((TwigFile) psiFile);
+                if(sites.isEmpty()) {
+                    continue;
+                }
+
+                includes.put(virtualFile, sites);
+                for (String templateName : sites.keySet()) {
+                    getIncludingFiles(templateName, copiedNames).add(virtualFile);
+                }
+            }
+        }
+
+        @NotNull
+        private Set<VirtualFile> getIncludingFiles(@NotNull String templateName, @NotNull Set<String> copiedNames) {
+            if(copiedNames.add(templateName)) {
+                includingFiles.put(templateName, new HashSet<>(includingFiles.getOrDefault(templateName, Collections.emptySet())));
+            }
+
+            return includingFiles.get(templateName);
+        }
+    }
+}
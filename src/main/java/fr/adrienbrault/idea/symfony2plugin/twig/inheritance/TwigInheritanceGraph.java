@@ -0,0 +1,382 @@
+package fr.adrienbrault.idea.symfony2plugin.twig.inheritance;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigBlockIndexExtension;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigNamespaceRegistry;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Template inheritance of the project in both directions, with the block names of every template.
+ *
+ * Nodes are read from the block index: "extends" and "use" are the parent templates, "block" the block names.
+ * Every lookup works on an immutable snapshot; a changed snapshot is created without any lock:
+ *
+ * - a namespace change reads the whole index again
+ * - changed or deleted templates only read their own index values again
+ * - other file structure changes only resolve template names and parents again, as eg a created file
+ *   is the missing parent of other templates
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class TwigInheritanceGraph {
+
+    private static final Key<TwigInheritanceGraph> GRAPH = new Key<>("TWIG_INHERITANCE_GRAPH");
+
+    private static final String[] INDEX_KEYS = new String[] {"block", "extends", "use"};
+
+    @NotNull
+    private final Project project;
+
+    @Nullable
+    private volatile Snapshot snapshot;
+
+    private TwigInheritanceGraph(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static TwigInheritanceGraph getInstance(@NotNull Project project) {
+        TwigInheritanceGraph graph = project.getUserData(GRAPH);
+        return graph != null ? graph : ((UserDataHolderEx) project).putUserDataIfAbsent(GRAPH, new TwigInheritanceGraph(project));
+    }
+
+    /**
+     * All files extending the given one; also through other templates up to the given depth
+     */
+    @NotNull
+    public Collection<VirtualFile> getExtendingFiles(@NotNull VirtualFile virtualFile, int depth) {
+        Snapshot snapshot = getSnapshot();
+
+        Set<VirtualFile> files = new LinkedHashSet<>();
+
+        Collection<VirtualFile> current = Collections.singletonList(virtualFile);
+        while(depth-- > 0 && !current.isEmpty()) {
+            Collection<VirtualFile> next = new ArrayList<>();
+
+            for (VirtualFile file : current) {
+                for (String templateName : snapshot.getNode(file).getTemplateNames()) {
+                    for (VirtualFile child : snapshot.extendingFiles.getOrDefault(templateName, Collections.emptySet())) {
+                        if(files.add(child)) {
+                            next.add(child);
+                        }
+                    }
+                }
+            }
+
+            current = next;
+        }
+
+        return files;
+    }
+
+    /**
+     * All "extends" and "use" templates of the given file; also the ones of the parents up to the given depth
+     */
+    @NotNull
+    public Collection<VirtualFile> getParentFiles(@NotNull VirtualFile virtualFile, int depth) {
+        return getParentFiles(Collections.singletonList(virtualFile), depth);
+    }
+
+    /**
+     * All "extends" and "use" templates of the given files; also the ones of the parents up to the given depth
+     */
+    @NotNull
+    public Collection<VirtualFile> getParentFiles(@NotNull Collection<VirtualFile> virtualFiles, int depth) {
+        Snapshot snapshot = getSnapshot();
+
+        Set<VirtualFile> files = new LinkedHashSet<>();
+
+        Collection<VirtualFile> current = virtualFiles;
+        while(depth-- > 0 && !current.isEmpty()) {
+            Collection<VirtualFile> next = new ArrayList<>();
+
+            for (VirtualFile file : current) {
+                for (VirtualFile parent : snapshot.getNode(file).getParentFiles()) {
+                    if(files.add(parent)) {
+                        next.add(parent);
+                    }
+                }
+            }
+
+            current = next;
+        }
+
+        return files;
+    }
+
+    /**
+     * Block names in file scope; blocks of "embed" tags are not included
+     */
+    @NotNull
+    public Collection<String> getBlockNames(@NotNull VirtualFile virtualFile) {
+        Node node = getSnapshot().nodes.get(virtualFile);
+        return node != null ? Collections.unmodifiableSet(node.blocks) : Collections.emptySet();
+    }
+
+    /**
+     * Block names of all given files in one lookup; files without blocks are not part of the result
+     */
+    @NotNull
+    public Map<VirtualFile, Collection<String>> getBlockNames(@NotNull Collection<VirtualFile> virtualFiles) {
+        Snapshot snapshot = getSnapshot();
+
+        Map<VirtualFile, Collection<String>> blocks = new HashMap<>();
+
+        for (VirtualFile virtualFile : virtualFiles) {
+            Node node = snapshot.nodes.get(virtualFile);
+            if(node != null && !node.blocks.isEmpty()) {
+                blocks.put(virtualFile, Collections.unmodifiableSet(node.blocks));
+            }
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Any of the given files provides a block with the name
+     */
+    public boolean hasBlock(@NotNull String blockName, @NotNull Collection<VirtualFile> virtualFiles) {
+        Snapshot snapshot = getSnapshot();
+
+        for (VirtualFile virtualFile : virtualFiles) {
+            Node node = snapshot.nodes.get(virtualFile);
+            if(node != null && node.blocks.contains(blockName)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts are taken before the index is read; so a change while reading is always seen by the next lookup.
+     * Concurrent lookups may both create a snapshot, the last one wins as both are valid.
+     */
+    @NotNull
+    private Snapshot getSnapshot() {
+        IndexModificationTracker tracker = TwigBlockIndexExtension.getModificationTracker(project);
+
+        long namespaceModificationCount = TwigNamespaceRegistry.getInstance(project).getModificationCount();
+        long indexModificationCount = tracker.getModificationCount();
+        long vfsModificationCount = VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS.getModificationCount();
+
+        Snapshot snapshot = this.snapshot;
+        if(snapshot != null
+            && snapshot.namespaceModificationCount == namespaceModificationCount
+            && snapshot.indexModificationCount == indexModificationCount
+            && snapshot.vfsModificationCount == vfsModificationCount) {
+            return snapshot;
+        }
+
+        Collection<VirtualFile> changedFiles = null;
+        if(snapshot != null && snapshot.namespaceModificationCount == namespaceModificationCount) {
+            changedFiles = tracker.getChangedFiles(snapshot.indexModificationCount);
+        }
+
+        Snapshot next = new Snapshot(project, namespaceModificationCount, indexModificationCount, vfsModificationCount);
+        if(snapshot == null || changedFiles == null) {
+            next.build();
+        } else {
+            next.update(snapshot, changedFiles, snapshot.vfsModificationCount != vfsModificationCount);
+        }
+
+        return this.snapshot = next;
+    }
+
+    /**
+     * Never changed after creation
+     */
+    private static class Snapshot {
+        @NotNull
+        private final Project project;
+
+        private final long namespaceModificationCount;
+
+        private final long indexModificationCount;
+
+        private final long vfsModificationCount;
+
+        @NotNull
+        private final Map<VirtualFile, Node> nodes = new HashMap<>();
+
+        /**
+         * "extends" template name to the files extending it
+         */
+        @NotNull
+        private final Map<String, Set<VirtualFile>> extendingFiles = new HashMap<>();
+
+        Snapshot(@NotNull Project project, long namespaceModificationCount, long indexModificationCount, long vfsModificationCount) {
+            this.project = project;
+            this.namespaceModificationCount = namespaceModificationCount;
+            this.indexModificationCount = indexModificationCount;
+            this.vfsModificationCount = vfsModificationCount;
+        }
+
+        void build() {
+            GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+            Map<VirtualFile, Node> nodes = new HashMap<>();
+            for (String key : INDEX_KEYS) {
+                FileBasedIndex.getInstance().processValues(TwigBlockIndexExtension.KEY, key, null, (virtualFile, values) -> {
+                    nodes.computeIfAbsent(virtualFile, file -> new Node(project, file)).add(key, values);
+                    return true;
+                }, scope);
+            }
+
+            nodes.values().forEach(this::addNode);
+        }
+
+        /**
+         * Nodes of unchanged files are shared with the previous snapshot; resolved names and parents are dropped
+         * on file structure changes
+         */
+        void update(@NotNull Snapshot previous, @NotNull Collection<VirtualFile> changedFiles, boolean structureChanged) {
+            for (Node node : previous.nodes.values()) {
+                if(changedFiles.contains(node.virtualFile) || !node.virtualFile.isValid()) {
+                    continue;
+                }
+
+                addNode(structureChanged ? node.copy() : node);
+            }
+
+            GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+
+            for (VirtualFile virtualFile : changedFiles) {
+                if(!virtualFile.isValid()) {
+                    continue;
+                }
+
+                Node node = new Node(project, virtualFile);
+                for (String key : INDEX_KEYS) {
+                    FileBasedIndex.getInstance().processValues(TwigBlockIndexExtension.KEY, key, virtualFile, (file, values) -> {
+                        node.add(key, values);
+                        return true;
+                    }, scope);
+                }
+
+                if(!node.isEmpty()) {
+                    addNode(node);
+                }
+            }
+        }
+
+        private void addNode(@NotNull Node node) {
+            nodes.put(node.virtualFile, node);
+
+            for (String templateName : node.extendsTemplates) {
+                extendingFiles.computeIfAbsent(templateName, s -> new HashSet<>()).add(node.virtualFile);
+            }
+        }
+
+        /**
+         * Files without any block or parent are not indexed, but still have names other templates can extend
+         */
+        @NotNull
+        Node getNode(@NotNull VirtualFile virtualFile) {
+            Node node = nodes.get(virtualFile);
+            return node != null ? node : new Node(project, virtualFile);
+        }
+    }
+
+    private static class Node {
+        @NotNull
+        private final Project project;
+
+        @NotNull
+        private final VirtualFile virtualFile;
+
+        @NotNull
+        private final Set<String> blocks;
+
+        @NotNull
+        private final Set<String> extendsTemplates;
+
+        @NotNull
+        private final Set<String> useTemplates;
+
+        /**
+         * Resolved on first access; names of the file and files of its parents are only valid until the next file structure change
+         */
+        @Nullable
+        private volatile Collection<String> templateNames;
+
+        @Nullable
+        private volatile Collection<VirtualFile> parentFiles;
+
+        Node(@NotNull Project project, @NotNull VirtualFile virtualFile) {
+            this(project, virtualFile, new HashSet<>(), new HashSet<>(), new HashSet<>());
+        }
+
+        private Node(@NotNull Project project, @NotNull VirtualFile virtualFile, @NotNull Set<String> blocks, @NotNull Set<String> extendsTemplates, @NotNull Set<String> useTemplates) {
+            this.project = project;
+            this.virtualFile = virtualFile;
+            this.blocks = blocks;
+            this.extendsTemplates = extendsTemplates;
+            this.useTemplates = useTemplates;
+        }
+
+        /**
+         * Only used while the snapshot is created
+         */
+        void add(@NotNull String key, @NotNull Set<String> values) {
+            if("block".equals(key)) {
+                blocks.addAll(values);
+            } else if("extends".equals(key)) {
+                extendsTemplates.addAll(values);
+            } else if("use".equals(key)) {
+                useTemplates.addAll(values);
+            }
+        }
+
+        boolean isEmpty() {
+            return blocks.isEmpty() && extendsTemplates.isEmpty() && useTemplates.isEmpty();
+        }
+
+        /**
+         * Same index values without resolved names and parents
+         */
+        @NotNull
+        Node copy() {
+            return new Node(project, virtualFile, blocks, extendsTemplates, useTemplates);
+        }
+
+        @NotNull
+        Collection<String> getTemplateNames() {
+            Collection<String> templateNames = this.templateNames;
+            if(templateNames == null) {
+                this.templateNames = templateNames = TwigUtil.getTemplateNamesForFile(project, virtualFile);
+            }
+
+            return templateNames;
+        }
+
+        @NotNull
+        Collection<VirtualFile> getParentFiles() {
+            Collection<VirtualFile> parentFiles = this.parentFiles;
+            if(parentFiles == null) {
+                Set<VirtualFile> files = new LinkedHashSet<>();
+
+                for (Set<String> templates : Arrays.asList(extendsTemplates, useTemplates)) {
+                    for (String template : templates) {
+                        files.addAll(TwigUtil.getTemplateFiles(project, template));
+                    }
+                }
+
+                this.parentFiles = parentFiles = files;
+            }
+
+            return parentFiles;
+        }
+    }
+}
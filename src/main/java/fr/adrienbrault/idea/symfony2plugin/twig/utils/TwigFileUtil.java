@@ -2,14 +2,10 @@ package fr.adrienbrault.idea.symfony2plugin.twig.utils;
 
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiManager;
-import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.util.indexing.FileBasedIndex;
-import com.jetbrains.twig.TwigFile;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigBlockIndexExtension;
-import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.twig.inheritance.TwigInheritanceGraph;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -33,49 +29,23 @@ public class TwigFileUtil {
     public static Collection<VirtualFile> collectParentFiles(boolean includeSelf, @NotNull PsiFile... psiFiles) {
         Set<VirtualFile> virtualFiles = new HashSet<>();
 
+        Collection<VirtualFile> sourceFiles = new ArrayList<>();
         for (PsiFile psiFile : psiFiles) {
             VirtualFile sourceFile = psiFile.getVirtualFile();
             if(includeSelf) {
                 virtualFiles.add(sourceFile);
             }
 
-            visitParentFiles(psiFile, 0, virtualFiles);
-        }
-
-        return virtualFiles;
-    }
-
-    private static void visitParentFiles(@NotNull PsiFile file, int depth, Collection<VirtualFile> virtualFiles) {
-        // limit recursive calls
-        if(depth++ > 20) {
-            return;
-        }
-
-        Set<VirtualFile> myVirtualFiles = new HashSet<>();
-
-        for (String s : new String[]{"extends", "use"}) {
-            Set<String> templates = new HashSet<>();
-
-            FileBasedIndex.getInstance()
-                .getValues(TwigBlockIndexExtension.KEY, s, GlobalSearchScope.fileScope(file))
-                .forEach(templates::addAll);
-
-            for (String template : templates) {
-                for (VirtualFile virtualFile : TwigUtil.getTemplateFiles(file.getProject(), template)) {
-                    if (!virtualFiles.contains(virtualFile)) {
-                        myVirtualFiles.add(virtualFile);
-                        virtualFiles.add(virtualFile);
-                    }
-                }
+            if(sourceFile != null) {
+                sourceFiles.add(sourceFile);
             }
         }
 
-        // visit files in this scope
-        for(VirtualFile virtualFile : myVirtualFiles) {
-            PsiFile psiFile = PsiManager.getInstance(file.getProject()).findFile(virtualFile);
-            if(psiFile instanceof TwigFile) {
-                visitParentFiles(psiFile, depth, virtualFiles);
-            }
+        // limit deep or recursive inheritance
+        if(!sourceFiles.isEmpty()) {
+            virtualFiles.addAll(TwigInheritanceGraph.getInstance(psiFiles[0].getProject()).getParentFiles(sourceFiles, 20));
         }
+
+        return virtualFiles;
     }
 }
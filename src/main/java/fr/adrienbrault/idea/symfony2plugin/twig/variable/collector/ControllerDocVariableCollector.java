@@ -42,11 +42,17 @@ public class ControllerDocVariableCollector implements TwigFileVariableCollector
 
         for(String controllerName: controllerNames) {
             for(Method method : controllerIndex.resolveShortcutName(controllerName)) {
+                parameter.addDependency(method.getContainingFile());
                 variables.putAll(PhpMethodVariableResolveUtil.collectMethodVariables(method));
             }
         }
     }
 
+    @Override
+    public boolean isFileScope() {
+        return true;
+    }
+
     private static ArrayList<String> findFileControllerDocBlocks(TwigFile twigFile) {
 
         Pattern pattern = Pattern.compile(DOC_PATTERN);
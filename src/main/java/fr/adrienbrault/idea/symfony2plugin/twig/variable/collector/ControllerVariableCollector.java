@@ -1,13 +1,19 @@
 package fr.adrienbrault.idea.symfony2plugin.twig.variable.collector;
 
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.jetbrains.php.lang.psi.elements.Method;
 import com.jetbrains.twig.TwigFile;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.PhpMethodVariableResolveUtil;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollector;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollectorParameter;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
 
 /**
@@ -21,6 +27,26 @@ public class ControllerVariableCollector implements TwigFileVariableCollector {
             return;
         }
 
-        variables.putAll(TwigUtil.collectControllerTemplateVariables((TwigFile) psiFile));
+        for (Method method : TwigUtil.findTwigFileController((TwigFile) psiFile)) {
+            parameter.addDependency(method.getContainingFile());
+            variables.putAll(PhpMethodVariableResolveUtil.collectMethodVariables(method));
+        }
+
+        // render calls and their variables; same as the controller methods, only the files rendering the template are dependencies
+        Collection<VirtualFile> usageFiles = new HashSet<>();
+        variables.putAll(TwigUtil.getTemplateUsageVariablesOnIndex(parameter.getProject(), TwigUtil.getTemplateNamesForFile((TwigFile) psiFile), usageFiles));
+
+        PsiManager psiManager = PsiManager.getInstance(parameter.getProject());
+        for (VirtualFile usageFile : usageFiles) {
+            PsiFile usagePsiFile = psiManager.findFile(usageFile);
+            if(usagePsiFile != null) {
+                parameter.addDependency(usagePsiFile);
+            }
+        }
+    }
+
+    @Override
+    public boolean isFileScope() {
+        return true;
     }
 }
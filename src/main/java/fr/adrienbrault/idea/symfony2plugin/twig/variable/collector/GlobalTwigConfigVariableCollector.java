@@ -3,6 +3,7 @@ package fr.adrienbrault.idea.symfony2plugin.twig.variable.collector;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.util.CachedValue;
@@ -10,11 +11,13 @@ import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.config.utils.ConfigUtil;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlServiceParser;
 import fr.adrienbrault.idea.symfony2plugin.stubs.ContainerCollectionResolver;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollector;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.TwigFileVariableCollectorParameter;
 import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import fr.adrienbrault.idea.symfony2plugin.util.yaml.YamlHelper;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.yaml.psi.YAMLFile;
@@ -37,9 +40,25 @@ public class GlobalTwigConfigVariableCollector implements TwigFileVariableCollec
 
     @Override
     public void collectPsiVariables(@NotNull TwigFileVariableCollectorParameter parameter, @NotNull Map<String, PsiVariable> variables) {
+        for (VirtualFile virtualFile : ConfigUtil.getConfigurations(parameter.getProject(), "twig")) {
+            PsiFile file = PsiManager.getInstance(parameter.getProject()).findFile(virtualFile);
+            if(file != null) {
+                parameter.addDependency(file);
+            }
+        }
+
+        // config files can be added; and service globals are resolved on the container
+        parameter.addDependency(VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS);
+        parameter.addDependency(ServiceXmlParserFactory.getModificationTracker(parameter.getProject(), XmlServiceParser.class));
+
         variables.putAll(getGlobals(parameter.getProject()));
     }
 
+    @Override
+    public boolean isFileScope() {
+        return true;
+    }
+
     @NotNull
     private Map<String, PsiVariable> getGlobals(@NotNull Project project) {
         CachedValue<Map<String, PsiVariable>> cache = project.getUserData(CACHE);
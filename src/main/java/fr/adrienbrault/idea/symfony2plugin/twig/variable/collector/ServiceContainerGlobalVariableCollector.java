@@ -23,6 +23,8 @@ public class ServiceContainerGlobalVariableCollector implements TwigFileVariable
 
     @Override
     public void collect(@NotNull TwigFileVariableCollectorParameter parameter, @NotNull Map<String, Set<String>> variables) {
+        parameter.addDependency(ServiceXmlParserFactory.getModificationTracker(parameter.getProject(), TwigGlobalsServiceParser.class));
+
         TwigGlobalsServiceParser twigPathServiceParser = ServiceXmlParserFactory.getInstance(parameter.getProject(), TwigGlobalsServiceParser.class);
         for(Map.Entry<String, TwigGlobalVariable> globalVariableEntry: twigPathServiceParser.getTwigGlobals().entrySet()) {
             if(globalVariableEntry.getValue().getTwigGlobalEnum() == TwigGlobalEnum.SERVICE) {
@@ -36,4 +38,9 @@ public class ServiceContainerGlobalVariableCollector implements TwigFileVariable
             }
         }
     }
+
+    @Override
+    public boolean isFileScope() {
+        return true;
+    }
 }
@@ -551,6 +551,61 @@ public class PhpElementsUtil {
         return null;
     }
 
+    /**
+     * Index safe version of "getStringValue": no reference resolving, only strings and
+     * constants / properties of the given class itself are supported
+     *
+     * "foo", self::FOO, static::FOO, $this->foo
+     */
+    @Nullable
+    public static String getStringValueInClass(@NotNull PhpClass phpClass, @Nullable PsiElement psiElement) {
+        return getStringValueInClass(phpClass, psiElement, 0);
+    }
+
+    @Nullable
+    private static String getStringValueInClass(@NotNull PhpClass phpClass, @Nullable PsiElement psiElement, int depth) {
+        if(psiElement == null || ++depth > 5) {
+            return null;
+        }
+
+        if(psiElement instanceof StringLiteralExpression) {
+            String contents = ((StringLiteralExpression) psiElement).getContents();
+            return StringUtils.isNotBlank(contents) ? contents : null;
+        }
+
+        if(psiElement instanceof MemberReference) {
+            Field field = getOwnFieldForReference(phpClass, (MemberReference) psiElement);
+            if(field != null) {
+                return getStringValueInClass(phpClass, field.getDefaultValue(), depth);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Find own constant or property of a class for self::FOO, static::FOO or $this->foo without resolving the reference
+     */
+    @Nullable
+    public static Field getOwnFieldForReference(@NotNull PhpClass phpClass, @NotNull MemberReference memberReference) {
+        if(!(memberReference instanceof FieldReference) && !(memberReference instanceof ClassConstantReference)) {
+            return null;
+        }
+
+        PhpExpression classReference = memberReference.getClassReference();
+        String name = memberReference.getName();
+        if(classReference == null || name == null) {
+            return null;
+        }
+
+        String text = classReference.getText();
+        if(!"$this".equals(text) && !"self".equalsIgnoreCase(text) && !"static".equalsIgnoreCase(text)) {
+            return null;
+        }
+
+        return phpClass.findOwnFieldByName(name, memberReference instanceof ClassConstantReference);
+    }
+
     public static String getPrevSiblingAsTextUntil(PsiElement psiElement, ElementPattern pattern, boolean includeMatching) {
         String prevText = "";
 
@@ -948,6 +1003,14 @@ public class PhpElementsUtil {
         return fqn.contains("\\Test\\") || fqn.contains("\\Tests\\");
     }
 
+    /**
+     * Name based version of "isTestClass"; for indexing where the class hierarchy is not available
+     */
+    public static boolean isTestClassName(@NotNull PhpClass phpClass) {
+        String fqn = phpClass.getFQN();
+        return fqn.endsWith("Test") || fqn.contains("\\Test\\") || fqn.contains("\\Tests\\");
+    }
+
     /**
      * Extract type hint from method parameter
      *
@@ -1,62 +1,63 @@
 package fr.adrienbrault.idea.symfony2plugin.util;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.psi.PsiElement;
-import com.intellij.psi.util.PsiTreeUtil;
-import com.jetbrains.php.PhpIndex;
-import com.jetbrains.php.lang.psi.elements.Method;
-import com.jetbrains.php.lang.psi.elements.MethodReference;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.indexing.FileBasedIndex;
 import com.jetbrains.php.lang.psi.elements.PhpClass;
+import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ConsoleCommandStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.util.dict.SymfonyCommand;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.*;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
 public class SymfonyCommandUtil {
 
+    private static final Key<CachedValue<Collection<SymfonyCommand>>> SYMFONY_COMMAND_CACHE = new Key<>("SYMFONY_COMMAND_CACHE");
+
+    private static final String COMMAND_CLASS = "\\Symfony\\Component\\Console\\Command\\Command";
+
+    /**
+     * All commands with their class, provided by ConsoleCommandStubIndex.
+     * The index only knows the class itself, so the command class is checked here; the result is cached on the
+     * index tracker, which also changes with any php file and so with the parents of a command class
+     */
     @NotNull
     public static Collection<SymfonyCommand> getCommands(@NotNull Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(
+            project,
+            SYMFONY_COMMAND_CACHE,
+            () -> CachedValueProvider.Result.create(
+                Collections.unmodifiableCollection(getCommandsInner(project)),
+                ConsoleCommandStubIndex.getModificationTracker(project)
+            ),
+            false
+        );
+    }
 
+    @NotNull
+    private static Collection<SymfonyCommand> getCommandsInner(@NotNull Project project) {
         Collection<SymfonyCommand> symfonyCommands = new ArrayList<>();
 
-        for (PhpClass phpClass : PhpIndex.getInstance(project).getAllSubclasses("\\Symfony\\Component\\Console\\Command\\Command")) {
-
-            if(PhpElementsUtil.isTestClass(phpClass)) {
-                continue;
-            }
-
-            Method method = phpClass.findOwnMethodByName("configure");
-            if(method == null) {
-                continue;
-            }
-
-            PsiElement[] psiElements = PsiTreeUtil.collectElements(method, psiElement ->
-                psiElement instanceof MethodReference && "setName".equals(((MethodReference) psiElement).getName())
-            );
+        GlobalSearchScope scope = GlobalSearchScope.allScope(project);
 
-            for (PsiElement psiElement : psiElements) {
-
-                if(!(psiElement instanceof MethodReference)) {
-                    continue;
-                }
-
-                PsiElement psiMethodParameter = PsiElementUtils.getMethodParameterPsiElementAt((MethodReference) psiElement, 0);
-                if(psiMethodParameter == null) {
+        for (String name : SymfonyProcessors.createResult(project, ConsoleCommandStubIndex.KEY)) {
+            // class and its service definition can both provide the same command
+            for (String fqn : new LinkedHashSet<>(FileBasedIndex.getInstance().getValues(ConsoleCommandStubIndex.KEY, name, scope))) {
+                PhpClass phpClass = PhpElementsUtil.getClassInterface(project, fqn);
+                if(phpClass == null || !PhpElementsUtil.isInstanceOf(phpClass, COMMAND_CLASS)) {
                     continue;
                 }
 
-                String stringValue = PhpElementsUtil.getStringValue(psiMethodParameter);
-                if(stringValue == null) {
-                    continue;
-                }
-
-                symfonyCommands.add(new SymfonyCommand(stringValue, psiElement));
+                symfonyCommands.add(new SymfonyCommand(project, name, fqn));
             }
-
         }
 
         return symfonyCommands;
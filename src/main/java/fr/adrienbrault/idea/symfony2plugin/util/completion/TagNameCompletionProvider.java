@@ -4,7 +4,6 @@ import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
 import com.intellij.codeInsight.lookup.LookupElement;
-import com.intellij.ide.highlighter.XmlFileType;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.ProcessingContext;
@@ -15,10 +14,9 @@ import fr.adrienbrault.idea.symfony2plugin.dic.XmlTagParser;
 import fr.adrienbrault.idea.symfony2plugin.dic.container.dict.ContainerBuilderCall;
 import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ContainerBuilderStubIndex;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ServicesTagStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TaggedServicesStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.yaml.YAMLFileType;
 
 import java.util.*;
 
@@ -49,15 +47,10 @@ public class TagNameCompletionProvider extends CompletionProvider<CompletionPara
             lookupElements.add(new ContainerTagLookupElement(tag));
         }
 
-        for(String serviceName: SymfonyProcessors.createResult(project, ServicesTagStubIndex.KEY)) {
-            List<Set<String>> tags = FileBasedIndex.getInstance().getValues(ServicesTagStubIndex.KEY, serviceName, GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), XmlFileType.INSTANCE, YAMLFileType.YML));
-            for(Set<String> tagDef: tags) {
-                for(String tag: tagDef) {
-                    if(!uniqueTags.contains(tag)) {
-                        uniqueTags.add(tag);
-                        lookupElements.add(new ContainerTagLookupElement(tag, true));
-                    }
-                }
+        for(String tag: SymfonyProcessors.createResult(project, TaggedServicesStubIndex.KEY)) {
+            if(!uniqueTags.contains(tag)) {
+                uniqueTags.add(tag);
+                lookupElements.add(new ContainerTagLookupElement(tag, true));
             }
         }
 
@@ -35,7 +35,7 @@ import fr.adrienbrault.idea.symfony2plugin.stubs.ContainerCollectionResolver;
 import fr.adrienbrault.idea.symfony2plugin.stubs.ServiceIndexUtil;
 import fr.adrienbrault.idea.symfony2plugin.stubs.SymfonyProcessors;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ContainerParameterStubIndex;
-import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ServicesTagStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TaggedServicesStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
 import fr.adrienbrault.idea.symfony2plugin.util.yaml.YamlHelper;
@@ -226,21 +226,18 @@ public class ServiceUtil {
 
         ContainerCollectionResolver.ServiceCollector collector = null;
 
-        Set<String> matchedTags = new HashSet<>();
-        Set<String> result = SymfonyProcessors.createResult(project, ServicesTagStubIndex.KEY);
-        for (String serviceName : result) {
-
-            // get service where we found our tags
-            List<Set<String>> values = FileBasedIndex.getInstance().getValues(ServicesTagStubIndex.KEY, serviceName, GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), XmlFileType.INSTANCE, YAMLFileType.YML));
-            if(values.size() == 0) {
-                continue;
+        // services with its unique tag list; there are much less tags then services so visit the inverse index
+        Map<String, Set<String>> serviceTags = new HashMap<>();
+        for (String tag : SymfonyProcessors.createResult(project, TaggedServicesStubIndex.KEY)) {
+            for (String serviceName : getTaggedServices(project, tag)) {
+                serviceTags.computeIfAbsent(serviceName, s -> new HashSet<>()).add(tag);
             }
+        }
 
-            // create unique tag list
-            Set<String> tags = new HashSet<>();
-            for(Set<String> tagValue: values) {
-                tags.addAll(tagValue);
-            }
+        Set<String> matchedTags = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : serviceTags.entrySet()) {
+            String serviceName = entry.getKey();
+            Set<String> tags = entry.getValue();
 
             if(collector == null) {
                 collector = ContainerCollectionResolver.ServiceCollector.create(project);
@@ -288,16 +285,14 @@ public class ServiceUtil {
         return phpClasses;
     }
 
+    /**
+     * Indexed services with the given tag; single keyed lookup on the inverse tag index
+     */
     public static Set<String> getTaggedServices(Project project, String tagName) {
         Set<String> service = new HashSet<>();
 
-        for(String serviceName: SymfonyProcessors.createResult(project, ServicesTagStubIndex.KEY)) {
-            List<Set<String>> serviceDefinitions = FileBasedIndex.getInstance().getValues(ServicesTagStubIndex.KEY, serviceName, GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), XmlFileType.INSTANCE, YAMLFileType.YML));
-            for(Set<String> strings: serviceDefinitions) {
-                if(strings.contains(tagName)) {
-                    service.add(serviceName);
-                }
-            }
+        for(Set<String> serviceNames: FileBasedIndex.getInstance().getValues(TaggedServicesStubIndex.KEY, tagName, GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.allScope(project), XmlFileType.INSTANCE, YAMLFileType.YML))) {
+            service.addAll(serviceNames);
         }
 
         return service;
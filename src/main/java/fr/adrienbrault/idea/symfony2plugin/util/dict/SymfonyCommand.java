@@ -1,22 +1,29 @@
 package fr.adrienbrault.idea.symfony2plugin.util.dict;
 
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
+import fr.adrienbrault.idea.symfony2plugin.util.PhpElementsUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  */
 public class SymfonyCommand {
 
+    @NotNull
+    private final Project project;
+
     @NotNull
     private final String name;
 
     @NotNull
-    private final PsiElement psiElement;
+    private final String fqn;
 
-    public SymfonyCommand(@NotNull String name, @NotNull PsiElement psiElement) {
+    public SymfonyCommand(@NotNull Project project, @NotNull String name, @NotNull String fqn) {
+        this.project = project;
         this.name = name;
-        this.psiElement = psiElement;
+        this.fqn = fqn;
     }
 
     @NotNull
@@ -24,9 +31,20 @@ public class SymfonyCommand {
         return name;
     }
 
+    /**
+     * Class of the command without leading backslash
+     */
     @NotNull
+    public String getFqn() {
+        return fqn;
+    }
+
+    /**
+     * Command class; resolved on demand as only navigation needs it
+     */
+    @Nullable
     public PsiElement getPsiElement() {
-        return psiElement;
+        return PhpElementsUtil.getClassInterface(project, fqn);
     }
 
 }
@@ -0,0 +1,48 @@
+package fr.adrienbrault.idea.symfony2plugin.util.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.util.Collections;
+
+/**
+ * Parser which is feed with the element events of a streamed container file; so several parsers can share
+ * one pass on the same file, see ServiceStreamParserFactory.
+ *
+ * Parsers are filled once and after that only read, so they act as immutable snapshot
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+abstract public class AbstractServiceStreamParser extends AbstractServiceParser {
+
+    @Override
+    public String getXPathFilter() {
+        return "";
+    }
+
+    /**
+     * Standalone parsing of a single file
+     */
+    @Override
+    public void parser(InputStream file) {
+        ServiceContainerStreamReader.read(file, Collections.singletonList(this));
+    }
+
+    /**
+     * Attributes and parents are available, text content is not
+     */
+    public void startElement(@NotNull ServiceXmlElement element) {
+    }
+
+    /**
+     * Element is complete including its text content
+     */
+    public void endElement(@NotNull ServiceXmlElement element) {
+    }
+
+    /**
+     * Called after every successfully parsed file
+     */
+    public void endDocument() {
+    }
+}
@@ -0,0 +1,102 @@
+package fr.adrienbrault.idea.symfony2plugin.util.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single StAX pass on a container file which provides its element events to all given parsers at once
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class ServiceContainerStreamReader {
+
+    /**
+     * @return false on an invalid document; parsers then never see its end, so they can drop its partial content
+     */
+    public static boolean read(@NotNull InputStream stream, @NotNull Collection<? extends AbstractServiceStreamParser> parsers) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        XMLStreamReader reader = null;
+
+        try {
+            reader = factory.createXMLStreamReader(stream);
+
+            ServiceXmlElement current = null;
+
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        current = new ServiceXmlElement(reader.getLocalName(), current, getAttributes(reader));
+                        for (AbstractServiceStreamParser parser : parsers) {
+                            parser.startElement(current);
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if(current != null) {
+                            current.appendText(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if(current != null) {
+                            current.close();
+                            for (AbstractServiceStreamParser parser : parsers) {
+                                parser.endElement(current);
+                            }
+
+                            current = current.getParent();
+                        }
+                        break;
+                }
+            }
+
+            for (AbstractServiceStreamParser parser : parsers) {
+                parser.endDocument();
+            }
+
+            return true;
+        } catch (XMLStreamException e) {
+            return false;
+        } finally {
+            if(reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @NotNull
+    private static Map<String, String> getAttributes(@NotNull XMLStreamReader reader) {
+        int count = reader.getAttributeCount();
+        if(count == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> attributes = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+
+        return attributes;
+    }
+}
@@ -0,0 +1,292 @@
+package fr.adrienbrault.idea.symfony2plugin.util.service;
+
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.PathUtil;
+import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
+import fr.adrienbrault.idea.symfony2plugin.config.component.parser.ParameterServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlEventParser;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlTagParser;
+import fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderArguments;
+import fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderFactory;
+import fr.adrienbrault.idea.symfony2plugin.form.dict.FormExtensionServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.form.dict.FormTypeServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.translation.parser.DomainMappings;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * All stream parsers of a project share one pass on the compiled container files.
+ *
+ * Parsers of the plugin are build together, parsers of other plugins are registered on their first usage; on a
+ * container change every known parser is build again in a single streaming pass and the result is published as
+ * a new immutable snapshot.
+ *
+ * The modification count only changes with file events of container files or with a new snapshot; so reading it
+ * never touches the file system. Parsing happens on the next parser access, which caches do on their computation.
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class ServiceStreamParserFactory {
+
+    private static final Map<Project, ServiceStreamParserFactory> instance = new HashMap<>();
+
+    private static final AtomicLong MODIFICATION_COUNT = new AtomicLong();
+
+    /**
+     * Parsers of the plugin itself are always build together; so only parsers of other plugins need their own
+     * pass on first usage
+     */
+    private static final Collection<Class<? extends AbstractServiceStreamParser>> PARSERS = Arrays.asList(
+        XmlServiceParser.class,
+        ParameterServiceParser.class,
+        XmlTagParser.class,
+        XmlEventParser.class,
+        FormTypeServiceParser.class,
+        FormExtensionServiceParser.class,
+        DomainMappings.class
+    );
+
+    private static final ExtensionPointName<CompiledServiceBuilderFactory> EXTENSIONS = new ExtensionPointName<>(
+        "fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderFactory"
+    );
+
+    @NotNull
+    private final Project project;
+
+    @NotNull
+    private final Collection<CompiledServiceBuilderFactory.Builder> extensions = new ArrayList<>();
+
+    @NotNull
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap(), 0);
+
+    private volatile long modificationCount = MODIFICATION_COUNT.incrementAndGet();
+
+    /**
+     * System independent paths of every container file which was ever parsed; a deleted file is still known on its recreation
+     */
+    @NotNull
+    private final Set<String> containerPaths = ConcurrentHashMap.newKeySet();
+
+    private ServiceStreamParserFactory(@NotNull Project project) {
+        this.project = project;
+
+        project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                if(!events.isEmpty() && isContainerChanged(events)) {
+                    modificationCount = MODIFICATION_COUNT.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    @NotNull
+    synchronized public AbstractServiceStreamParser parser(@NotNull Class<? extends AbstractServiceStreamParser> serviceParser) {
+        Collection<File> containerFiles = this.project.getComponent(Symfony2ProjectComponent.class).getContainerFiles();
+
+        Snapshot snapshot = this.snapshot;
+
+        if(isModified(snapshot, containerFiles)) {
+            // rebuild every known parser in one pass
+            Set<Class<? extends AbstractServiceStreamParser>> parsers = new HashSet<>(PARSERS);
+            parsers.addAll(snapshot.parsers.keySet());
+            parsers.add(serviceParser);
+
+            long modificationCount = snapshot.modificationCount;
+            this.snapshot = snapshot = build(parsers, containerFiles, snapshot, MODIFICATION_COUNT.incrementAndGet());
+
+            // an invalid file keeps the previous parsers
+            if(snapshot.modificationCount != modificationCount) {
+                this.modificationCount = snapshot.modificationCount;
+            }
+        } else if(!snapshot.parsers.containsKey(serviceParser)) {
+            // first usage of a foreign parser; all others are still up to date
+            Snapshot parserSnapshot = build(Collections.singleton(serviceParser), containerFiles, snapshot, snapshot.modificationCount);
+
+            Map<Class<? extends AbstractServiceStreamParser>, AbstractServiceStreamParser> parsers = new HashMap<>(snapshot.parsers);
+            parsers.putAll(parserSnapshot.parsers);
+
+            this.snapshot = snapshot = new Snapshot(parserSnapshot.files, parsers, snapshot.modificationCount);
+        }
+
+        AbstractServiceStreamParser parser = snapshot.parsers.get(serviceParser);
+        if(parser == null) {
+            throw new IllegalArgumentException("Invalid stream parser: " + serviceParser.getName());
+        }
+
+        return parser;
+    }
+
+    /**
+     * Changes on every new snapshot and on file events of container files; cheap and without parsing anything
+     */
+    public long getModificationCount() {
+        return this.modificationCount;
+    }
+
+    /**
+     * Created, changed or deleted container files; also deleted or moved directories of them, eg on a cache clear
+     */
+    private boolean isContainerChanged(@NotNull List<? extends VFileEvent> events) {
+        Collection<String> fileNames = this.project.getComponent(Symfony2ProjectComponent.class).getContainerFileNames();
+
+        for (VFileEvent event : events) {
+            String path = event.getPath();
+            if(fileNames.contains(PathUtil.getFileName(path))) {
+                return true;
+            }
+
+            String directoryPath = StringUtils.stripEnd(path, "/") + "/";
+            for (String containerPath : containerPaths) {
+                if(containerPath.startsWith(directoryPath)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isModified(@NotNull Snapshot snapshot, @NotNull Collection<File> containerFiles) {
+        if(snapshot.files.size() != containerFiles.size()) {
+            return true;
+        }
+
+        for(File containerFile: containerFiles) {
+            Long lastModified = snapshot.files.get(containerFile.getAbsolutePath());
+            if(lastModified == null || lastModified != containerFile.lastModified()) {
+                return true;
+            }
+        }
+
+        for (CompiledServiceBuilderFactory.Builder builder : this.extensions) {
+            if(builder.isModified(project)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * An invalid container file is mostly written by Symfony right now; previous parsers are kept then, until the
+     * files are changed again
+     */
+    @NotNull
+    private Snapshot build(@NotNull Collection<Class<? extends AbstractServiceStreamParser>> serviceParsers, @NotNull Collection<File> containerFiles, @NotNull Snapshot previous, long modificationCount) {
+        Map<Class<? extends AbstractServiceStreamParser>, AbstractServiceStreamParser> parsers = new HashMap<>();
+
+        for (Class<? extends AbstractServiceStreamParser> serviceParser : serviceParsers) {
+            try {
+                parsers.put(serviceParser, serviceParser.newInstance());
+            } catch (InstantiationException | IllegalAccessException e) {
+                Symfony2ProjectComponent.getLogger().warn("invalid stream parser: " + serviceParser.getName());
+            }
+        }
+
+        Collection<AbstractServiceStreamParser> instances = parsers.values();
+
+        boolean valid = true;
+
+        // extensions
+        if(this.extensions.size() > 0) {
+            CompiledServiceBuilderArguments args = new CompiledServiceBuilderArguments(project);
+            for (CompiledServiceBuilderFactory.Builder builder : this.extensions) {
+                builder.build(args);
+            }
+
+            for (InputStream inputStream : args.getStreams()) {
+                valid &= ServiceContainerStreamReader.read(inputStream, instances);
+            }
+        }
+
+        Map<String, Long> files = new HashMap<>();
+        for(File containerFile: containerFiles) {
+            if(!containerFile.exists()) {
+                continue;
+            }
+
+            try {
+                valid &= ServiceContainerStreamReader.read(new FileInputStream(containerFile), instances);
+            } catch (FileNotFoundException e) {
+                continue;
+            }
+
+            files.put(containerFile.getAbsolutePath(), containerFile.lastModified());
+            containerPaths.add(FileUtil.toSystemIndependentName(containerFile.getAbsolutePath()));
+        }
+
+        if(!valid) {
+            Symfony2ProjectComponent.getLogger().info("invalid container file; keep previous parsers");
+
+            boolean kept = true;
+            for (Map.Entry<Class<? extends AbstractServiceStreamParser>, AbstractServiceStreamParser> entry : parsers.entrySet()) {
+                AbstractServiceStreamParser parser = previous.parsers.get(entry.getKey());
+                if(parser != null) {
+                    entry.setValue(parser);
+                } else {
+                    kept = false;
+                }
+            }
+
+            // nothing changed for caches on top of the parsers
+            if(kept) {
+                modificationCount = previous.modificationCount;
+            }
+        }
+
+        Symfony2ProjectComponent.getLogger().info("stream parsed container files for " + parsers.size() + " parsers");
+
+        return new Snapshot(Collections.unmodifiableMap(files), Collections.unmodifiableMap(parsers), modificationCount);
+    }
+
+    @NotNull
+    synchronized public static ServiceStreamParserFactory getInstance(@NotNull Project project) {
+        ServiceStreamParserFactory factory = instance.get(project);
+        if(factory == null) {
+            factory = new ServiceStreamParserFactory(project);
+
+            for (CompiledServiceBuilderFactory ext : EXTENSIONS.getExtensions()) {
+                factory.extensions.add(ext.create());
+            }
+
+            instance.put(project, factory);
+        }
+
+        return factory;
+    }
+
+    synchronized public static void cleanInstance(@NotNull Project project) {
+        instance.remove(project);
+    }
+
+    private static class Snapshot {
+        @NotNull
+        private final Map<String, Long> files;
+
+        @NotNull
+        private final Map<Class<? extends AbstractServiceStreamParser>, AbstractServiceStreamParser> parsers;
+
+        private final long modificationCount;
+
+        Snapshot(@NotNull Map<String, Long> files, @NotNull Map<Class<? extends AbstractServiceStreamParser>, AbstractServiceStreamParser> parsers, long modificationCount) {
+            this.files = files;
+            this.parsers = parsers;
+            this.modificationCount = modificationCount;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package fr.adrienbrault.idea.symfony2plugin.util.service;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Element of a streamed container file. Only the elements on the path to the current one are alive,
+ * so there is never a document in memory
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ */
+public class ServiceXmlElement {
+
+    /**
+     * "container" and its "services" / "parameters" holder dont need a text content;
+     * so the whole file text is never collected on the root elements
+     */
+    private static final int TEXT_DEPTH = 3;
+
+    @NotNull
+    private final String name;
+
+    @Nullable
+    private final ServiceXmlElement parent;
+
+    @NotNull
+    private final Map<String, String> attributes;
+
+    private final int depth;
+
+    @Nullable
+    private StringBuilder text;
+
+    ServiceXmlElement(@NotNull String name, @Nullable ServiceXmlElement parent, @NotNull Map<String, String> attributes) {
+        this.name = name;
+        this.parent = parent;
+        this.attributes = attributes;
+        this.depth = parent != null ? parent.depth + 1 : 1;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    public ServiceXmlElement getParent() {
+        return parent;
+    }
+
+    /**
+     * Root element is on depth "1"
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean hasAttribute(@NotNull String name) {
+        return attributes.containsKey(name);
+    }
+
+    /**
+     * Same as DOM: not existing attributes are an empty string
+     */
+    @NotNull
+    public String getAttribute(@NotNull String name) {
+        String value = attributes.get(name);
+        return value != null ? value : "";
+    }
+
+    /**
+     * Same as DOM "getTextContent" including all child elements; complete after element is closed
+     */
+    @NotNull
+    public String getTextContent() {
+        return text != null ? text.toString() : "";
+    }
+
+    /**
+     * Element path from root: "container", "services", "service"
+     */
+    public boolean isPath(@NotNull String... names) {
+        if(names.length != depth) {
+            return false;
+        }
+
+        ServiceXmlElement element = this;
+        for (int i = names.length - 1; i >= 0; i--) {
+            if(element == null || !names[i].equals(element.name)) {
+                return false;
+            }
+
+            element = element.parent;
+        }
+
+        return true;
+    }
+
+    /**
+     * Ancestor or self on given depth
+     */
+    @Nullable
+    public ServiceXmlElement getAncestor(int depth) {
+        ServiceXmlElement element = this;
+        while (element != null && element.depth > depth) {
+            element = element.parent;
+        }
+
+        return element != null && element.depth == depth ? element : null;
+    }
+
+    void appendText(@NotNull char[] chars, int start, int length) {
+        if(depth < TEXT_DEPTH || length == 0) {
+            return;
+        }
+
+        if(text == null) {
+            text = new StringBuilder(length);
+        }
+
+        text.append(chars, start, length);
+    }
+
+    /**
+     * Child text is part of the parent text content
+     */
+    void close() {
+        if(parent == null || parent.depth < TEXT_DEPTH || text == null || text.length() == 0) {
+            return;
+        }
+
+        if(parent.text == null) {
+            parent.text = new StringBuilder(text.length());
+        }
+
+        parent.text.append(text);
+    }
+}
@@ -2,9 +2,11 @@ package fr.adrienbrault.idea.symfony2plugin.util.service;
 
 import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
 import fr.adrienbrault.idea.symfony2plugin.Symfony2ProjectComponent;
 import fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderArguments;
 import fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderFactory;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
@@ -119,8 +121,28 @@ public class ServiceXmlParserFactory {
         this.serviceFiles = new HashMap<>();
     }
 
-    synchronized public static <T extends ServiceParserInterface> T getInstance(Project project, Class<T> serviceParser){
+    public static <T extends ServiceParserInterface> T getInstance(Project project, Class<T> serviceParser){
+        // stream parsers share a single pass on the container files
+        if(AbstractServiceStreamParser.class.isAssignableFrom(serviceParser)) {
+            return serviceParser.cast(
+                ServiceStreamParserFactory.getInstance(project).parser(serviceParser.asSubclass(AbstractServiceStreamParser.class))
+            );
+        }
+
+        return getFactory(project, serviceParser).parser(serviceParser);
+    }
 
+    /**
+     * Tracker for caches build on top of a parser; it changes with the container files, see ServiceStreamParserFactory.
+     * It is cheap and never parses, the parser itself is build again on its next access inside the cache computation
+     */
+    @NotNull
+    public static <T extends ServiceParserInterface> ModificationTracker getModificationTracker(@NotNull Project project, @NotNull Class<T> serviceParser) {
+        return () -> ServiceStreamParserFactory.getInstance(project).getModificationCount();
+    }
+
+    @NotNull
+    synchronized private static <T extends ServiceParserInterface> ServiceXmlParserFactory getFactory(@NotNull Project project, @NotNull Class<T> serviceParser) {
         Map<Class, ServiceXmlParserFactory> projectInstance = instance.computeIfAbsent(project, k -> new HashMap<>());
 
         ServiceXmlParserFactory serviceXmlParserFactory = projectInstance.get(serviceParser);
@@ -135,8 +157,7 @@ public class ServiceXmlParserFactory {
             projectInstance.put(serviceParser, serviceXmlParserFactory);
         }
 
-        return serviceXmlParserFactory.parser(serviceParser);
-
+        return serviceXmlParserFactory;
     }
 
     synchronized public static void cleanInstance(Project project){
@@ -144,6 +165,8 @@ public class ServiceXmlParserFactory {
             Symfony2ProjectComponent.getLogger().info("clean ServiceXmlParserFactory for " + project.getName());
             instance.remove(project);
         }
+
+        ServiceStreamParserFactory.cleanInstance(project);
     }
 
 }
@@ -36,7 +36,7 @@ public class EventDispatcherSubscriberUtilTest extends SymfonyLightCodeInsightFi
 
     /**
      * @see EventDispatcherSubscriberUtil#getSubscribedEvents
-     * @see EventDispatcherSubscriberUtil#attachSubscriberEventNames
+     * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.EventSubscriberStubIndex
      */
     public void testGetSubscribedEvent() {
         EventDispatcherSubscribedEvent event1 = EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.foo").iterator().next();
@@ -54,10 +54,12 @@ public class EventDispatcherSubscriberUtilTest extends SymfonyLightCodeInsightFi
         EventDispatcherSubscribedEvent event3 = EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.foo1").iterator().next();
         assertEquals("pre.foo1", event3.getStringValue());
         assertEquals("onStoreOrder", event3.getMethodName());
+        assertEquals(0, event3.getPriority());
 
         EventDispatcherSubscribedEvent event4 = EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.foo2").iterator().next();
         assertEquals("pre.foo2", event4.getStringValue());
         assertEquals("onKernelResponseMid", event4.getMethodName());
+        assertEquals(10, event4.getPriority());
 
         EventDispatcherSubscribedEvent event5 = EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.foo3").iterator().next();
         assertEquals("pre.foo3", event5.getStringValue());
@@ -68,6 +70,35 @@ public class EventDispatcherSubscriberUtilTest extends SymfonyLightCodeInsightFi
         assertNull( event6.getMethodName());
     }
 
+    /**
+     * @see EventDispatcherSubscriberUtil#getSubscribedEvent
+     */
+    public void testThatSubscribersOfSameFileAreProvided() {
+        Collection<EventDispatcherSubscribedEvent> events = EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.foo");
+
+        assertTrue(events.stream().anyMatch(event -> "TestEventSubscriber".equals(event.getFqnClassName()) && "preFoo".equals(event.getMethodName())));
+        assertTrue(events.stream().anyMatch(event -> "TestSecondEventSubscriber".equals(event.getFqnClassName()) && "onSecondPreFoo".equals(event.getMethodName())));
+    }
+
+    /**
+     * @see EventDispatcherSubscriberUtil#getSubscribedEvent
+     */
+    public void testThatSubclassesInheritingSubscribedEventsAreProvided() {
+        Collection<EventDispatcherSubscribedEvent> events = EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.foo");
+
+        assertTrue(events.stream().anyMatch(event -> "TestInheritedEventSubscriber".equals(event.getFqnClassName()) && "onSecondPreFoo".equals(event.getMethodName())));
+        assertFalse(events.stream().anyMatch(event -> "TestOverridingEventSubscriber".equals(event.getFqnClassName())));
+
+        assertTrue(EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.overriding").stream().anyMatch(event -> "TestOverridingEventSubscriber".equals(event.getFqnClassName())));
+    }
+
+    /**
+     * @see EventDispatcherSubscriberUtil#getSubscribedEvent
+     */
+    public void testThatClassesWithoutSubscriberInterfaceAreIgnored() {
+        assertEmpty(EventDispatcherSubscriberUtil.getSubscribedEvent(getProject(), "pre.not_subscriber"));
+    }
+
     /**
      * @see EventDispatcherSubscriberUtil#getEventNameLookupElements
      */
@@ -49,4 +49,32 @@ namespace {
         public function preFoo() {}
         public function postFoo() {}
     }
+
+    class TestSecondEventSubscriber implements EventSubscriberInterface
+    {
+        public static function getSubscribedEvents()
+        {
+            return ['pre.foo' => 'onSecondPreFoo'];
+        }
+    }
+
+    class TestInheritedEventSubscriber extends TestSecondEventSubscriber
+    {
+    }
+
+    class TestOverridingEventSubscriber extends TestInheritedEventSubscriber
+    {
+        public static function getSubscribedEvents()
+        {
+            return ['pre.overriding' => 'onOverriding'];
+        }
+    }
+
+    class TestNotAnEventSubscriber
+    {
+        public static function getSubscribedEvents()
+        {
+            return ['pre.not_subscriber' => 'onNotSubscriber'];
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.routing;
+
+import fr.adrienbrault.idea.symfony2plugin.routing.Route;
+import fr.adrienbrault.idea.symfony2plugin.routing.UrlGeneratorRoutesParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.routing.UrlGeneratorRoutesParser
+ */
+public class UrlGeneratorRoutesParserTest extends Assert {
+
+    @Test
+    public void testParseOfConstructorAssignmentWithShortArraySyntax() {
+        Map<String, Route> routes = UrlGeneratorRoutesParser.parse("<?php\n" +
+            "class appDevUrlGenerator extends Symfony\\Component\\Routing\\Generator\\UrlGenerator\n" +
+            "{\n" +
+            "    private static $declaredRoutes;\n" +
+            "    public function __construct()\n" +
+            "    {\n" +
+            "        // self::$declaredRoutes = ['commented' => []];\n" +
+            "        if (null === self::$declaredRoutes) {\n" +
+            "            self::$declaredRoutes = [\n" +
+            "                'foo' => [0 => [0 => 'id'], 1 => ['_controller' => 'Foo\\\\Bar::fooAction', 'pos' => NULL], 2 => [], 3 => [0 => [0 => 'variable', 1 => '/', 2 => '[^/]++', 3 => 'id'], 1 => [0 => 'text', 1 => '/foo']], 4 => [], 5 => []],\n" +
+            "                /* 'bar' => [], */\n" +
+            "                'de__RG__car' => array(0 => array(), 1 => array('_controller' => 'car.controller:indexAction')),\n" +
+            "            ];\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n"
+        );
+
+        assertEquals(2, routes.size());
+        assertNull(routes.get("commented"));
+
+        Route foo = routes.get("foo");
+        assertEquals("Foo\\Bar::fooAction", foo.getController());
+        assertTrue(foo.getVariables().contains("id"));
+        assertEquals(1, foo.getDefaults().size());
+        assertEquals(2, foo.getTokens().size());
+
+        assertEquals("car.controller:indexAction", routes.get("car").getController());
+    }
+
+    @Test
+    public void testParseOfInvalidContentIsEmpty() {
+        assertEquals(0, UrlGeneratorRoutesParser.parse("<?php self::$declaredRoutes = array('foo' => array(").size());
+        assertEquals(0, UrlGeneratorRoutesParser.parse("").size());
+    }
+}
@@ -1,11 +1,16 @@
 package fr.adrienbrault.idea.symfony2plugin.tests.security.utils;
 
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.codeInsight.lookup.LookupElementPresentation;
+import com.intellij.psi.PsiElement;
 import com.intellij.util.containers.ContainerUtil;
 import com.jetbrains.php.lang.psi.elements.ClassConstantReference;
 import fr.adrienbrault.idea.symfony2plugin.security.utils.VoterUtil;
 import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import org.jetbrains.yaml.psi.YAMLKeyValue;
 
-import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -25,49 +30,78 @@ public class VoterUtilTest extends SymfonyLightCodeInsightFixtureTestCase {
     }
 
     /**
-     * @see VoterUtil#visitAttribute
+     * @see VoterUtil#getAttributes
      */
     public void testVoterAttributeForPhpFile() {
-        VoterUtil.StringPairConsumer consumer = new VoterUtil.StringPairConsumer();
-        VoterUtil.visitAttribute(getProject(), consumer);
+        Set<String> values = VoterUtil.getAttributes(getProject());
 
-        assertContainsElements(consumer.getValues(), "FOOBAR_IF_1", "FOOBAR_IF_2", "FOOBAR_IF_3", "FOOBAR_IF_4");
+        assertContainsElements(values, "FOOBAR_IF_1", "FOOBAR_IF_2", "FOOBAR_IF_3", "FOOBAR_IF_4");
 
-        assertContainsElements(consumer.getValues(), "FOOBAR_ARRAY_1", "FOOBAR_ARRAY_2");
-        assertContainsElements(consumer.getValues(), "FOOBAR_ARRAY_3", "FOOBAR_ARRAY_4");
+        assertContainsElements(values, "FOOBAR_ARRAY_1", "FOOBAR_ARRAY_2");
+        assertContainsElements(values, "FOOBAR_ARRAY_3", "FOOBAR_ARRAY_4");
 
-        assertContainsElements(consumer.getValues(), "FOOBAR_CASE_1", "FOOBAR_CASE_2");
+        assertContainsElements(values, "FOOBAR_CASE_1", "FOOBAR_CASE_2");
 
-        assertContainsElements(consumer.getValues(), "FOOBAR_ATTRIBUTES_IN_CONST_1", "FOOBAR_ATTRIBUTES_IN_PROPERTY_1");
+        assertContainsElements(values, "FOOBAR_ATTRIBUTES_IN_CONST_1", "FOOBAR_ATTRIBUTES_IN_PROPERTY_1");
     }
 
     /**
-     * @see VoterUtil#visitAttribute
+     * @see VoterUtil#getAttributes
      */
     public void testVoterAttributeForPhpFileInForeach() {
-        VoterUtil.StringPairConsumer consumer = new VoterUtil.StringPairConsumer();
-        VoterUtil.visitAttribute(getProject(), consumer);
+        assertContainsElements(VoterUtil.getAttributes(getProject()), "FOOBAR_EACH_1", "FOOBAR_ATTRIBUTES_IN_ARRAY");
+    }
 
-        assertContainsElements(consumer.getValues(), "FOOBAR_EACH_1", "FOOBAR_ATTRIBUTES_IN_ARRAY");
+    /**
+     * @see VoterUtil#getAttributes
+     */
+    public void testVoterAttributeForConstantOfOtherClass() {
+        assertContainsElements(VoterUtil.getAttributes(getProject()), "FOOBAR_FOREIGN_CONST");
+
+        assertTrue(ContainerUtil.exists(VoterUtil.getAttributeTargets(getProject(), Collections.singletonList("FOOBAR_FOREIGN_CONST")), psiElement ->
+            psiElement instanceof ClassConstantReference && "VoterAttributes::FOREIGN".equals(psiElement.getText()))
+        );
+    }
+
+    /**
+     * @see VoterUtil#getAttributes
+     */
+    public void testThatClassesWithoutVoterInterfaceAreIgnored() {
+        assertDoesntContain(VoterUtil.getAttributes(getProject()), "NOT_A_VOTER_ATTRIBUTE");
+        assertEmpty(VoterUtil.getAttributeTargets(getProject(), Collections.singletonList("NOT_A_VOTER_ATTRIBUTE")));
     }
 
     public void testVoterAttributeForPhpFileWithTarget() {
-        VoterUtil.TargetPairConsumer consumer = new VoterUtil.TargetPairConsumer("FOOBAR_IF_1");
-        VoterUtil.visitAttribute(getProject(), consumer);
+        Collection<PsiElement> targets = VoterUtil.getAttributeTargets(getProject(), Collections.singletonList("foobar_if_1"));
 
-        assertNotNull(ContainerUtil.filter(consumer.getValues(), psiElement ->
-            psiElement instanceof ClassConstantReference)
+        assertTrue(ContainerUtil.exists(targets, psiElement ->
+            psiElement instanceof ClassConstantReference && "self::FOOBAR_IF_1".equals(psiElement.getText()))
         );
     }
 
+    public void testVoterAttributeForYamlSecurityFileWithTarget() {
+        assertTrue(ContainerUtil.exists(VoterUtil.getAttributeTargets(getProject(), Collections.singletonList("YAML_ROLE_SUPER_ADMIN")), psiElement ->
+            psiElement instanceof YAMLKeyValue && "YAML_ROLE_SUPER_ADMIN".equals(((YAMLKeyValue) psiElement).getKeyText()))
+        );
+    }
+
+    public void testVoterAttributeLookupElementsHaveVoterClass() {
+        LookupElement lookupElement = ContainerUtil.find(VoterUtil.getAttributeLookupElements(getProject()), element ->
+            "FOOBAR_CASE_1".equals(element.getLookupString())
+        );
+
+        assertNotNull(lookupElement);
+
+        LookupElementPresentation presentation = new LookupElementPresentation();
+        lookupElement.renderElement(presentation);
+        assertEquals("MyVoter", presentation.getTypeText());
+    }
+
     /**
-     * @see VoterUtil#visitAttribute
+     * @see VoterUtil#getAttributes
      */
     public void testVoterAttributeForYamlSecurityFile() {
-        VoterUtil.StringPairConsumer consumer = new VoterUtil.StringPairConsumer();
-        VoterUtil.visitAttribute(getProject(), consumer);
-
-        Set<String> values = consumer.getValues();
+        Set<String> values = VoterUtil.getAttributes(getProject());
         assertContainsElements(values, "YAML_ROLE_ADMIN", "YAML_ROLE_ALLOWED_TO_SWITCH", "YAML_ROLE_SUPER_ADMIN");
 
         assertContainsElements(values, "YAML_ROLE_USER_FOOBAR", "YAML_ROLE_USER_FOOBAR_1");
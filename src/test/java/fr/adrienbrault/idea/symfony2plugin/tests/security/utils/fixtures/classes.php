@@ -94,4 +94,25 @@ namespace
             }
         }
     }
-}
\ No newline at end of file
+
+    class VoterAttributes
+    {
+        const FOREIGN = 'FOOBAR_FOREIGN_CONST';
+    }
+
+    class MyForeignVoter extends Voter
+    {
+        protected function supports($attribute, $subject)
+        {
+            return $attribute === VoterAttributes::FOREIGN;
+        }
+    }
+
+    class NotAVoter extends \DateTime
+    {
+        protected function supports($attribute, $subject)
+        {
+            return $attribute === 'NOT_A_VOTER_ATTRIBUTE';
+        }
+    }
+}
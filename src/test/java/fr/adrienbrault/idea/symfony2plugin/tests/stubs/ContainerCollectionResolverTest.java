@@ -7,6 +7,7 @@ import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureT
 import org.jetbrains.yaml.YAMLFileType;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -133,4 +134,60 @@ public class ContainerCollectionResolverTest extends SymfonyLightCodeInsightFixt
     public void testThatGetKernelParametersAreCollected() {
         assertContainsElements(ContainerCollectionResolver.getParameters(getProject()).keySet(), "kernel.foobar");
     }
+
+    public void testThatClassNameIsConvertedToServices() {
+        Set<String> services = ContainerCollectionResolver.ServiceCollector.create(getProject()).convertClassNameToServices("\\DateTime");
+        assertContainsElements(services, "foo", "foo_slash", "foo_upper", "foo_datetime");
+
+        assertSize(0, ContainerCollectionResolver.ServiceCollector.create(getProject()).convertClassNameToServices("\\Foo\\Unknown"));
+    }
+
+    public void testThatServicesOfChangedFilesAreUpdated() {
+        assertNull(ContainerCollectionResolver.getService(getProject(), "foo_added"));
+
+        myFixture.configureByText("foo5.yml", "" +
+            "services:\n" +
+            "    foo_added:\n" +
+            "        class: DateTime\n"
+        );
+
+        assertEquals("DateTime", ContainerCollectionResolver.getService(getProject(), "foo_added").getClassName());
+        assertTrue(ContainerCollectionResolver.hasServiceNames(getProject(), "foo_added"));
+    }
+
+    public void testThatCollectorIsKeptOnUnrelatedChanges() {
+        ContainerCollectionResolver.ServiceCollector collector = ContainerCollectionResolver.ServiceCollector.create(getProject());
+        collector.getServices();
+
+        myFixture.configureByText("unrelated.php", "<?php\nclass Unrelated {}");
+
+        assertSame(collector, ContainerCollectionResolver.ServiceCollector.create(getProject()));
+    }
+
+    public void testThatServicesOfChangedFilesArePatchedWithClassNames() {
+        ContainerCollectionResolver.ServiceCollector collector = ContainerCollectionResolver.ServiceCollector.create(getProject());
+        ContainerService foo = collector.getServices().get("foo");
+        assertFalse(collector.convertClassNameToServices("\\DateTimeZone").contains("foo_patched"));
+
+        myFixture.configureByText("foo6.yml", "" +
+            "services:\n" +
+            "    foo_patched:\n" +
+            "        class: DateTimeZone\n"
+        );
+
+        ContainerCollectionResolver.ServiceCollector patched = ContainerCollectionResolver.ServiceCollector.create(getProject());
+        assertNotSame(collector, patched);
+        assertSame(foo, patched.getServices().get("foo"));
+        assertTrue(patched.convertClassNameToServices("\\DateTimeZone").contains("foo_patched"));
+
+        myFixture.configureByText("foo6.yml", "" +
+            "services:\n" +
+            "    foo_other:\n" +
+            "        class: DateTimeZone\n"
+        );
+
+        assertNull(ContainerCollectionResolver.getService(getProject(), "foo_patched"));
+        assertFalse(ContainerCollectionResolver.hasServiceNames(getProject(), "foo_patched"));
+        assertEquals(Collections.singleton("foo_other"), ContainerCollectionResolver.ServiceCollector.create(getProject()).convertClassNameToServices("\\DateTimeZone"));
+    }
 }
@@ -0,0 +1,39 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.cache;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.cache.RouteDefinitionFileCache;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.StubIndexedRoute;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.cache.RouteDefinitionFileCache
+ */
+public class RouteDefinitionFileCacheTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void testThatRoutesAreKeptOnChangesWithoutRoutes() {
+        myFixture.addFileToProject("routing.yml", "foo_cache_route:\n  path: /foo\n");
+
+        RouteDefinitionFileCache cache = RouteDefinitionFileCache.getInstance(getProject());
+        Map<String, List<StubIndexedRoute>> routes = cache.getRoutes();
+        assertTrue(routes.containsKey("foo_cache_route"));
+
+        myFixture.addFileToProject("Foo.php", "<?php\nclass Foo {}");
+
+        assertSame(routes, cache.getRoutes());
+    }
+
+    public void testThatRoutesOfChangedFilesAreUpdated() {
+        myFixture.addFileToProject("routing.yml", "foo_cache_route:\n  path: /foo\n");
+
+        RouteDefinitionFileCache cache = RouteDefinitionFileCache.getInstance(getProject());
+        assertTrue(cache.getRoutes().containsKey("foo_cache_route"));
+
+        myFixture.addFileToProject("routing.yml", "foo_cache_route_renamed:\n  path: /foo\n");
+
+        assertFalse(cache.getRoutes().containsKey("foo_cache_route"));
+        assertTrue(cache.getRoutes().containsKey("foo_cache_route_renamed"));
+    }
+}
@@ -0,0 +1,22 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.cache;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.cache.ServiceDefinitionFileCache;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.cache.ServiceDefinitionFileCache
+ */
+public class ServiceDefinitionFileCacheTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void testThatAddedFileRedefiningServiceIsCollected() {
+        myFixture.addFileToProject("services.yml", "services:\n  foo.cache_id:\n    class: Foo\\Bar\n");
+
+        ServiceDefinitionFileCache cache = ServiceDefinitionFileCache.getInstance(getProject());
+        assertEquals(1, cache.getServices().get("foo.cache_id").size());
+
+        myFixture.addFileToProject("services_dev.yml", "services:\n  foo.cache_id:\n    class: Foo\\Bar\n");
+
+        assertEquals(2, cache.getServices().get("foo.cache_id").size());
+    }
+}
@@ -0,0 +1,38 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ConsoleCommandStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.ConsoleCommandStubIndex
+ */
+public class ConsoleCommandStubIndexTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        myFixture.copyFileToProject("ConsoleCommandStubIndex.php");
+        myFixture.copyFileToProject("console.command.yml");
+        myFixture.copyFileToProject("console.command.xml");
+    }
+
+    public String getTestDataPath() {
+        return "src/test/java/fr/adrienbrault/idea/symfony2plugin/tests/stubs/indexes/fixtures";
+    }
+
+    public void testThatPhpCommandNamesAreInIndex() {
+        assertIndexContainsKeyWithValue(ConsoleCommandStubIndex.KEY, "foo:configure", "Foo\\Command\\FooCommand");
+        assertIndexContainsKeyWithValue(ConsoleCommandStubIndex.KEY, "foo:default_name", "Foo\\Command\\DefaultNameCommand");
+        assertIndexContainsKeyWithValue(ConsoleCommandStubIndex.KEY, "foo:const", "Foo\\Command\\ConstCommand");
+
+        assertIndexNotContains(ConsoleCommandStubIndex.KEY, "foo:no_parent", "foo:test");
+    }
+
+    public void testThatTaggedCommandNamesAreInIndex() {
+        assertIndexContainsKeyWithValue(ConsoleCommandStubIndex.KEY, "foo:yaml", "Foo\\Command\\YamlCommand");
+        assertIndexContainsKeyWithValue(ConsoleCommandStubIndex.KEY, "foo:yaml_id", "Foo\\Command\\YamlIdCommand");
+        assertIndexContainsKeyWithValue(ConsoleCommandStubIndex.KEY, "foo:xml", "Foo\\Command\\XmlCommand");
+    }
+}
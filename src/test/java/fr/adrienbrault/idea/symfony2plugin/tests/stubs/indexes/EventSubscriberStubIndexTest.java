@@ -0,0 +1,44 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.EventSubscriberStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.EventSubscriberStubIndex
+ */
+public class EventSubscriberStubIndexTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void setUp() throws Exception {
+        super.setUp();
+        myFixture.copyFileToProject("EventSubscriberStubIndex.php");
+    }
+
+    public String getTestDataPath() {
+        return "src/test/java/fr/adrienbrault/idea/symfony2plugin/tests/stubs/indexes/fixtures";
+    }
+
+    public void testThatSubscribedEventsAreInIndex() {
+        assertIndexContains(EventSubscriberStubIndex.KEY, "foo.string", "foo.own", "#K#C\\Foo\\Events.FOREIGN");
+        assertIndexNotContains(EventSubscriberStubIndex.KEY, "foo.test");
+    }
+
+    public void testThatSubscribedEventValuesAreInIndex() {
+        assertIndexContainsKeyWithValue(EventSubscriberStubIndex.KEY, "foo.string", value ->
+            value.stream().anyMatch(event -> "Foo\\EventSubscriber\\FooSubscriber".equals(event.getClassName()) && "onString".equals(event.getMethodName()) && event.getPriority() == 0)
+        );
+
+        assertIndexContainsKeyWithValue(EventSubscriberStubIndex.KEY, "foo.string", value ->
+            value.stream().anyMatch(event -> "Foo\\EventSubscriber\\BarSubscriber".equals(event.getClassName()) && "onBarString".equals(event.getMethodName()))
+        );
+
+        assertIndexContainsKeyWithValue(EventSubscriberStubIndex.KEY, "foo.own", value ->
+            value.stream().anyMatch(event -> "onOwn".equals(event.getMethodName()) && event.getPriority() == -10)
+        );
+
+        assertIndexContainsKeyWithValue(EventSubscriberStubIndex.KEY, "#K#C\\Foo\\Events.FOREIGN", value ->
+            value.stream().anyMatch(event -> "onForeign".equals(event.getMethodName()) && event.getPriority() == 20)
+        );
+    }
+}
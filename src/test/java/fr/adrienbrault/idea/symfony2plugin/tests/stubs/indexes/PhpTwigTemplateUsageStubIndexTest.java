@@ -4,6 +4,8 @@ import com.jetbrains.php.lang.PhpFileType;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.PhpTwigTemplateUsageStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
 
+import java.util.Arrays;
+
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
  * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.PhpTwigTemplateUsageStubIndex
@@ -89,4 +91,24 @@ public class PhpTwigTemplateUsageStubIndexTest extends SymfonyLightCodeInsightFi
             "foo-annotation-property.html.twig".equals(value.getTemplate()) && value.getScopes().contains("Foobar.foobar")
         );
     }
+
+    public void testThatRenderVariablesAreInIndex() {
+        myFixture.configureByText(PhpFileType.INSTANCE, "<?php\n" +
+            "class Foo\n" +
+            "{\n" +
+            "   public function foobar() {\n" +
+            "       $vars['car'] = new \\DateTime();\n" +
+            "       $foo->render('foo-vars.html.twig', array_merge($vars, ['foo' => new \\DateTime()]));\n" +
+            "       $foo->render('foo-other.html.twig', ['other' => 'other']);\n" +
+            "   }\n" +
+            "}"
+        );
+
+        assertIndexContainsKeyWithValue(PhpTwigTemplateUsageStubIndex.KEY, "foo-vars.html.twig", value ->
+            value.getVariables().keySet().containsAll(Arrays.asList("foo", "car")) &&
+                !value.getVariables().containsKey("other") &&
+                value.getVariables().get("foo").getTypes().contains("\\DateTime") &&
+                value.getVariables().get("foo").getTextRange() != null
+        );
+    }
 }
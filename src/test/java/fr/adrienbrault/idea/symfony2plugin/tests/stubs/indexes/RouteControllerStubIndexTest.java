@@ -0,0 +1,46 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.RouteControllerStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.RouteControllerStubIndex
+ */
+public class RouteControllerStubIndexTest extends SymfonyLightCodeInsightFixtureTestCase {
+    public void setUp() throws Exception {
+        super.setUp();
+
+        myFixture.copyFileToProject("RoutesStubIndex.php");
+        myFixture.copyFileToProject("RoutesStubIndex.yml");
+        myFixture.copyFileToProject("RoutesStubIndex.xml");
+    }
+
+    public String getTestDataPath() {
+        return "src/test/java/fr/adrienbrault/idea/symfony2plugin/tests/stubs/indexes/fixtures";
+    }
+
+    public void testControllerIndexIsLowerCase() {
+        assertIndexContains(RouteControllerStubIndex.KEY,
+            "foo_controller", "foobundle:foo\\foo:index", "my\\postcontroller::editaction"
+        );
+
+        assertIndexNotContains(RouteControllerStubIndex.KEY,
+            "FooBundle:Foo\\Foo:index", "FooBundle:Foo/Foo:index"
+        );
+    }
+
+    public void testControllerValueContainsRouteNames() {
+        assertIndexContainsKeyWithValue(RouteControllerStubIndex.KEY, "foo_controller",
+            value -> value.contains("foo_yaml_pattern") && value.contains("foo_yaml_path")
+        );
+
+        assertIndexContainsKeyWithValue(RouteControllerStubIndex.KEY, "foobundle:foo\\foo:index",
+            value -> value.contains("foo_controller_normalized") || value.contains("foo_yaml_controller_normalized")
+        );
+
+        assertIndexContainsKeyWithValue(RouteControllerStubIndex.KEY, "my\\postcontroller::editaction",
+            value -> value.contains("blog_home")
+        );
+    }
+}
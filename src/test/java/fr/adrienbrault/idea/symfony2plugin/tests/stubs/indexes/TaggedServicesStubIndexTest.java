@@ -0,0 +1,61 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TaggedServicesStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import fr.adrienbrault.idea.symfony2plugin.util.dict.ServiceUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TaggedServicesStubIndex
+ */
+public class TaggedServicesStubIndexTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        myFixture.configureFromExistingVirtualFile(myFixture.copyFileToProject("tagged.services.xml"));
+        myFixture.configureFromExistingVirtualFile(myFixture.copyFileToProject("tagged.services.yml"));
+    }
+
+    public String getTestDataPath() {
+        return "src/test/java/fr/adrienbrault/idea/symfony2plugin/tests/stubs/indexes/fixtures";
+    }
+
+    public void testTagInIndex() {
+        assertIndexContains(TaggedServicesStubIndex.KEY, "xml_type_tag", "yaml_type_tag", "yaml_type_tag2", "yaml_type_tag21", "yaml_type_tag3");
+    }
+
+    public void testTaggedServiceValueInIndex() {
+        assertIndexContainsKeyWithValue(TaggedServicesStubIndex.KEY, "xml_type_tag", new MyStringContainsAssert("foo.tagged.xml_type"));
+        assertIndexContainsKeyWithValue(TaggedServicesStubIndex.KEY, "yaml_type_tag", new MyStringContainsAssert("foo.tagged.yaml_type"));
+
+        assertIndexContainsKeyWithValue(TaggedServicesStubIndex.KEY, "yaml_type_tag2", new MyStringContainsAssert("foo.tagged.yaml_type2"));
+        assertIndexContainsKeyWithValue(TaggedServicesStubIndex.KEY, "yaml_type_tag21", new MyStringContainsAssert("foo.tagged.yaml_type2"));
+
+        assertIndexContainsKeyWithValue(TaggedServicesStubIndex.KEY, "yaml_type_tag3", new MyStringContainsAssert("foo.tagged.yaml_type3"));
+    }
+
+    public void testTaggedServicesAreResolvedByTag() {
+        assertContainsElements(ServiceUtil.getTaggedServices(getProject(), "yaml_type_tag2"), "foo.tagged.yaml_type2");
+        assertContainsElements(ServiceUtil.getTaggedServices(getProject(), "xml_type_tag"), "foo.tagged.xml_type");
+        assertSize(0, ServiceUtil.getTaggedServices(getProject(), "unknown_tag"));
+    }
+
+    private static class MyStringContainsAssert implements IndexValue.Assert<Set<String>> {
+        @NotNull
+        private final String find;
+
+        public MyStringContainsAssert(@NotNull String find) {
+            this.find = find;
+        }
+
+        @Override
+        public boolean match(@NotNull Set<String> value) {
+            return value.contains(this.find);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TranslationKeyStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see TranslationKeyStubIndex
+ */
+public class TranslationKeyStubIndexTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void setUp() throws Exception {
+        super.setUp();
+        myFixture.copyFileToProject("messages.fr.xlf");
+        myFixture.copyFileToProject("messages+intl-icu.fr.xlf");
+        myFixture.copyFileToProject("fr.xlf");
+
+        myFixture.copyFileToProject("apple.de.yml", "Resources/translations/apple.de.yml");
+        myFixture.copyFileToProject("apple.de.yml", "Resources/translations/apple.en.yml");
+        myFixture.copyFileToProject("car.de.yml", "Resources/car.de.yml");
+    }
+
+    public String getTestDataPath() {
+        return "src/test/java/fr/adrienbrault/idea/symfony2plugin/tests/stubs/indexes/fixtures";
+    }
+
+    public void testThatDomainAndKeyOfYamlFileIsInIndexWithLocale() {
+        assertIndexContainsKeyWithValue(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("apple", "yaml_weak.symfony.great"), value -> "de".equals(value.getLocale()));
+        assertIndexContainsKeyWithValue(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("apple", "yaml_weak.symfony.great"), value -> "en".equals(value.getLocale()));
+
+        assertIndexNotContains(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("apple", "yaml_weak.symfony"));
+        assertIndexNotContains(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("car", "foo_yaml.symfony.great"));
+    }
+
+    public void testThatDomainAndKeyOfXlfIsInIndexWithLocale() {
+        assertIndexContainsKeyWithValue(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("messages", "Symfony is great"), value -> "fr".equals(value.getLocale()));
+        assertIndexContainsKeyWithValue(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("messages", "Hello {name}"), value -> "fr".equals(value.getLocale()));
+    }
+
+    public void testThatKeyOffsetIsInIndex() {
+        assertIndexContainsKeyWithValue(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("apple", "yaml_weak.symfony.great"), value ->
+            "yaml_weak:\n  symfony:\n    ".length() == value.getOffset()
+        );
+
+        assertIndexContainsKeyWithValue(TranslationKeyStubIndex.KEY, TranslationKeyStubIndex.createKey("apple", "yaml_weak.symfony.greater than"), value ->
+            "yaml_weak:\n  symfony:\n    great: 'YAML Symfony2 is great'\n    ".length() == value.getOffset()
+        );
+    }
+}
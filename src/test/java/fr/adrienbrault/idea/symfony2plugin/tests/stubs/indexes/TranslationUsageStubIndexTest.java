@@ -0,0 +1,52 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TranslationUsageStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see TranslationUsageStubIndex
+ */
+public class TranslationUsageStubIndexTest extends SymfonyLightCodeInsightFixtureTestCase {
+    public void setUp() throws Exception {
+        super.setUp();
+
+        myFixture.addFileToProject("foo.html.twig", "" +
+            "{{ 'twig_foo'|trans({}, 'twig_domain') }}\n" +
+            "{{ 'twig_bar'|trans }}\n"
+        );
+
+        myFixture.addFileToProject("default.html.twig", "" +
+            "{% trans_default_domain 'twig_default' %}\n" +
+            "{{ 'twig_default_foo'|transchoice(2) }}\n"
+        );
+
+        myFixture.addFileToProject("foo.php", "<?php\n" +
+            "$t->trans('php_foo', [], 'php_domain');\n" +
+            "$t->trans('php_bar');\n" +
+            "$t->transChoice('php_choice', 2, [], 'php_domain');\n" +
+            "$t->trans('php_unknown', [], $domain);\n" +
+            "$t->trans('php_$var', [], 'php_domain');\n"
+        );
+    }
+
+    public void testThatTwigTranslationUsagesAreIndexedWithDomain() {
+        assertIndexContains(TranslationUsageStubIndex.KEY, "twig_domain", "twig_default");
+
+        assertIndexContainsKeyWithValue(TranslationUsageStubIndex.KEY, "twig_domain", value -> value.contains("twig_foo"));
+        assertIndexContainsKeyWithValue(TranslationUsageStubIndex.KEY, "messages", value -> value.contains("twig_bar"));
+        assertIndexContainsKeyWithValue(TranslationUsageStubIndex.KEY, "twig_default", value -> value.contains("twig_default_foo"));
+    }
+
+    public void testThatPhpTranslationUsagesAreIndexedWithDomain() {
+        assertIndexContains(TranslationUsageStubIndex.KEY, "php_domain", "messages");
+
+        assertIndexContainsKeyWithValue(TranslationUsageStubIndex.KEY, "php_domain", value ->
+            value.contains("php_foo") && value.contains("php_choice") && !value.contains("php_$var")
+        );
+
+        assertIndexContainsKeyWithValue(TranslationUsageStubIndex.KEY, "messages", value ->
+            value.contains("php_bar") && !value.contains("php_unknown")
+        );
+    }
+}
@@ -0,0 +1,66 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
+
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigExtensionStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigExtensionParser;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigExtensionStubIndex
+ */
+public class TwigExtensionStubIndexTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void setUp() throws Exception {
+        super.setUp();
+        myFixture.copyFileToProject("TwigExtensionStubIndex.php");
+    }
+
+    public String getTestDataPath() {
+        return "src/test/java/fr/adrienbrault/idea/symfony2plugin/tests/stubs/indexes/fixtures";
+    }
+
+    public void testThatExtensionsAreInIndex() {
+        assertIndexContains(
+            TwigExtensionStubIndex.KEY,
+            "filter:app_filter", "filter:app_const", "function:app_function", "function:app_filter",
+            "test:app_test", "operator:app_not", "operator:app_or"
+        );
+
+        assertIndexNotContains(
+            TwigExtensionStubIndex.KEY,
+            "filter:app_*", "filter:app_foreign", "operator:app_invalid", "filter:app_test_filter"
+        );
+    }
+
+    public void testThatExtensionValuesAreInIndex() {
+        assertIndexContainsKeyWithValue(TwigExtensionStubIndex.KEY, "filter:app_filter", value ->
+            value.getTwigExtensionType() == TwigExtensionParser.TwigExtensionType.FILTER &&
+                "#M#C\\App\\Twig\\AppExtension.filter".equals(value.getSignature()) &&
+                "true".equals(value.getOptions().get("needs_environment"))
+        );
+
+        assertIndexContainsKeyWithValue(TwigExtensionStubIndex.KEY, "filter:app_const", value ->
+            "#Fstrtoupper".equals(value.getSignature())
+        );
+
+        assertIndexContainsKeyWithValue(TwigExtensionStubIndex.KEY, "function:app_function", value ->
+            value.getTwigExtensionType() == TwigExtensionParser.TwigExtensionType.SIMPLE_FUNCTION &&
+                "#M#C\\Foo\\Bar.baz".equals(value.getSignature()) &&
+                "true".equals(value.getOptions().get("needs_context"))
+        );
+
+        assertIndexContainsKeyWithValue(TwigExtensionStubIndex.KEY, "test:app_test", value ->
+            "#Fis_numeric".equals(value.getSignature())
+        );
+    }
+
+    public void testThatParserProvidesIndexedExtensions() {
+        TwigExtensionParser parser = new TwigExtensionParser(getProject());
+
+        assertEquals("#M#C\\App\\Twig\\AppExtension.filter", parser.getFilters().get("app_filter").getSignature());
+        assertEquals("#M#C\\App\\Twig\\AppExtension.filter", parser.getFunctions().get("app_filter").getSignature());
+        assertNotNull(parser.getSimpleTest().get("app_test"));
+        assertNotNull(parser.getOperators().get("app_or"));
+    }
+}
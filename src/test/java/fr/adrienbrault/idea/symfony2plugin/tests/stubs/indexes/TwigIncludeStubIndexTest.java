@@ -1,6 +1,7 @@
 package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes;
 
 import com.jetbrains.twig.TwigFileType;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TwigIncludeSite;
 import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigIncludeStubIndex;
 import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
 
@@ -54,4 +55,35 @@ public class TwigIncludeStubIndexTest extends SymfonyLightCodeInsightFixtureTest
             "@Foo/overwrite.html.twig", "form_theme_1.html.twig", "form_theme_2.html.twig", "form_theme_3.html.twig"
         );
     }
+
+    /**
+     * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.TwigIncludeStubIndex#getIndexer()
+     */
+    public void testThatGivenVariablesAreInIndex() {
+        myFixture.addFileToProject("variables.html.twig", "" +
+            "{% include 'include_with.html.twig' with {'foo': bar} only %}\n" +
+            "{{ include('include_func_with.html.twig', {'foo': bar}) }}\n" +
+            "{{ include('include_func_without_context.html.twig', with_context = false) }}\n"
+        );
+
+        assertIndexContainsKeyWithValue(TwigIncludeStubIndex.KEY, "include_with.html.twig", value -> value.stream().anyMatch(site ->
+            site.isOnly() && "bar".equals(site.getVariables().get("foo")) && "INCLUDE".equals(site.getType())
+        ));
+
+        assertIndexContainsKeyWithValue(TwigIncludeStubIndex.KEY, "include_func_with.html.twig", value -> value.stream().anyMatch(site ->
+            !site.isOnly() && "bar".equals(site.getVariables().get("foo"))
+        ));
+
+        assertIndexContainsKeyWithValue(TwigIncludeStubIndex.KEY, "include_func_without_context.html.twig", value -> value.stream().anyMatch(
+            TwigIncludeSite::isWithoutVariables
+        ));
+
+        assertIndexContainsKeyWithValue(TwigIncludeStubIndex.KEY, "source_quote.html.twig", value -> value.stream().anyMatch(
+            TwigIncludeSite::isWithoutVariables
+        ));
+
+        assertIndexContainsKeyWithValue(TwigIncludeStubIndex.KEY, "include_foo_quote.html.twig", value -> value.stream().anyMatch(site ->
+            !site.isOnly() && site.getVariables().isEmpty()
+        ));
+    }
 }
@@ -0,0 +1,154 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.indexes.externalizer;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.util.io.DataExternalizer;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.SerializableService;
+import fr.adrienbrault.idea.symfony2plugin.dic.container.ServiceSerializable;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.DispatcherEvent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.StubIndexedRoute;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.SubscribedEvent;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateUsage;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TemplateVariable;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.VoterAttribute;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.*;
+import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigExtension;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigExtensionParser;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.ServiceSerializableDataExternalizer
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.StubIndexedRouteDataExternalizer
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.TemplateUsageDataExternalizer
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.DispatcherEventDataExternalizer
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.VoterAttributeDataExternalizer
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.SubscribedEventDataExternalizer
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.indexes.externalizer.TwigExtensionDataExternalizer
+ */
+public class DataExternalizerTest extends Assert {
+
+    @Test
+    public void testServiceSerializableIsRestored() throws IOException {
+        SerializableService service = new SerializableService("foo.bar")
+            .setClassName("Foo\\Bar")
+            .setAlias("foo")
+            .setDecorates("bar")
+            .setParent("parent")
+            .setIsPublic(false)
+            .setIsLazy(true)
+            .setIsAutowire(true)
+            .setIsDeprecated(true);
+
+        ServiceSerializable read = saveAndRead(ServiceSerializableDataExternalizer.INSTANCE, service);
+
+        assertEquals(service, read);
+        assertFalse(read.isPublic());
+        assertFalse(read.isAbstract());
+        assertNull(read.getDecorationInnerName());
+
+        assertEquals(new SerializableService("foo"), saveAndRead(ServiceSerializableDataExternalizer.INSTANCE, new SerializableService("foo")));
+    }
+
+    @Test
+    public void testServiceSerializableIsSmallerThenObjectStream() throws IOException {
+        SerializableService service = new SerializableService("foo.bar").setClassName("Foo\\Bar").setIsLazy(true);
+
+        assertTrue(
+            save(ServiceSerializableDataExternalizer.INSTANCE, service).length * 10 < save(new ObjectStreamDataExternalizer<ServiceSerializable>(), service).length
+        );
+    }
+
+    @Test
+    public void testStubIndexedRouteIsRestored() throws IOException {
+        StubIndexedRoute route = new StubIndexedRoute("foo_route");
+        route.setController("Foo\\Bar::fooAction");
+        route.setPath("/foo/{bar}");
+        route.addMethod(new String[] {"GET", "POST"});
+
+        assertEquals(route, saveAndRead(StubIndexedRouteDataExternalizer.INSTANCE, route));
+
+        StubIndexedRoute empty = saveAndRead(StubIndexedRouteDataExternalizer.INSTANCE, new StubIndexedRoute("foo"));
+        assertNull(empty.getController());
+        assertNull(empty.getPath());
+        assertEquals(0, empty.getMethods().size());
+    }
+
+    @Test
+    public void testTemplateUsageIsRestored() throws IOException {
+        TemplateUsage usage = new TemplateUsage("foo.html.twig", new HashSet<>(Arrays.asList("Foo\\Bar.fooAction", "Foo\\Bar.barAction")));
+        assertEquals(usage, saveAndRead(TemplateUsageDataExternalizer.INSTANCE, usage));
+
+        Map<String, TemplateVariable> variables = new HashMap<>();
+        variables.put("foo", new TemplateVariable(new HashSet<>(Arrays.asList("\\Foo\\Bar", "#M#C\\Foo.bar")), TextRange.from(120, 8)));
+        variables.put("bar", new TemplateVariable(new HashSet<>(), null));
+
+        TemplateUsage usageWithVariables = new TemplateUsage("foo.html.twig", Collections.singletonList("Foo\\Bar.fooAction"), variables);
+        assertEquals(usageWithVariables, saveAndRead(TemplateUsageDataExternalizer.INSTANCE, usageWithVariables));
+    }
+
+    @Test
+    public void testDispatcherEventIsRestored() throws IOException {
+        DispatcherEvent event = new DispatcherEvent("Foo\\Events::FOO", "Foo\\Event");
+        assertEquals(event, saveAndRead(DispatcherEventDataExternalizer.INSTANCE, event));
+        assertEquals(new DispatcherEvent("Foo\\Events::FOO", null), saveAndRead(DispatcherEventDataExternalizer.INSTANCE, new DispatcherEvent("Foo\\Events::FOO", null)));
+        assertEquals(new DispatcherEvent(null, "Foo\\Event"), saveAndRead(DispatcherEventDataExternalizer.INSTANCE, new DispatcherEvent(null, "Foo\\Event")));
+        assertEquals(new DispatcherEvent(), saveAndRead(DispatcherEventDataExternalizer.INSTANCE, new DispatcherEvent()));
+    }
+
+    @Test
+    public void testVoterAttributeIsRestored() throws IOException {
+        VoterAttribute attribute = new VoterAttribute("Foo\\Voter", Arrays.asList(TextRange.from(10, 5), TextRange.from(300, 12)));
+        assertEquals(attribute, saveAndRead(VoterAttributeDataExternalizer.INSTANCE, attribute));
+
+        VoterAttribute yaml = new VoterAttribute(null, Collections.singletonList(TextRange.from(0, 3)));
+        assertEquals(yaml, saveAndRead(VoterAttributeDataExternalizer.INSTANCE, yaml));
+    }
+
+    @Test
+    public void testSubscribedEventIsRestored() throws IOException {
+        Collection<SubscribedEvent> events = Arrays.asList(
+            new SubscribedEvent("Foo\\Subscriber", "onFoo", -255),
+            new SubscribedEvent("Foo\\Subscriber", null, 0)
+        );
+
+        assertEquals(events, new ArrayList<>(saveAndRead(SubscribedEventDataExternalizer.INSTANCE, events)));
+    }
+
+    @Test
+    public void testTwigExtensionIsRestored() throws IOException {
+        TwigExtension extension = new TwigExtension(TwigExtensionParser.TwigExtensionType.SIMPLE_FUNCTION, "#M#C\\Foo\\Bar.baz", Collections.singletonMap("needs_context", "true"));
+        assertEquals(extension, saveAndRead(TwigExtensionDataExternalizer.INSTANCE, extension));
+
+        TwigExtension operator = new TwigExtension(TwigExtensionParser.TwigExtensionType.OPERATOR);
+        assertEquals(operator, saveAndRead(TwigExtensionDataExternalizer.INSTANCE, operator));
+    }
+
+    @NotNull
+    private static <T> byte[] save(@NotNull DataExternalizer<T> externalizer, @NotNull T value) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        externalizer.save(new DataOutputStream(stream), value);
+        return stream.toByteArray();
+    }
+
+    @NotNull
+    private static <T> T saveAndRead(@NotNull DataExternalizer<T> externalizer, @NotNull T value) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(save(externalizer, value)));
+
+        T read = externalizer.read(in);
+        assertEquals("all bytes must be consumed", 0, in.available());
+
+        return read;
+    }
+}
@@ -0,0 +1,55 @@
+<?php
+
+namespace Symfony\Component\Console\Command
+{
+    class Command
+    {
+        function setName($i) {}
+    }
+}
+
+namespace Foo\Command
+{
+    use Symfony\Component\Console\Command\Command;
+
+    class FooCommand extends Command
+    {
+        public function configure()
+        {
+            $this->setName('foo:configure');
+        }
+    }
+
+    class DefaultNameCommand extends Command
+    {
+        protected static $defaultName = 'foo:default_name';
+    }
+
+    class ConstCommand extends Command
+    {
+        const NAME = 'foo:const';
+
+        public function configure()
+        {
+            $this->setName(static::NAME);
+        }
+    }
+
+    class NoParent
+    {
+        public function configure()
+        {
+            $this->setName('foo:no_parent');
+        }
+    }
+}
+
+namespace Foo\Tests
+{
+    use Symfony\Component\Console\Command\Command;
+
+    class TestCommand extends Command
+    {
+        protected static $defaultName = 'foo:test';
+    }
+}
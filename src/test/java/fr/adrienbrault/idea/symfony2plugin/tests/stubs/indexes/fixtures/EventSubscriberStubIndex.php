@@ -0,0 +1,50 @@
+<?php
+
+namespace Foo
+{
+    class Events
+    {
+        const FOREIGN = 'foo.foreign';
+    }
+}
+
+namespace Foo\EventSubscriber
+{
+    use Foo\Events;
+    use Symfony\Component\EventDispatcher\EventSubscriberInterface;
+
+    class FooSubscriber implements EventSubscriberInterface
+    {
+        const OWN = 'foo.own';
+
+        public static function getSubscribedEvents()
+        {
+            return [
+                'foo.string' => 'onString',
+                self::OWN => ['onOwn', -10],
+                Events::FOREIGN => [['onForeign', 20], ['onForeignLater', 0]],
+            ];
+        }
+    }
+
+    class BarSubscriber implements EventSubscriberInterface
+    {
+        public static function getSubscribedEvents()
+        {
+            return ['foo.string' => 'onBarString'];
+        }
+    }
+}
+
+namespace Foo\Tests
+{
+    use Symfony\Component\EventDispatcher\EventSubscriberInterface;
+
+    class FooSubscriber implements EventSubscriberInterface
+    {
+        public static function getSubscribedEvents()
+        {
+            return ['foo.test' => 'onTest'];
+        }
+    }
+}
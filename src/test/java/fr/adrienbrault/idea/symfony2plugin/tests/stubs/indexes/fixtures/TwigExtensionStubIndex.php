@@ -0,0 +1,69 @@
+<?php
+
+namespace App\Twig
+{
+    use Twig\Extension\AbstractExtension;
+    use Twig\TwigFilter;
+    use Twig\TwigFunction;
+    use Twig\TwigTest;
+
+    class AppExtension extends AbstractExtension
+    {
+        const FILTER_NAME = 'app_const';
+
+        public function getFilters()
+        {
+            return [
+                new TwigFilter('app_filter', [$this, 'filter'], ['needs_environment' => true]),
+                new TwigFilter(self::FILTER_NAME, 'strtoupper'),
+                new TwigFilter('app_*', [$this, 'filter']),
+                new \Foo\TwigFilter('app_foreign', [$this, 'filter']),
+            ];
+        }
+
+        public function getFunctions()
+        {
+            return [
+                new TwigFunction('app_function', 'Foo\Bar::baz', ['needs_context' => true]),
+                new TwigFunction('app_filter', [$this, 'filter']),
+            ];
+        }
+
+        public function getTests()
+        {
+            return [
+                new TwigTest('app_test', 'is_numeric'),
+            ];
+        }
+
+        public function getOperators()
+        {
+            return [
+                ['app_not' => ['precedence' => 50]],
+                ['app_or' => ['precedence' => 10]],
+            ];
+        }
+    }
+
+    class OperatorWithoutExtension
+    {
+        public function getOperators()
+        {
+            return [['app_invalid' => []]];
+        }
+    }
+}
+
+namespace App\Tests\Twig
+{
+    use Twig\Extension\AbstractExtension;
+    use Twig\TwigFilter;
+
+    class AppExtensionTest extends AbstractExtension
+    {
+        public function getFilters()
+        {
+            return [new TwigFilter('app_test_filter', 'trim')];
+        }
+    }
+}
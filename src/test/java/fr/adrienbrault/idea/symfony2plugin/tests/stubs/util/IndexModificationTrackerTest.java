@@ -0,0 +1,54 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.stubs.util;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import fr.adrienbrault.idea.symfony2plugin.stubs.indexes.RoutesStubIndex;
+import fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import org.jetbrains.yaml.YAMLFileType;
+
+import java.util.Collection;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.stubs.util.IndexModificationTracker
+ */
+public class IndexModificationTrackerTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void testThatOnlyAcceptedFilesAreCounted() {
+        IndexModificationTracker tracker = IndexModificationTracker.getInstance(getProject(), RoutesStubIndex.KEY, file -> file.getFileType() == YAMLFileType.YML);
+
+        long modificationCount = tracker.getModificationCount();
+        myFixture.addFileToProject("tracker.txt", "foo");
+        assertEquals(modificationCount, tracker.getModificationCount());
+
+        VirtualFile virtualFile = myFixture.addFileToProject("tracker.yml", "foo: bar").getVirtualFile();
+        assertTrue(tracker.getModificationCount() > modificationCount);
+
+        Collection<VirtualFile> changedFiles = tracker.getChangedFiles(modificationCount);
+        assertNotNull(changedFiles);
+        assertTrue(changedFiles.contains(virtualFile));
+    }
+
+    public void testThatEditorChangesAreCounted() {
+        PsiFile psiFile = myFixture.addFileToProject("tracker_edit.yml", "foo: bar");
+        IndexModificationTracker tracker = IndexModificationTracker.getInstance(getProject(), RoutesStubIndex.KEY, file -> file.getFileType() == YAMLFileType.YML);
+
+        long modificationCount = tracker.getModificationCount();
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            PsiDocumentManager manager = PsiDocumentManager.getInstance(getProject());
+            manager.getDocument(psiFile).insertString(0, "car: car\n");
+            manager.commitAllDocuments();
+        });
+
+        assertTrue(tracker.getModificationCount() > modificationCount);
+
+        Collection<VirtualFile> changedFiles = tracker.getChangedFiles(modificationCount);
+        assertNotNull(changedFiles);
+        assertTrue(changedFiles.contains(psiFile.getVirtualFile()));
+        assertTrue(tracker.getChangedFiles(tracker.getModificationCount()).isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.templating.path;
+
+import fr.adrienbrault.idea.symfony2plugin.Settings;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigNamespaceRegistry;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigNamespaceSetting;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyTempCodeInsightFixtureTestCase;
+
+import java.util.Collections;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.templating.path.TwigNamespaceRegistry
+ */
+public class TwigNamespaceRegistryTempTest extends SymfonyTempCodeInsightFixtureTestCase {
+
+    public void testThatNamespacesAreProvidedByNameAndDirectory() {
+        createFile("templates/foo/bar.html.twig");
+
+        TwigNamespaceRegistry registry = TwigNamespaceRegistry.getInstance(getProject());
+
+        assertTrue(registry.getNamespacePaths(TwigUtil.MAIN).stream().anyMatch(twigPath -> twigPath.getPath().endsWith("templates")));
+        assertEquals(0, registry.getNamespacePaths("UnknownNamespace").size());
+
+        assertTrue(registry.getRelativePathsForFile(getProject().getBaseDir().findFileByRelativePath("templates/foo/bar.html.twig")).stream().allMatch(pair -> pair.getFirst().isGlobalNamespace()));
+        assertEquals(0, registry.getRelativePathsForFile(getProject().getBaseDir()).size());
+    }
+
+    public void testThatModificationCountIsOnlyChangedOnNamespaceChanges() {
+        createFile("templates/foo.html.twig");
+
+        TwigNamespaceRegistry registry = TwigNamespaceRegistry.getInstance(getProject());
+        long modificationCount = registry.getModificationCount();
+        assertEquals(modificationCount, registry.getModificationCount());
+
+        Settings.getInstance(getProject()).twigNamespaces = Collections.singletonList(
+            new TwigNamespaceSetting("Custom", "templates", true, TwigUtil.NamespaceType.ADD_PATH, true)
+        );
+
+        assertTrue(registry.getModificationCount() > modificationCount);
+        assertEquals(1, registry.getNamespacePaths("Custom").size());
+        assertTrue(TwigUtil.getTemplateNamesForFile(getProject(), getProject().getBaseDir().findFileByRelativePath("templates/foo.html.twig")).contains("@Custom/foo.html.twig"));
+    }
+
+    public void testThatModificationCountIsKeptOnCreatedTemplates() {
+        createFile("templates/foo.html.twig");
+
+        TwigNamespaceRegistry registry = TwigNamespaceRegistry.getInstance(getProject());
+        long modificationCount = registry.getModificationCount();
+
+        createFile("templates/bar/bar.html.twig");
+        assertEquals(modificationCount, registry.getModificationCount());
+        assertTrue(registry.getRelativePathsForFile(getProject().getBaseDir().findFileByRelativePath("templates/bar/bar.html.twig")).stream().anyMatch(pair -> "bar/bar.html.twig".equals(pair.getSecond())));
+    }
+}
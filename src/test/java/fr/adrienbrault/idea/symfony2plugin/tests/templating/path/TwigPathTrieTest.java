@@ -0,0 +1,82 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.templating.path;
+
+import com.intellij.openapi.util.Pair;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPath;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPathTrie;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPathTrie
+ */
+public class TwigPathTrieTest extends Assert {
+
+    @Test
+    public void testThatAllParentDirectoriesAreFoundInOrder() {
+        TwigPath bundle = new TwigPath("/project/src/FooBundle/Resources/views", "Foo");
+        TwigPath templates = new TwigPath("/project/templates", "App");
+        TwigPath main = new TwigPath("/project/templates");
+        TwigPath src = new TwigPath("/project/src", "Src");
+
+        TwigPathTrie trie = new TwigPathTrie();
+        trie.add(bundle.getPath(), bundle);
+        trie.add(templates.getPath(), templates);
+        trie.add(main.getPath(), main);
+        trie.add(src.getPath(), src);
+
+        assertEquals(Arrays.asList(templates, main), getRoots(trie, "/project/templates/foo/bar.html.twig"));
+        assertEquals(Arrays.asList(bundle, src), getRoots(trie, "/project/src/FooBundle/Resources/views/foo.html.twig"));
+        assertEquals(Arrays.asList(templates, main), getRoots(trie, "/project/templates"));
+    }
+
+    @Test
+    public void testThatPartialSegmentsAreNotMatched() {
+        TwigPath templates = new TwigPath("/project/templates");
+
+        TwigPathTrie trie = new TwigPathTrie();
+        trie.add(templates.getPath(), templates);
+
+        List<TwigPath> roots = getRoots(trie, "/project/templates_foo/foo.html.twig");
+        assertEquals(0, roots.size());
+        assertEquals(0, getRoots(trie, "/project").size());
+    }
+
+    @Test
+    public void testThatPathsRelativeToRootsAreProvided() {
+        TwigPath templates = new TwigPath("/project/templates");
+        TwigPath foo = new TwigPath("/project/templates/foo", "Foo");
+
+        TwigPathTrie trie = new TwigPathTrie();
+        trie.add(templates.getPath(), templates);
+        trie.add(foo.getPath() + "/", foo);
+
+        List<Pair<TwigPath, String>> paths = trie.getRelativePaths("/project/templates/foo/bar/car.html.twig");
+        assertEquals(2, paths.size());
+
+        assertEquals(templates, paths.get(0).getFirst());
+        assertEquals("foo/bar/car.html.twig", paths.get(0).getSecond());
+
+        assertEquals(foo, paths.get(1).getFirst());
+        assertEquals("bar/car.html.twig", paths.get(1).getSecond());
+    }
+
+    @Test
+    public void testThatWindowsPathsAreSupported() {
+        TwigPath templates = new TwigPath("C:\\project\\templates");
+
+        TwigPathTrie trie = new TwigPathTrie();
+        trie.add(templates.getPath(), templates);
+
+        assertEquals(1, getRoots(trie, "C:/project/templates/foo.html.twig").size());
+    }
+
+    private static List<TwigPath> getRoots(TwigPathTrie trie, String path) {
+        return trie.getRelativePaths(path).stream().map(pair -> pair.getFirst()).collect(Collectors.toList());
+    }
+}
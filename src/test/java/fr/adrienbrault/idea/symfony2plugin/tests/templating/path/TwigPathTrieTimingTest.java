@@ -0,0 +1,118 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.templating.path;
+
+import com.intellij.openapi.util.Pair;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPath;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPathTrie;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timing harness of the trie lookup against the previous loop over all Twig paths; 400 bundle directories and the
+ * "templates" directory. Timings are only printed, the test asserts that both lookups provide the same result.
+ *
+ * Run with "./gradlew test --tests *TwigPathTrieTimingTest" to compare both on the current machine
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPathTrie
+ */
+public class TwigPathTrieTimingTest extends Assert {
+
+    private static final int BUNDLES = 400;
+
+    private static final int WARMUP = 20000;
+
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void testThatTrieAndLoopProvideSameRelativePaths() {
+        List<TwigPath> twigPaths = createTwigPaths();
+
+        TwigPathTrie trie = new TwigPathTrie();
+        for (TwigPath twigPath : twigPaths) {
+            trie.add(twigPath.getPath(), twigPath);
+        }
+
+        String[] files = new String[] {
+            "/project/src/Vendor/Bundle200Bundle/Resources/views/Default/index.html.twig",
+            "/project/templates/base.html.twig",
+            "/project/var/cache/foo.html.twig",
+        };
+
+        for (String file : files) {
+            assertEquals(getRelativePathsByLoop(twigPaths, file), trie.getRelativePaths(file));
+        }
+
+        long trieNanos = measure(() -> {
+            for (String file : files) {
+                trie.getRelativePaths(file);
+            }
+        });
+
+        long loopNanos = measure(() -> {
+            for (String file : files) {
+                getRelativePathsByLoop(twigPaths, file);
+            }
+        });
+
+        System.out.println(String.format(
+            "TwigPathTrie: %d paths, %d lookups per run; trie %.3fus, loop %.3fus per lookup",
+            twigPaths.size(),
+            files.length,
+            trieNanos / 1000.0 / files.length,
+            loopNanos / 1000.0 / files.length
+        ));
+    }
+
+    /**
+     * Nanos per run after a warmup, so the JIT compiled both variants
+     */
+    private static long measure(Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++) {
+            runnable.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private static List<TwigPath> createTwigPaths() {
+        List<TwigPath> twigPaths = new ArrayList<>();
+
+        for (int i = 0; i < BUNDLES; i++) {
+            twigPaths.add(new TwigPath(String.format("/project/src/Vendor/Bundle%dBundle/Resources/views", i), "Bundle" + i));
+        }
+
+        twigPaths.add(new TwigPath("/project/templates"));
+
+        return twigPaths;
+    }
+
+    /**
+     * Previous lookup: per Twig path a walk over the parent directories of the file, as VfsUtil.getRelativePath did
+     */
+    private static List<Pair<TwigPath, String>> getRelativePathsByLoop(List<TwigPath> twigPaths, String file) {
+        List<Pair<TwigPath, String>> relativePaths = new ArrayList<>();
+
+        for (TwigPath twigPath : twigPaths) {
+            String parent = file;
+            int index;
+            while ((index = parent.lastIndexOf('/')) > 0) {
+                parent = parent.substring(0, index);
+                if(parent.equals(twigPath.getPath())) {
+                    relativePaths.add(Pair.create(twigPath, file.substring(index + 1)));
+                    break;
+                }
+            }
+        }
+
+        return relativePaths;
+    }
+}
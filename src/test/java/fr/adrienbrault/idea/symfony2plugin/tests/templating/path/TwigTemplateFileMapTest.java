@@ -0,0 +1,95 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.templating.path;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPath;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigTemplateFileMap;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+import java.io.IOException;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.templating.path.TwigTemplateFileMap
+ */
+public class TwigTemplateFileMapTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void testThatCreatedTemplateIsResolvedAfterUnknownLookup() {
+        assertEquals(0, TwigUtil.getTemplateFiles(getProject(), "foo.html.twig").size());
+
+        VirtualFile virtualFile = myFixture.addFileToProject("app/Resources/views/foo.html.twig", "").getVirtualFile();
+
+        assertContainsElements(TwigUtil.getTemplateFiles(getProject(), "foo.html.twig"), virtualFile);
+        assertContainsElements(TwigUtil.getTemplateFiles(getProject(), "::foo.html.twig"), virtualFile);
+    }
+
+    public void testThatRenamedTemplateIsNotResolvedByItsOldName() {
+        VirtualFile virtualFile = myFixture.addFileToProject("app/Resources/views/foo.html.twig", "").getVirtualFile();
+        assertContainsElements(TwigUtil.getTemplateFiles(getProject(), "foo.html.twig"), virtualFile);
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                virtualFile.rename(this, "bar.html.twig");
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertEquals(0, TwigUtil.getTemplateFiles(getProject(), "foo.html.twig").size());
+        assertContainsElements(TwigUtil.getTemplateFiles(getProject(), "bar.html.twig"), virtualFile);
+    }
+
+    public void testThatTemplatesAreResolvedByTheirPathInsideTheNamespace() {
+        VirtualFile virtualFile = myFixture.addFileToProject("app/Resources/views/foo/bar.html.twig", "").getVirtualFile();
+
+        TwigPath twigPath = TwigUtil.getTwigNamespaces(getProject()).stream()
+            .filter(path -> path.isGlobalNamespace() && path.getNamespaceType() == TwigUtil.NamespaceType.BUNDLE)
+            .findFirst()
+            .orElse(null);
+
+        assertNotNull(twigPath);
+
+        TwigTemplateFileMap fileMap = TwigTemplateFileMap.getInstance(getProject());
+        assertEquals(virtualFile, fileMap.getFile(twigPath, "foo/bar.html.twig"));
+        assertEquals(virtualFile, fileMap.getFile(twigPath, "foo//./bar.html.twig"));
+        assertEquals(virtualFile, fileMap.getFile(twigPath, "foo/../foo/bar.html.twig"));
+        assertNull(fileMap.getFile(twigPath, "foo/unknown.html.twig"));
+    }
+
+    public void testThatMovedAndDeletedTemplatesAreUpdated() {
+        VirtualFile virtualFile = myFixture.addFileToProject("app/Resources/views/foo/bar.html.twig", "").getVirtualFile();
+        VirtualFile target = myFixture.addFileToProject("app/Resources/views/target/keep.html.twig", "").getVirtualFile().getParent();
+
+        assertContainsElements(TwigUtil.getTemplateFiles(getProject(), "::foo/bar.html.twig"), virtualFile);
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                virtualFile.move(this, target);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertEquals(0, TwigUtil.getTemplateFiles(getProject(), "::foo/bar.html.twig").size());
+        assertContainsElements(TwigUtil.getTemplateFiles(getProject(), "::target/bar.html.twig"), virtualFile);
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                virtualFile.delete(this);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertEquals(0, TwigUtil.getTemplateFiles(getProject(), "::target/bar.html.twig").size());
+    }
+
+    public void testThatResultCanBeModifiedByCaller() {
+        myFixture.addFileToProject("app/Resources/views/foo.html.twig", "");
+
+        TwigUtil.getTemplateFiles(getProject(), "foo.html.twig").clear();
+        assertEquals(1, TwigUtil.getTemplateFiles(getProject(), "foo.html.twig").size());
+    }
+}
@@ -0,0 +1,122 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.templating.path;
+
+import com.intellij.codeInsight.completion.PrefixMatcher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigTemplateNameStore;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.templating.path.TwigTemplateNameStore
+ */
+public class TwigTemplateNameStoreTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void testThatNamesAreFoundByStartOfAnyWord() {
+        myFixture.addFileToProject("app/Resources/views/layout/base_layout.html.twig", "");
+        myFixture.addFileToProject("app/Resources/views/foo.html.twig", "");
+
+        assertContainsElements(getNames("base"), "layout/base_layout.html.twig");
+        assertContainsElements(getNames("LAY"), "layout/base_layout.html.twig");
+        assertContainsElements(getNames("layout/base"), "layout/base_layout.html.twig");
+
+        assertDoesntContain(getNames("base"), "foo.html.twig");
+        assertDoesntContain(getNames("out"), "layout/base_layout.html.twig");
+
+        List<String> names = getNames("html");
+        assertEquals(1, names.stream().filter("foo.html.twig"::equals).count());
+    }
+
+    public void testThatCreatedAndDeletedFilesAreUpdated() {
+        assertDoesntContain(getNames("car"), "car.html.twig");
+
+        VirtualFile virtualFile = myFixture.addFileToProject("app/Resources/views/car.html.twig", "").getVirtualFile();
+        assertContainsElements(getNames("car"), "car.html.twig");
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                virtualFile.delete(this);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertDoesntContain(getNames("car"), "car.html.twig");
+    }
+
+    public void testThatCreatedFilesOutsideOfVisitedDirectoriesAreNotAdded() {
+        myFixture.addFileToProject("app/Resources/views/a/b/c/d/e/f/g/h/deep.txt", "");
+        myFixture.addFileToProject("app/Resources/views/a/shallow.txt", "");
+        assertDoesntContain(getNames("deep"), "a/b/c/d/e/f/g/h/deep.html.twig");
+
+        // directories exist already; so only the file itself is updated
+        myFixture.addFileToProject("app/Resources/views/a/b/c/d/e/f/g/h/deep.html.twig", "");
+        myFixture.addFileToProject("app/Resources/views/a/shallow.html.twig", "");
+
+        assertDoesntContain(getNames("deep"), "a/b/c/d/e/f/g/h/deep.html.twig");
+        assertContainsElements(getNames("shallow"), "a/shallow.html.twig");
+    }
+
+    public void testThatProcessingCanBeStopped() {
+        myFixture.addFileToProject("app/Resources/views/foo.html.twig", "");
+        myFixture.addFileToProject("app/Resources/views/foo_bar.html.twig", "");
+
+        List<String> names = new ArrayList<>();
+        TwigTemplateNameStore.getInstance(getProject()).processTemplateNames("foo", false, templateName -> {
+            names.add(templateName.getName());
+            return false;
+        });
+
+        assertEquals(1, names.size());
+    }
+
+    public void testThatPrefixMatcherAlsoProvidesMiddleMatches() {
+        myFixture.addFileToProject("app/Resources/views/layout.html.twig", "");
+        myFixture.addFileToProject("app/Resources/views/outer.html.twig", "");
+        myFixture.addFileToProject("app/Resources/views/base.html.twig", "");
+
+        PrefixMatcher prefixMatcher = new PrefixMatcher("out") {
+            @Override
+            public boolean prefixMatches(@NotNull String name) {
+                return name.contains(getPrefix());
+            }
+
+            @NotNull
+            @Override
+            public PrefixMatcher cloneWithPrefix(@NotNull String prefix) {
+                return this;
+            }
+        };
+
+        List<String> names = new ArrayList<>();
+        TwigTemplateNameStore.getInstance(getProject()).processTemplateNames(prefixMatcher, false, templateName -> {
+            names.add(templateName.getName());
+            return true;
+        });
+
+        // word start matches first
+        assertTrue(names.get(0).endsWith("outer.html.twig"));
+        assertContainsElements(names, "layout.html.twig");
+        assertDoesntContain(names, "base.html.twig");
+        assertEquals(names.size(), new HashSet<>(names).size());
+    }
+
+    @NotNull
+    private List<String> getNames(@NotNull String prefix) {
+        List<String> names = new ArrayList<>();
+
+        TwigTemplateNameStore.getInstance(getProject()).processTemplateNames(prefix, false, templateName -> {
+            names.add(templateName.getName());
+            return true;
+        });
+
+        return names;
+    }
+}
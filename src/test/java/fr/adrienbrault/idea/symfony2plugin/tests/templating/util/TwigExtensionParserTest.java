@@ -120,4 +120,52 @@ public class TwigExtensionParserTest extends SymfonyLightCodeInsightFixtureTestC
             extensionParser.getSimpleTest().get("iterable_3").getSignature()
         );
     }
+
+    public void testThatDuplicateExtensionPrefersRegisteredExtension() {
+        myFixture.addFileToProject("a/ADuplicateExtension.php", "<?php\n" +
+            "class ADuplicateExtension\n" +
+            "{\n" +
+            "    public function getFilters() { return [new \\Twig_SimpleFilter('duplicate_filter', [$this, 'a'])]; }\n" +
+            "}\n"
+        );
+
+        myFixture.addFileToProject("b/BDuplicateExtension.php", "<?php\n" +
+            "class BDuplicateExtension\n" +
+            "{\n" +
+            "    public function getFilters() { return [new \\Twig_SimpleFilter('duplicate_filter', [$this, 'b'])]; }\n" +
+            "}\n"
+        );
+
+        // without registered extension the file path wins
+        assertEquals("#M#C\\ADuplicateExtension.a", new TwigExtensionParser(getProject()).getFilters().get("duplicate_filter").getSignature());
+
+        myFixture.addFileToProject("services.yml", "services:\n" +
+            "  b_duplicate_extension:\n" +
+            "    class: BDuplicateExtension\n" +
+            "    tags: [ { name: twig.extension } ]\n"
+        );
+
+        assertEquals("#M#C\\BDuplicateExtension.b", new TwigExtensionParser(getProject()).getFilters().get("duplicate_filter").getSignature());
+    }
+
+    public void testThatChangedExtensionFileIsUpdated() {
+        myFixture.addFileToProject("ChangedExtension.php", "<?php\n" +
+            "class ChangedExtension\n" +
+            "{\n" +
+            "    public function getFilters() { return [new \\Twig_SimpleFilter('changed_filter', 'foo')]; }\n" +
+            "}\n"
+        );
+
+        assertNotNull(new TwigExtensionParser(getProject()).getFilters().get("changed_filter"));
+
+        myFixture.addFileToProject("ChangedExtension.php", "<?php\n" +
+            "class ChangedExtension\n" +
+            "{\n" +
+            "    public function getFilters() { return [new \\Twig_SimpleFilter('changed_filter_renamed', 'foo')]; }\n" +
+            "}\n"
+        );
+
+        assertNull(new TwigExtensionParser(getProject()).getFilters().get("changed_filter"));
+        assertNotNull(new TwigExtensionParser(getProject()).getFilters().get("changed_filter_renamed"));
+    }
 }
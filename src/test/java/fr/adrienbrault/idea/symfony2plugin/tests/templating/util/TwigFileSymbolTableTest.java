@@ -0,0 +1,81 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.templating.util;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.jetbrains.twig.TwigFileType;
+import com.jetbrains.twig.elements.TwigElementTypes;
+import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigMacro;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigFileSymbolTable;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+import java.util.Collection;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.templating.util.TwigFileSymbolTable
+ */
+public class TwigFileSymbolTableTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void testThatSymbolsAreCollectedWithRanges() {
+        PsiFile psiFile = myFixture.configureByText(TwigFileType.INSTANCE, "" +
+            "{% from 'macros.html.twig' import foobar as input, car %}\n" +
+            "{% import _self as macros %}\n" +
+            "{% macro my_macro(name) %}{% endmacro %}\n" +
+            "{% set foo = 'foo' %}"
+        );
+
+        TwigFileSymbolTable symbolTable = TwigFileSymbolTable.getInstance(psiFile);
+        assertSame(symbolTable, TwigFileSymbolTable.getInstance(psiFile));
+
+        assertTrue(symbolTable.getMacroImports().stream().anyMatch(macroImport ->
+            "input".equals(macroImport.getName()) && "foobar".equals(macroImport.getOriginalName()) && "macros.html.twig".equals(macroImport.getTemplate())
+        ));
+
+        assertTrue(symbolTable.getMacroImports().stream().anyMatch(macroImport ->
+            "car".equals(macroImport.getName()) && macroImport.getOriginalName() == null
+        ));
+
+        assertTrue(symbolTable.getNamespaceImports().stream().anyMatch(namespaceImport ->
+            "macros".equals(namespaceImport.getAlias()) && "_self".equals(namespaceImport.getTemplate())
+        ));
+
+        TwigFileSymbolTable.Macro macro = symbolTable.getMacros().iterator().next();
+        assertEquals("my_macro", macro.getName());
+        assertEquals("(name)", macro.getParameters());
+        assertEquals("{% macro my_macro(name) %}{% endmacro %}", macro.getTextRange().substring(psiFile.getText()));
+
+        TwigFileSymbolTable.SetDeclaration setDeclaration = symbolTable.getSetDeclarations().iterator().next();
+        assertEquals("foo", setDeclaration.getName());
+        assertEquals("foo", setDeclaration.getTextRange().substring(psiFile.getText()));
+    }
+
+    public void testThatForeignMacroTargetsAreResolvedForFilesProvidingThem() {
+        myFixture.addFileToProject("app/Resources/views/macros.html.twig", "" +
+            "{% macro foobar(name) %}{% endmacro %}\n"
+        );
+
+        myFixture.addFileToProject("app/Resources/views/macros_other.html.twig", "" +
+            "{% macro other %}{% endmacro %}\n"
+        );
+
+        PsiFile psiFile = myFixture.configureByText(TwigFileType.INSTANCE, "" +
+            "{% from 'macros.html.twig' import foobar as input %}\n" +
+            "{% import 'macros.html.twig' as macros %}\n"
+        );
+
+        Collection<PsiElement> targets = TwigUtil.getImportedMacros(psiFile, "input");
+        assertEquals(1, targets.size());
+        assertEquals(TwigElementTypes.MACRO_TAG, targets.iterator().next().getNode().getElementType());
+        assertEquals("macros.html.twig", targets.iterator().next().getContainingFile().getName());
+
+        assertEquals(1, TwigUtil.getImportedMacrosNamespaces(psiFile, "macros.foobar").size());
+        assertEquals(0, TwigUtil.getImportedMacrosNamespaces(psiFile, "macros.other").size());
+
+        Collection<TwigMacro> macros = TwigUtil.getImportedMacrosNamespaces(psiFile);
+        assertTrue(macros.stream().anyMatch(twigMacro ->
+            "macros.foobar".equals(twigMacro.getName()) && "(name)".equals(twigMacro.getParameter())
+        ));
+    }
+}
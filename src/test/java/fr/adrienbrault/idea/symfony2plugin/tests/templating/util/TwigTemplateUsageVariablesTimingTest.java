@@ -0,0 +1,96 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.templating.util;
+
+import com.jetbrains.php.lang.psi.elements.Function;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.PhpMethodVariableResolveUtil;
+import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timing harness of the template variables of 2000 render calls; read from the usage index against the previous
+ * resolving of every usage scope to its method with a visit of the method body. Timings are only printed,
+ * the test asserts that both provide the same variable names.
+ *
+ * Run with "./gradlew test --tests *TwigTemplateUsageVariablesTimingTest" to compare both on the current machine
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil#getTemplateUsageVariablesOnIndex
+ */
+public class TwigTemplateUsageVariablesTimingTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    private static final int CONTROLLERS = 200;
+
+    private static final int ACTIONS = 10;
+
+    private static final int ITERATIONS = 20;
+
+    private static final Collection<String> TEMPLATE_NAMES = Collections.singletonList("timing.html.twig");
+
+    public void testThatIndexAndMethodVisitProvideSameVariables() {
+        for (int i = 0; i < CONTROLLERS; i++) {
+            StringBuilder content = new StringBuilder("<?php\nclass Timing" + i + "Controller\n{\n");
+
+            for (int j = 0; j < ACTIONS; j++) {
+                content.append(String.format(
+                    "    public function action%dAction() {\n" +
+                    "        $form = $this->createForm();\n" +
+                    "        return $this->render('timing.html.twig', ['var%d_%d' => $form->createView(), 'title' => 'foo']);\n" +
+                    "    }\n",
+                    j, i, j
+                ));
+            }
+
+            myFixture.addFileToProject("src/Timing" + i + "Controller.php", content.append("}\n").toString());
+        }
+
+        Map<String, PsiVariable> indexVariables = TwigUtil.getTemplateUsageVariablesOnIndex(getProject(), TEMPLATE_NAMES);
+        Map<String, PsiVariable> methodVariables = getMethodVariables();
+
+        assertEquals(CONTROLLERS * ACTIONS + 1, indexVariables.size());
+        assertEquals(methodVariables.keySet(), indexVariables.keySet());
+
+        // first runs also load stubs and psi; so both are measured afterwards
+        long indexNanos = measure(() -> TwigUtil.getTemplateUsageVariablesOnIndex(getProject(), TEMPLATE_NAMES));
+        long methodNanos = measure(this::getMethodVariables);
+
+        System.out.println(String.format(
+            "Template usage variables: %d render calls; index %.2fms, method visit %.2fms per lookup",
+            CONTROLLERS * ACTIONS,
+            indexNanos / 1000000.0,
+            methodNanos / 1000000.0
+        ));
+    }
+
+    /**
+     * Previous lookup: every usage scope is resolved to its method, whose body is visited for template variables
+     */
+    private Map<String, PsiVariable> getMethodVariables() {
+        Map<String, PsiVariable> variables = new HashMap<>();
+
+        for (Function method : TwigUtil.getTwigFileMethodUsageOnIndex(getProject(), TEMPLATE_NAMES)) {
+            variables.putAll(PhpMethodVariableResolveUtil.collectMethodVariables(method));
+        }
+
+        return variables;
+    }
+
+    /**
+     * Nanos per run after a warmup run
+     */
+    private static long measure(Runnable runnable) {
+        runnable.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
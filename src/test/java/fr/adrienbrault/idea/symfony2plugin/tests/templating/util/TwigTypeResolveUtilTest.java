@@ -1,5 +1,8 @@
 package fr.adrienbrault.idea.symfony2plugin.tests.templating.util;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileFactory;
@@ -13,6 +16,8 @@ import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
 import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -84,6 +89,80 @@ public class TwigTypeResolveUtilTest extends SymfonyLightCodeInsightFixtureTestC
         assertContainsElements(stringPsiVariableMap.get("b").getTypes(), "\\Foo\\Bar");
     }
 
+    /**
+     * @see TwigTypeResolveUtil#collectScopeVariables
+     */
+    public void testThatCachedFileScopeVariablesAreNotChangedByElementScope() {
+        PsiFile psiFile = myFixture.configureByText(TwigFileType.INSTANCE,
+            "{# @var bar \\Foo\\Bar #}\n" +
+                "{# @var bars \\Foo\\Car[] #}\n" +
+                "{% for bar in bars %}\n" +
+                "    {{ <caret> }}\n" +
+                "{% endfor %}\n" +
+                "{{ foo }}"
+        );
+
+        // "for" merges its types into the existing "bar"
+        Map<String, PsiVariable> forScope = TwigTypeResolveUtil.collectScopeVariables(psiFile.findElementAt(myFixture.getCaretOffset()));
+        assertContainsElements(forScope.get("bar").getTypes(), "\\Foo\\Bar");
+
+        Map<String, PsiVariable> fileScope = TwigTypeResolveUtil.collectScopeVariables(psiFile.findElementAt(psiFile.getText().indexOf("foo }}")));
+        assertEquals(Collections.singleton("\\Foo\\Bar"), fileScope.get("bar").getTypes());
+        assertEquals(Collections.singleton("\\Foo\\Car[]"), fileScope.get("bars").getTypes());
+    }
+
+    /**
+     * @see TwigTypeResolveUtil#collectScopeVariables
+     */
+    public void testThatFileScopeVariablesAreUpdatedOnControllerChange() {
+        VirtualFile controller = myFixture.addFileToProject("src/FooController.php", "<?php\n" +
+            "class FooController {\n" +
+            "    public function fooAction() {\n" +
+            "        $this->render('foo.html.twig', ['foo' => 'foo']);\n" +
+            "    }\n" +
+            "}"
+        ).getVirtualFile();
+
+        PsiFile psiFile = myFixture.addFileToProject("app/Resources/views/foo.html.twig", "{{ foo }}");
+        PsiElement psiElement = psiFile.findElementAt(3);
+
+        assertContainsElements(TwigTypeResolveUtil.collectScopeVariables(psiElement).keySet(), "foo");
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                VfsUtil.saveText(controller, VfsUtil.loadText(controller).replace("'foo' =>", "'car' =>"));
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        Map<String, PsiVariable> variables = TwigTypeResolveUtil.collectScopeVariables(psiElement);
+        assertContainsElements(variables.keySet(), "car");
+        assertDoesntContain(variables.keySet(), "foo");
+    }
+
+    /**
+     * @see TwigTypeResolveUtil#collectScopeVariables
+     */
+    public void testThatIncludeGivesVariablesOfIncludingScope() {
+        myFixture.addFileToProject("app/Resources/views/page.html.twig", "" +
+            "{# @var bar \\Foo\\Bar #}\n" +
+            "{# @var car \\Foo\\Car #}\n" +
+            "{% include 'part.html.twig' with {'foo': bar} only %}"
+        );
+
+        myFixture.addFileToProject("app/Resources/views/list.html.twig", "" +
+            "{# @var apple \\Foo\\Apple #}\n" +
+            "{{ include('part.html.twig', with_context = false) }}"
+        );
+
+        PsiFile psiFile = myFixture.addFileToProject("app/Resources/views/part.html.twig", "{{ foo }}");
+
+        Map<String, PsiVariable> variables = TwigTypeResolveUtil.collectScopeVariables(psiFile.findElementAt(3));
+        assertContainsElements(variables.get("foo").getTypes(), "\\Foo\\Bar");
+        assertDoesntContain(variables.keySet(), "car", "apple");
+    }
+
     private void assertMatches(@NotNull String content, @NotNull String... regularExpressions) {
         for (String regularExpression : regularExpressions) {
             if(content.matches(regularExpression)) {
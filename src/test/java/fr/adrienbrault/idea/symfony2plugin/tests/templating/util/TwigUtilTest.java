@@ -11,6 +11,7 @@ import com.jetbrains.php.lang.documentation.phpdoc.psi.tags.PhpDocTag;
 import com.jetbrains.php.lang.psi.PhpPsiElementFactory;
 import com.jetbrains.php.lang.psi.elements.Function;
 import com.jetbrains.php.lang.psi.elements.Method;
+import com.jetbrains.php.lang.psi.elements.MethodReference;
 import com.jetbrains.twig.TwigFile;
 import com.jetbrains.twig.TwigFileType;
 import com.jetbrains.twig.TwigLanguage;
@@ -21,6 +22,7 @@ import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigMacro;
 import fr.adrienbrault.idea.symfony2plugin.templating.dict.TwigMacroTagInterface;
 import fr.adrienbrault.idea.symfony2plugin.templating.path.TwigPath;
 import fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil;
+import fr.adrienbrault.idea.symfony2plugin.templating.variable.dict.PsiVariable;
 import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -251,6 +253,27 @@ public class TwigUtilTest extends SymfonyLightCodeInsightFixtureTestCase {
         assertNotNull(ContainerUtil.find(methods, method -> method.getFQN().equals("\\foo")));
     }
 
+    /**
+     * @see fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil#getTemplateUsageVariablesOnIndex
+     */
+    public void testGetTemplateUsageVariablesOnIndex() {
+        myFixture.addFileToProject("FooController.php", "<?php\n" +
+            "class FooController\n" +
+            "{\n" +
+            "   public function fooAction() {\n" +
+            "       $foo->render('foo-vars.html.twig', ['foo' => $form->createView(), 'bar' => 'bar']);\n" +
+            "   }\n" +
+            "}"
+        );
+
+        Map<String, PsiVariable> variables = TwigUtil.getTemplateUsageVariablesOnIndex(getProject(), Collections.singletonList("foo-vars.html.twig"));
+        assertContainsElements(variables.keySet(), "foo", "bar");
+
+        PsiElement element = variables.get("foo").getElement();
+        assertTrue(element instanceof MethodReference);
+        assertEquals("$form->createView()", element.getText());
+    }
+
     /**
      * @see fr.adrienbrault.idea.symfony2plugin.templating.util.TwigUtil#getFoldingTemplateName
      */
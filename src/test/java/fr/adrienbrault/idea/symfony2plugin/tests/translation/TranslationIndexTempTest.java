@@ -0,0 +1,56 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.translation;
+
+import fr.adrienbrault.idea.symfony2plugin.Settings;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyTempCodeInsightFixtureTestCase;
+import fr.adrienbrault.idea.symfony2plugin.translation.TranslationIndex;
+import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationStringMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.translation.TranslationIndex
+ */
+public class TranslationIndexTempTest extends SymfonyTempCodeInsightFixtureTestCase {
+
+    public void testThatMissingTranslationDirectoryIsKeptAsEmptyState() {
+        Settings.getInstance(getProject()).pathToTranslation = "var/cache/dev/translations";
+
+        AtomicInteger updates = new AtomicInteger();
+
+        TranslationIndex translationIndex = TranslationIndex.getInstance(getProject());
+        translationIndex.setUpdateExecutor(runnable -> {
+            updates.incrementAndGet();
+            runnable.run();
+        });
+
+        TranslationStringMap translationMap = translationIndex.getTranslationMap();
+        assertEquals(0, translationMap.getDomainList().size());
+
+        assertSame(translationMap, translationIndex.getTranslationMap());
+        assertSame(translationMap, translationIndex.getTranslationMap());
+        assertTrue(updates.get() <= 1);
+    }
+
+    public void testThatCataloguesAreReadByTheUpdateExecutor() {
+        Settings.getInstance(getProject()).pathToTranslation = "var/cache/dev/translations";
+
+        TranslationIndex translationIndex = TranslationIndex.getInstance(getProject());
+        translationIndex.setUpdateExecutor(Runnable::run);
+
+        assertEquals(0, translationIndex.getTranslationMap().getDomainList().size());
+
+        createFile("var/cache/dev/translations/catalogue.de.php", "<?php\n" +
+            "$catalogue = new \\Symfony\\Component\\Translation\\MessageCatalogue('de', array (\n" +
+            "  'messages' => array (\n" +
+            "    'foo.bar' => 'Foo',\n" +
+            "  ),\n" +
+            "));\n"
+        );
+
+        TranslationStringMap translationMap = translationIndex.getTranslationMap();
+        assertContainsElements(translationMap.getDomainList(), "messages");
+        assertContainsElements(translationMap.getDomainMap("messages"), "foo.bar");
+    }
+}
@@ -0,0 +1,70 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.translation;
+
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import fr.adrienbrault.idea.symfony2plugin.translation.TranslationKeyStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.translation.TranslationKeyStore
+ */
+public class TranslationKeyStoreTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        myFixture.addFileToProject("Resources/translations/messages.de.yml", "" +
+            "foo:\n" +
+            "  bar: 'bar'\n" +
+            "  baz:\n" +
+            "    title: 'title'\n" +
+            "car: 'car'\n"
+        );
+
+        myFixture.addFileToProject("Resources/translations/messages.en.yml", "" +
+            "foo:\n" +
+            "  bar: 'bar'\n" +
+            "apple: 'apple'\n"
+        );
+    }
+
+    public void testThatKeysOfAllLocalesAreSortedOnce() {
+        TranslationKeyStore.DomainKeys domainKeys = TranslationKeyStore.getInstance(getProject()).getDomainKeys("messages");
+
+        assertEquals(Arrays.asList("apple", "car", "foo.bar", "foo.baz.title"), domainKeys.getKeys());
+
+        List<Boolean> weak = new ArrayList<>();
+        domainKeys.processKeys((key, isWeak) -> weak.add(isWeak));
+        assertFalse(weak.contains(false));
+    }
+
+    public void testThatKeysAreFoundByPrefixAndSegments() {
+        TranslationKeyStore.DomainKeys domainKeys = TranslationKeyStore.getInstance(getProject()).getDomainKeys("messages");
+
+        List<String> keys = new ArrayList<>();
+        domainKeys.processKeys("foo.b", (key, weak) -> keys.add(key));
+        assertEquals(Arrays.asList("foo.bar", "foo.baz.title"), keys);
+
+        assertEquals(Arrays.asList("apple", "car", "foo"), new ArrayList<>(domainKeys.getSegments("")));
+        assertEquals(Arrays.asList("bar", "baz"), new ArrayList<>(domainKeys.getSegments("foo")));
+        assertEquals(Collections.singletonList("title"), new ArrayList<>(domainKeys.getSegments("foo.baz")));
+        assertTrue(domainKeys.getSegments("car").isEmpty());
+    }
+
+    public void testThatStoreIsRebuiltOnChangedKeys() {
+        assertEquals(4, TranslationKeyStore.getInstance(getProject()).getDomainKeys("messages").size());
+
+        myFixture.addFileToProject("Resources/translations/messages.fr.yml", "zoo: 'zoo'\n");
+
+        assertContainsElements(TranslationKeyStore.getInstance(getProject()).getDomainKeys("messages").getKeys(), "zoo");
+    }
+
+    public void testThatStoreIsKeptWithoutCompiledCatalogues() {
+        TranslationKeyStore store = TranslationKeyStore.getInstance(getProject());
+        assertSame(store.getDomainKeys("messages"), store.getDomainKeys("messages"));
+    }
+}
@@ -0,0 +1,69 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.translation.dict;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import fr.adrienbrault.idea.symfony2plugin.translation.dict.TranslationCoverage;
+
+import java.util.*;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.translation.dict.TranslationCoverage
+ */
+public class TranslationCoverageTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        myFixture.addFileToProject("Resources/translations/coverage.de.yml", "" +
+            "foo: 'foo'\n" +
+            "bar: 'bar'\n"
+        );
+
+        myFixture.addFileToProject("Resources/translations/coverage.en.yml", "" +
+            "foo: 'foo'\n"
+        );
+
+        myFixture.addFileToProject("coverage.html.twig", "" +
+            "{{ 'foo'|trans({}, 'coverage') }}\n" +
+            "{{ 'bar'|trans({}, 'coverage') }}\n"
+        );
+
+        myFixture.addFileToProject("coverage.php", "<?php\n" +
+            "$t->trans('unknown', [], 'coverage');\n"
+        );
+    }
+
+    public void testThatMissingKeysAreCollectedPerLocale() {
+        TranslationCoverage.DomainCoverage coverage = getDomainCoverage("coverage");
+
+        assertEquals(Arrays.asList("bar", "foo", "unknown"), coverage.getKeys());
+        assertEquals(new HashSet<>(Arrays.asList("de", "en")), coverage.getLocales());
+
+        assertEquals(Collections.singletonList("unknown"), coverage.getMissingKeys("de"));
+        assertEquals(Arrays.asList("bar", "unknown"), coverage.getMissingKeys("en"));
+        assertEquals(2, coverage.getFoundCount("de"));
+        assertEquals(1, coverage.getFoundCount("en"));
+
+        assertEquals(Collections.singletonList("unknown"), coverage.getUnknownKeys());
+    }
+
+    public void testThatReportContainsLocaleMatrix() {
+        String report = TranslationCoverage.createReport(new TranslationCoverage(getProject()).collect(new EmptyProgressIndicator()));
+
+        assertTrue(report.contains("2/3"));
+        assertTrue(report.contains("1/3"));
+        assertTrue(report.contains("coverage (en) missing:\n  bar\n  unknown\n"));
+    }
+
+    private TranslationCoverage.DomainCoverage getDomainCoverage(String domain) {
+        for (TranslationCoverage.DomainCoverage coverage : new TranslationCoverage(getProject()).collect(new EmptyProgressIndicator())) {
+            if(coverage.getDomain().equals(domain)) {
+                return coverage;
+            }
+        }
+
+        fail(String.format("Domain '%s' has no coverage", domain));
+        return null;
+    }
+}
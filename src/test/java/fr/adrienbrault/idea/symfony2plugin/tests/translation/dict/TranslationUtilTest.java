@@ -203,4 +203,40 @@ public class TranslationUtilTest extends SymfonyLightCodeInsightFixtureTestCase
 
         assertContainsElements(placeholder, "%yaml_foobar%", "%xliff_foobar%");
     }
+
+    public void testHasTranslationKey() {
+        assertTrue(TranslationUtil.hasTranslationKey(getProject(), "yaml_weak.symfony.great", "apple"));
+        assertTrue(TranslationUtil.hasTranslationKey(getProject(), "foo_yaml.symfony.great", "car"));
+
+        assertFalse(TranslationUtil.hasTranslationKey(getProject(), "yaml_weak.symfony", "apple"));
+        assertFalse(TranslationUtil.hasTranslationKey(getProject(), "yaml_weak.symfony.great", "car"));
+        assertFalse(TranslationUtil.hasTranslationKey(getProject(), "yaml_weak.symfony.great", "unknown"));
+    }
+
+    public void testGetMissingTranslationKeyLocales() {
+        myFixture.addFileToProject("Resources/translations/apple.en.yml", "yaml_weak:\n  symfony:\n    great: 'great'\n");
+        myFixture.addFileToProject("Resources/translations/apple.fr.yml", "foo: 'foo'\n");
+
+        assertContainsElements(TranslationUtil.getTranslationKeyLocales(getProject(), "yaml_weak.symfony.great", "apple"), "de", "en");
+
+        Set<String> locales = TranslationUtil.getMissingTranslationKeyLocales(getProject(), "yaml_weak.symfony.great", "apple");
+        assertEquals(1, locales.size());
+        assertContainsElements(locales, "fr");
+
+        assertContainsElements(TranslationUtil.getMissingTranslationKeyLocales(getProject(), "yaml_weak.symfony.more.lines", "apple"), "en", "fr");
+    }
+
+    public void testGetXliffTranslationOffsets() {
+        assertEquals((Integer) 21, TranslationUtil.getXliffTranslationOffsets("<trans-unit resname=\"foo\"><source>bar</source>").get("foo"));
+        assertEquals((Integer) 29, TranslationUtil.getXliffTranslationOffsets("<trans-unit resname=\"foo\">   <source>bar</source>").get("bar"));
+        assertEquals((Integer) 0, TranslationUtil.getXliffTranslationOffsets("<source>a &amp; <g id=\"1\">b</g><![CDATA[<c>]]></source>").get("a & b<c>"));
+    }
+
+    public void testGetTranslationPsiElementsForXliffTargetsSourceTag() {
+        PsiElement[] psiElements = TranslationUtil.getTranslationPsiElements(getProject(), "my_foobar", "my_foobar");
+        assertEquals(1, psiElements.length);
+
+        PsiElement psiElement = psiElements[0];
+        assertTrue(psiElement.getContainingFile().getText().startsWith("<source>my_foobar</source>", psiElement.getTextOffset()));
+    }
 }
@@ -0,0 +1,110 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.translation.parser;
+
+import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationCatalogueReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationCatalogueReader
+ */
+public class TranslationCatalogueReaderTest extends Assert {
+
+    @Test
+    public void testThatCatalogueWithFallbackIsRead() throws IOException {
+        File testFile = new File("src/test/java/fr/adrienbrault/idea/symfony2plugin/tests/dic/translation/translations/catalogue.de.php");
+
+        Map<String, Set<String>> domains = TranslationCatalogueReader.read(testFile, new HashMap<>());
+
+        assertTrue(domains.keySet().containsAll(Arrays.asList("validators", "security", "pagination", "CraueFormFlowBundle", "FOSUserBundle")));
+
+        Set<String> validators = domains.get("validators");
+        assertTrue(validators.contains("This value should be false."));
+        assertTrue(validators.contains("foo.escape"));
+        assertTrue(validators.contains("foo.bar"));
+        assertTrue(validators.contains("foo.baz"));
+
+        // values are never keys
+        assertFalse(validators.contains("Dieser Wert sollte false sein."));
+
+        // fallback catalogue
+        assertTrue(domains.get("FOSUserBundle").contains("resetting.request.username"));
+    }
+
+    @Test
+    public void testThatShortArraysEscapingAndCommentsAreSupported() throws IOException {
+        String catalogue = "<?php\n" +
+            "// new MessageCatalogue('de', ['skipped' => ['skipped' => 'skipped']])\n" +
+            "$catalogue = new \\Symfony\\Component\\Translation\\MessageCatalogue('de', [\n" +
+            "  'messages' => [\n" +
+            "    'don\\'t' => 'nicht',\n" +
+            "    'path\\\\to' => 'Pfad',\n" +
+            "    \"double\" => \"doppelt\\n\",\n" +
+            "    /* comment */ 'array' => ['a', 'b'],\n" +
+            "    'last' => 'letzter'\n" +
+            "  ],\n" +
+            "  'messages+intl-icu' => array (\n" +
+            "    'icu' => 'icu',\n" +
+            "  ),\n" +
+            "]);\n" +
+            "$foo = new Foo('bar', ['foo' => ['foo' => 'foo']]);\n";
+
+        Map<String, Set<String>> domains = TranslationCatalogueReader.read(new StringReader(catalogue), new HashMap<>());
+
+        assertEquals(2, domains.size());
+        assertFalse(domains.containsKey("skipped"));
+        assertFalse(domains.containsKey("foo"));
+
+        Set<String> messages = domains.get("messages");
+        assertEquals(5, messages.size());
+        assertTrue(messages.contains("don't"));
+        assertTrue(messages.contains("path\\to"));
+        assertTrue(messages.contains("double"));
+        assertTrue(messages.contains("array"));
+        assertTrue(messages.contains("last"));
+
+        assertTrue(domains.get("messages+intl-icu").contains("icu"));
+    }
+
+    @Test
+    public void testThatKeysAreSharedByInterner() throws IOException {
+        Map<String, String> interner = new HashMap<>();
+
+        Map<String, Set<String>> de = TranslationCatalogueReader.read(new StringReader("<?php new MessageCatalogue('de', ['messages' => ['foo' => 'de']]);"), interner);
+        Map<String, Set<String>> en = TranslationCatalogueReader.read(new StringReader("<?php new MessageCatalogue('en', ['messages' => ['foo' => 'en']]);"), interner);
+
+        assertSame(de.get("messages").iterator().next(), en.get("messages").iterator().next());
+    }
+
+    @Test(timeout = 5000)
+    public void testThatMalformedCatalogueIsNotReadEndless() throws IOException {
+        Map<String, Set<String>> domains = TranslationCatalogueReader.read(new StringReader(
+            "<?php new MessageCatalogue('de', array('messages' => array('a' => 'b'])), 'foo' => ['c' => 'd']);"
+        ), new HashMap<>());
+
+        assertTrue(domains.get("messages").contains("a"));
+        assertFalse(domains.containsKey("foo"));
+
+        domains = TranslationCatalogueReader.read(new StringReader(
+            "<?php new MessageCatalogue('de', ['messages' => ['a' => 'b'], ) 'foo' => ['c' => 'd']]);"
+        ), new HashMap<>());
+
+        assertTrue(domains.get("messages").contains("a"));
+        assertFalse(domains.containsKey("foo"));
+
+        // half written file
+        domains = TranslationCatalogueReader.read(new StringReader(
+            "<?php new MessageCatalogue('de', ['messages' => ['a' => 'b', 'c"
+        ), new HashMap<>());
+
+        assertTrue(domains.get("messages").contains("a"));
+    }
+}
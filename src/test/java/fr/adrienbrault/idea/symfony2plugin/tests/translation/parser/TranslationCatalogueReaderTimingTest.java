@@ -0,0 +1,71 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.translation.parser;
+
+import com.intellij.openapi.util.io.FileUtil;
+import fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationCatalogueReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Timing harness of a synthetic compiled catalogue with 80k keys and about 8 MB; timings are only printed,
+ * the test asserts that all keys are read.
+ *
+ * Run with "./gradlew test --tests *TranslationCatalogueReaderTimingTest" to measure on the current machine
+ *
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ *
+ * @see fr.adrienbrault.idea.symfony2plugin.translation.parser.TranslationCatalogueReader
+ */
+public class TranslationCatalogueReaderTimingTest extends Assert {
+
+    private static final int DOMAINS = 8;
+
+    private static final int KEYS = 10000;
+
+    private static final int ITERATIONS = 5;
+
+    @Test
+    public void testThatLargeCatalogueIsRead() throws IOException {
+        StringBuilder content = new StringBuilder("<?php\n\nuse Symfony\\Component\\Translation\\MessageCatalogue;\n\n");
+        content.append("$catalogue = new MessageCatalogue('de', array (\n");
+
+        for (int domain = 0; domain < DOMAINS; domain++) {
+            content.append("  'domain").append(domain).append("' => array (\n");
+
+            for (int key = 0; key < KEYS; key++) {
+                content.append(String.format(
+                    "    'domain%d.section%d.key%d' => 'Translated value number %d with some text, \\'quoted\\' parts and a %%placeholder%%',\n",
+                    domain, key % 100, key, key
+                ));
+            }
+
+            content.append("  ),\n");
+        }
+
+        content.append("));\n\nreturn $catalogue;\n");
+
+        File file = FileUtil.createTempFile("catalogue.de", ".php", true);
+        FileUtil.writeToFile(file, content.toString());
+
+        Map<String, Set<String>> domains = TranslationCatalogueReader.read(file, new HashMap<>());
+        assertEquals(DOMAINS, domains.size());
+        assertEquals(KEYS, domains.get("domain0").size());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            TranslationCatalogueReader.read(file, new HashMap<>());
+        }
+
+        System.out.println(String.format(
+            "TranslationCatalogueReader: %d keys, %.1f MB; %.1fms per read",
+            DOMAINS * KEYS,
+            file.length() / (1024.0 * 1024.0),
+            (System.nanoTime() - start) / 1000000.0 / ITERATIONS
+        ));
+    }
+}
@@ -0,0 +1,86 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.twig.include;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import fr.adrienbrault.idea.symfony2plugin.stubs.dict.TwigIncludeSite;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import fr.adrienbrault.idea.symfony2plugin.twig.include.TwigIncludeGraph;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.twig.include.TwigIncludeGraph
+ */
+public class TwigIncludeGraphTest extends SymfonyLightCodeInsightFixtureTestCase {
+    public void testThatIncludingFilesAreCollectedWithGivenVariables() {
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% include 'part.html.twig' with {'foo': bar} only %}").getVirtualFile();
+        VirtualFile list = myFixture.addFileToProject("app/Resources/views/list.html.twig", "{{ include('part.html.twig') }}").getVirtualFile();
+        myFixture.addFileToProject("app/Resources/views/part.html.twig", "");
+
+        TwigIncludeGraph graph = TwigIncludeGraph.getInstance(getProject());
+
+        assertTrue(graph.isIncluded(Collections.singletonList("part.html.twig")));
+        assertFalse(graph.isIncluded(Collections.singletonList("page.html.twig")));
+
+        Map<VirtualFile, Collection<TwigIncludeSite>> files = graph.getIncludingFiles(Collections.singletonList("part.html.twig"));
+        assertEquals(2, files.size());
+
+        TwigIncludeSite includeSite = files.get(page).iterator().next();
+        assertTrue(includeSite.isOnly());
+        assertEquals("bar", includeSite.getVariables().get("foo"));
+
+        assertFalse(files.get(list).iterator().next().isOnly());
+    }
+
+    public void testThatIncludeElementIsResolvedOnCurrentRange() {
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% include 'part.html.twig' %}").getVirtualFile();
+
+        TwigIncludeGraph graph = TwigIncludeGraph.getInstance(getProject());
+        assertTrue(graph.isIncluded(Collections.singletonList("part.html.twig")));
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                VfsUtil.saveText(page, "{{ foo }}\n{% include 'part.html.twig' %}");
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        PsiFile psiFile = PsiManager.getInstance(getProject()).findFile(page);
+        assertNotNull(psiFile);
+
+        TwigIncludeSite includeSite = graph.getIncludingFiles(Collections.singletonList("part.html.twig")).get(page).iterator().next();
+        PsiElement includeElement = TwigIncludeGraph.getIncludeElement(psiFile, includeSite);
+
+        assertNotNull(includeElement);
+        assertEquals("{% include 'part.html.twig' %}", includeElement.getText());
+    }
+
+    public void testThatOnlyChangedTemplatesAreUpdated() {
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% include 'part.html.twig' %}").getVirtualFile();
+        VirtualFile list = myFixture.addFileToProject("app/Resources/views/list.html.twig", "{% include 'part.html.twig' %}").getVirtualFile();
+
+        TwigIncludeGraph graph = TwigIncludeGraph.getInstance(getProject());
+        assertEquals(2, graph.getIncludingFiles(Collections.singletonList("part.html.twig")).size());
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                VfsUtil.saveText(page, "{% include 'other.html.twig' %}");
+                list.delete(this);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertFalse(graph.isIncluded(Collections.singletonList("part.html.twig")));
+        assertEquals(Collections.singleton(page), graph.getIncludingFiles(Collections.singletonList("other.html.twig")).keySet());
+    }
+}
@@ -0,0 +1,153 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.twig.inheritance;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import fr.adrienbrault.idea.symfony2plugin.twig.inheritance.TwigInheritanceGraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.twig.inheritance.TwigInheritanceGraph
+ */
+public class TwigInheritanceGraphTest extends SymfonyLightCodeInsightFixtureTestCase {
+    public void testThatExtendingFilesAreCollectedOverAllLevels() {
+        VirtualFile base = myFixture.addFileToProject("app/Resources/views/base.html.twig", "{% block body %}{% endblock %}").getVirtualFile();
+        VirtualFile layout = myFixture.addFileToProject("app/Resources/views/layout.html.twig", "{% extends 'base.html.twig' %}").getVirtualFile();
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% extends 'layout.html.twig' %}").getVirtualFile();
+
+        TwigInheritanceGraph graph = TwigInheritanceGraph.getInstance(getProject());
+
+        Collection<VirtualFile> files = graph.getExtendingFiles(base, 8);
+        assertEquals(2, files.size());
+        assertTrue(files.containsAll(Arrays.asList(layout, page)));
+
+        assertEquals(1, graph.getExtendingFiles(base, 1).size());
+        assertEquals(0, graph.getExtendingFiles(page, 8).size());
+    }
+
+    public void testThatParentFilesIncludeUseStatements() {
+        VirtualFile base = myFixture.addFileToProject("app/Resources/views/base.html.twig", "{% block body %}{% endblock %}").getVirtualFile();
+        VirtualFile blocks = myFixture.addFileToProject("app/Resources/views/blocks.html.twig", "{% block sidebar %}{% endblock %}").getVirtualFile();
+        VirtualFile layout = myFixture.addFileToProject("app/Resources/views/layout.html.twig", "{% extends 'base.html.twig' %}").getVirtualFile();
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% extends 'layout.html.twig' %}{% use 'blocks.html.twig' %}").getVirtualFile();
+
+        TwigInheritanceGraph graph = TwigInheritanceGraph.getInstance(getProject());
+
+        Collection<VirtualFile> files = graph.getParentFiles(page, 20);
+        assertEquals(3, files.size());
+        assertTrue(files.containsAll(Arrays.asList(base, blocks, layout)));
+
+        assertTrue(graph.hasBlock("sidebar", files));
+        assertFalse(graph.hasBlock("footer", files));
+    }
+
+    public void testThatBlockNamesAreResolvedForManyFiles() {
+        VirtualFile base = myFixture.addFileToProject("app/Resources/views/base.html.twig", "{% block body %}{% endblock %}").getVirtualFile();
+        VirtualFile blocks = myFixture.addFileToProject("app/Resources/views/blocks.html.twig", "{% block sidebar %}{% endblock %}{% block footer %}{% endblock %}").getVirtualFile();
+        VirtualFile empty = myFixture.addFileToProject("app/Resources/views/empty.html.twig", "").getVirtualFile();
+
+        Map<VirtualFile, Collection<String>> blockNames = TwigInheritanceGraph.getInstance(getProject()).getBlockNames(Arrays.asList(base, blocks, empty));
+
+        assertEquals(2, blockNames.size());
+        assertContainsElements(blockNames.get(base), "body");
+        assertContainsElements(blockNames.get(blocks), "sidebar", "footer");
+        assertFalse(blockNames.containsKey(empty));
+    }
+
+    public void testThatParentFilesOfManyFilesAreCollected() {
+        VirtualFile base = myFixture.addFileToProject("app/Resources/views/base.html.twig", "").getVirtualFile();
+        VirtualFile blocks = myFixture.addFileToProject("app/Resources/views/blocks.html.twig", "").getVirtualFile();
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% extends 'base.html.twig' %}").getVirtualFile();
+        VirtualFile embed = myFixture.addFileToProject("app/Resources/views/embed.html.twig", "{% use 'blocks.html.twig' %}").getVirtualFile();
+
+        Collection<VirtualFile> files = TwigInheritanceGraph.getInstance(getProject()).getParentFiles(Arrays.asList(page, embed), 20);
+
+        assertEquals(2, files.size());
+        assertTrue(files.containsAll(Arrays.asList(base, blocks)));
+    }
+
+    public void testThatBlockNamesOfChangedFileAreUpdated() {
+        VirtualFile base = myFixture.addFileToProject("app/Resources/views/base.html.twig", "{% block body %}{% endblock %}").getVirtualFile();
+
+        TwigInheritanceGraph graph = TwigInheritanceGraph.getInstance(getProject());
+        assertContainsElements(graph.getBlockNames(base), "body");
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                VfsUtil.saveText(base, "{% block footer %}{% endblock %}");
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertEquals(Collections.singleton("footer"), graph.getBlockNames(base));
+    }
+
+    public void testThatDeletedTemplateIsRemoved() {
+        VirtualFile base = myFixture.addFileToProject("app/Resources/views/base.html.twig", "{% block body %}{% endblock %}").getVirtualFile();
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% extends 'base.html.twig' %}").getVirtualFile();
+
+        TwigInheritanceGraph graph = TwigInheritanceGraph.getInstance(getProject());
+        assertContainsElements(graph.getExtendingFiles(base, 8), page);
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                page.delete(this);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertEquals(0, graph.getExtendingFiles(base, 8).size());
+    }
+
+    public void testThatCreatedParentTemplateIsResolved() {
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% extends 'created.html.twig' %}").getVirtualFile();
+
+        TwigInheritanceGraph graph = TwigInheritanceGraph.getInstance(getProject());
+        assertEquals(0, graph.getParentFiles(page, 20).size());
+
+        VirtualFile created = myFixture.addFileToProject("app/Resources/views/created.html.twig", "{% block body %}{% endblock %}").getVirtualFile();
+
+        assertEquals(Collections.singletonList(created), new ArrayList<>(graph.getParentFiles(page, 20)));
+        assertContainsElements(graph.getExtendingFiles(created, 8), page);
+    }
+
+    public void testThatRenamedParentTemplateIsResolvedByItsNewName() {
+        VirtualFile base = myFixture.addFileToProject("app/Resources/views/base.html.twig", "{% block body %}{% endblock %}").getVirtualFile();
+        VirtualFile page = myFixture.addFileToProject("app/Resources/views/page.html.twig", "{% extends 'base.html.twig' %}").getVirtualFile();
+
+        TwigInheritanceGraph graph = TwigInheritanceGraph.getInstance(getProject());
+        assertContainsElements(graph.getParentFiles(page, 20), base);
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                base.rename(this, "renamed.html.twig");
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertEquals(0, graph.getParentFiles(page, 20).size());
+        assertEquals(0, graph.getExtendingFiles(base, 8).size());
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try {
+                base.rename(this, "base.html.twig");
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        });
+
+        assertContainsElements(graph.getParentFiles(page, 20), base);
+        assertContainsElements(graph.getExtendingFiles(base, 8), page);
+    }
+}
@@ -7,6 +7,7 @@ import fr.adrienbrault.idea.symfony2plugin.util.SymfonyCommandUtil;
 import fr.adrienbrault.idea.symfony2plugin.util.dict.SymfonyCommand;
 
 import java.io.File;
+import java.util.Collection;
 
 /**
  * @author Daniel Espendiller <daniel@espendiller.net>
@@ -36,6 +37,32 @@ public class SymfonyCommandUtilTest extends SymfonyLightCodeInsightFixtureTestCa
         assertNull(ContainerUtil.find(SymfonyCommandUtil.getCommands(getProject()), new SymfonyCommandCondition("unknown")));
     }
 
+    /**
+     * @see SymfonyCommandUtil#getCommands
+     */
+    public void testThatClassesWithoutCommandParentAreNotCommands() {
+        assertNull(ContainerUtil.find(SymfonyCommandUtil.getCommands(getProject()), new SymfonyCommandCondition("logger")));
+    }
+
+    /**
+     * @see SymfonyCommandUtil#getCommands
+     */
+    public void testThatCommandsAreCachedUntilIndexedFilesChange() {
+        Collection<SymfonyCommand> commands = SymfonyCommandUtil.getCommands(getProject());
+
+        myFixture.addFileToProject("foo.html.twig", "{{ foo }}");
+        assertSame(commands, SymfonyCommandUtil.getCommands(getProject()));
+
+        myFixture.addFileToProject("FooCommand.php", "<?php\n" +
+            "class FooCommand extends \\Symfony\\Component\\Console\\Command\\Command\n" +
+            "{\n" +
+            "    protected static $defaultName = 'foo:added';\n" +
+            "}\n"
+        );
+
+        assertNotNull(ContainerUtil.find(SymfonyCommandUtil.getCommands(getProject()), new SymfonyCommandCondition("foo:added")));
+    }
+
     private static class SymfonyCommandCondition implements Condition<SymfonyCommand> {
         private final String name;
 
@@ -39,4 +39,17 @@ namespace Foo
             $this->setName(self::FOO);
         }
     }
-}
\ No newline at end of file
+
+    class Logger
+    {
+        function setName($i) {}
+    }
+
+    class FooLogger extends Logger
+    {
+        public function configure()
+        {
+            $this->setName('logger');
+        }
+    }
+}
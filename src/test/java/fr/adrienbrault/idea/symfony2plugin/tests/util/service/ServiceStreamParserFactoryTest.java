@@ -0,0 +1,111 @@
+package fr.adrienbrault.idea.symfony2plugin.tests.util.service;
+
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.openapi.project.Project;
+import com.intellij.testFramework.PlatformTestUtil;
+import fr.adrienbrault.idea.symfony2plugin.config.component.parser.ParameterServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlServiceParser;
+import fr.adrienbrault.idea.symfony2plugin.dic.XmlTagParser;
+import fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderArguments;
+import fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderFactory;
+import fr.adrienbrault.idea.symfony2plugin.tests.SymfonyLightCodeInsightFixtureTestCase;
+import fr.adrienbrault.idea.symfony2plugin.translation.parser.DomainMappings;
+import fr.adrienbrault.idea.symfony2plugin.util.service.ServiceXmlParserFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Daniel Espendiller <daniel@espendiller.net>
+ * @see fr.adrienbrault.idea.symfony2plugin.util.service.ServiceStreamParserFactory
+ */
+public class ServiceStreamParserFactoryTest extends SymfonyLightCodeInsightFixtureTestCase {
+
+    private static final ExtensionPointName<CompiledServiceBuilderFactory> EXTENSIONS = new ExtensionPointName<>(
+        "fr.adrienbrault.idea.symfony2plugin.extension.CompiledServiceBuilderFactory"
+    );
+
+    private static final String CONTAINER = "" +
+        "<container>" +
+        "  <parameters><parameter key=\"foo.parameter\">foo</parameter></parameters>" +
+        "  <services><service id=\"foo.service\" class=\"Foo\\Bar\"/></services>" +
+        "</container>";
+
+    private CountingBuilder builder;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        builder = new CountingBuilder();
+        PlatformTestUtil.registerExtension(EXTENSIONS, () -> builder, getTestRootDisposable());
+
+        ServiceXmlParserFactory.cleanInstance(getProject());
+    }
+
+    public void tearDown() throws Exception {
+        ServiceXmlParserFactory.cleanInstance(getProject());
+        super.tearDown();
+    }
+
+    public void testThatPluginParsersAreBuildInOnePass() {
+        builder.content = CONTAINER;
+
+        assertContainsElements(ServiceXmlParserFactory.getInstance(getProject(), XmlServiceParser.class).getServiceMap().getIds(), "foo.service");
+        assertContainsElements(ServiceXmlParserFactory.getInstance(getProject(), ParameterServiceParser.class).getParameterMap().keySet(), "foo.parameter");
+        ServiceXmlParserFactory.getInstance(getProject(), XmlTagParser.class);
+        ServiceXmlParserFactory.getInstance(getProject(), DomainMappings.class);
+
+        assertEquals(1, builder.passes);
+    }
+
+    public void testThatInvalidContainerKeepsPreviousParsers() {
+        builder.content = CONTAINER;
+
+        XmlServiceParser parser = ServiceXmlParserFactory.getInstance(getProject(), XmlServiceParser.class);
+        long modificationCount = ServiceXmlParserFactory.getModificationTracker(getProject(), XmlServiceParser.class).getModificationCount();
+
+        builder.content = "<container><services><service id=\"foo.service\"";
+        builder.modified = true;
+
+        assertSame(parser, ServiceXmlParserFactory.getInstance(getProject(), XmlServiceParser.class));
+        assertEquals(modificationCount, ServiceXmlParserFactory.getModificationTracker(getProject(), XmlServiceParser.class).getModificationCount());
+        assertEquals(2, builder.passes);
+    }
+
+    public void testThatModificationTrackerNeverParses() {
+        builder.content = CONTAINER;
+
+        long modificationCount = ServiceXmlParserFactory.getModificationTracker(getProject(), XmlServiceParser.class).getModificationCount();
+        assertEquals(modificationCount, ServiceXmlParserFactory.getModificationTracker(getProject(), XmlServiceParser.class).getModificationCount());
+        assertEquals(0, builder.passes);
+    }
+
+    public void testThatModificationCountChangesWithContainerFileEvents() {
+        long modificationCount = ServiceXmlParserFactory.getModificationTracker(getProject(), XmlServiceParser.class).getModificationCount();
+
+        myFixture.addFileToProject("foo.xml", "<container/>");
+        assertEquals(modificationCount, ServiceXmlParserFactory.getModificationTracker(getProject(), XmlServiceParser.class).getModificationCount());
+
+        myFixture.addFileToProject("var/cache/dev/appDevDebugProjectContainer.xml", "<container/>");
+        assertTrue(ServiceXmlParserFactory.getModificationTracker(getProject(), XmlServiceParser.class).getModificationCount() > modificationCount);
+    }
+
+    private static class CountingBuilder implements CompiledServiceBuilderFactory.Builder {
+        private String content = "<container/>";
+        private boolean modified = false;
+        private int passes = 0;
+
+        @Override
+        public void build(@NotNull CompiledServiceBuilderArguments args) {
+            passes++;
+            modified = false;
+            args.addStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public boolean isModified(@NotNull Project project) {
+            return modified;
+        }
+    }
+}